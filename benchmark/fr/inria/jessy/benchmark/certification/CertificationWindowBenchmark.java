@@ -0,0 +1,104 @@
+package fr.inria.jessy.benchmark.certification;
+
+import java.util.Random;
+
+import com.yahoo.ycsb.YCSBEntity;
+
+import fr.inria.jessy.protocol.CertificationWindow;
+import fr.inria.jessy.transaction.ExecutionHistory;
+import fr.inria.jessy.transaction.TransactionHandler;
+
+/**
+ * Measures the cost of certifying a transaction against the committing
+ * transactions of {@code SDUR_VV_GC}, as the window grows, with and without
+ * the key summaries of {@link CertificationWindow}.
+ * <p>
+ * Usage: CertificationWindowBenchmark [objects] [reads per transaction]
+ * [writes per transaction] [window sizes...]
+ *
+ * @author Masoud Saeida Ardekani
+ *
+ */
+public class CertificationWindowBenchmark {
+
+	private static final int CERTIFICATIONS = 2000;
+
+	private final int objects;
+
+	private final int reads;
+
+	private final int writes;
+
+	public CertificationWindowBenchmark(int objects, int reads, int writes) {
+		this.objects = objects;
+		this.reads = reads;
+		this.writes = writes;
+	}
+
+	/**
+	 * Certifies transactions against a full window of <code>size</code>
+	 * transactions, and returns the average certification time in
+	 * microseconds.
+	 */
+	public double run(int size, boolean summarized) {
+		Random random = new Random(1);
+		CertificationWindow window = new CertificationWindow(size, summarized);
+		for (int psc = 1; psc <= size; psc++)
+			window.put(psc, newTransaction(random));
+
+		ExecutionHistory[] transactions = new ExecutionHistory[CERTIFICATIONS];
+		for (int i = 0; i < CERTIFICATIONS; i++)
+			transactions[i] = newTransaction(random);
+
+		// Warm up.
+		for (int i = 0; i < CERTIFICATIONS; i++)
+			window.conflicts(transactions[i], 1, size + 1);
+
+		int conflicts = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < CERTIFICATIONS; i++) {
+			if (window.conflicts(transactions[i], 1, size + 1))
+				conflicts++;
+		}
+		double time = (System.nanoTime() - start) / 1000.0 / CERTIFICATIONS;
+
+		System.out.println("window: " + size + ", summaries: " + summarized
+				+ ", conflicts: " + conflicts + "/" + CERTIFICATIONS
+				+ ", certification time(us): " + String.format("%.2f", time));
+		return time;
+	}
+
+	private ExecutionHistory newTransaction(Random random) {
+		ExecutionHistory history = new ExecutionHistory(
+				new TransactionHandler());
+		for (int i = 0; i < reads; i++)
+			history.getReadSet().addEntity(
+					new YCSBEntity("user" + random.nextInt(objects)));
+		for (int i = 0; i < writes; i++)
+			history.getWriteSet().addEntity(
+					new YCSBEntity("user" + random.nextInt(objects)));
+		return history;
+	}
+
+	public static void main(String[] args) {
+		int objects = args.length > 0 ? Integer.parseInt(args[0]) : 10000000;
+		int reads = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+		int writes = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+
+		CertificationWindowBenchmark benchmark = new CertificationWindowBenchmark(
+				objects, reads, writes);
+
+		int[] sizes = new int[] { 10, 100, 300, 1000 };
+		if (args.length > 3) {
+			sizes = new int[args.length - 3];
+			for (int i = 3; i < args.length; i++)
+				sizes[i - 3] = Integer.parseInt(args[i]);
+		}
+
+		for (int size : sizes) {
+			benchmark.run(size, false);
+			benchmark.run(size, true);
+		}
+	}
+
+}
@@ -0,0 +1,118 @@
+package fr.inria.jessy.benchmark.vector;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import fr.inria.jessy.vector.CompactVector;
+import fr.inria.jessy.vector.DependenceVector;
+import fr.inria.jessy.vector.PartitionedDependenceVector;
+import fr.inria.jessy.vector.Vector;
+
+/**
+ * Measures the size of dependence vectors as transactions commit, with and
+ * without partitioning. Transactions are executed sequentially, the same way
+ * {@code NMSI_DV_GC#prepareToCommit} computes the vectors of the written
+ * entities.
+ * <p>
+ * Usage: DependenceVectorSizeBenchmark [objects] [transactions]
+ * [operations per transaction] [partitions...]
+ *
+ * @author Masoud Saeida Ardekani
+ *
+ */
+public class DependenceVectorSizeBenchmark {
+
+	private final int objects;
+
+	private final int transactions;
+
+	private final int operations;
+
+	public DependenceVectorSizeBenchmark(int objects, int transactions,
+			int operations) {
+		this.objects = objects;
+		this.transactions = transactions;
+		this.operations = operations;
+	}
+
+	/**
+	 * Runs the workload and returns the largest vector size. Zero partitions
+	 * stands for {@link DependenceVector}.
+	 */
+	public int run(int partitions) {
+		PartitionedDependenceVector.setPartitions(partitions);
+
+		Random random = new Random(1);
+		Map<String, Vector<String>> lastVersions = new HashMap<String, Vector<String>>();
+		int maxSize = 0;
+		long totalSize = 0;
+		long start = System.currentTimeMillis();
+
+		for (int t = 0; t < transactions; t++) {
+			CompactVector<String> readSet = new CompactVector<String>();
+			CompactVector<String> writeSet = new CompactVector<String>();
+
+			for (int o = 0; o < operations; o++) {
+				String key = "user" + random.nextInt(objects);
+				Vector<String> vector = lastVersions.get(key);
+				if (vector == null) {
+					vector = newVector(key, partitions);
+					vector.increment();
+				}
+				readSet.update(vector, null);
+				if (o % 2 == 0)
+					writeSet.update(vector, null);
+			}
+
+			Vector<String> updatedVector = newVector("", partitions);
+			updatedVector.update(readSet, writeSet);
+			for (String key : writeSet.getKeys()) {
+				updatedVector.setSelfKey(key);
+				lastVersions.put(key, updatedVector.clone());
+			}
+
+			maxSize = Math.max(maxSize, updatedVector.size());
+			totalSize += updatedVector.size();
+		}
+
+		System.out.println("partitions: " + partitions + ", max size: "
+				+ maxSize + ", average size: " + (totalSize / transactions)
+				+ ", time(ms): " + (System.currentTimeMillis() - start));
+		return maxSize;
+	}
+
+	private static Vector<String> newVector(String key, int partitions) {
+		if (partitions > 0)
+			return new PartitionedDependenceVector<String>(key);
+		return new DependenceVector<String>(key);
+	}
+
+	public static void main(String[] args) {
+		int objects = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		int transactions = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+		int operations = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+
+		DependenceVectorSizeBenchmark benchmark = new DependenceVectorSizeBenchmark(
+				objects, transactions, operations);
+
+		benchmark.run(0);
+		if (args.length > 3) {
+			for (int i = 3; i < args.length; i++)
+				checkBound(benchmark, Integer.parseInt(args[i]));
+		} else {
+			for (int partitions : new int[] { 16, 64, 256 })
+				checkBound(benchmark, partitions);
+		}
+	}
+
+	private static void checkBound(DependenceVectorSizeBenchmark benchmark,
+			int partitions) {
+		int size = benchmark.run(partitions);
+		if (size > partitions) {
+			System.out.println("bound violated: " + size + " entries for "
+					+ partitions + " partitions");
+		}
+	}
+
+}
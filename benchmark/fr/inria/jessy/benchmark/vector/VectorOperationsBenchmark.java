@@ -0,0 +1,400 @@
+package fr.inria.jessy.benchmark.vector;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import fr.inria.jessy.vector.CompactVector;
+import fr.inria.jessy.vector.ConcurrentVersionVector;
+import fr.inria.jessy.vector.DependenceVector;
+import fr.inria.jessy.vector.GMUVector;
+import fr.inria.jessy.vector.GMUVector2;
+import fr.inria.jessy.vector.LightScalarVector;
+import fr.inria.jessy.vector.PartitionDependenceVector;
+import fr.inria.jessy.vector.PartitionedDependenceVector;
+import fr.inria.jessy.vector.ScalarVector;
+import fr.inria.jessy.vector.Vector;
+import fr.inria.jessy.vector.VersionVector;
+
+/**
+ * Measures the cost of the operations performed on vectors on the critical
+ * path of transactions: {@link Vector#isCompatible(Vector)},
+ * {@link Vector#isCompatible(CompactVector)},
+ * {@link Vector#update(CompactVector, CompactVector)}, {@link Vector#clone()}
+ * and serialization (<code>writeExternal</code> followed by
+ * <code>readExternal</code>).
+ * <p>
+ * Each vector holds <code>size</code> entries, whose keys are drawn from
+ * <code>cardinality</code> objects. The read set and the write set hold
+ * <code>size</code> entities each.
+ * <p>
+ * As with JMH, each operation of each vector is measured in <code>forks</code>
+ * fresh JVMs, so that the profiles of the other vectors and operations do
+ * not bias its compilation. In each fork, the operation is repeated on the
+ * same vectors for {@value #WARMUP_ITERATIONS} warm-up iterations, then for
+ * {@value #MEASUREMENT_ITERATIONS} measured iterations of
+ * <code>operations</code> calls each, and its results are consumed by a
+ * {@link Blackhole}. The mean and the standard deviation of the time per
+ * call over the measured iterations of all the forks are printed.
+ * Operations that need a running replica print the exception they throw
+ * instead of a time. With zero forks, everything is measured in the current
+ * JVM.
+ * <p>
+ * JMH itself is not among the libraries in <code>lib/</code>. The benchmark
+ * is compiled and run with <code>ant benchmark</code>, whose arguments are
+ * given with <code>-Dbenchmark.args="..."</code>.
+ * <p>
+ * Usage: VectorOperationsBenchmark [operations] [sizes,...]
+ * [cardinalities,...] [vectors,...] [forks]
+ *
+ * @author Masoud Saeida Ardekani
+ *
+ */
+public class VectorOperationsBenchmark {
+
+	private static final String[] VECTORS = { "VersionVector",
+			"DependenceVector", "PartitionDependenceVector",
+			"PartitionedDependenceVector", "GMUVector", "GMUVector2",
+			"ScalarVector", "LightScalarVector" };
+
+	private static final String[] OPERATIONS = { "isCompatible(Vector)",
+			"isCompatible(CompactVector)", "update", "clone", "externalizable" };
+
+	static final int WARMUP_ITERATIONS = 5;
+
+	static final int MEASUREMENT_ITERATIONS = 10;
+
+	/**
+	 * Set in the forked JVMs, which print the times of their measured
+	 * iterations on a line starting with {@link #RESULT}.
+	 */
+	private static final String FORKED = "vector.benchmark.forked";
+
+	private static final String RESULT = "result: ";
+
+	private final int operations;
+
+	private final Blackhole blackhole = new Blackhole();
+
+	public VectorOperationsBenchmark(int operations) {
+		this.operations = operations;
+	}
+
+	/**
+	 * Consumes the results of the operations, so that they are not optimized
+	 * away, in the same way as the blackholes of JMH: a result is only
+	 * stored, with an exponentially decreasing probability, into a field
+	 * that the compiler cannot prove unused.
+	 */
+	static final class Blackhole {
+
+		private volatile int mask = 1;
+
+		private int seed = (int) System.nanoTime();
+
+		private volatile Object escaped;
+
+		void consume(Object result) {
+			int m = mask;
+			int s = (seed = seed * 1664525 + 1013904223);
+			if ((s & m) == 0) {
+				escaped = result;
+				mask = (m << 1) + 1;
+			}
+		}
+	}
+
+	private interface Operation {
+		Object run() throws Exception;
+	}
+
+	/**
+	 * Measures <code>operation</code> on <code>vectorType</code> in the
+	 * current JVM, and returns the time per call (in nanoseconds) of each
+	 * measured iteration.
+	 */
+	public double[] run(String vectorType, int size, int cardinality,
+			String operation) throws Exception {
+		Random random = new Random(1);
+
+		final Vector<String> vector = newVector(vectorType, random,
+				cardinality, size);
+		final Vector<String> other = newVector(vectorType, random,
+				cardinality, size);
+		final CompactVector<String> readSet = new CompactVector<String>();
+		final CompactVector<String> writeSet = new CompactVector<String>();
+		for (int i = 0; i < size; i++) {
+			readSet.update(newVector(vectorType, random, cardinality, size),
+					null);
+			if (i % 2 == 0)
+				writeSet.update(
+						newVector(vectorType, random, cardinality, size), null);
+		}
+
+		Operation op;
+		if (operation.equals("isCompatible(Vector)")) {
+			op = new Operation() {
+				public Object run() throws Exception {
+					return vector.isCompatible(other);
+				}
+			};
+		} else if (operation.equals("isCompatible(CompactVector)")) {
+			op = new Operation() {
+				public Object run() throws Exception {
+					return vector.isCompatible(readSet);
+				}
+			};
+		} else if (operation.equals("update")) {
+			// The updates are idempotent once applied, hence the vector does
+			// not grow with the iterations.
+			final Vector<String> updated = vector.clone();
+			op = new Operation() {
+				public Object run() throws Exception {
+					updated.update(readSet, writeSet);
+					return updated;
+				}
+			};
+		} else if (operation.equals("clone")) {
+			op = new Operation() {
+				public Object run() throws Exception {
+					return vector.clone();
+				}
+			};
+		} else if (operation.equals("externalizable")) {
+			op = new Operation() {
+				public Object run() throws Exception {
+					return roundTrip(vector);
+				}
+			};
+		} else {
+			throw new IllegalArgumentException("Unknown operation "
+					+ operation);
+		}
+		return measure(op);
+	}
+
+	/**
+	 * Returns the time per call of <code>operation</code> (in nanoseconds)
+	 * in each measured iteration.
+	 */
+	private double[] measure(Operation operation) throws Exception {
+		for (int i = 0; i < WARMUP_ITERATIONS; i++)
+			iteration(operation);
+
+		double[] times = new double[MEASUREMENT_ITERATIONS];
+		for (int i = 0; i < MEASUREMENT_ITERATIONS; i++)
+			times[i] = iteration(operation);
+		return times;
+	}
+
+	private double iteration(Operation operation) throws Exception {
+		long start = System.nanoTime();
+		for (int i = 0; i < operations; i++)
+			blackhole.consume(operation.run());
+		return (double) (System.nanoTime() - start) / operations;
+	}
+
+	/**
+	 * Measures <code>operation</code> on <code>vectorType</code> in
+	 * <code>forks</code> new JVMs, and returns the time per call (in
+	 * nanoseconds) of all their measured iterations.
+	 */
+	private double[] fork(String vectorType, int size, int cardinality,
+			String operation, int forks) throws Exception {
+		List<Double> times = new ArrayList<Double>();
+		for (int f = 0; f < forks; f++) {
+			ProcessBuilder builder = new ProcessBuilder(
+					System.getProperty("java.home") + File.separator + "bin"
+							+ File.separator + "java", "-D" + FORKED
+							+ "=true", "-cp",
+					System.getProperty("java.class.path"),
+					VectorOperationsBenchmark.class.getName(),
+					String.valueOf(operations), String.valueOf(size),
+					String.valueOf(cardinality), vectorType, operation);
+			builder.redirectErrorStream(true);
+			Process process = builder.start();
+
+			String result = null;
+			BufferedReader in = new BufferedReader(new InputStreamReader(
+					process.getInputStream()));
+			String line;
+			while ((line = in.readLine()) != null) {
+				if (line.startsWith(RESULT))
+					result = line.substring(RESULT.length());
+				else
+					System.err.println(line);
+			}
+			in.close();
+			process.waitFor();
+
+			if (result == null)
+				throw new Exception("the fork exited with "
+						+ process.exitValue());
+			if (!Character.isDigit(result.charAt(0)))
+				throw new Exception(result);
+			for (String time : result.split(" "))
+				times.add(Double.parseDouble(time));
+		}
+
+		double[] result = new double[times.size()];
+		for (int i = 0; i < result.length; i++)
+			result[i] = times.get(i);
+		return result;
+	}
+
+	/**
+	 * Measures all the operations on <code>vectorType</code>, and prints one
+	 * line per operation.
+	 */
+	public void run(String vectorType, int size, int cardinality, int forks) {
+		for (String operation : OPERATIONS) {
+			String result;
+			try {
+				double[] times = (forks > 0) ? fork(vectorType, size,
+						cardinality, operation, forks) : run(vectorType,
+						size, cardinality, operation);
+				result = summarize(times);
+			} catch (Exception ex) {
+				result = "n/a (" + ex + ")";
+			}
+
+			System.out.println(vectorType + "\tsize: " + size
+					+ "\tcardinality: " + cardinality + "\t" + operation
+					+ "(ns): " + result);
+		}
+	}
+
+	private static String summarize(double[] times) {
+		double sum = 0;
+		for (double time : times)
+			sum += time;
+		double mean = sum / times.length;
+
+		double squares = 0;
+		for (double time : times)
+			squares += (time - mean) * (time - mean);
+		double stddev = (times.length > 1) ? Math.sqrt(squares
+				/ (times.length - 1)) : 0;
+
+		return String.format("%.1f +- %.1f (%d iterations)", mean, stddev,
+				times.length);
+	}
+
+	private static Vector<String> roundTrip(Vector<String> vector)
+			throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		vector.writeExternal(out);
+		out.close();
+
+		Vector<String> result = vector.getClass().getDeclaredConstructor()
+				.newInstance();
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(
+				bytes.toByteArray()));
+		result.readExternal(in);
+		in.close();
+		return result;
+	}
+
+	/**
+	 * Returns a vector of an object drawn from <code>cardinality</code>
+	 * objects, holding <code>size</code> entries.
+	 */
+	private static Vector<String> newVector(String vectorType, Random random,
+			int cardinality, int size) {
+		String selfKey = "user" + random.nextInt(cardinality);
+		Vector<String> vector = newVector(vectorType, selfKey);
+		for (int i = 1; i < size; i++)
+			vector.setValue("user" + random.nextInt(cardinality),
+					random.nextInt(1000));
+		vector.setValue(selfKey, 1 + random.nextInt(1000));
+		return vector;
+	}
+
+	private static Vector<String> newVector(String vectorType, String selfKey) {
+		if (vectorType.equals("VersionVector"))
+			return new VersionVector<String>(selfKey, 0);
+		if (vectorType.equals("DependenceVector"))
+			return new DependenceVector<String>(selfKey);
+		if (vectorType.equals("PartitionDependenceVector"))
+			return new PartitionDependenceVector<String>(selfKey, 0);
+		if (vectorType.equals("PartitionedDependenceVector"))
+			return new PartitionedDependenceVector<String>(selfKey);
+		if (vectorType.equals("GMUVector"))
+			return new GMUVector<String>(selfKey, 0);
+		if (vectorType.equals("GMUVector2"))
+			return new GMUVector2<String>(selfKey, 0);
+		if (vectorType.equals("ScalarVector")) {
+			ScalarVector<String> vector = new ScalarVector<String>();
+			vector.setSelfKey(selfKey);
+			return vector;
+		}
+		if (vectorType.equals("LightScalarVector"))
+			return new LightScalarVector<String>(selfKey);
+		throw new IllegalArgumentException("Unknown vector " + vectorType);
+	}
+
+	private static int[] parse(String arg) {
+		String[] values = arg.split(",");
+		int[] result = new int[values.length];
+		for (int i = 0; i < values.length; i++)
+			result[i] = Integer.parseInt(values[i].trim());
+		return result;
+	}
+
+	/**
+	 * Sets up the static state a replica sets up in Vector#init.
+	 */
+	private static void init() {
+		VersionVector.committedVTS = new ConcurrentVersionVector<String>("user0");
+		ScalarVector.lastCommittedTransactionSeqNumber = new AtomicInteger(0);
+		PartitionedDependenceVector.setPartitions(16);
+	}
+
+	public static void main(String[] args) {
+		init();
+
+		if (Boolean.getBoolean(FORKED)) {
+			// operations size cardinality vector operation
+			VectorOperationsBenchmark benchmark = new VectorOperationsBenchmark(
+					Integer.parseInt(args[0]));
+			StringBuilder result = new StringBuilder(RESULT);
+			try {
+				for (double time : benchmark.run(args[3],
+						Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+						args[4]))
+					result.append(time).append(' ');
+			} catch (Exception ex) {
+				result.append(ex);
+			}
+			System.out.println(result.toString().trim());
+			return;
+		}
+
+		int operations = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		int[] sizes = args.length > 1 ? parse(args[1]) : new int[] { 1, 4,
+				16, 64 };
+		int[] cardinalities = args.length > 2 ? parse(args[2]) : new int[] {
+				1000, 100000 };
+		String[] vectors = args.length > 3 ? args[3].split(",") : VECTORS;
+		int forks = args.length > 4 ? Integer.parseInt(args[4]) : 2;
+
+		VectorOperationsBenchmark benchmark = new VectorOperationsBenchmark(
+				operations);
+		for (String vector : vectors) {
+			for (int size : sizes) {
+				for (int cardinality : cardinalities)
+					benchmark.run(vector.trim(), size, cardinality, forks);
+			}
+		}
+	}
+
+}
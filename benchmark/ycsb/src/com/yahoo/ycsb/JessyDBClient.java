@@ -1,6 +1,7 @@
 package com.yahoo.ycsb;
 
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.Vector;
@@ -123,17 +124,20 @@ public class JessyDBClient extends DB {
 			Transaction trans = new Transaction(jessy, readList.size(), 0,0) {
 				@Override
 				public ExecutionHistory execute() {
-					for (YCSBTransactionalReadRequest request : readList) {
-						try {
-							YCSBEntity en = read(YCSBEntity.class, request.key);
-							if (en == null) {
-								logger.error("Read Operation (r-o txs) for: "
-										+ request.key + " failed.");
-								return null;
-							}
-						} catch (Exception e) {
-							e.printStackTrace();
+					Set<String> keys = new HashSet<String>();
+					for (YCSBTransactionalReadRequest request : readList)
+						keys.add(request.key);
+
+					try {
+						List<YCSBEntity> entities = readAll(YCSBEntity.class,
+								keys);
+						if (entities.size() != keys.size()) {
+							logger.error("Read Operation (r-o txs) for: "
+									+ keys + " failed.");
+							return null;
 						}
+					} catch (Exception e) {
+						e.printStackTrace();
 					}
 					return commitTransaction();
 				}
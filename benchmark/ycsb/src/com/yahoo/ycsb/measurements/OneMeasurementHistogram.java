@@ -126,6 +126,7 @@ public class OneMeasurementHistogram extends OneMeasurement
     
     int opcounter=0;
     boolean done95th=false;
+    boolean done99th=false;
     for (int i=0; i<_buckets; i++)
     {
       opcounter+=histogram[i];
@@ -134,9 +135,14 @@ public class OneMeasurementHistogram extends OneMeasurement
         exporter.write(getName(), "95thPercentileLatency(ms)", i);
         done95th=true;
       }
-      if (((double)opcounter)/((double)operations)>=0.99)
+      if ( (!done99th) && (((double)opcounter)/((double)operations)>=0.99) )
       {
         exporter.write(getName(), "99thPercentileLatency(ms)", i);
+        done99th=true;
+      }
+      if (((double)opcounter)/((double)operations)>=0.999)
+      {
+        exporter.write(getName(), "99.9thPercentileLatency(ms)", i);
         break;
       }
     }
@@ -107,6 +107,219 @@ public class ConstantPool {
 	 */
 	public static final int GMUVECTOR_LOGCOMMITVC_SIZE=1000;
 	
+	/**
+	 * Default number of most recent versions of an entity that the
+	 * {@link fr.inria.jessy.store.VersionCollector} always keeps, regardless of
+	 * the garbage collection watermark. It can be overridden with the
+	 * <code>version_gc_min_versions</code> property.
+	 */
+	public static final int JESSY_VERSION_GC_MIN_VERSIONS = 5;
+
+	/**
+	 * Default period (in milliseconds) between two passes of the
+	 * {@link fr.inria.jessy.store.VersionCollector}. It can be overridden with
+	 * the <code>version_gc_period</code> property. Zero disables the collector,
+	 * which is the default.
+	 */
+	public static final long JESSY_VERSION_GC_PERIOD = 0;
+
+	/**
+	 * Default time (in milliseconds) during which the
+	 * {@link fr.inria.jessy.store.VersionCollector} keeps the versions of a
+	 * snapshot after its last read. It can be overridden with the
+	 * <code>version_gc_snapshot_lease</code> property.
+	 */
+	public static final long JESSY_VERSION_GC_SNAPSHOT_LEASE = 10000;
+
+	/**
+	 * Maximum size (in bytes) of the direct buffers allocated by
+	 * {@link fr.inria.jessy.store.OffHeapDataStore}.
+	 */
+	public static final int JESSY_OFFHEAP_SLAB_SIZE = 64 * 1024 * 1024;
+
+	/**
+	 * Number of independently locked stripes of the
+	 * {@link fr.inria.jessy.store.OffHeapDataStore}. It must be a power of
+	 * two.
+	 */
+	public static final int JESSY_OFFHEAP_STRIPES = 64;
+
+	/**
+	 * Size (in bytes) of a segment of the
+	 * {@link fr.inria.jessy.persistence.WriteAheadLog}.
+	 */
+	public static final int JESSY_WAL_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+	/**
+	 * Maximum number of records written to the write ahead log before forcing
+	 * them to disk.
+	 */
+	public static final int JESSY_WAL_MAX_BATCH_SIZE = 1024;
+
+	/**
+	 * Time (in milliseconds) the write ahead log waits for new records before
+	 * checking whether it is closed.
+	 */
+	public static final long JESSY_WAL_SYNC_TIMEOUT = 100;
+
+	/**
+	 * Default period (in milliseconds) between two checkpoints of the write
+	 * ahead log. It can be overridden with the
+	 * <code>wal_checkpoint_period</code> property. Zero disables checkpoints.
+	 */
+	public static final long JESSY_WAL_CHECKPOINT_PERIOD = 60000;
+
+	/**
+	 * Number of incremental checkpoints above which they are merged into one.
+	 */
+	public static final int JESSY_WAL_MAX_CHECKPOINTS = 4;
+
+	/**
+	 * Number of vectors of a class delta-encoded against the same scope before
+	 * sending a full vector (see {@link fr.inria.jessy.vector.VectorBaselines}).
+	 */
+	public static final int JESSY_VECTOR_RESYNC_PERIOD = 64;
+
+	/**
+	 * Default number of partitions per replica group of
+	 * {@link fr.inria.jessy.vector.PartitionedDependenceVector}. It can be
+	 * overridden with the <code>dependence_vector_partitions</code> property.
+	 * Zero means that dependence vectors have one entry per entity.
+	 */
+	public static final int JESSY_DEPENDENCE_VECTOR_PARTITIONS = 0;
+
+	/**
+	 * Default number of threads of the
+	 * {@link fr.inria.jessy.ReplicaReadExecutor}. It can be overridden with
+	 * the <code>read_executor_threads</code> property. Zero means one thread
+	 * per core, and a negative value means that reads are served by Netty
+	 * threads.
+	 */
+	public static final int JESSY_READ_EXECUTOR_THREADS = 0;
+
+	/**
+	 * Default number of queues of the {@link fr.inria.jessy.ReplicaReadExecutor}.
+	 * It can be overridden with the <code>read_executor_stripes</code>
+	 * property.
+	 */
+	public static final int JESSY_READ_EXECUTOR_STRIPES = 1;
+
+	/**
+	 * Capacity of each queue of the {@link fr.inria.jessy.ReplicaReadExecutor}.
+	 */
+	public static final int JESSY_READ_EXECUTOR_QUEUE_SIZE = 4096;
+
+	/**
+	 * Default policy of the {@link fr.inria.jessy.ReplicaSelector}: either
+	 * <code>latency</code> or <code>random</code>. It can be overridden with
+	 * the <code>replica_selection</code> property.
+	 */
+	public static final String JESSY_REPLICA_SELECTION = "random";
+
+	/**
+	 * Default percentile of the latencies of a group after which a remote
+	 * read is sent to another replica of the group (see
+	 * {@link fr.inria.jessy.ReadHedger}). It can be overridden with the
+	 * <code>hedged_read_percentile</code> property (e.g., 95). Zero, the
+	 * default, disables hedged reads.
+	 */
+	public static final double JESSY_HEDGED_READ_PERCENTILE = 0;
+
+	/**
+	 * Default maximal ratio of remote reads that are hedged. It can be
+	 * overridden with the <code>hedged_read_budget</code> property.
+	 */
+	public static final double JESSY_HEDGED_READ_BUDGET = 0.05;
+
+	/**
+	 * Default time (ms) a replica waits for the snapshot of a read request to
+	 * become visible before answering it with no entity (see
+	 * {@link fr.inria.jessy.vector.SnapshotWaitQueue}). It can be overridden
+	 * with the <code>read_wait_timeout</code> property (e.g., 100). Zero, the
+	 * default, disables waiting.
+	 */
+	public static final long JESSY_READ_WAIT_TIMEOUT = 0;
+
+	/**
+	 * Default number of threads certifying the atomically delivered
+	 * transactions (see
+	 * {@link fr.inria.jessy.transaction.termination.CertificationScheduler}).
+	 * It can be overridden with the <code>certification_threads</code>
+	 * property. One certifies the transactions sequentially; a larger value
+	 * certifies non-conflicting transactions concurrently, and zero means one
+	 * thread per core.
+	 */
+	public static final int JESSY_CERTIFICATION_THREADS = 1;
+
+	/**
+	 * Default number of threads applying committed transactions to the data
+	 * store when applying transactions does not commute (see
+	 * {@link fr.inria.jessy.transaction.termination.ApplyTransactionsToDataStore}).
+	 * It can be overridden with the <code>apply_threads</code> property. One
+	 * applies the transactions sequentially in FIFO order; a larger value
+	 * applies transactions writing disjoint keys concurrently, and zero means
+	 * one thread per core.
+	 */
+	public static final int JESSY_APPLY_THREADS = 1;
+
+	/**
+	 * Default maximal number of transactions cast together by a proxy (see
+	 * {@link fr.inria.jessy.communication.TerminationBatcher}). It can be
+	 * overridden with the <code>termination_batch_size</code> property (e.g.,
+	 * 16). One, the default, disables batching.
+	 */
+	public static final int JESSY_TERMINATION_BATCH_SIZE = 1;
+
+	/**
+	 * Default maximal time (us) a transaction waits for other transactions to
+	 * be cast with. It can be overridden with the
+	 * <code>termination_batch_linger</code> property.
+	 */
+	public static final long JESSY_TERMINATION_BATCH_LINGER = 500;
+
+	/**
+	 * Default maximal number of votes written together to a replica (see
+	 * {@link fr.inria.jessy.communication.VoteBatcher}). It can be overridden
+	 * with the <code>vote_batch_size</code> property (e.g., 32). One, the
+	 * default, disables batching.
+	 */
+	public static final int JESSY_VOTE_BATCH_SIZE = 1;
+
+	/**
+	 * Default maximal time (us) a vote is buffered before being written. It
+	 * can be overridden with the <code>vote_batch_linger</code> property.
+	 */
+	public static final long JESSY_VOTE_BATCH_LINGER = 200;
+
+	/**
+	 * Default number of Netty connections opened to each replica by a
+	 * {@link fr.inria.jessy.communication.UnicastClientManager}. It can be
+	 * overridden with the <code>unicast_connections</code> property.
+	 */
+	public static final int JESSY_UNICAST_CONNECTIONS = 1;
+
+	/**
+	 * Default number of consecutive failed connection attempts to a replica
+	 * after which a {@link fr.inria.jessy.communication.UnicastConnection}
+	 * drops the messages queued to it. It can be overridden with the
+	 * <code>unicast_connect_attempts</code> property.
+	 */
+	public static final int JESSY_UNICAST_CONNECT_ATTEMPTS = 10;
+
+	/**
+	 * Whether the phases of the transactions are traced by the
+	 * {@link fr.inria.jessy.transaction.TransactionTracer} by default. It can be
+	 * overridden with the <code>tracing</code> property.
+	 */
+	public static final boolean JESSY_TRACING = false;
+
+	/**
+	 * Default period (in milliseconds) between two exports of the traced
+	 * phases. It can be overridden with the <code>trace_export_period</code>
+	 * property. Zero means that they are only exported when the process exits.
+	 */
+	public static final long JESSY_TRACE_EXPORT_PERIOD = 0;
+
 	/**
 	 * Specifies the size of committedTransactions in S-DUR algorithm.
 	 */
@@ -134,6 +347,12 @@ public class ConstantPool {
 	 */
 	public static long JESSY_VOTING_QUORUM_TIMEOUT=3000000;
 
+	/**
+	 * Tick (in millisecond) of the timer shared by all voting quorums to expire
+	 * their timeouts. A timeout expires up to one tick late.
+	 */
+	public static final long JESSY_VOTING_QUORUM_TIMER_TICK=100;
+
 	/**
 	 * Number of read operations in Read-only transaction in YCSB 
 	 */
@@ -174,6 +393,28 @@ public class ConstantPool {
 	public static final String WAREHOUSES_NUMBER = "warehouses_number";
 	public static final String OPERATION_WIDE_MEASUREMENTS = "operation_wide_measurements";
 	public static final String TRANSACTION_WIDE_MEASUREMENTS = "transaction_wide_measurements";
+	public static final String VERSION_GC_MIN_VERSIONS = "version_gc_min_versions";
+	public static final String VERSION_GC_PERIOD = "version_gc_period";
+	public static final String VERSION_GC_SNAPSHOT_LEASE = "version_gc_snapshot_lease";
+	public static final String WAL_CHECKPOINT_PERIOD = "wal_checkpoint_period";
+	public static final String WIRE_CODEC = "wire_codec";
+	public static final String DEPENDENCE_VECTOR_PARTITIONS = "dependence_vector_partitions";
+	public static final String READ_EXECUTOR_THREADS = "read_executor_threads";
+	public static final String READ_EXECUTOR_STRIPES = "read_executor_stripes";
+	public static final String REPLICA_SELECTION = "replica_selection";
+	public static final String HEDGED_READ_PERCENTILE = "hedged_read_percentile";
+	public static final String HEDGED_READ_BUDGET = "hedged_read_budget";
+	public static final String READ_WAIT_TIMEOUT = "read_wait_timeout";
+	public static final String CERTIFICATION_THREADS = "certification_threads";
+	public static final String APPLY_THREADS = "apply_threads";
+	public static final String TERMINATION_BATCH_SIZE = "termination_batch_size";
+	public static final String TERMINATION_BATCH_LINGER = "termination_batch_linger";
+	public static final String VOTE_BATCH_SIZE = "vote_batch_size";
+	public static final String VOTE_BATCH_LINGER = "vote_batch_linger";
+	public static final String UNICAST_CONNECTIONS = "unicast_connections";
+	public static final String UNICAST_CONNECT_ATTEMPTS = "unicast_connect_attempts";
+	public static final String TRACING = "tracing";
+	public static final String TRACE_EXPORT_PERIOD = "trace_export_period";
 
 	
 	/**
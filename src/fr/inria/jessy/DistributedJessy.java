@@ -1,5 +1,6 @@
 package fr.inria.jessy;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
@@ -7,6 +8,7 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeoutException;
 
+import net.sourceforge.fractal.utils.ExecutorPool;
 import net.sourceforge.fractal.utils.PerformanceProbe;
 import net.sourceforge.fractal.utils.PerformanceProbe.FloatValueRecorder;
 import net.sourceforge.fractal.utils.PerformanceProbe.SimpleCounter;
@@ -25,15 +27,21 @@ import fr.inria.jessy.ConstantPool.CAST_MODE;
 import fr.inria.jessy.communication.JessyGroupManager;
 import fr.inria.jessy.partitioner.Partitioner;
 import fr.inria.jessy.persistence.FilePersistence;
+import fr.inria.jessy.store.DataStoreFactory;
 import fr.inria.jessy.store.JessyEntity;
 import fr.inria.jessy.store.ReadReply;
 import fr.inria.jessy.store.ReadRequest;
 import fr.inria.jessy.store.ReadRequestKey;
+import fr.inria.jessy.store.VersionCollector;
 import fr.inria.jessy.transaction.ExecutionHistory;
 import fr.inria.jessy.transaction.TransactionHandler;
 import fr.inria.jessy.transaction.TransactionState;
+import fr.inria.jessy.transaction.TransactionTracer;
+import fr.inria.jessy.transaction.TransactionTracer.Point;
 import fr.inria.jessy.transaction.termination.DistributedTermination;
+import fr.inria.jessy.utils.SettableFuture;
 import fr.inria.jessy.vector.CompactVector;
+import fr.inria.jessy.vector.SnapshotWaitQueue;
 import fr.inria.jessy.vector.VectorFactory;
 
 public class DistributedJessy extends Jessy {
@@ -103,6 +111,9 @@ public class DistributedJessy extends Jessy {
 
 			partitioner = manager.getPartitioner();
 
+			if (!manager.isProxy())
+				startVersionCollector();
+
 			// FIXME MOVE THIS
 //			MessageStream.addClass(JessyEntity.class.getName());
 //			MessageStream.addClass(YCSBEntity.class.getName());
@@ -168,6 +179,9 @@ public class DistributedJessy extends Jessy {
 
 			partitioner = manager.getPartitioner();
 
+			if (!manager.isProxy())
+				startVersionCollector();
+
 		} catch (Exception ex) {
 			ex.printStackTrace();
 		}
@@ -186,6 +200,16 @@ public class DistributedJessy extends Jessy {
 		return distributedJessy;
 	}
 
+	/**
+	 * Starts garbage collecting old versions of the entities in the data store
+	 * if it is enabled in the config file.
+	 */
+	private void startVersionCollector() {
+		VersionCollector versionCollector = new VersionCollector(dataStore);
+		if (versionCollector.isEnabled())
+			ExecutorPool.getInstance().submit(versionCollector);
+	}
+
 	@Override
 	protected <E extends JessyEntity, SK> E performRead(Class<E> entityClass,
 			String keyName, SK keyValue, CompactVector<String> readSet)
@@ -201,6 +225,8 @@ public class DistributedJessy extends Jessy {
 
 				logger.debug("performing local read on " + keyValue
 						+ " for request " + readRequest);
+				if (readSet != null && SnapshotWaitQueue.isEnabled())
+					SnapshotWaitQueue.await(readRequest);
 				readReply = getDataStore().get(readRequest);
 				result = readReply.getEntity().iterator().next();
 			} else {
@@ -234,34 +260,30 @@ public class DistributedJessy extends Jessy {
 							logger.debug("read " + readRequest + " is successfull ");
 							result = readReply.getEntity().iterator().next();
 							remoteReaderLatency.add(System.currentTimeMillis()-start);
-							isDone = true;
 						} 
 						else{
-							System.out.println("BINGO , failed to read " + keyValue);
-							System.exit(0);
+							/*
+							 * No compatible version has been found. The read
+							 * is retried by Jessy.
+							 */
+							logger.error("Remote read on " + keyValue
+									+ " returned no entity");
 						}
+						isDone = true;
 
 					} catch (TimeoutException te) {
-						System.out.println("BINGO 1 , failed to read " + keyValue);
-						System.exit(0);
-
 						/*
-						 * Nothing to do. The message should have been lost. Retry
-						 * again.
+						 * The message should have been lost. Retry again.
 						 */
-						logger.error("TimeoutException happened in Distributed Jessy (Perform Read)" + te.getCause());
+						logger.error("TimeoutException happened in Distributed Jessy (Perform Read) on "
+								+ keyValue);
+						future.cancel(false);
 						failedReadCount.incr();
 					} catch (InterruptedException ie) {
-						System.out.println("BINGO 2 , failed to read " + keyValue);
-						System.exit(0);
-
 						logger.error("InterruptedException happened in Distributed Jessy (Perform Read)" + ie.getCause());
 						failedReadCount.incr();
 						isDone = true;
 					} catch (ExecutionException ee) {
-						System.out.println("BINGO 3 , failed to read " + keyValue);
-						System.exit(0);
-
 						logger.error("ExecutionException happened in Distributed Jessy (Perform Read)" + ee.getCause());
 						failedReadCount.incr();
 						isDone = true;
@@ -278,6 +300,27 @@ public class DistributedJessy extends Jessy {
 
 	}
 
+	/**
+	 * Local reads are performed synchronously. Remote reads return the
+	 * future of the {@link RemoteReader} without waiting for the reply.
+	 */
+	@Override
+	protected <E extends JessyEntity, SK> RemoteReadFuture<E> performReadAsync(
+			Class<E> entityClass, String keyName, SK keyValue,
+			CompactVector<String> readSet) throws InterruptedException,
+			ExecutionException {
+
+		ReadRequest<E> readRequest = new ReadRequest<E>(entityClass, keyName,
+				keyValue, readSet);
+
+		if (partitioner.isLocal(readRequest.getPartitioningKey())) {
+			return RemoteReadFuture.completed(readRequest, getDataStore()
+					.get(readRequest));
+		}
+
+		return remoteReader.remoteRead(readRequest);
+	}
+
 	@Override
 	protected <E extends JessyEntity> Collection<E> performRead(
 			Class<E> entityClass, List<ReadRequestKey<?>> keys,
@@ -369,6 +412,7 @@ public class DistributedJessy extends Jessy {
 	public void applyModifiedEntities(ExecutionHistory executionHistory) {
 		try{
 			Iterator<? extends JessyEntity> itr;
+			List<JessyEntity> applied = new ArrayList<JessyEntity>();
 
 			if (executionHistory.getWriteSet()!=null){
 				itr = executionHistory.getWriteSet().getEntities().iterator();
@@ -376,8 +420,10 @@ public class DistributedJessy extends Jessy {
 					JessyEntity tmp = itr.next();
 
 					// Send the entity to the data store to be saved if it is local
-					if (partitioner.isLocal(tmp.getKey()))
+					if (partitioner.isLocal(tmp.getKey())){
 						dataStore.put(tmp);
+						applied.add(tmp);
+					}
 				}
 			}
 
@@ -387,10 +433,21 @@ public class DistributedJessy extends Jessy {
 					JessyEntity tmp = itr.next();
 
 					// Send the entity to the data store to be saved if it is local
-					if (partitioner.isLocal(tmp.getKey()))
+					if (partitioner.isLocal(tmp.getKey())){
 						dataStore.put(tmp);
+						applied.add(tmp);
+					}
 				}
 			}
+			
+			/*
+			 * The entities are logged without waiting for the disk. The
+			 * transaction is terminated once its record is durable (see
+			 * DistributedTermination#finishTermination).
+			 */
+			if (FilePersistence.writeAheadLog != null && !applied.isEmpty())
+				executionHistory.setLogSequenceNumber(FilePersistence.writeAheadLog
+						.logEntities(applied));
 		}
 		catch (Exception ex)
 		{
@@ -404,38 +461,62 @@ public class DistributedJessy extends Jessy {
 		ExecutionHistory executionHistory = getExecutionHistory(transactionHandler);
 		
 		try {
-			Future<TransactionState> stateFuture = distributedTermination
+			commitTransactionAsync(transactionHandler).get(
+					ConstantPool.JESSY_TRANSACTION_TERMINATION_TIMEOUT,
+					ConstantPool.JESSY_TRANSACTION_TERMINATION_TIMEOUT_TYPE);
+		} catch (TimeoutException te) {
+			distributedJessy.garbageCollectTransaction(transactionHandler);
+			executionHistory.changeState(TransactionState.ABORTED_BY_TIMEOUT);
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+
+		return executionHistory;
+	}
+
+	/**
+	 * Submits the transaction to the termination protocol, and returns right
+	 * away. The returned future is completed by the thread that terminates
+	 * the transaction, thus its listeners must not block.
+	 */
+	@Override
+	public SettableFuture<ExecutionHistory> commitTransactionAsync(
+			TransactionHandler transactionHandler) {
+		final ExecutionHistory executionHistory = getExecutionHistory(transactionHandler);
+		final SettableFuture<ExecutionHistory> result = new SettableFuture<ExecutionHistory>();
+
+		try {
+			final SettableFuture<TransactionState> stateFuture = distributedTermination
 					.terminateTransaction(executionHistory);
 
-			TransactionState stateResult = null;
-			try {
-				stateResult = stateFuture.get(
-						ConstantPool.JESSY_TRANSACTION_TERMINATION_TIMEOUT,
-						ConstantPool.JESSY_TRANSACTION_TERMINATION_TIMEOUT_TYPE);
-				executionHistory.changeState(stateResult);
-			} catch (TimeoutException te) {
-				distributedJessy.garbageCollectTransaction(transactionHandler);
-				executionHistory.changeState(TransactionState.ABORTED_BY_TIMEOUT);
-			} catch (Exception e) {
-				e.printStackTrace();
-			}
-			assert (stateResult != null);
+			stateFuture.addListener(new Runnable() {
+				public void run() {
+					TransactionState stateResult = stateFuture.getNow();
+					assert (stateResult != null);
+					if (stateResult != null)
+						executionHistory.changeState(stateResult);
 
-			/*
-			 * Set the probes for calculating the abort rate.
-			 */
-			executionCount.incr();
-			if (stateResult == TransactionState.ABORTED_BY_VOTING)
-				abortByVoteCount.incr();
-			else if (stateResult == TransactionState.ABORTED_BY_CERTIFICATION)
-				abortByCertificationCount.incr();
-			else if (stateResult == TransactionState.ABORTED_BY_TIMEOUT)
-				abortByTimeout.incr();
+					/*
+					 * Set the probes for calculating the abort rate.
+					 */
+					executionCount.incr();
+					if (stateResult == TransactionState.ABORTED_BY_VOTING)
+						abortByVoteCount.incr();
+					else if (stateResult == TransactionState.ABORTED_BY_CERTIFICATION)
+						abortByCertificationCount.incr();
+					else if (stateResult == TransactionState.ABORTED_BY_TIMEOUT)
+						abortByTimeout.incr();
+
+					TransactionTracer.stamp(executionHistory, Point.CLIENT_RETURN);
+					result.set(executionHistory);
+				}
+			});
 		} catch (Exception e) {
 			e.printStackTrace();
+			result.set(executionHistory);
 		}
 
-		return executionHistory;
+		return result;
 	}
 
 	@Override
@@ -481,6 +562,7 @@ public class DistributedJessy extends Jessy {
 			if (!manager.isProxy()) {
 				super.close(this);
 				VectorFactory.makePersistent();
+				FilePersistence.close();
 				remoteReader.closeReplicaConnections();
 				logger.info("Jessy is closed.");
 			}
@@ -515,17 +597,39 @@ public class DistributedJessy extends Jessy {
 					FilePersistence.loadFromDisk=true;
 					System.out.println("Will load the state from disk.");
 				}
+				else if (str.toLowerCase().equals("wal")){
+					FilePersistence.useWriteAheadLog=true;
+					System.out.println("Will log the state into a write ahead log.");
+				}
 				else if (str.contains("/")){
 					FilePersistence.makeStorageDirectory(m, str);
 				}
 				
 			}
 			
-			final DistributedJessy j = new DistributedJessy(m);
-			
-			if ((FilePersistence.saveToDisk || FilePersistence.loadFromDisk) && FilePersistence.storageDirectory.equals("")){
+			if ((FilePersistence.saveToDisk || FilePersistence.loadFromDisk || FilePersistence.useWriteAheadLog) && FilePersistence.storageDirectory.equals("")){
 				System.out.println("Please provide the path for loading/saving.");
 			}
+			
+			/*
+			 * The log must be recovered before the vectors load their static
+			 * members.
+			 */
+			if (FilePersistence.useWriteAheadLog)
+				FilePersistence.openWriteAheadLog(DataStoreFactory.getDataStoreInstance());
+			
+			final DistributedJessy j = new DistributedJessy(m);
+			
+			/*
+			 * The static members of the vectors are logged once per batch of
+			 * the log, next to the applied entities.
+			 */
+			if (FilePersistence.writeAheadLog != null)
+				FilePersistence.writeAheadLog.setStateLogger(new Runnable() {
+					public void run() {
+						VectorFactory.makePersistent();
+					}
+				});
 				
 			j.open();
 			SignalHandler sh = new SignalHandler() {
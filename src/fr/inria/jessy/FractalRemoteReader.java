@@ -8,7 +8,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingDeque;
 
 import net.sourceforge.fractal.Learner;
@@ -67,7 +66,7 @@ public class FractalRemoteReader extends RemoteReader implements Learner {
 
 	@SuppressWarnings("unchecked")
 	@Override
-	public <E extends JessyEntity> Future<ReadReply<E>> remoteRead(
+	public <E extends JessyEntity> RemoteReadFuture<E> remoteRead(
 			ReadRequest<E> readRequest) throws InterruptedException {
 		logger.debug("creating task for " + readRequest);
 		RemoteReadFuture remoteRead = new RemoteReadFuture(readRequest);
@@ -75,6 +74,11 @@ public class FractalRemoteReader extends RemoteReader implements Learner {
 		return remoteRead;
 	}
 
+	@Override
+	protected void resend(int swid, List<ReadRequest<JessyEntity>> requests) {
+		remoteReadStream.unicast(new ReadRequestMessage(requests), swid);
+	}
+
 	@SuppressWarnings("unchecked")
 	public void learn(Stream s, Serializable v) {
 
@@ -98,8 +102,15 @@ public class FractalRemoteReader extends RemoteReader implements Learner {
 
 				logger.debug("reply " + reply.getReadRequestId());
 
+				replicaSelector.replied(reply.getReadRequestId(),
+						((ReadReplyMessage<?>) v).source);
+				readHedger.replied(reply.getReadRequestId());
+
 				if (!pendingRemoteReads.containsKey(reply.getReadRequestId())) {
-					logger.info("received an incorrect reply or request already served");
+					// With hedged reads, the slowest replica replies to a
+					// request that is already served.
+					if (!readHedger.isEnabled())
+						logger.info("received an incorrect reply or request already served");
 					continue;
 				}
 
@@ -146,8 +157,7 @@ public class FractalRemoteReader extends RemoteReader implements Learner {
 								.getReadRequest();
 						logger.debug("handling request" + rr.getReadRequestId());
 
-						pendingRemoteReads.put(rr.getReadRequestId(),
-								remoteRead);
+						addPendingRead(remoteRead);
 
 						Set<Group> dests = jessy.partitioner.resolve(rr);
 
@@ -163,7 +173,9 @@ public class FractalRemoteReader extends RemoteReader implements Learner {
 
 					// Send them.
 					for (Group dest : toSend.keySet()) {
-						int swid = dest.getRandom();
+						int swid = replicaSelector.select(dest.allNodes());
+						replicaSelector.sent(swid, toSend.get(dest));
+						readHedger.sent(dest, swid, toSend.get(dest));
 						remoteReadStream.unicast(
 								new ReadRequestMessage(toSend.get(dest)), swid);
 					}
@@ -224,8 +236,8 @@ public class FractalRemoteReader extends RemoteReader implements Learner {
 									+ " failed");
 						}
 
-						remoteReadStream.unicast(new ReadReplyMessage(replies),
-								dest);
+						remoteReadStream.unicast(new ReadReplyMessage<JessyEntity>(replies,
+								jessy.manager.getSourceId()), dest);
 					}
 
 				} catch (Exception e) {
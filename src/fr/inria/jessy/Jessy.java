@@ -5,12 +5,18 @@ import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
 
 import net.sourceforge.fractal.utils.PerformanceProbe.SimpleCounter;
 
 import org.apache.log4j.Logger;
 import org.cliffc.high_scale_lib.NonBlockingHashtable;
+import org.jboss.netty.util.HashedWheelTimer;
+import org.jboss.netty.util.Timeout;
+import org.jboss.netty.util.Timer;
+import org.jboss.netty.util.TimerTask;
 
 import com.sleepycat.je.DatabaseException;
 import com.sleepycat.persist.model.SecondaryKey;
@@ -21,11 +27,19 @@ import fr.inria.jessy.protocol.ProtocolFactory;
 import fr.inria.jessy.store.DataStore;
 import fr.inria.jessy.store.DataStoreFactory;
 import fr.inria.jessy.store.JessyEntity;
+import fr.inria.jessy.store.ReadReply;
+import fr.inria.jessy.store.ReadRequest;
 import fr.inria.jessy.store.ReadRequestKey;
 import fr.inria.jessy.transaction.ExecutionHistory;
 import fr.inria.jessy.transaction.TransactionHandler;
 import fr.inria.jessy.transaction.TransactionState;
+import fr.inria.jessy.transaction.TransactionTracer;
+import fr.inria.jessy.transaction.TransactionTracer.Phase;
+import fr.inria.jessy.utils.DaemonThreadFactory;
+import fr.inria.jessy.utils.SettableFuture;
 import fr.inria.jessy.vector.CompactVector;
+import fr.inria.jessy.vector.Vector;
+import fr.inria.jessy.vector.VectorFactory;
 
 /**
  * Jessy is the abstract base class for local and distributed Jessy
@@ -69,6 +83,12 @@ public abstract class Jessy {
 		totalReadCount = new SimpleCounter("Jessy#ReadCount");
 	}
 
+	/**
+	 * Drives the timeouts of the asynchronous reads.
+	 */
+	private static final Timer readTimer = new HashedWheelTimer(
+			new DaemonThreadFactory("Jessy-readTimer"));
+
 	//
 	// OBJECT FIELDS
 	//
@@ -82,6 +102,12 @@ public abstract class Jessy {
 	private ExecutionMode transactionalAccess = ExecutionMode.UNDEFINED;
 
 	NonBlockingHashtable<TransactionHandler, ExecutionHistory> handler2executionHistory;
+
+	/**
+	 * The last asynchronous read of each transaction that is not done yet.
+	 */
+	NonBlockingHashtable<TransactionHandler, RemoteReadFuture<?>> handler2pendingRead;
+
 	protected List<Class<? extends JessyEntity>> entityClasses;
 
 	public Jessy() throws Exception {
@@ -91,6 +117,7 @@ public abstract class Jessy {
 		consistency = ProtocolFactory.initProtocol(manager, dataStore);
 
 		handler2executionHistory = new NonBlockingHashtable<TransactionHandler, ExecutionHistory>();
+		handler2pendingRead = new NonBlockingHashtable<TransactionHandler, RemoteReadFuture<?>>();
 
 		entityClasses = new ArrayList<Class<? extends JessyEntity>>();
 
@@ -103,6 +130,7 @@ public abstract class Jessy {
 		consistency = ProtocolFactory.initProtocol(manager, dataStore);
 
 		handler2executionHistory = new NonBlockingHashtable<TransactionHandler, ExecutionHistory>();
+		handler2pendingRead = new NonBlockingHashtable<TransactionHandler, RemoteReadFuture<?>>();
 
 		entityClasses = new ArrayList<Class<? extends JessyEntity>>();
 
@@ -221,6 +249,8 @@ public abstract class Jessy {
 
 				if (entity == null) {
 
+					long readStart = TransactionTracer.start();
+
 					short retryTimes = 0;
 					while (retryTimes < ConstantPool.JESSY_READ_RETRY_TIMES
 							&& entity == null) {
@@ -239,6 +269,8 @@ public abstract class Jessy {
 							Thread.sleep(ConstantPool.JESSY_READ_RETRY_TIMEOUT);
 						}
 					}
+
+					TransactionTracer.record(Phase.READ, readStart);
 				}
 			}
 
@@ -253,6 +285,321 @@ public abstract class Jessy {
 		return entity;
 	}
 
+	/**
+	 * Reads several entities at once. Instead of waiting for each read before
+	 * issuing the next one, reads are sent together, so that the
+	 * {@link RemoteReader} sends them to all the concerned groups at the same
+	 * time.
+	 * <p>
+	 * Since the reads are performed against the same read set, the returned
+	 * entities are added to the read set one after the other, in the order
+	 * of their keys:
+	 * <ul>
+	 * <li>If the read set is empty, the first key is read alone, since the
+	 * first read defines the snapshot of the transaction with some vectors.</li>
+	 * <li>If the vectors carry information from one read to the next one (see
+	 * {@link VectorFactory#needExtraObject()}), reads are performed one
+	 * after the other.</li>
+	 * <li>If the proxy cannot check the compatibility of the vectors (see
+	 * {@link Vector#canBeCheckedByProxy()}), reads are performed one after
+	 * the other as well.</li>
+	 * <li>Otherwise, an entity that is not compatible with the entities added
+	 * before it is read again. So is an entity whose
+	 * {@link Vector#getCompatibleSelfValueBound(CompactVector)} has been
+	 * changed by the entities added before it, since the replica chose its
+	 * version with the former bound.</li>
+	 * </ul>
+	 * 
+	 * @param <E>
+	 *            Type of the entities to read.
+	 * @param entityClass
+	 *            Class of the entities to read.
+	 * @param keyValues
+	 *            The values of the secondary keys
+	 * @return The entities that have been read, in the order of their keys.
+	 */
+	public <E extends JessyEntity> List<E> readAll(
+			TransactionHandler transactionHandler, Class<E> entityClass,
+			Collection<String> keyValues) throws Exception {
+
+		ExecutionHistory executionHistory = handler2executionHistory
+				.get(transactionHandler);
+
+		if (executionHistory == null) {
+			throw new NullPointerException("Transaction has not been started");
+		}
+
+		List<String> keys = new ArrayList<String>(new TreeSet<String>(
+				keyValues));
+		List<E> result = new ArrayList<E>(keys.size());
+
+		int first = 0;
+		if (executionHistory.getReadSet().getCompactVector().size() == 0) {
+			first = 1;
+		}
+		if (VectorFactory.needExtraObject()
+				|| !VectorFactory.canBeCheckedByProxy()) {
+			first = keys.size();
+		}
+
+		// Read the first keys alone
+		for (int i = 0; i < first && i < keys.size(); i++) {
+			E entity = read(transactionHandler, entityClass, keys.get(i));
+			if (entity != null)
+				result.add(entity);
+			if (executionHistory.getReadSet().getCompactVector().size() == 0)
+				first = keys.size();
+		}
+
+		// Send the remaining ones at once
+		List<RemoteReadFuture<E>> futures = new ArrayList<RemoteReadFuture<E>>(
+				keys.size());
+		CompactVector<String> readSet = executionHistory.getReadSet()
+				.getCompactVector();
+		for (int i = first; i < keys.size(); i++) {
+			String key = keys.get(i);
+			if ((ConstantPool.CHECK_IF_HAS_BEEN_READ && executionHistory
+					.getWriteEntity(key) != null)
+					|| (ConstantPool.CHECK_IF_HAS_BEEN_WRITTEN && executionHistory
+							.getReadEntity(key) != null)) {
+				// No need to send it.
+				futures.add(null);
+			} else {
+				totalReadCount.incr();
+				final long readStart = TransactionTracer.start();
+				RemoteReadFuture<E> future = performReadAsync(entityClass,
+						"secondaryKey", key, readSet);
+				future.addListener(new Runnable() {
+					public void run() {
+						TransactionTracer.record(Phase.READ, readStart);
+					}
+				});
+				futures.add(future);
+			}
+		}
+
+		// Wait for all the replies before modifying the read set, since it is
+		// shared by the requests.
+		List<E> entities = new ArrayList<E>(futures.size());
+		for (int i = 0; i < futures.size(); i++) {
+			RemoteReadFuture<E> future = futures.get(i);
+			E entity = null;
+			if (future != null) {
+				try {
+					ReadReply<E> reply = future.get(
+							ConstantPool.JESSY_REMOTE_READER_TIMEOUT,
+							ConstantPool.JESSY_REMOTE_READER_TIMEOUT_TYPE);
+					if (reply != null && reply.getEntity() != null
+							&& reply.getEntity().iterator().hasNext())
+						entity = reply.getEntity().iterator().next();
+					else
+						totalReadCount.decr();
+				} catch (TimeoutException te) {
+					logger.error("TimeoutException happened in Jessy (readAll) on "
+							+ keys.get(first + i));
+					future.cancel(false);
+					totalReadCount.decr();
+				}
+			}
+			entities.add(entity);
+		}
+
+		// Add them to the read set in the order of the keys
+		List<Integer> bounds = new ArrayList<Integer>(entities.size());
+		for (E entity : entities)
+			bounds.add(entity != null ? entity.getLocalVector()
+					.getCompatibleSelfValueBound(readSet) : null);
+
+		for (int i = 0; i < entities.size(); i++) {
+			E entity = entities.get(i);
+
+			if (entity != null) {
+				Vector<String> vector = entity.getLocalVector();
+				Integer bound = vector.getCompatibleSelfValueBound(readSet);
+				if (vector.isCompatible(readSet) != Vector.CompatibleResult.COMPATIBLE
+						|| (bound == null ? bounds.get(i) != null : !bound
+								.equals(bounds.get(i)))) {
+					totalReadCount.decr();
+					entity = null;
+				}
+			}
+
+			if (entity != null) {
+				executionHistory.addReadEntity(entity);
+			} else {
+				// Read it against the current read set.
+				entity = read(transactionHandler, entityClass,
+						keys.get(first + i));
+			}
+
+			if (entity != null)
+				result.add(entity);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Asynchronous version of {@link #read(TransactionHandler, Class, String)}.
+	 * It returns immediately, thus a client thread can keep the reads of
+	 * several transactions in flight.
+	 * <p>
+	 * Once the returned future is done, the entity has been added to the read
+	 * set of the transaction. The reads of the same transaction are performed
+	 * one after the other, since a read depends on the entities read before
+	 * it. A read is not retried if no entity is returned, but it is sent
+	 * again if no reply arrives within
+	 * {@link ConstantPool#JESSY_REMOTE_READER_TIMEOUT}, as in
+	 * {@link #read(TransactionHandler, Class, String)}.
+	 * 
+	 * @param <E>
+	 *            Type of the entity to read the value from.
+	 * @param entityClass
+	 *            Class of the entity to read the value from.
+	 * @param keyValue
+	 *            The value of the secondary key
+	 * @return A future whose reply contains the entity with the secondary key
+	 *         value equals keyValue, if any.
+	 */
+	public <E extends JessyEntity> RemoteReadFuture<E> readAsync(
+			final TransactionHandler transactionHandler,
+			final Class<E> entityClass, final String keyValue)
+			throws Exception {
+		totalReadCount.incr();
+
+		final ExecutionHistory executionHistory = handler2executionHistory
+				.get(transactionHandler);
+
+		if (executionHistory == null) {
+			throw new NullPointerException("Transaction has not been started");
+		}
+
+		final ReadRequest<E> readRequest = new ReadRequest<E>(entityClass,
+				"secondaryKey", keyValue, null);
+		final RemoteReadFuture<E> result = new RemoteReadFuture<E>(readRequest);
+		final long readStart = TransactionTracer.start();
+
+		RemoteReadFuture<?> previous = handler2pendingRead.put(
+				transactionHandler, result);
+
+		if (previous == null) {
+			issueRead(transactionHandler, executionHistory, entityClass,
+					keyValue, result, readStart);
+		} else {
+			whenDone(previous, new Runnable() {
+				public void run() {
+					issueRead(transactionHandler, executionHistory,
+							entityClass, keyValue, result, readStart);
+				}
+			});
+		}
+
+		return result;
+	}
+
+	private static <T extends JessyEntity> void whenDone(
+			RemoteReadFuture<T> future, final Runnable task) {
+		future.addListener(new RemoteReadFuture.Listener<T>() {
+			public void operationComplete(RemoteReadFuture<T> f) {
+				task.run();
+			}
+		});
+	}
+
+	/**
+	 * Performs the read of {@code result} once the previous reads of the
+	 * transaction are done, and completes it.
+	 * 
+	 * @param readStart
+	 *            the time the read was issued, as returned by
+	 *            {@link TransactionTracer#start()}.
+	 */
+	private <E extends JessyEntity> void issueRead(
+			final TransactionHandler transactionHandler,
+			final ExecutionHistory executionHistory,
+			final Class<E> entityClass, final String keyValue,
+			final RemoteReadFuture<E> result, final long readStart) {
+		E entity = null;
+
+		if (ConstantPool.CHECK_IF_HAS_BEEN_READ)
+			entity = executionHistory.getWriteEntity(keyValue);
+
+		if (entity == null && ConstantPool.CHECK_IF_HAS_BEEN_WRITTEN)
+			entity = executionHistory.getReadEntity(keyValue);
+
+		if (entity != null) {
+			completeRead(transactionHandler, executionHistory, result,
+					new ReadReply<E>(entity, result.getReadRequest()
+							.getReadRequestId()), readStart);
+			return;
+		}
+
+		try {
+			final RemoteReadFuture<E> future = performReadAsync(entityClass,
+					"secondaryKey", keyValue, executionHistory.getReadSet()
+							.getCompactVector());
+
+			/*
+			 * The message should have been lost if no reply arrives before the
+			 * timeout. The read is then sent again, unless the transaction has
+			 * been garbage collected in the meantime.
+			 */
+			final Timeout timeout = future.isDone() ? null : readTimer
+					.newTimeout(new TimerTask() {
+						public void run(Timeout t) {
+							if (!future.cancel(false))
+								return;
+
+							logger.error("TimeoutException happened in Jessy (readAsync) on "
+									+ keyValue);
+							failedReadCount.incr();
+							if (handler2executionHistory
+									.containsKey(transactionHandler))
+								issueRead(transactionHandler,
+										executionHistory, entityClass,
+										keyValue, result, readStart);
+							else
+								completeRead(transactionHandler,
+										executionHistory, result, null,
+										readStart);
+						}
+					}, ConstantPool.JESSY_REMOTE_READER_TIMEOUT,
+							ConstantPool.JESSY_REMOTE_READER_TIMEOUT_TYPE);
+
+			future.addListener(new RemoteReadFuture.Listener<E>() {
+				public void operationComplete(RemoteReadFuture<E> f) {
+					// A cancelled read is handled by the timeout.
+					if (f.isCancelled())
+						return;
+					if (timeout != null)
+						timeout.cancel();
+					completeRead(transactionHandler, executionHistory, result,
+							f.getNow(), readStart);
+				}
+			});
+		} catch (Exception e) {
+			e.printStackTrace();
+			completeRead(transactionHandler, executionHistory, result, null,
+					readStart);
+		}
+	}
+
+	private <E extends JessyEntity> void completeRead(
+			TransactionHandler transactionHandler,
+			ExecutionHistory executionHistory, RemoteReadFuture<E> result,
+			ReadReply<E> reply, long readStart) {
+		if (reply != null && reply.getEntity() != null
+				&& reply.getEntity().iterator().hasNext()) {
+			executionHistory.addReadEntity(reply.getEntity().iterator().next());
+		} else {
+			failedReadCount.incr();
+		}
+
+		TransactionTracer.record(Phase.READ, readStart);
+		handler2pendingRead.remove(transactionHandler, result);
+		result.complete(reply);
+	}
+
 	/**
 	 * 
 	 * Executes a read operation ONLY on Jessy. It calls the
@@ -324,6 +671,25 @@ public abstract class Jessy {
 			CompactVector<String> readSet) throws InterruptedException,
 			ExecutionException;
 
+	/**
+	 * Asynchronous version of
+	 * {@link #performRead(Class, String, Object, CompactVector)}. By default,
+	 * the read is performed synchronously, and the returned future is already
+	 * done.
+	 */
+	protected <E extends JessyEntity, SK> RemoteReadFuture<E> performReadAsync(
+			Class<E> entityClass, String keyName, SK keyValue,
+			CompactVector<String> readSet) throws InterruptedException,
+			ExecutionException {
+		ReadRequest<E> readRequest = new ReadRequest<E>(entityClass, keyName,
+				keyValue, readSet);
+		E entity = performRead(entityClass, keyName, keyValue, readSet);
+		ReadReply<E> reply = (entity == null) ? new ReadReply<E>(
+				new ArrayList<E>(0), readRequest.getReadRequestId())
+				: new ReadReply<E>(entity, readRequest.getReadRequestId());
+		return RemoteReadFuture.completed(readRequest, reply);
+	}
+
 	/**
 	 * Performs a local or remote read operation depending on the specific
 	 * implementation of Jessy on all provided keys.
@@ -469,6 +835,23 @@ public abstract class Jessy {
 	public abstract ExecutionHistory commitTransaction(
 			TransactionHandler transactionHandler);
 
+	/**
+	 * Commit the open transaction without waiting for its outcome. The
+	 * returned future is completed with the execution history of the
+	 * transaction once it is terminated.
+	 * <p>
+	 * By default, the transaction is committed by the calling thread.
+	 * 
+	 * @param transactionHandler
+	 * @return
+	 */
+	public SettableFuture<ExecutionHistory> commitTransactionAsync(
+			TransactionHandler transactionHandler) {
+		SettableFuture<ExecutionHistory> result = new SettableFuture<ExecutionHistory>();
+		result.set(commitTransaction(transactionHandler));
+		return result;
+	}
+
 	/**
 	 * Put the transaction in the aborted list, and does nothing else.
 	 * 
@@ -543,6 +926,7 @@ public abstract class Jessy {
 
 	public void garbageCollectTransaction(TransactionHandler transactionHandler) {
 		handler2executionHistory.remove(transactionHandler);
+		handler2pendingRead.remove(transactionHandler);
 	}
 
 	public synchronized void registerClient(Object object) {
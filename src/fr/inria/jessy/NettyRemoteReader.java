@@ -5,9 +5,6 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.Future;
-import java.util.concurrent.LinkedBlockingDeque;
 
 import net.sourceforge.fractal.membership.Group;
 
@@ -33,7 +30,11 @@ import fr.inria.jessy.store.ReadRequest;
 
 public class NettyRemoteReader extends RemoteReader implements UnicastLearner {
 
-	private BlockingQueue<ReadRequestMessage> requestQ;
+	/**
+	 * Serves read requests on replicas. If null, they are served by the Netty
+	 * threads.
+	 */
+	private ReplicaReadExecutor readExecutor;
 
 	public UnicastClientManager cmanager;
 	public UnicastServerManager smanager;
@@ -41,8 +42,6 @@ public class NettyRemoteReader extends RemoteReader implements UnicastLearner {
 	public NettyRemoteReader(DistributedJessy j) {
 		super(j);
 
-		requestQ = new LinkedBlockingDeque<ReadRequestMessage>();
-
 		if (j.manager.isProxy()) {	
 			cmanager = new UnicastClientManager(j,this,ConstantPool.JESSY_NETTY_REMOTE_READER_PORT,
 					j.manager.getAllReplicaGroup().allNodes());
@@ -55,22 +54,18 @@ public class NettyRemoteReader extends RemoteReader implements UnicastLearner {
 		} else {
 			smanager = new UnicastServerManager(j, this, ConstantPool.JESSY_NETTY_REMOTE_READER_PORT);
 
-			// The fastest way to execute read requests at the server is to
-			// handle requests in the same thread delivering them to the remote
-			// reader. In other words, this approach is better than having a
-			// separate thread handling them. Another advantage is that with
-			// this approach, CPU can be consumed hundred percent.
-
-			// pool.submitMultiple(new InnerObjectFactory<RemoteReadReplyTask>(
-			// RemoteReadReplyTask.class, NettyRemoteReader.class, this),2);
-
-			// pool.submit(new RemoteReadReplyTask());
+			// Reads are executed by a dedicated executor, so that a slow read
+			// does not delay the other channels handled by the same Netty
+			// thread.
+			if (ReplicaReadExecutor.isEnabled())
+				readExecutor = new ReplicaReadExecutor(j.getDataStore(),
+						j.manager.getSourceId());
 		}
 	}
 
 	@SuppressWarnings("unchecked")
 	@Override
-	public <E extends JessyEntity> Future<ReadReply<E>> remoteRead(
+	public <E extends JessyEntity> RemoteReadFuture<E> remoteRead(
 			ReadRequest<E> readRequest) throws InterruptedException {
 		if (ConstantPool.logging)
 			logger.debug("creating task for " + readRequest);
@@ -100,6 +95,11 @@ public class NettyRemoteReader extends RemoteReader implements UnicastLearner {
 			return remoteRead;
 	}
 
+	@Override
+	protected void resend(int swid, List<ReadRequest<JessyEntity>> requests) {
+		cmanager.unicast(new ReadRequestMessage(requests), swid);
+	}
+
 	@Override
 	public void receiveMessage(Object message, Channel channel) {
 
@@ -113,13 +113,19 @@ public class NettyRemoteReader extends RemoteReader implements UnicastLearner {
 	private  void learnReadRequestMessage(ReadRequestMessage readRequestMessage,
 			Channel channel) {
 
+		if (readExecutor != null) {
+			readExecutor.execute(readRequestMessage, channel);
+			return;
+		}
+
 		long start = System.nanoTime();
 
 		List<ReadReply<JessyEntity>> replies = jessy.getDataStore().getAll(
 				readRequestMessage.getReadRequests());
 
 		start = System.nanoTime();
-		channel.write(new ReadReplyMessage(replies));
+		channel.write(new ReadReplyMessage(replies, jessy.manager
+				.getSourceId()));
 
 	}
 
@@ -133,8 +139,14 @@ public class NettyRemoteReader extends RemoteReader implements UnicastLearner {
 
 			for (ReadReply reply : list) {
 
+				replicaSelector.replied(reply.getReadRequestId(), msg.source);
+				readHedger.replied(reply.getReadRequestId());
+
 				if (!pendingRemoteReads.containsKey(reply.getReadRequestId())) {
-					logger.error("received an incorrect reply or request already served");
+					// With hedged reads, the slowest replica replies to a
+					// request that is already served.
+					if (!readHedger.isEnabled())
+						logger.error("received an incorrect reply or request already served");
 					continue;
 				}
 
@@ -186,8 +198,7 @@ public class NettyRemoteReader extends RemoteReader implements UnicastLearner {
 						if (ConstantPool.logging)
 							logger.debug("handling request" + rr.getReadRequestId());
 
-						pendingRemoteReads.put(rr.getReadRequestId(),
-								remoteRead);
+						addPendingRead(remoteRead);
 
 						Set<Group> dests = jessy.partitioner.resolve(rr);
 
@@ -218,7 +229,9 @@ public class NettyRemoteReader extends RemoteReader implements UnicastLearner {
 //								}
 //							}
 //						}
-						int swid=dest.getRandom();
+						int swid = replicaSelector.select(dest.allNodes());
+						replicaSelector.sent(swid, toSend.get(dest));
+						readHedger.sent(dest, swid, toSend.get(dest));
 						cmanager.unicast(
 								new ReadRequestMessage(toSend.get(dest)), swid);
 					}
@@ -235,43 +248,17 @@ public class NettyRemoteReader extends RemoteReader implements UnicastLearner {
 
 	}
 
-	public class RemoteReadReplyTask implements Runnable {
-
-		public RemoteReadReplyTask() {
-		}
-
-		@SuppressWarnings({ "unchecked", "rawtypes" })
-		public void run() {
-
-			while (true) {
-				ReadRequestMessage readRequestMessage;
-				try {
-					readRequestMessage = requestQ.take();
-					long start = System.nanoTime();
-					List<ReadReply<JessyEntity>> replies = jessy.getDataStore()
-							.getAll(readRequestMessage.getReadRequests());
-
-					start = System.nanoTime();
-					readRequestMessage.channel.write(new ReadReplyMessage(
-							replies));
-
-				} catch (InterruptedException e) {
-					e.printStackTrace();
-				}
-			}
-
-		}
-
-	}
-
 	@Override
 	public void closeProxyConnections(){
+			readHedger.close();
 			cmanager.close();
 	}
 
 	@Override
 	public void closeReplicaConnections(){
 			smanager.close();
+			if (readExecutor != null)
+				readExecutor.close();
 	}
 
 }
\ No newline at end of file
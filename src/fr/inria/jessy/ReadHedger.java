@@ -0,0 +1,345 @@
+package fr.inria.jessy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.sourceforge.fractal.membership.Group;
+import net.sourceforge.fractal.utils.PerformanceProbe.SimpleCounter;
+import net.sourceforge.fractal.utils.PerformanceProbe.ValueRecorder;
+
+import org.apache.log4j.Logger;
+import org.cliffc.high_scale_lib.NonBlockingHashtable;
+
+import fr.inria.jessy.store.JessyEntity;
+import fr.inria.jessy.store.ReadRequest;
+import fr.inria.jessy.utils.Configuration;
+import fr.inria.jessy.utils.DaemonThreadFactory;
+
+/**
+ * Hedges the remote reads of a {@link RemoteReader} to cut their tail
+ * latency.
+ * <p>
+ * The hedger records the latency of the one-key requests sent to each group.
+ * Once a group has replied to enough requests, a request that is still
+ * pending after the <code>hedged_read_percentile</code> of these latencies
+ * is sent again to another replica of the group. The first reply completes
+ * the {@link RemoteReadFuture} and removes it from the pending reads, hence
+ * the reply of the other replica is dropped.
+ * <p>
+ * Hedged requests are limited by a budget: each request sent earns
+ * <code>hedged_read_budget</code> token, and a hedged request costs one
+ * token.
+ * <p>
+ * A request is forgotten once it is replied to or released (e.g., after a
+ * timeout).
+ *
+ * @author Masoud Saeida Ardekani
+ *
+ */
+public class ReadHedger {
+
+	private static Logger logger = Logger.getLogger(ReadHedger.class);
+
+	/**
+	 * Number of latencies kept for each group.
+	 */
+	private static final int WINDOW = 256;
+
+	/**
+	 * Number of replies a group must have sent before its requests are
+	 * hedged.
+	 */
+	private static final int MIN_SAMPLES = 32;
+
+	/**
+	 * Tokens are counted in thousandths.
+	 */
+	private static final long TOKEN = 1000;
+
+	/**
+	 * Maximal number of tokens that can be saved.
+	 */
+	private static final long MAX_TOKENS = 10 * TOKEN;
+
+	private static ValueRecorder hedgeDelay;
+
+	private static SimpleCounter hedgedReads, overBudget;
+
+	static {
+		// Performance measuring facilities
+
+		hedgeDelay = new ValueRecorder("ReadHedger#hedgeDelay(us)");
+		hedgeDelay.setFormat("%a");
+
+		hedgedReads = new SimpleCounter("ReadHedger#hedgedReads");
+		overBudget = new SimpleCounter("ReadHedger#overBudget");
+	}
+
+	/**
+	 * The recent latencies of the replies of a group.
+	 */
+	static class GroupLatency {
+
+		private final long[] samples = new long[WINDOW];
+
+		private int count;
+
+		private volatile long percentile = -1;
+
+		private final int rank;
+
+		GroupLatency(int percentile) {
+			rank = Math.min(WINDOW - 1, WINDOW * percentile / 100);
+		}
+
+		synchronized void add(long latency) {
+			samples[count % WINDOW] = latency;
+			count++;
+
+			// The percentile is recomputed every eighth of the window.
+			if (count >= MIN_SAMPLES && count % (WINDOW / 8) == 0) {
+				int size = Math.min(count, WINDOW);
+				long[] sorted = Arrays.copyOf(samples, size);
+				Arrays.sort(sorted);
+				percentile = sorted[rank * size / WINDOW];
+			}
+		}
+
+		/**
+		 * Returns the percentile of the recent latencies (in nanoseconds),
+		 * or -1 if there are not enough of them.
+		 */
+		long getPercentile() {
+			return percentile;
+		}
+	}
+
+	/**
+	 * A request that has been sent, and is waiting for its reply.
+	 */
+	private static class SentRequest {
+
+		final GroupLatency latency;
+
+		final long sendTime;
+
+		SentRequest(GroupLatency latency, long sendTime) {
+			this.latency = latency;
+			this.sendTime = sendTime;
+		}
+	}
+
+	private final RemoteReader reader;
+
+	private final ReplicaSelector selector;
+
+	private final int percentile;
+
+	private final long tokensPerRequest;
+
+	private final AtomicLong tokens = new AtomicLong();
+
+	private final ConcurrentHashMap<Group, GroupLatency> groups = new ConcurrentHashMap<Group, GroupLatency>();
+
+	private final NonBlockingHashtable<Integer, SentRequest> sentRequests = new NonBlockingHashtable<Integer, SentRequest>();
+
+	private ScheduledThreadPoolExecutor timer;
+
+	public ReadHedger(RemoteReader reader, ReplicaSelector selector) {
+		this(reader, selector, Configuration.readConfig(
+				ConstantPool.HEDGED_READ_PERCENTILE,
+				ConstantPool.JESSY_HEDGED_READ_PERCENTILE), Configuration
+				.readConfig(ConstantPool.HEDGED_READ_BUDGET,
+						ConstantPool.JESSY_HEDGED_READ_BUDGET));
+	}
+
+	/**
+	 * @param percentile
+	 *            percentile of the latencies of a group after which a
+	 *            request is hedged. Zero disables hedging.
+	 * @param budget
+	 *            maximal ratio of hedged requests.
+	 */
+	public ReadHedger(RemoteReader reader, ReplicaSelector selector,
+			double percentile, double budget) {
+		this.reader = reader;
+		this.selector = selector;
+		this.percentile = (int) percentile;
+		this.tokensPerRequest = (long) (budget * TOKEN);
+
+		if (isEnabled()) {
+			timer = new ScheduledThreadPoolExecutor(1,
+					new DaemonThreadFactory("ReadHedger"));
+			logger.info("Remote reads are hedged after the p"
+					+ this.percentile + " of their latency, within a budget of "
+					+ budget + ".");
+		}
+	}
+
+	public boolean isEnabled() {
+		return percentile > 0 && tokensPerRequest > 0;
+	}
+
+	/**
+	 * Records that the requests have been sent to replica <code>swid</code>
+	 * of <code>dest</code>, and schedules their hedging.
+	 */
+	public void sent(Group dest, int swid,
+			List<ReadRequest<JessyEntity>> requests) {
+		if (!isEnabled())
+			return;
+
+		sent(getLatency(dest), dest.allNodes(), swid, requests);
+	}
+
+	/**
+	 * Records that the requests have been sent to replica <code>swid</code>
+	 * of a group whose replicas are <code>replicas</code>, and whose
+	 * latencies are <code>latency</code>.
+	 */
+	void sent(GroupLatency latency, final Set<Integer> replicas,
+			final int swid, final List<ReadRequest<JessyEntity>> requests) {
+		long now = System.nanoTime();
+		for (ReadRequest<JessyEntity> request : requests) {
+			if (!request.isOneKeyRequest())
+				continue;
+			sentRequests.put(request.getReadRequestId(), new SentRequest(
+					latency, now));
+			earn();
+		}
+
+		long delay = latency.getPercentile();
+		if (delay < 0 || replicas.size() < 2)
+			return;
+
+		hedgeDelay.add(delay / 1000);
+		timer.schedule(new Runnable() {
+			public void run() {
+				hedge(replicas, swid, requests);
+			}
+		}, delay, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Records that the reply to request <code>readRequestId</code> has been
+	 * received.
+	 */
+	public void replied(int readRequestId) {
+		if (!isEnabled())
+			return;
+
+		SentRequest request = sentRequests.remove(readRequestId);
+		if (request != null)
+			request.latency.add(System.nanoTime() - request.sendTime);
+	}
+
+	/**
+	 * Forgets request <code>readRequestId</code>, which will not be replied
+	 * to (e.g., it has been cancelled after a timeout).
+	 */
+	public void released(int readRequestId) {
+		if (!isEnabled())
+			return;
+
+		sentRequests.remove(readRequestId);
+	}
+
+	/**
+	 * Returns the number of requests waiting for their reply.
+	 */
+	int getPendingCount() {
+		return sentRequests.size();
+	}
+
+	public void close() {
+		if (timer != null)
+			timer.shutdownNow();
+	}
+
+	/**
+	 * Sends the requests that are still pending to another replica than
+	 * <code>swid</code> among <code>replicas</code>.
+	 */
+	void hedge(Set<Integer> replicas, int swid,
+			List<ReadRequest<JessyEntity>> requests) {
+		try {
+			List<ReadRequest<JessyEntity>> late = new ArrayList<ReadRequest<JessyEntity>>();
+			for (ReadRequest<JessyEntity> request : requests) {
+				int readRequestId = request.getReadRequestId();
+				if (!request.isOneKeyRequest()
+						|| !sentRequests.containsKey(readRequestId))
+					continue;
+				if (!reader.isPending(readRequestId)) {
+					sentRequests.remove(readRequestId);
+					continue;
+				}
+				if (!spend()) {
+					overBudget.incr();
+					continue;
+				}
+				late.add(request);
+			}
+			if (late.isEmpty())
+				return;
+
+			int other = selector.selectOther(replicas, swid);
+			if (other < 0)
+				return;
+
+			if (ConstantPool.logging)
+				logger.debug("hedging " + late.size() + " requests to " + other);
+
+			for (int i = 0; i < late.size(); i++)
+				hedgedReads.incr();
+			selector.sent(other, late);
+			reader.resend(other, late);
+
+			// A request replied to or released in the meantime would stay
+			// outstanding at the other replica.
+			for (ReadRequest<JessyEntity> request : late) {
+				if (!reader.isPending(request.getReadRequestId()))
+					selector.released(request.getReadRequestId());
+			}
+		} catch (Exception ex) {
+			ex.printStackTrace();
+		}
+	}
+
+	private GroupLatency getLatency(Group dest) {
+		GroupLatency latency = groups.get(dest);
+		if (latency == null) {
+			GroupLatency created = new GroupLatency(percentile);
+			latency = groups.putIfAbsent(dest, created);
+			if (latency == null)
+				latency = created;
+		}
+		return latency;
+	}
+
+	private void earn() {
+		long t;
+		do {
+			t = tokens.get();
+			if (t >= MAX_TOKENS)
+				return;
+		} while (!tokens.compareAndSet(t,
+				Math.min(MAX_TOKENS, t + tokensPerRequest)));
+	}
+
+	private boolean spend() {
+		long t;
+		do {
+			t = tokens.get();
+			if (t < TOKEN)
+				return false;
+		} while (!tokens.compareAndSet(t, t - TOKEN));
+		return true;
+	}
+
+}
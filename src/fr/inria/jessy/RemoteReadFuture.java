@@ -1,98 +1,138 @@
 package fr.inria.jessy;
 
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
 
 import fr.inria.jessy.store.JessyEntity;
 import fr.inria.jessy.store.ReadReply;
 import fr.inria.jessy.store.ReadRequest;
-
-public class RemoteReadFuture<E extends JessyEntity> implements
-			Future<ReadReply<E>> {
-
-		private Integer state; // 0 => init, 1 => done, -1 => cancelled
-		private ReadReply<E> reply;
-		private ReadRequest<E> readRequest;
-		private volatile boolean done=false;
-
-		public RemoteReadFuture(ReadRequest<E> rr) {
-			state = new Integer(0);
-			reply = null;
-			readRequest = rr;
-		}
-
-		public boolean cancel(boolean mayInterruptIfRunning) {
-			synchronized (state) {
-				if (state != 0)
-					return false;
-				state = -1;
-				if (mayInterruptIfRunning)
-					state.notifyAll();
-			}
+import fr.inria.jessy.utils.SettableFuture;
+
+/**
+ * The result of a (remote) read request.
+ * <p>
+ * The future never acquires a lock (see {@link SettableFuture}). Replies are
+ * queued, and counted by an atomic integer: the thread whose reply completes
+ * the request merges them.
+ * <p>
+ * Instead of blocking in {@link #get()}, a caller can register a
+ * {@link Listener} that is notified once the read is done or cancelled.
+ * Listeners are executed by the thread completing the future (usually a
+ * Netty thread), or directly by {@link #addListener(Listener)} if the future
+ * is already done. Hence, they must not block.
+ *
+ * @author Masoud Saeida Ardekani
+ *
+ */
+public class RemoteReadFuture<E extends JessyEntity> extends
+		SettableFuture<ReadReply<E>> {
+
+	private static Logger logger = Logger.getLogger(RemoteReadFuture.class);
+
+	/**
+	 * A callback notified once the future is done.
+	 */
+	public interface Listener<E extends JessyEntity> {
+
+		void operationComplete(RemoteReadFuture<E> future);
+
+	}
+
+	/**
+	 * Number of entities received so far.
+	 */
+	private final AtomicInteger received = new AtomicInteger();
+
+	private final ConcurrentLinkedQueue<ReadReply<E>> parts = new ConcurrentLinkedQueue<ReadReply<E>>();
+
+	private final ReadRequest<E> readRequest;
+
+	public RemoteReadFuture(ReadRequest<E> rr) {
+		readRequest = rr;
+	}
+
+	/**
+	 * Returns a future that is already done with the reply.
+	 */
+	public static <E extends JessyEntity> RemoteReadFuture<E> completed(
+			ReadRequest<E> rr, ReadReply<E> reply) {
+		RemoteReadFuture<E> future = new RemoteReadFuture<E>(rr);
+		future.set(reply);
+		return future;
+	}
+
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		return setCancelled();
+	}
+
+	/**
+	 * Merges a reply to the request. Returns true if the read is done (or has
+	 * been cancelled), i.e., if the future can be removed from the pending
+	 * reads.
+	 */
+	public boolean mergeReply(ReadReply<E> r) {
+		if (isDone())
 			return true;
-		}
 
-		public ReadReply<E> get() throws InterruptedException,
-				ExecutionException {
-			synchronized (state) {
-				if (state == 0 && !done)
-					state.wait();
-			}
-			return (state == -1) ? null : reply;
-		}
-
-		public ReadReply<E> get(long timeout, TimeUnit unit)
-				throws InterruptedException, ExecutionException,
-				TimeoutException {
-			
-			synchronized (state) {
-				if (state == 0 && !done)
-					state.wait(timeout);
-			}
-			return (state == -1) ? null : reply;
-		}
-
-		public boolean isCancelled() {
-			return state == -1;
+		if (readRequest.isOneKeyRequest()) {
+			set(r);
+			return true;
 		}
 
-		public boolean isDone() {
-			return reply == null;
+		parts.add(r);
+		int count = r.getEntity() == null ? 0 : r.getEntity().size();
+		int total = received.addAndGet(count);
+		int expected = readRequest.getMultiKeys().size();
+		if (total < expected || total - count >= expected)
+			return isDone();
+
+		// This reply completes the request: all the parts are queued.
+		ReadReply<E> merged = null;
+		for (ReadReply<E> part : parts) {
+			if (merged == null)
+				merged = part;
+			else
+				merged.mergeReply(part);
 		}
-
-		public boolean mergeReply(ReadReply<E> r) {
-
-			synchronized (state) {
-
-				if (state == -1){
-					done=true;
-					return true;
-				}
-
-				if (reply == null) {
-					reply = r;
-				} else {
-					reply.mergeReply(r);
-				}
-
-				if (readRequest.isOneKeyRequest()
-						|| reply.getEntity().size() == readRequest
-								.getMultiKeys().size()) {
-					done=true;
-					state.notifyAll();
-					
-					return true;
-				}
-				
-				return false;
+		set(merged);
+		return true;
+	}
+
+	/**
+	 * Completes the future with the reply, if it is not done yet.
+	 */
+	boolean complete(ReadReply<E> r) {
+		return set(r);
+	}
+
+	/**
+	 * Registers a listener that is notified once the future is done or
+	 * cancelled.
+	 */
+	public void addListener(final Listener<E> listener) {
+		addListener(new Runnable() {
+			public void run() {
+				listener.operationComplete(RemoteReadFuture.this);
 			}
-
-		}
-
-		public ReadRequest<E> getReadRequest() {
-			return readRequest;
+		});
+	}
+
+	public ReadRequest<E> getReadRequest() {
+		return readRequest;
+	}
+
+	@Override
+	protected void execute(Runnable listener) {
+		try {
+			listener.run();
+		} catch (Exception ex) {
+			logger.error("A listener of read request "
+					+ readRequest.getReadRequestId() + " has failed");
+			ex.printStackTrace();
 		}
+	}
 
-	}
\ No newline at end of file
+}
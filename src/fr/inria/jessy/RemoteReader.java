@@ -2,10 +2,10 @@ package fr.inria.jessy;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingDeque;
 
 import net.sourceforge.fractal.membership.Group;
@@ -54,6 +54,16 @@ public abstract class RemoteReader {
 	protected NonBlockingHashtable<Integer, RemoteReadFuture<JessyEntity>> pendingRemoteReads;
 
 	protected BlockingQueue<RemoteReadFuture<JessyEntity>> remoteReadQ;
+
+	/**
+	 * Chooses the replica of a group to which read requests are sent.
+	 */
+	protected ReplicaSelector replicaSelector;
+
+	/**
+	 * Sends again the requests that are late to another replica.
+	 */
+	protected ReadHedger readHedger;
 	
 //	protected ConcurrentHashMap<Group, Integer> partitionsContact;
 
@@ -62,13 +72,51 @@ public abstract class RemoteReader {
 
 		remoteReadQ = new LinkedBlockingDeque<RemoteReadFuture<JessyEntity>>();
 		pendingRemoteReads = new NonBlockingHashtable<Integer, RemoteReadFuture<JessyEntity>>();
+		replicaSelector = new ReplicaSelector();
+		readHedger = new ReadHedger(this, replicaSelector);
 		
 //		partitionsContact = new ConcurrentHashMap<Group, Integer>();
 	}
 
-	public abstract <E extends JessyEntity> Future<ReadReply<E>> remoteRead(
+	public abstract <E extends JessyEntity> RemoteReadFuture<E> remoteRead(
 			ReadRequest<E> readRequest) throws InterruptedException;
 
+	/**
+	 * Sends the requests to replica <code>swid</code>, while they are already
+	 * pending. Used to hedge late requests.
+	 */
+	protected abstract void resend(int swid,
+			List<ReadRequest<JessyEntity>> requests);
+
+	/**
+	 * Adds the read to the pending ones, until its reply is received. If the
+	 * read is cancelled before (e.g., after a timeout), it is removed, no
+	 * longer outstanding at the replicas it was sent to, and no longer hedged.
+	 */
+	protected void addPendingRead(RemoteReadFuture<JessyEntity> remoteRead) {
+		final int readRequestId = remoteRead.getReadRequest()
+				.getReadRequestId();
+		pendingRemoteReads.put(readRequestId, remoteRead);
+		remoteRead.addListener(new RemoteReadFuture.Listener<JessyEntity>() {
+			public void operationComplete(RemoteReadFuture<JessyEntity> future) {
+				if (!future.isCancelled())
+					return;
+				pendingRemoteReads.remove(readRequestId, future);
+				replicaSelector.released(readRequestId);
+				readHedger.released(readRequestId);
+			}
+		});
+	}
+
+	/**
+	 * Returns true if the reply to the request has not been received yet.
+	 */
+	boolean isPending(int readRequestId) {
+		RemoteReadFuture<JessyEntity> future = pendingRemoteReads
+				.get(readRequestId);
+		return future != null && !future.isDone();
+	}
+
 	public void closeProxyConnections(){
 		return;
 	}
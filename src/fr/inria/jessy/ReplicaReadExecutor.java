@@ -0,0 +1,238 @@
+package fr.inria.jessy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sourceforge.fractal.utils.PerformanceProbe.ValueRecorder;
+
+import org.apache.log4j.Logger;
+import org.jboss.netty.channel.Channel;
+
+import fr.inria.jessy.communication.message.ReadReplyMessage;
+import fr.inria.jessy.communication.message.ReadRequestMessage;
+import fr.inria.jessy.store.DataStore;
+import fr.inria.jessy.store.JessyEntity;
+import fr.inria.jessy.store.ReadReply;
+import fr.inria.jessy.store.ReadRequest;
+import fr.inria.jessy.utils.Configuration;
+import fr.inria.jessy.utils.DaemonThreadFactory;
+import fr.inria.jessy.vector.SnapshotWaitQueue;
+import fr.inria.jessy.vector.VectorFactory;
+
+/**
+ * Serves the read requests received by a replica, so that a slow read does
+ * not stall the Netty thread delivering them.
+ * <p>
+ * The executor has <code>read_executor_threads</code> threads, split among
+ * <code>read_executor_stripes</code> queues. A request goes to the queue
+ * given by the hash of its key. The reads of a {@link ReadRequestMessage}
+ * are executed in parallel, and the thread executing the last one writes
+ * the {@link ReadReplyMessage}. Queues are bounded: once a queue is full, the
+ * read is executed by the calling thread. A read whose snapshot is not yet
+ * visible waits in the {@link SnapshotWaitQueue} without holding a thread.
+ *
+ * @author Masoud Saeida Ardekani
+ *
+ */
+public class ReplicaReadExecutor {
+
+	private static Logger logger = Logger.getLogger(ReplicaReadExecutor.class);
+
+	private static ValueRecorder queueDepth, serviceTime, waitingTime;
+
+	static {
+		// Performance measuring facilities
+
+		queueDepth = new ValueRecorder("ReplicaReadExecutor#queueDepth");
+		queueDepth.setFormat("%a");
+
+		serviceTime = new ValueRecorder(
+				"ReplicaReadExecutor#serviceTime(us)");
+		serviceTime.setFormat("%a");
+
+		waitingTime = new ValueRecorder(
+				"ReplicaReadExecutor#waitingTime(us)");
+		waitingTime.setFormat("%a");
+	}
+
+	private final DataStore dataStore;
+
+	/**
+	 * The swid of this replica, sent with the replies.
+	 */
+	private final int source;
+
+	private final ThreadPoolExecutor[] stripes;
+
+	public ReplicaReadExecutor(DataStore dataStore, int source) {
+		this(dataStore, source, Configuration.readConfig(
+				ConstantPool.READ_EXECUTOR_THREADS,
+				ConstantPool.JESSY_READ_EXECUTOR_THREADS), Configuration
+				.readConfig(ConstantPool.READ_EXECUTOR_STRIPES,
+						ConstantPool.JESSY_READ_EXECUTOR_STRIPES));
+	}
+
+	/**
+	 * @param source
+	 *            the swid of this replica.
+	 * @param threads
+	 *            number of threads. Zero means one thread per core.
+	 * @param stripeCount
+	 *            number of queues.
+	 */
+	public ReplicaReadExecutor(DataStore dataStore, int source, int threads,
+			int stripeCount) {
+		this.dataStore = dataStore;
+		this.source = source;
+
+		if (threads <= 0)
+			threads = Runtime.getRuntime().availableProcessors();
+		stripeCount = Math.max(1, Math.min(stripeCount, threads));
+
+		stripes = new ThreadPoolExecutor[stripeCount];
+		for (int i = 0; i < stripeCount; i++) {
+			int stripeThreads = threads / stripeCount
+					+ (i < threads % stripeCount ? 1 : 0);
+			stripes[i] = new ThreadPoolExecutor(stripeThreads, stripeThreads,
+					0L, TimeUnit.MILLISECONDS,
+					new ArrayBlockingQueue<Runnable>(
+							ConstantPool.JESSY_READ_EXECUTOR_QUEUE_SIZE),
+					new DaemonThreadFactory("ReplicaReadExecutor-" + i, true),
+					new ThreadPoolExecutor.CallerRunsPolicy());
+		}
+
+		logger.info("Reads are served by " + threads + " threads and "
+				+ stripeCount + " queues.");
+	}
+
+	/**
+	 * Returns true if reads must be served by a {@link ReplicaReadExecutor},
+	 * i.e., if <code>read_executor_threads</code> is not negative.
+	 */
+	public static boolean isEnabled() {
+		return Configuration.readConfig(ConstantPool.READ_EXECUTOR_THREADS,
+				ConstantPool.JESSY_READ_EXECUTOR_THREADS) >= 0;
+	}
+
+	/**
+	 * Executes the reads of the message, and writes the replies on the
+	 * channel once they are all done.
+	 */
+	public void execute(ReadRequestMessage message, Channel channel) {
+		List<ReadRequest<JessyEntity>> requests = message.getReadRequests();
+		ReadReply<?>[] replies = new ReadReply<?>[requests.size()];
+		AtomicInteger remaining = new AtomicInteger(requests.size());
+		long submitted = System.nanoTime();
+
+		for (int i = 0; i < requests.size(); i++) {
+			ThreadPoolExecutor stripe = stripeOf(requests.get(i));
+			queueDepth.add(stripe.getQueue().size());
+			stripe.execute(new ReadTask(stripe, requests.get(i), i, replies,
+					remaining, channel, submitted));
+		}
+	}
+
+	public void close() {
+		for (ThreadPoolExecutor stripe : stripes)
+			stripe.shutdown();
+	}
+
+	private ThreadPoolExecutor stripeOf(ReadRequest<JessyEntity> request) {
+		if (stripes.length == 1)
+			return stripes[0];
+		int hash = request.getPartitioningKey().hashCode();
+		hash ^= (hash >>> 16);
+		return stripes[(hash & Integer.MAX_VALUE) % stripes.length];
+	}
+
+	/**
+	 * Executes one read of a {@link ReadRequestMessage}. If the snapshot of
+	 * the read is not yet visible, the task is parked in the
+	 * {@link SnapshotWaitQueue}, and submitted again once the snapshot
+	 * advances.
+	 */
+	private class ReadTask implements Runnable {
+
+		private final ThreadPoolExecutor stripe;
+
+		private final ReadRequest<JessyEntity> request;
+
+		private final int index;
+
+		private final ReadReply<?>[] replies;
+
+		private final AtomicInteger remaining;
+
+		private final Channel channel;
+
+		private final long submitted;
+
+		private long deadline;
+
+		ReadTask(ThreadPoolExecutor stripe, ReadRequest<JessyEntity> request,
+				int index, ReadReply<?>[] replies, AtomicInteger remaining,
+				Channel channel, long submitted) {
+			this.stripe = stripe;
+			this.request = request;
+			this.index = index;
+			this.replies = replies;
+			this.remaining = remaining;
+			this.channel = channel;
+			this.submitted = submitted;
+		}
+
+		@SuppressWarnings({ "rawtypes", "unchecked" })
+		public void run() {
+			long start = System.nanoTime();
+
+			if (mustWait(start))
+				return;
+
+			waitingTime.add((start - submitted) / 1000);
+
+			try {
+				replies[index] = dataStore.get(request);
+			} catch (Exception ex) {
+				ex.printStackTrace();
+				replies[index] = new ReadReply<JessyEntity>(
+						new ArrayList<JessyEntity>(0), request
+								.getReadRequestId());
+			}
+
+			serviceTime.add((System.nanoTime() - start) / 1000);
+
+			if (remaining.decrementAndGet() == 0) {
+				List list = Arrays.asList(replies);
+				channel.write(new ReadReplyMessage(list, source));
+			}
+		}
+
+		/**
+		 * Parks the task if its snapshot is not yet visible, and its deadline
+		 * is not reached.
+		 */
+		private boolean mustWait(long now) {
+			if (request.getReadSet() == null || !SnapshotWaitQueue.isEnabled()
+					|| VectorFactory.prepareRead(request))
+				return false;
+
+			if (deadline == 0)
+				deadline = SnapshotWaitQueue.newDeadline();
+			if (now - deadline >= 0)
+				return false;
+
+			SnapshotWaitQueue.park(request, new Runnable() {
+				public void run() {
+					stripe.execute(ReadTask.this);
+				}
+			}, deadline);
+			return true;
+		}
+	}
+
+}
@@ -0,0 +1,302 @@
+package fr.inria.jessy;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.sourceforge.fractal.utils.PerformanceProbe.SimpleCounter;
+import net.sourceforge.fractal.utils.PerformanceProbe.ValueRecorder;
+
+import org.apache.log4j.Logger;
+import org.cliffc.high_scale_lib.NonBlockingHashtable;
+
+import fr.inria.jessy.store.JessyEntity;
+import fr.inria.jessy.store.ReadRequest;
+import fr.inria.jessy.utils.Configuration;
+
+/**
+ * Chooses the replica of a group that serves a remote read.
+ * <p>
+ * For each replica, the selector tracks the number of outstanding requests
+ * and an exponentially weighted moving average (EWMA) of the latency of its
+ * replies. With the <code>latency</code> policy, two distinct replicas of the
+ * group are drawn at random, and the one with the lowest
+ * <code>ewma * (outstanding + 1)</code> is chosen (power of two choices). A
+ * replica that has never replied has the lowest possible EWMA, hence it is
+ * probed first, until it has outstanding requests.
+ * The <code>random</code> policy picks a replica uniformly at random.
+ * <p>
+ * Only one-key requests are timed, since the replies of a multi-key request
+ * may come from several groups. A request sent to several replicas (hedged
+ * read) is outstanding at each of them until the first reply, whose latency
+ * is credited to the replica that sent it. A request that is cancelled
+ * before any reply (e.g., on timeout) is released without any latency.
+ *
+ * @author Masoud Saeida Ardekani
+ *
+ */
+public class ReplicaSelector {
+
+	private static Logger logger = Logger.getLogger(ReplicaSelector.class);
+
+	public static final String RANDOM = "random";
+
+	public static final String LATENCY = "latency";
+
+	/**
+	 * Weight of the last sample in the moving average of latencies.
+	 */
+	private static final double EWMA_ALPHA = 0.2;
+
+	private static SimpleCounter randomChoices, keptChoices, switchedChoices;
+
+	static {
+		// Performance measuring facilities
+
+		randomChoices = new SimpleCounter("ReplicaSelector#randomChoices");
+		keptChoices = new SimpleCounter("ReplicaSelector#keptChoices");
+		switchedChoices = new SimpleCounter("ReplicaSelector#switchedChoices");
+	}
+
+	/**
+	 * Statistics of one replica.
+	 */
+	private static class ReplicaStats {
+
+		final AtomicInteger outstanding = new AtomicInteger();
+
+		/**
+		 * The EWMA of latencies (in microseconds), stored as the bits of a
+		 * double.
+		 */
+		final AtomicLong ewma = new AtomicLong(Double.doubleToLongBits(0));
+
+		final ValueRecorder latency;
+
+		final ValueRecorder outstandingRequests;
+
+		ReplicaStats(int swid) {
+			latency = new ValueRecorder("ReplicaSelector#latency(us)@" + swid);
+			latency.setFormat("%a");
+			outstandingRequests = new ValueRecorder(
+					"ReplicaSelector#outstanding@" + swid);
+			outstandingRequests.setFormat("%a");
+		}
+
+		double getEwma() {
+			return Double.longBitsToDouble(ewma.get());
+		}
+
+		void addSample(long latencyMicros) {
+			long current, next;
+			do {
+				current = ewma.get();
+				double value = Double.longBitsToDouble(current);
+				value = (value == 0) ? latencyMicros : value
+						+ EWMA_ALPHA * (latencyMicros - value);
+				next = Double.doubleToLongBits(value);
+			} while (!ewma.compareAndSet(current, next));
+			latency.add(latencyMicros);
+		}
+
+		double score() {
+			return Math.max(getEwma(), 1) * (outstanding.get() + 1);
+		}
+	}
+
+	/**
+	 * A request that has been sent, and is waiting for its reply: the time it
+	 * was sent to each replica.
+	 */
+	private static class SentRequest {
+
+		final HashMap<Integer, Long> sendTimes = new HashMap<Integer, Long>(2);
+
+		/**
+		 * True once the request has been replied or released.
+		 */
+		boolean done;
+	}
+
+	private final boolean latencyAware;
+
+	private final ConcurrentHashMap<Integer, ReplicaStats> replicas = new ConcurrentHashMap<Integer, ReplicaStats>();
+
+	private final NonBlockingHashtable<Integer, SentRequest> sentRequests = new NonBlockingHashtable<Integer, SentRequest>();
+
+	private final Random random = new Random();
+
+	public ReplicaSelector() {
+		this(Configuration.readConfig(ConstantPool.REPLICA_SELECTION,
+				ConstantPool.JESSY_REPLICA_SELECTION));
+	}
+
+	/**
+	 * @param policy
+	 *            either {@link #LATENCY} or {@link #RANDOM}.
+	 */
+	public ReplicaSelector(String policy) {
+		latencyAware = !RANDOM.equals(policy);
+		logger.info("Replicas are selected with the "
+				+ (latencyAware ? LATENCY : RANDOM) + " policy.");
+	}
+
+	/**
+	 * Returns the replica, among the given ones, that must serve the next
+	 * request.
+	 */
+	public int select(Set<Integer> swids) {
+		return choose(swids.toArray(new Integer[swids.size()]), swids.size());
+	}
+
+	/**
+	 * Returns the replica, among the given ones except <code>excluded</code>,
+	 * that must serve the next request, or -1 if there is none.
+	 */
+	public int selectOther(Set<Integer> swids, int excluded) {
+		Integer[] candidates = new Integer[swids.size()];
+		int size = 0;
+		for (Integer swid : swids) {
+			if (swid != excluded)
+				candidates[size++] = swid;
+		}
+		if (size == 0)
+			return -1;
+		return choose(candidates, size);
+	}
+
+	private int choose(Integer[] candidates, int size) {
+		if (size == 1)
+			return candidates[0];
+
+		int first = random.nextInt(size);
+		if (!latencyAware) {
+			randomChoices.incr();
+			return candidates[first];
+		}
+
+		int second = random.nextInt(size - 1);
+		if (second >= first)
+			second++;
+
+		double firstScore = getStats(candidates[first]).score();
+		double secondScore = getStats(candidates[second]).score();
+		if (firstScore == secondScore) {
+			randomChoices.incr();
+			return candidates[first];
+		}
+
+		// switchedChoices counts the decisions that differ from a random
+		// choice.
+		if (firstScore < secondScore) {
+			keptChoices.incr();
+			return candidates[first];
+		}
+		switchedChoices.incr();
+		return candidates[second];
+	}
+
+	/**
+	 * Records that the requests have been sent to replica <code>swid</code>.
+	 * A request that is already outstanding (e.g., a hedged read) becomes
+	 * outstanding at this replica as well.
+	 */
+	public void sent(int swid, List<ReadRequest<JessyEntity>> requests) {
+		ReplicaStats stats = getStats(swid);
+		long now = System.nanoTime();
+		for (ReadRequest<JessyEntity> request : requests) {
+			if (!request.isOneKeyRequest())
+				continue;
+
+			SentRequest sent = sentRequests.get(request.getReadRequestId());
+			if (sent == null) {
+				SentRequest created = new SentRequest();
+				sent = sentRequests.putIfAbsent(request.getReadRequestId(),
+						created);
+				if (sent == null)
+					sent = created;
+			}
+
+			synchronized (sent) {
+				if (sent.done || sent.sendTimes.containsKey(swid))
+					continue;
+				sent.sendTimes.put(swid, now);
+			}
+			stats.outstanding.incrementAndGet();
+		}
+		stats.outstandingRequests.add(stats.outstanding.get());
+	}
+
+	/**
+	 * Records that replica <code>swid</code> has replied to request
+	 * <code>readRequestId</code>. The request is no longer outstanding at
+	 * any replica, and its latency is credited to <code>swid</code>, if it
+	 * was sent there.
+	 */
+	public void replied(int readRequestId, int swid) {
+		finish(readRequestId, swid, System.nanoTime());
+	}
+
+	/**
+	 * Records that request <code>readRequestId</code> will not be replied,
+	 * e.g., since it has been cancelled after a timeout.
+	 */
+	public void released(int readRequestId) {
+		finish(readRequestId, -1, 0);
+	}
+
+	private void finish(int readRequestId, int swid, long now) {
+		SentRequest sent = sentRequests.remove(readRequestId);
+		if (sent == null)
+			return;
+
+		synchronized (sent) {
+			sent.done = true;
+			for (Map.Entry<Integer, Long> entry : sent.sendTimes.entrySet()) {
+				ReplicaStats stats = getStats(entry.getKey());
+				stats.outstanding.decrementAndGet();
+				if (entry.getKey() == swid)
+					stats.addSample((now - entry.getValue()) / 1000);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of requests that are waiting for their reply.
+	 */
+	int getPendingCount() {
+		return sentRequests.size();
+	}
+
+	/**
+	 * Returns the EWMA of the latencies of replica <code>swid</code>, in
+	 * microseconds, or zero if it has never replied.
+	 */
+	public double getLatency(int swid) {
+		return getStats(swid).getEwma();
+	}
+
+	public int getOutstanding(int swid) {
+		return getStats(swid).outstanding.get();
+	}
+
+	private ReplicaStats getStats(int swid) {
+		ReplicaStats stats = replicas.get(swid);
+		if (stats == null) {
+			synchronized (replicas) {
+				stats = replicas.get(swid);
+				if (stats == null) {
+					stats = new ReplicaStats(swid);
+					replicas.put(swid, stats);
+				}
+			}
+		}
+		return stats;
+	}
+
+}
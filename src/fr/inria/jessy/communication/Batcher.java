@@ -0,0 +1,130 @@
+package fr.inria.jessy.communication;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import fr.inria.jessy.utils.DaemonThreadFactory;
+
+/**
+ * Coalesces the items sent concurrently to a same key (e.g., a set of groups
+ * or a replica) into batches.
+ * <p>
+ * A batch is sent once it holds <code>maxSize</code> items, or
+ * <code>lingerTime</code> microseconds after its first item has been added,
+ * whichever comes first. A full batch is sent by the thread adding its last
+ * item, and a lingering batch by the timer of the batcher.
+ *
+ * @author Masoud Saeida Ardekani
+ *
+ */
+public abstract class Batcher<K, E> {
+
+	private static class Batch<E> {
+
+		final List<E> items = new ArrayList<E>();
+
+		ScheduledFuture<?> linger;
+	}
+
+	private final int maxSize;
+
+	private final long lingerTime;
+
+	private final Map<K, Batch<E>> batches = new HashMap<K, Batch<E>>();
+
+	private final ScheduledThreadPoolExecutor timer;
+
+	/**
+	 * @param name
+	 *            the name of the timer thread.
+	 * @param maxSize
+	 *            maximal number of items in a batch.
+	 * @param lingerTime
+	 *            maximal time (us) an item waits in a batch.
+	 */
+	protected Batcher(String name, int maxSize, long lingerTime) {
+		this.maxSize = Math.max(1, maxSize);
+		this.lingerTime = lingerTime;
+
+		timer = new ScheduledThreadPoolExecutor(1, new DaemonThreadFactory(name));
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public long getLingerTime() {
+		return lingerTime;
+	}
+
+	/**
+	 * Adds the item to the batch of <code>key</code>. The batch is sent by
+	 * the calling thread if it is full.
+	 */
+	protected void add(final K key, E item) {
+		Batch<E> full = null;
+
+		synchronized (this) {
+			Batch<E> batch = batches.get(key);
+			if (batch == null) {
+				batch = new Batch<E>();
+				batches.put(key, batch);
+				if (maxSize > 1 && lingerTime > 0) {
+					final Batch<E> lingering = batch;
+					batch.linger = timer.schedule(new Runnable() {
+						public void run() {
+							flush(key, lingering);
+						}
+					}, lingerTime, TimeUnit.MICROSECONDS);
+				}
+			}
+			batch.items.add(item);
+
+			if (batch.items.size() >= maxSize || batch.linger == null) {
+				batches.remove(key);
+				if (batch.linger != null)
+					batch.linger.cancel(false);
+				full = batch;
+			}
+		}
+
+		if (full != null)
+			dispatch(key, full.items, true);
+	}
+
+	public void close() {
+		timer.shutdownNow();
+	}
+
+	/**
+	 * Sends a batch. It is called without holding the lock of the batcher.
+	 *
+	 * @param full
+	 *            true if the batch is full, false if its linger time has
+	 *            expired.
+	 */
+	protected abstract void send(K key, List<E> items, boolean full);
+
+	private void flush(K key, Batch<E> batch) {
+		synchronized (this) {
+			if (batches.get(key) != batch)
+				return;
+			batches.remove(key);
+		}
+		dispatch(key, batch.items, false);
+	}
+
+	private void dispatch(K key, List<E> items, boolean full) {
+		try {
+			send(key, items, full);
+		} catch (Exception ex) {
+			ex.printStackTrace();
+		}
+	}
+
+}
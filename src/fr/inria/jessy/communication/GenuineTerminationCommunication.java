@@ -1,31 +1,42 @@
 package fr.inria.jessy.communication;
 
+import java.io.Serializable;
 import java.util.Collection;
+import java.util.List;
 
 import net.sourceforge.fractal.Learner;
+import net.sourceforge.fractal.Stream;
 import net.sourceforge.fractal.membership.Group;
 import net.sourceforge.fractal.wanamcast.WanAMCastStream;
 import fr.inria.jessy.DistributedJessy;
+import fr.inria.jessy.communication.message.TerminateTransactionBatchMessage;
 import fr.inria.jessy.communication.message.TerminateTransactionRequestMessage;
 import fr.inria.jessy.transaction.ExecutionHistory;
 
 /**
  * This class provides a traditional genuine termination communication
  * primitives that are needed for terminating a transaction in {@link DistributedTermination}
+ * <p>
+ * If {@link TerminationBatcher#isEnabled()}, concurrent transactions sent to
+ * the same groups are am-cast together in a
+ * {@link TerminateTransactionBatchMessage}.
  * 
  * @author Masoud Saeida Ardekani
  * 
  */
-public class GenuineTerminationCommunication extends TerminationCommunication {
+public class GenuineTerminationCommunication extends TerminationCommunication
+		implements TerminationBatcher.BatchSender {
 
 	/**
 	 * Stream used for atomic multicast messages
 	 */
 	protected WanAMCastStream aMCastStream;
 
+	private TerminationBatcher batcher;
+
 	public GenuineTerminationCommunication(
 			Group group,
-			Learner fractalLearner, UnicastLearner nettyLearner,
+			final Learner fractalLearner, UnicastLearner nettyLearner,
 			DistributedJessy j) {
 		super(j, fractalLearner,nettyLearner);
 
@@ -33,14 +44,39 @@ public class GenuineTerminationCommunication extends TerminationCommunication {
 				group.name(), group.name());
 		aMCastStream.registerLearner("TerminateTransactionRequestMessage",
 				fractalLearner);
+		aMCastStream.registerLearner("TerminateTransactionBatchMessage",
+				new Learner() {
+					public void learn(Stream s, Serializable v) {
+						for (TerminateTransactionRequestMessage msg : ((TerminateTransactionBatchMessage) v)
+								.getTerminateTransactionRequestMessages())
+							fractalLearner.learn(s, msg);
+					}
+				});
 		aMCastStream.start();
+
+		if (TerminationBatcher.isEnabled())
+			batcher = new TerminationBatcher(this);
 	}
 
 	@Override
 	public void terminateTransaction(ExecutionHistory ex,
 			Collection<String> gDest, String gSource, int swidSource) {
+		if (batcher != null) {
+			batcher.add(ex, gDest, gSource, swidSource);
+			return;
+		}
 		aMCastStream.atomicMulticast(new TerminateTransactionRequestMessage(ex,
 				gDest, gSource, swidSource));
 	}
 
+	public void sendBatch(List<ExecutionHistory> batch,
+			Collection<String> gDest, String gSource, int swidSource) {
+		if (batch.size() == 1)
+			aMCastStream.atomicMulticast(new TerminateTransactionRequestMessage(
+					batch.get(0), gDest, gSource, swidSource));
+		else
+			aMCastStream.atomicMulticast(new TerminateTransactionBatchMessage(
+					batch, gDest, gSource, swidSource));
+	}
+
 }
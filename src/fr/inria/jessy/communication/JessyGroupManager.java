@@ -18,6 +18,7 @@ import fr.inria.jessy.ConstantPool;
 import fr.inria.jessy.partitioner.Partitioner;
 import fr.inria.jessy.partitioner.PartitionerFactory;
 import fr.inria.jessy.utils.Configuration;
+import fr.inria.jessy.vector.KeyDictionary;
 
 /**
  * This class wrap up the complexity of {@code FractalManager} by simplifying
@@ -111,6 +112,11 @@ public class JessyGroupManager {
 					ConstantPool.JESSY_ALL_SERVERS_PORT);
 			allReplicaGroup.putNodes(replicas);
 
+			/*
+			 * Every process derives the same dictionary of vector keys.
+			 */
+			KeyDictionary.init(replicaGroups, fractal.membership.allNodes());
+
 			/*
 			 * Initialize my replica group and myself.
 			 */
@@ -2,6 +2,8 @@ package fr.inria.jessy.communication;
 
 import java.io.Serializable;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
@@ -15,6 +17,7 @@ import net.sourceforge.fractal.utils.ExecutorPool;
 import net.sourceforge.fractal.wanamcast.WanAMCastStream;
 import fr.inria.jessy.ConstantPool;
 import fr.inria.jessy.DistributedJessy;
+import fr.inria.jessy.communication.message.TerminateTransactionBatchMessage;
 import fr.inria.jessy.communication.message.TerminateTransactionRequestMessage;
 import fr.inria.jessy.communication.message.TransactionHandlerMessage;
 import fr.inria.jessy.transaction.ExecutionHistory;
@@ -30,11 +33,14 @@ import fr.inria.jessy.transaction.TransactionHandler;
  * Thus {@link TransactionHandler#getId()} is light, the consensus is performed way faster than when we use {@link GenuineTerminationCommunication}.
  * 
  * Our study shows that with this class, SER performance increases by 70%.
+ * <p>
+ * If {@link TerminationBatcher#isEnabled()}, concurrent transactions sent to the same groups are
+ * rm-cast together in a {@link TerminateTransactionBatchMessage}, and only the id of the batch is am-cast.
  * 
  * @author Masoud Saeida Ardekani
  * 
  */
-public class LightGenuineTerminationCommunicationWithFractal extends TerminationCommunication implements Learner, Runnable{
+public class LightGenuineTerminationCommunicationWithFractal extends TerminationCommunication implements Learner, Runnable, TerminationBatcher.BatchSender{
 
 	/**
 	 * Stream used for multicast messages
@@ -43,11 +49,16 @@ public class LightGenuineTerminationCommunicationWithFractal extends Termination
 	
 	private Learner realLearner;
 
-	private Map<UUID,TerminateTransactionRequestMessage> rm_DeliveredTerminateTransactionRequestMessages=new ConcurrentHashMap<UUID, TerminateTransactionRequestMessage>();
+	/**
+	 * The transactions rm-delivered, indexed by the id of their message (or batch).
+	 */
+	private Map<UUID,List<TerminateTransactionRequestMessage>> rm_DeliveredTerminateTransactionRequestMessages=new ConcurrentHashMap<UUID, List<TerminateTransactionRequestMessage>>();
 	private LinkedBlockingQueue<UUID> am_DeliveredTransactionHandlerMessage=new LinkedBlockingQueue<UUID>();
 	
 	protected MulticastStream mCastStream;
 	
+	private TerminationBatcher batcher;
+	
 	/**
 	 * 
 	 * @param group
@@ -66,6 +77,7 @@ public class LightGenuineTerminationCommunicationWithFractal extends Termination
 				ConstantPool.JESSY_VOTE_STREAM, manager.getMyGroup().name());
 		
 		mCastStream.registerLearner("TerminateTransactionRequestMessage", this);
+		mCastStream.registerLearner("TerminateTransactionBatchMessage", this);
 		
 		if (cyclicMulticast){
 			aMCastStream = j.manager.fractal.getOrCreateWanNonAcyclicAMCastStream(group.name(), group.name());
@@ -80,12 +92,19 @@ public class LightGenuineTerminationCommunicationWithFractal extends Termination
 		realLearner = fractalLearner;
 		
 		ExecutorPool.getInstance().submit(this);
+		
+		if (TerminationBatcher.isEnabled())
+			batcher = new TerminationBatcher(this);
 	}
 
 	
 	@Override
 	public void terminateTransaction(
 			ExecutionHistory eh, Collection<String> gDest, String gSource, int swidSource) {
+		if (batcher != null){
+			batcher.add(eh, gDest, gSource, swidSource);
+			return;
+		}
 		try{
 			
 			mCastStream.multicast(new TerminateTransactionRequestMessage(eh,gDest,gSource,swidSource));
@@ -98,16 +117,35 @@ public class LightGenuineTerminationCommunicationWithFractal extends Termination
 	}
 
 
+	public void sendBatch(List<ExecutionHistory> batch,
+			Collection<String> gDest, String gSource, int swidSource) {
+		if (batch.size() == 1){
+			mCastStream.multicast(new TerminateTransactionRequestMessage(batch.get(0),gDest,gSource,swidSource));
+			aMCastStream.atomicMulticast(new TransactionHandlerMessage(batch.get(0),gDest,gSource,swidSource));
+		}
+		else{
+			mCastStream.multicast(new TerminateTransactionBatchMessage(batch,gDest,gSource,swidSource));
+			aMCastStream.atomicMulticast(new TransactionHandlerMessage(batch,gDest,gSource,swidSource));
+		}
+	}
+
+
 	@Override
 	public void learn(Stream arg0, Serializable s) {
 		if (s instanceof TransactionHandlerMessage){
 			TransactionHandlerMessage msg=(TransactionHandlerMessage)s;
 			am_DeliveredTransactionHandlerMessage.offer(msg.getId());
+		}else if (s instanceof TerminateTransactionBatchMessage){
+			TerminateTransactionBatchMessage batch=(TerminateTransactionBatchMessage)s;
+			synchronized (rm_DeliveredTerminateTransactionRequestMessages) {
+				rm_DeliveredTerminateTransactionRequestMessages.put(batch.getId(), batch.getTerminateTransactionRequestMessages());
+				rm_DeliveredTerminateTransactionRequestMessages.notify();
+			}
 		}else
 		{
 			TerminateTransactionRequestMessage msg=(TerminateTransactionRequestMessage)s;
 			synchronized (rm_DeliveredTerminateTransactionRequestMessages) {
-				rm_DeliveredTerminateTransactionRequestMessages.put(msg.getExecutionHistory().getTransactionHandler().getId(), msg);
+				rm_DeliveredTerminateTransactionRequestMessages.put(msg.getExecutionHistory().getTransactionHandler().getId(), Collections.singletonList(msg));
 				rm_DeliveredTerminateTransactionRequestMessages.notify();
 			}
 		}
@@ -135,7 +173,8 @@ public class LightGenuineTerminationCommunicationWithFractal extends Termination
 					}
 					
 					if(delivered){
-						realLearner.learn(null, rm_DeliveredTerminateTransactionRequestMessages.remove(id));
+						for (TerminateTransactionRequestMessage msg : rm_DeliveredTerminateTransactionRequestMessages.remove(id))
+							realLearner.learn(null, msg);
 					}
 						
 				}
@@ -0,0 +1,148 @@
+package fr.inria.jessy.communication;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import net.sourceforge.fractal.utils.PerformanceProbe.SimpleCounter;
+import net.sourceforge.fractal.utils.PerformanceProbe.ValueRecorder;
+
+import org.apache.log4j.Logger;
+
+import fr.inria.jessy.ConstantPool;
+import fr.inria.jessy.communication.message.TerminateTransactionBatchMessage;
+import fr.inria.jessy.transaction.ExecutionHistory;
+import fr.inria.jessy.utils.Configuration;
+
+/**
+ * Coalesces the transactions a proxy terminates concurrently into batches,
+ * so that the ordering cost of the atomic multicast is paid once per batch
+ * instead of once per transaction (see
+ * {@link TerminateTransactionBatchMessage}).
+ * <p>
+ * Transactions are batched per set of destination groups. A batch is sent
+ * once it holds <code>termination_batch_size</code> transactions, or
+ * <code>termination_batch_linger</code> microseconds after its first
+ * transaction has been added, whichever comes first.
+ *
+ * @author Masoud Saeida Ardekani
+ *
+ */
+public class TerminationBatcher extends
+		Batcher<TerminationBatcher.Destination, ExecutionHistory> {
+
+	private static Logger logger = Logger.getLogger(TerminationBatcher.class);
+
+	private static ValueRecorder batchSize;
+
+	private static SimpleCounter fullBatches, lingeringBatches;
+
+	static {
+		// Performance measuring facilities
+
+		batchSize = new ValueRecorder("TerminationBatcher#batchSize");
+		batchSize.setFormat("%a");
+
+		fullBatches = new SimpleCounter("TerminationBatcher#fullBatches");
+		lingeringBatches = new SimpleCounter(
+				"TerminationBatcher#lingeringBatches");
+	}
+
+	/**
+	 * Casts a batch of transactions to their destination groups.
+	 */
+	public interface BatchSender {
+		void sendBatch(List<ExecutionHistory> batch, Collection<String> gDest,
+				String gSource, int swidSource);
+	}
+
+	/**
+	 * The destination groups and the source of a batch.
+	 */
+	static class Destination {
+
+		final Set<String> gDest;
+
+		final String gSource;
+
+		final int swidSource;
+
+		Destination(Collection<String> gDest, String gSource, int swidSource) {
+			this.gDest = new HashSet<String>(gDest);
+			this.gSource = gSource;
+			this.swidSource = swidSource;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Destination))
+				return false;
+			Destination other = (Destination) obj;
+			return swidSource == other.swidSource && gDest.equals(other.gDest)
+					&& (gSource == null ? other.gSource == null : gSource
+							.equals(other.gSource));
+		}
+
+		@Override
+		public int hashCode() {
+			return gDest.hashCode() * 31 + swidSource;
+		}
+	}
+
+	private final BatchSender sender;
+
+	public TerminationBatcher(BatchSender sender) {
+		this(sender, Configuration.readConfig(
+				ConstantPool.TERMINATION_BATCH_SIZE,
+				ConstantPool.JESSY_TERMINATION_BATCH_SIZE), Configuration
+				.readConfig(ConstantPool.TERMINATION_BATCH_LINGER,
+						ConstantPool.JESSY_TERMINATION_BATCH_LINGER));
+	}
+
+	/**
+	 * @param maxSize
+	 *            maximal number of transactions in a batch.
+	 * @param lingerTime
+	 *            maximal time (us) a transaction waits in a batch.
+	 */
+	public TerminationBatcher(BatchSender sender, int maxSize, long lingerTime) {
+		super("TerminationBatcher", maxSize, lingerTime);
+		this.sender = sender;
+
+		logger.info("Terminations are batched by " + getMaxSize()
+				+ " for at most " + lingerTime + "us.");
+	}
+
+	/**
+	 * Returns true if transactions must be batched, i.e., if
+	 * <code>termination_batch_size</code> is greater than one.
+	 */
+	public static boolean isEnabled() {
+		return Configuration.readConfig(ConstantPool.TERMINATION_BATCH_SIZE,
+				ConstantPool.JESSY_TERMINATION_BATCH_SIZE) > 1;
+	}
+
+	/**
+	 * Adds the transaction to the batch of its destination groups. The batch
+	 * is sent by the calling thread if it is full.
+	 */
+	public void add(ExecutionHistory eh, Collection<String> gDest,
+			String gSource, int swidSource) {
+		add(new Destination(gDest, gSource, swidSource), eh);
+	}
+
+	@Override
+	protected void send(Destination destination,
+			List<ExecutionHistory> batch, boolean full) {
+		if (full)
+			fullBatches.incr();
+		else
+			lingeringBatches.incr();
+
+		batchSize.add(batch.size());
+		sender.sendBatch(batch, destination.gDest, destination.gSource,
+				destination.swidSource);
+	}
+
+}
@@ -1,165 +1,307 @@
 package fr.inria.jessy.communication;
 
-import java.net.InetSocketAddress;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import net.sourceforge.fractal.membership.Membership;
 import net.sourceforge.fractal.utils.ExecutorPool;
 
+import org.apache.log4j.Logger;
 import org.jboss.netty.bootstrap.ClientBootstrap;
-import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelFactory;
 import org.jboss.netty.channel.ChannelPipeline;
 import org.jboss.netty.channel.ChannelPipelineFactory;
 import org.jboss.netty.channel.Channels;
-import org.jboss.netty.channel.group.ChannelGroup;
-import org.jboss.netty.channel.group.DefaultChannelGroup;
 import org.jboss.netty.channel.socket.nio.NioClientSocketChannelFactory;
-import org.jboss.netty.handler.codec.serialization.ObjectDecoder;
-import org.jboss.netty.handler.codec.serialization.ObjectEncoder;
+import org.jboss.netty.util.HashedWheelTimer;
+import org.jboss.netty.util.Timer;
 
+import fr.inria.jessy.ConstantPool;
 import fr.inria.jessy.DistributedJessy;
+import fr.inria.jessy.communication.codec.WireCodec;
+import fr.inria.jessy.communication.message.ReadReplyMessage;
+import fr.inria.jessy.communication.message.ReadRequestMessage;
+import fr.inria.jessy.communication.message.VoteBatchMessage;
+import fr.inria.jessy.communication.message.VoteMessage;
+import fr.inria.jessy.store.JessyEntity;
+import fr.inria.jessy.store.ReadReply;
+import fr.inria.jessy.store.ReadRequest;
+import fr.inria.jessy.utils.Configuration;
+import fr.inria.jessy.utils.DaemonThreadFactory;
 
+/**
+ * Sends messages to the replicas listening on a port with Netty (remote reads
+ * and votes).
+ * <p>
+ * Each replica is reached through <code>unicast_connections</code>
+ * {@link UnicastConnection}s. A message is sent on the connection given by its
+ * key (see {@link #keyOf(Object)}): the messages about the same transaction or
+ * the same read request always use the same connection, hence they are
+ * received in the order they are sent. Messages are either sent right away with
+ * {@link #unicast(Object, int)}, or queued with {@link #write(Object, int)}
+ * and sent together upon {@link #flush()}. Messages to a replica that is
+ * down are dropped, and both methods then return false.
+ *
+ * @author Masoud Saeida Ardekani
+ *
+ */
 public class UnicastClientManager {
+
+	private static Logger logger = Logger.getLogger(UnicastClientManager.class);
+
 	private static ChannelFactory factory = new NioClientSocketChannelFactory(ExecutorPool.getInstance().getExecutorService(),
 			ExecutorPool.getInstance().getExecutorService(),Runtime.getRuntime().availableProcessors());
 
-	private Map<Integer, Channel> swid2Channel = new HashMap<Integer, Channel>();
+	/**
+	 * Schedules the reconnections of all the connections.
+	 */
+	private static Timer timer = new HashedWheelTimer(new DaemonThreadFactory(
+			"UnicastClientManager-timer"), 10, TimeUnit.MILLISECONDS);
+
+	private ConcurrentHashMap<Integer, UnicastConnection[]> swid2Connections = new ConcurrentHashMap<Integer, UnicastConnection[]>();
+
+	/**
+	 * The connections written by {@link #write(Object, int)} and not flushed
+	 * yet by the current thread.
+	 */
+	private final ThreadLocal<List<UnicastConnection>> unflushed = new ThreadLocal<List<UnicastConnection>>() {
+		protected List<UnicastConnection> initialValue() {
+			return new ArrayList<UnicastConnection>();
+		}
+	};
 
 	UnicastLearner learner;
 	int port;
-	
+	int connections;
+	int connectAttempts;
+
 	DistributedJessy distributedJessy;
 
+	private final ClientBootstrap bootstrap;
+
 	public UnicastClientManager(DistributedJessy j, UnicastLearner learner, int port,
 			Set<Integer> server_swid) {
 		this.learner = learner;
 		this.port = port;
 		this.distributedJessy=j;
+		this.connections = Math.max(1, Configuration.readConfig(
+				ConstantPool.UNICAST_CONNECTIONS,
+				ConstantPool.JESSY_UNICAST_CONNECTIONS));
+		this.connectAttempts = Configuration.readConfig(
+				ConstantPool.UNICAST_CONNECT_ATTEMPTS,
+				ConstantPool.JESSY_UNICAST_CONNECT_ATTEMPTS);
+		this.bootstrap = createBootstrap();
 
 		if (server_swid != null && server_swid.size() > 0) {
 			Membership membership = j.manager.getMembership();
 
 			for (Integer swid : server_swid) {
 				String host = membership.adressOf(swid);
-				swid2Channel.put(swid, createUnicastClientChannel(host, port));
-
+				getOrCreateConnections(swid, host);
 			}
 		}
 	}
 
 	public synchronized void close() {
-			for (Integer i: swid2Channel.keySet()){
-				swid2Channel.get(i).close();
-				swid2Channel.remove(i);
+			for (UnicastConnection[] pool: swid2Connections.values()){
+				for (UnicastConnection connection : pool)
+					connection.close();
 			}
-			swid2Channel.clear();
+			swid2Connections.clear();
 	}
 
-	
-	private Channel createUnicastClientChannel(String host, int port) {
+	private ClientBootstrap createBootstrap() {
+		ClientBootstrap bootstrap = new ClientBootstrap(factory);
 
-		try {
+		bootstrap.setOption("tcpNoDelay", true);
+		bootstrap.setOption("keepAlive", true);
 
+		bootstrap.setPipelineFactory(new ChannelPipelineFactory() {
+			public ChannelPipeline getPipeline() throws Exception {
+				ChannelPipeline pipeline = Channels.pipeline();
+				pipeline.addLast("coalescer", new WriteCoalescer());
+				WireCodec.addCodec(pipeline);
+				pipeline.addLast("handler",
+						new UnicastClientChannelHandler(learner));
+				return pipeline;
+			}
+		});
 
-			ClientBootstrap bootstrap = new ClientBootstrap(factory);
+		return bootstrap;
+	}
 
-			bootstrap.setOption("tcpNoDelay", true);
-			bootstrap.setOption("keepAlive", true);
+	/**
+	 * Returns the connections to <code>swid</code>, and starts connecting
+	 * them if they do not exist yet.
+	 */
+	private UnicastConnection[] getOrCreateConnections(int swid, String host) {
+		UnicastConnection[] pool = swid2Connections.get(swid);
+		if (pool != null)
+			return pool;
 
-			bootstrap.setPipelineFactory(new ChannelPipelineFactory() {
-				public ChannelPipeline getPipeline() throws Exception {
-					ChannelPipeline pipeline = Channels.pipeline();
-					pipeline.addLast("decoder", new ObjectDecoder());
-					pipeline.addLast("encoder", new ObjectEncoder());
-					pipeline.addLast("handler",
-							new UnicastClientChannelHandler(learner));
-					return pipeline;
-				}
-			});
+		pool = new UnicastConnection[connections];
+		for (int i = 0; i < connections; i++)
+			pool[i] = new UnicastConnection(bootstrap, timer, port + "->"
+					+ swid + "#" + i, host, port, connectAttempts);
 
-			// Connect to the server, wait for the connection and get back the
-			// channel
-			return bootstrap.connect(new InetSocketAddress(host, port))
-					.awaitUninterruptibly().getChannel();
+		UnicastConnection[] existing = swid2Connections.putIfAbsent(swid, pool);
+		if (existing != null)
+			return existing;
 
-		} catch (Exception ex) {
-			ex.printStackTrace();
-		}
+		logger.info("UnicastClientManager is creating " + connections
+				+ " connections to " + host + ":" + port);
+		for (UnicastConnection connection : pool)
+			connection.connect(host);
+		return pool;
+	}
+
+	private UnicastConnection connectionOf(UnicastConnection[] pool, Object m) {
+		if (pool.length == 1)
+			return pool[0];
+		return pool[indexOf(m, pool.length)];
+	}
+
+	/**
+	 * Returns the index of the connection carrying <code>m</code> among
+	 * <code>connections</code> connections.
+	 */
+	static int indexOf(Object m, int connections) {
+		int key = keyOf(m);
+		key ^= key >>> 16;
+		return (key & Integer.MAX_VALUE) % connections;
+	}
 
-		return null;
+	/**
+	 * Returns the key of a message: the transaction of a vote, or the first
+	 * read request of a read request or reply message. A batch of votes uses
+	 * the key of its first vote. Other messages have the key 0, thus they all
+	 * use the same connection.
+	 */
+	static int keyOf(Object m) {
+		if (m instanceof VoteMessage)
+			return ((VoteMessage) m).getVote().getTransactionHandler()
+					.hashCode();
 
+		if (m instanceof VoteBatchMessage) {
+			List<VoteMessage> votes = ((VoteBatchMessage) m).getVoteMessages();
+			if (!votes.isEmpty())
+				return keyOf(votes.get(0));
+		} else if (m instanceof ReadRequestMessage) {
+			List<ReadRequest<JessyEntity>> requests = ((ReadRequestMessage) m)
+					.getReadRequests();
+			if (!requests.isEmpty())
+				return requests.get(0).getReadRequestId();
+		} else if (m instanceof ReadReplyMessage) {
+			List<? extends ReadReply<?>> replies = ((ReadReplyMessage<?>) m)
+					.getReadReplies();
+			if (!replies.isEmpty())
+				return replies.get(0).getReadRequestId();
+		}
+		return 0;
 	}
 
-	public void unicast(Object m, int swid) throws NullPointerException {
-		if (!swid2Channel.containsKey(swid)) {
+	/**
+	 * Queues a message to <code>swid</code>. It is sent by the next
+	 * {@link #flush()} of the calling thread.
+	 *
+	 * @return false if the message is dropped, because <code>swid</code> is
+	 *         down.
+	 */
+	public boolean write(Object m, int swid) throws NullPointerException {
+		UnicastConnection[] pool = swid2Connections.get(swid);
+		if (pool == null) {
 			throw new NullPointerException(
 					"Cannot identify the host name with swid from Fractal membership");
 		}
+		return write(m, connectionOf(pool, m));
+	}
 
-		try{
-			Channel ch=swid2Channel.get(swid);
-			if (!ch.isConnected()){
-				ch.close().awaitUninterruptibly();
-				Membership membership = distributedJessy.manager.getMembership();
-				String host = membership.adressOf(swid);
-				ch=createUnicastClientChannel(host, port);
-				swid2Channel.put(swid,ch);
-			}
-			
-			if (ch.isConnected()){
-				swid2Channel.get(swid).write(m);
-			}
-			else{
-				System.out.println("Exception... Cannot create a connected channel. Unicast message is being dropped.");
-			}
-			
+	/**
+	 * Queues a message to <code>swid</code>, whose host is
+	 * <code>destinationHost</code>. It is sent by the next {@link #flush()}
+	 * of the calling thread.
+	 *
+	 * @return false if the message is dropped, because <code>swid</code> is
+	 *         down.
+	 */
+	public boolean write(Object m, int swid, String destinationHost) {
+		return write(m, connectionOf(
+				getOrCreateConnections(swid, destinationHost), m));
+	}
 
-		}
-		catch(Exception ex){
-			ex.printStackTrace();
-		}
+	private boolean write(Object m, UnicastConnection connection) {
+		if (!connection.write(m))
+			return false;
+		List<UnicastConnection> toFlush = unflushed.get();
+		if (!toFlush.contains(connection))
+			toFlush.add(connection);
+		return true;
 	}
 
-	public void unicast(Object m, int swid, String destinationHost) {
-		try {
-			Channel ch =swid2Channel.get(swid);
-			
-			if (ch==null || !ch.isConnected()) {
-				synchronized (swid2Channel) {
-					
-					ch =swid2Channel.get(swid);
-					if (ch==null || !ch.isConnected()) {
-						
-						if (ch!=null && !ch.isConnected()){
-							ch.close().awaitUninterruptibly();
-						}
-						
-						ch=createUnicastClientChannel(destinationHost,port);
-						swid2Channel.put(swid,ch);
-						System.out.println("UnicastClientManager Is Creating Connection "
-								+ destinationHost);
-					}
-				}
+	/**
+	 * Sends the messages queued by the calling thread.
+	 */
+	public void flush() {
+		List<UnicastConnection> toFlush = unflushed.get();
+		for (int i = 0; i < toFlush.size(); i++) {
+			try {
+				toFlush.get(i).flush();
+			} catch (Exception ex) {
+				logger.error("Cannot flush " + toFlush.get(i), ex);
 			}
+		}
+		toFlush.clear();
+	}
+
+	/**
+	 * Sends a message to <code>swid</code>.
+	 *
+	 * @return false if the message is dropped, because <code>swid</code> is
+	 *         down.
+	 */
+	public boolean unicast(Object m, int swid) throws NullPointerException {
+		boolean queued = write(m, swid);
+		flush();
+		return queued;
+	}
 
-			swid2Channel.get(swid).write(m);
+	/**
+	 * Sends a message to <code>swid</code>, whose host is
+	 * <code>destinationHost</code>.
+	 *
+	 * @return false if the message is dropped, because <code>swid</code> is
+	 *         down.
+	 */
+	public boolean unicast(Object m, int swid, String destinationHost) {
+		boolean queued = false;
+		try {
+			queued = write(m, swid, destinationHost);
 		} catch (Exception ex) {
 			ex.printStackTrace();
 		}
+		flush();
+		return queued;
 	}
-	
+
 	public void multiCast(Object obj, Collection<String> dest){
-		ChannelGroup cg=new DefaultChannelGroup();
 		for (String g:dest){
 			for (Integer swid:distributedJessy.manager.getMembership().group(g).allNodes()){
-				cg.add(swid2Channel.get(swid));
+				write(obj, swid);
 			}
 		}
-		cg.write(obj);
+		flush();
+	}
+
+	/**
+	 * Returns the connections to <code>swid</code>, e.g., to read their
+	 * statistics, or null if there is none.
+	 */
+	public UnicastConnection[] getConnections(int swid) {
+		return swid2Connections.get(swid);
 	}
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,334 @@
+package fr.inria.jessy.communication;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+import org.jboss.netty.bootstrap.ClientBootstrap;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
+import org.jboss.netty.util.Timeout;
+import org.jboss.netty.util.Timer;
+import org.jboss.netty.util.TimerTask;
+
+import fr.inria.jessy.ConstantPool;
+
+/**
+ * One of the connections of a {@link UnicastClientManager} to a replica.
+ * <p>
+ * Messages are queued by {@link #write(Object)}, and handed to the channel by
+ * {@link #flush()}. A single thread flushes a connection at a time: the
+ * messages queued while it flushes are written by the same thread, in the
+ * next round, so that under load many messages are coalesced into each
+ * system call (see {@link WriteCoalescer}).
+ * <p>
+ * The connection is (re-)established asynchronously. While it is not
+ * connected, messages stay in the queue, and they are flushed once the
+ * connection succeeds. Failed connections are retried with an exponential
+ * backoff.
+ * <p>
+ * After <code>maxConnectAttempts</code> consecutive failed attempts, the
+ * replica is considered down: the queued messages are dropped, and
+ * {@link #write(Object)} rejects the new ones until the connection, still
+ * retried in the background, succeeds.
+ *
+ * @author Masoud Saeida Ardekani
+ *
+ */
+public class UnicastConnection {
+
+	private static Logger logger = Logger.getLogger(UnicastConnection.class);
+
+	private static final long MIN_RECONNECT_DELAY = 10;
+
+	private static final long MAX_RECONNECT_DELAY = 1000;
+
+	private final ClientBootstrap bootstrap;
+
+	private final Timer timer;
+
+	private final String name;
+
+	private volatile InetSocketAddress address;
+
+	private volatile Channel channel;
+
+	/**
+	 * True while a connection attempt is pending.
+	 */
+	private boolean connecting;
+
+	private boolean closed;
+
+	private long reconnectDelay = MIN_RECONNECT_DELAY;
+
+	private final int maxConnectAttempts;
+
+	/**
+	 * Number of consecutive failed connection attempts.
+	 */
+	private int failedAttempts;
+
+	/**
+	 * True once <code>maxConnectAttempts</code> consecutive attempts have
+	 * failed, until a connection succeeds.
+	 */
+	private volatile boolean down;
+
+	private final ConcurrentLinkedQueue<Object> queue = new ConcurrentLinkedQueue<Object>();
+
+	private final AtomicBoolean flushing = new AtomicBoolean();
+
+	private final AtomicLong messages = new AtomicLong();
+
+	private final AtomicLong bytes = new AtomicLong();
+
+	private final AtomicLong flushes = new AtomicLong();
+
+	private final AtomicLong dropped = new AtomicLong();
+
+	public UnicastConnection(ClientBootstrap bootstrap, Timer timer,
+			String name, String host, int port) {
+		this(bootstrap, timer, name, host, port,
+				ConstantPool.JESSY_UNICAST_CONNECT_ATTEMPTS);
+	}
+
+	/**
+	 * @param bootstrap
+	 *            a bootstrap whose pipelines have a {@link WriteCoalescer}.
+	 * @param timer
+	 *            the timer scheduling the reconnections.
+	 * @param maxConnectAttempts
+	 *            number of consecutive failed connection attempts after which
+	 *            the queued messages are dropped.
+	 */
+	public UnicastConnection(ClientBootstrap bootstrap, Timer timer,
+			String name, String host, int port, int maxConnectAttempts) {
+		this.bootstrap = bootstrap;
+		this.timer = timer;
+		this.name = name;
+		this.address = new InetSocketAddress(host, port);
+		this.maxConnectAttempts = Math.max(1, maxConnectAttempts);
+	}
+
+	/**
+	 * Queues a message. It is sent upon the next {@link #flush()}.
+	 *
+	 * @return false if the message is dropped, because the replica is down.
+	 */
+	public boolean write(Object message) {
+		if (down) {
+			dropped.incrementAndGet();
+			return false;
+		}
+		queue.add(message);
+		return true;
+	}
+
+	/**
+	 * Writes the queued messages to the channel, or starts connecting if the
+	 * channel is not connected. Returns right away if another thread is
+	 * flushing the connection, since this thread will write the messages.
+	 */
+	public void flush() {
+		while (!queue.isEmpty()) {
+			if (!flushing.compareAndSet(false, true))
+				return;
+
+			try {
+				Channel ch = channel;
+				if (ch == null || !ch.isConnected()) {
+					connect();
+					return;
+				}
+
+				WriteCoalescer coalescer = ch.getPipeline().get(
+						WriteCoalescer.class);
+				coalescer.cork();
+				int count = 0;
+				try {
+					Object message;
+					while ((message = queue.poll()) != null) {
+						ch.write(message);
+						count++;
+					}
+				} finally {
+					coalescer.uncork();
+				}
+
+				messages.addAndGet(count);
+				bytes.addAndGet(coalescer.getLastFlushSize());
+				flushes.incrementAndGet();
+			} catch (Exception ex) {
+				logger.error("Cannot write to " + address + " (" + name + ")",
+						ex);
+			} finally {
+				flushing.set(false);
+			}
+		}
+	}
+
+	/**
+	 * Starts connecting to <code>host</code> if the connection is not
+	 * established yet, e.g., because the replica was unknown until now.
+	 */
+	public void connect(String host) {
+		if (host != null && !host.equals(address.getHostName()))
+			address = new InetSocketAddress(host, address.getPort());
+		connect();
+	}
+
+	public void close() {
+		Channel ch;
+		synchronized (this) {
+			closed = true;
+			ch = channel;
+			channel = null;
+		}
+		if (ch != null)
+			ch.close();
+
+		logger.info(toString());
+	}
+
+	public boolean isConnected() {
+		Channel ch = channel;
+		return ch != null && ch.isConnected();
+	}
+
+	/**
+	 * Returns true if the last <code>maxConnectAttempts</code> connection
+	 * attempts have failed.
+	 */
+	public boolean isDown() {
+		return down;
+	}
+
+	/**
+	 * Number of messages dropped because the replica was down.
+	 */
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	/**
+	 * Number of messages written to the channel.
+	 */
+	public long getMessages() {
+		return messages.get();
+	}
+
+	/**
+	 * Number of bytes written to the channel.
+	 */
+	public long getBytes() {
+		return bytes.get();
+	}
+
+	/**
+	 * Number of writes to the channel, i.e., of flushes writing at least one
+	 * message.
+	 */
+	public long getFlushes() {
+		return flushes.get();
+	}
+
+	/**
+	 * Average number of messages per write to the channel.
+	 */
+	public double getAverageFlushSize() {
+		long f = flushes.get();
+		return f == 0 ? 0 : (double) messages.get() / f;
+	}
+
+	public String toString() {
+		return "UnicastConnection " + name + " : " + messages.get()
+				+ " messages, " + bytes.get() + " bytes, "
+				+ String.format("%.2f", getAverageFlushSize())
+				+ " messages per flush, " + dropped.get() + " dropped";
+	}
+
+	private void connect() {
+		synchronized (this) {
+			if (connecting || closed || isConnected())
+				return;
+			connecting = true;
+		}
+
+		bootstrap.connect(address).addListener(new ChannelFutureListener() {
+			public void operationComplete(ChannelFuture future) {
+				connected(future);
+			}
+		});
+	}
+
+	private void connected(ChannelFuture future) {
+		boolean close = false;
+		synchronized (this) {
+			connecting = false;
+			if (future.isSuccess()) {
+				if (closed) {
+					close = true;
+				} else {
+					channel = future.getChannel();
+					reconnectDelay = MIN_RECONNECT_DELAY;
+					failedAttempts = 0;
+					down = false;
+				}
+			}
+		}
+
+		if (close) {
+			future.getChannel().close();
+			return;
+		}
+
+		if (future.isSuccess()) {
+			logger.info("Connected to " + address + " (" + name + ")");
+			flush();
+			return;
+		}
+
+		long delay;
+		int attempts;
+		boolean failed = false;
+		synchronized (this) {
+			if (closed)
+				return;
+			delay = reconnectDelay;
+			reconnectDelay = Math.min(2 * reconnectDelay, MAX_RECONNECT_DELAY);
+			attempts = ++failedAttempts;
+			if (attempts >= maxConnectAttempts && !down) {
+				down = true;
+				failed = true;
+			}
+		}
+
+		if (failed) {
+			int count = 0;
+			while (queue.poll() != null)
+				count++;
+			dropped.addAndGet(count);
+			logger.error("Cannot connect to " + address + " (" + name
+					+ ") after " + attempts + " attempts, dropping "
+					+ count + " queued messages.");
+		} else {
+			logger.warn("Cannot connect to " + address + " (" + name
+					+ "), retrying in " + delay + "ms.");
+		}
+
+		timer.newTimeout(new TimerTask() {
+			public void run(Timeout timeout) {
+				if (down)
+					connect();
+				else if (!queue.isEmpty())
+					flush();
+			}
+		}, delay, TimeUnit.MILLISECONDS);
+	}
+
+}
@@ -11,10 +11,9 @@ import org.jboss.netty.channel.ChannelPipeline;
 import org.jboss.netty.channel.ChannelPipelineFactory;
 import org.jboss.netty.channel.Channels;
 import org.jboss.netty.channel.socket.nio.NioServerSocketChannelFactory;
-import org.jboss.netty.handler.codec.serialization.ObjectDecoder;
-import org.jboss.netty.handler.codec.serialization.ObjectEncoder;
 
 import fr.inria.jessy.DistributedJessy;
+import fr.inria.jessy.communication.codec.WireCodec;
 
 public class UnicastServerManager {
 	private static ChannelFactory factory = new NioServerSocketChannelFactory(ExecutorPool.getInstance().getExecutorService(),
@@ -33,8 +32,7 @@ public class UnicastServerManager {
 		bootstrap.setPipelineFactory(new ChannelPipelineFactory() {
 			public ChannelPipeline getPipeline() {
 				ChannelPipeline pipeline = Channels.pipeline();
-				pipeline.addLast("decoder", new ObjectDecoder());
-				pipeline.addLast("encoder", new ObjectEncoder());
+				WireCodec.addCodec(pipeline);
 				pipeline.addLast("handler", new UnicastServerChannelHandler(
 						learner));
 				return pipeline;
@@ -0,0 +1,109 @@
+package fr.inria.jessy.communication;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.sourceforge.fractal.utils.PerformanceProbe.ValueRecorder;
+
+import org.apache.log4j.Logger;
+
+import fr.inria.jessy.ConstantPool;
+import fr.inria.jessy.communication.message.VoteBatchMessage;
+import fr.inria.jessy.communication.message.VoteMessage;
+import fr.inria.jessy.utils.Configuration;
+
+/**
+ * Buffers the votes sent to each replica, so that the votes of concurrent
+ * transactions are written together in a {@link VoteBatchMessage} instead
+ * of one write per vote.
+ * <p>
+ * The votes to a replica are written once there are
+ * <code>vote_batch_size</code> of them, or <code>vote_batch_linger</code>
+ * microseconds after the first one has been buffered, whichever comes
+ * first. A single vote is written as a plain {@link VoteMessage}.
+ *
+ * @author Masoud Saeida Ardekani
+ *
+ */
+public class VoteBatcher extends Batcher<Integer, VoteMessage> {
+
+	private static Logger logger = Logger.getLogger(VoteBatcher.class);
+
+	private static ValueRecorder votesPerWrite;
+
+	static {
+		// Performance measuring facilities
+
+		votesPerWrite = new ValueRecorder("VoteBatcher#votesPerWrite");
+		votesPerWrite.setFormat("%a");
+	}
+
+	/**
+	 * Writes a message to a replica.
+	 */
+	public interface Sender {
+		/**
+		 * @param host
+		 *            the host of the replica, or null if the replica is
+		 *            already known to the sender.
+		 */
+		void send(Object message, int swid, String host);
+	}
+
+	private final Sender sender;
+
+	/**
+	 * The host of each replica, as given with its votes.
+	 */
+	private final ConcurrentHashMap<Integer, String> hosts = new ConcurrentHashMap<Integer, String>();
+
+	public VoteBatcher(Sender sender) {
+		this(sender, Configuration.readConfig(ConstantPool.VOTE_BATCH_SIZE,
+				ConstantPool.JESSY_VOTE_BATCH_SIZE), Configuration.readConfig(
+				ConstantPool.VOTE_BATCH_LINGER,
+				ConstantPool.JESSY_VOTE_BATCH_LINGER));
+	}
+
+	/**
+	 * @param maxSize
+	 *            maximal number of votes in a write.
+	 * @param lingerTime
+	 *            maximal time (us) a vote is buffered.
+	 */
+	public VoteBatcher(Sender sender, int maxSize, long lingerTime) {
+		super("VoteBatcher", maxSize, lingerTime);
+		this.sender = sender;
+
+		logger.info("Votes are batched by " + getMaxSize() + " for at most "
+				+ lingerTime + "us.");
+	}
+
+	/**
+	 * Returns true if votes must be batched, i.e., if
+	 * <code>vote_batch_size</code> is greater than one.
+	 */
+	public static boolean isEnabled() {
+		return Configuration.readConfig(ConstantPool.VOTE_BATCH_SIZE,
+				ConstantPool.JESSY_VOTE_BATCH_SIZE) > 1;
+	}
+
+	/**
+	 * Buffers the vote for the replica <code>swid</code>. The buffered votes
+	 * are written by the calling thread if the buffer is full.
+	 */
+	public void send(VoteMessage vote, int swid, String host) {
+		if (host != null && !hosts.containsKey(swid))
+			hosts.putIfAbsent(swid, host);
+		add(swid, vote);
+	}
+
+	@Override
+	protected void send(Integer swid, List<VoteMessage> votes, boolean full) {
+		votesPerWrite.add(votes.size());
+		if (votes.size() == 1)
+			sender.send(votes.get(0), swid, hosts.get(swid));
+		else
+			sender.send(new VoteBatchMessage(votes), swid, hosts.get(swid));
+	}
+
+}
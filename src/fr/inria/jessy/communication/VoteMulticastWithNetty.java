@@ -8,17 +8,24 @@ import fr.inria.jessy.ConstantPool;
 import fr.inria.jessy.DistributedJessy;
 import fr.inria.jessy.communication.message.VoteMessage;
 
-public class VoteMulticastWithNetty extends VoteMulticast{
+/**
+ * Sends the votes with Netty. If {@link VoteBatcher#isEnabled()}, the votes
+ * to the same replica are buffered and written together.
+ */
+public class VoteMulticastWithNetty extends VoteMulticast implements VoteBatcher.Sender{
 
 	private UnicastClientManager cManager;
 	private UnicastServerManager sManager;
 	private DistributedJessy distributedJessy;
+	private VoteBatcher batcher;
 	
 	public VoteMulticastWithNetty(DistributedJessy j, UnicastLearner learner) {
 
 		sManager=new UnicastServerManager(j, learner, ConstantPool.JESSY_NETTY_VOTING_PHASE_PORT);
 		distributedJessy=j;
 
+		if (VoteBatcher.isEnabled())
+			batcher=new VoteBatcher(this);
 	}
 
 	/**
@@ -44,7 +51,7 @@ public class VoteMulticastWithNetty extends VoteMulticast{
 		multiCast(voteMessage, voteMessage.dest);
 		
 		if (!isCertifyAtCoordinator) {
-			cManager.unicast(voteMessage, coordinatorSwid, coordinatorHost);
+			unicast(voteMessage, coordinatorSwid, coordinatorHost);
 		}
 
 	}
@@ -55,7 +62,7 @@ public class VoteMulticastWithNetty extends VoteMulticast{
 						ConstantPool.JESSY_NETTY_VOTING_PHASE_PORT, distributedJessy.manager.getAllReplicaGroup().allNodes());
 		}
 		
-		cManager.unicast(voteMessage, swid, host);
+		unicast(voteMessage, swid, host);
 	}
 	
 	private synchronized void initializecManager(DistributedJessy j, UnicastLearner learner, int port,
@@ -65,16 +72,32 @@ public class VoteMulticastWithNetty extends VoteMulticast{
 					ConstantPool.JESSY_NETTY_VOTING_PHASE_PORT, distributedJessy.manager.getAllReplicaGroup().allNodes());
 	}
 	
-	private void multiCast(Object obj, Collection<String> dest){
+	private void multiCast(VoteMessage voteMessage, Collection<String> dest){
 		for (String g:dest){
 			for (Integer swid:distributedJessy.manager.getMembership().group(g).allNodes()){
-				cManager.unicast(obj, swid);
+				unicast(voteMessage, swid, null);
 			}
 		}
 	}
 
+	private void unicast(VoteMessage voteMessage, int swid, String host){
+		if (batcher!=null)
+			batcher.send(voteMessage, swid, host);
+		else
+			send(voteMessage, swid, host);
+	}
+
+	public void send(Object message, int swid, String host){
+		if (host==null)
+			cManager.unicast(message, swid);
+		else
+			cManager.unicast(message, swid, host);
+	}
+
 	@Override
 	public void close() {
+		if (batcher!=null)
+			batcher.close();
 		if (cManager!=null)
 			cManager.close();
 		
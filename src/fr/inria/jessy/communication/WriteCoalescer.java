@@ -0,0 +1,132 @@
+package fr.inria.jessy.communication;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sourceforge.fractal.utils.PerformanceProbe.ValueRecorder;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.ChannelEvent;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelDownstreamHandler;
+
+/**
+ * The first handler of a client pipeline (i.e., the closest to the socket).
+ * Between {@link #cork()} and {@link #uncork()}, the frames produced by the
+ * encoder are kept aside, and they are written to the socket as a single
+ * buffer upon {@link #uncork()}, that is, with one system call instead of one
+ * per message.
+ * <p>
+ * Since Netty 3 fires downstream events in the thread writing to the channel,
+ * {@link #cork()}, the writes and {@link #uncork()} must be executed by the
+ * same thread, one thread at a time (see {@link UnicastConnection#flush()}).
+ * Frames are self-delimited with both codecs, hence the receiver is not aware
+ * of the coalescing.
+ *
+ * @author Masoud Saeida Ardekani
+ *
+ */
+public class WriteCoalescer extends SimpleChannelDownstreamHandler {
+
+	private static ValueRecorder messagesPerFlush, bytesPerFlush;
+
+	static {
+		// Performance measuring facilities
+
+		messagesPerFlush = new ValueRecorder(
+				"WriteCoalescer#messagesPerFlush");
+		messagesPerFlush.setFormat("%a");
+
+		bytesPerFlush = new ValueRecorder("WriteCoalescer#bytesPerFlush(bytes)");
+		bytesPerFlush.setFormat("%a");
+	}
+
+	private ChannelHandlerContext ctx;
+
+	private boolean corked;
+
+	private final List<ChannelBuffer> frames = new ArrayList<ChannelBuffer>();
+
+	private final List<ChannelFuture> futures = new ArrayList<ChannelFuture>();
+
+	/**
+	 * Number of bytes written by the last {@link #uncork()}.
+	 */
+	private int lastFlushSize;
+
+	@Override
+	public void handleDownstream(ChannelHandlerContext ctx, ChannelEvent e)
+			throws Exception {
+		this.ctx = ctx;
+		super.handleDownstream(ctx, e);
+	}
+
+	@Override
+	public void writeRequested(ChannelHandlerContext ctx, MessageEvent e)
+			throws Exception {
+		if (!corked || !(e.getMessage() instanceof ChannelBuffer)) {
+			super.writeRequested(ctx, e);
+			return;
+		}
+
+		frames.add((ChannelBuffer) e.getMessage());
+		futures.add(e.getFuture());
+	}
+
+	/**
+	 * Keeps the next frames aside until {@link #uncork()}.
+	 */
+	public void cork() {
+		corked = true;
+	}
+
+	/**
+	 * Writes the frames kept aside since {@link #cork()} as a single buffer.
+	 *
+	 * @return the number of frames written.
+	 */
+	public int uncork() {
+		corked = false;
+		lastFlushSize = 0;
+		if (frames.isEmpty())
+			return 0;
+
+		int count = frames.size();
+		ChannelBuffer buffer = count == 1 ? frames.get(0) : ChannelBuffers
+				.wrappedBuffer(frames.toArray(new ChannelBuffer[count]));
+		lastFlushSize = buffer.readableBytes();
+
+		messagesPerFlush.add(count);
+		bytesPerFlush.add(lastFlushSize);
+
+		final ChannelFuture[] written = futures
+				.toArray(new ChannelFuture[count]);
+		frames.clear();
+		futures.clear();
+
+		ChannelFuture future = Channels.future(ctx.getChannel());
+		future.addListener(new ChannelFutureListener() {
+			public void operationComplete(ChannelFuture future) {
+				for (ChannelFuture f : written) {
+					if (future.isSuccess())
+						f.setSuccess();
+					else
+						f.setFailure(future.getCause());
+				}
+			}
+		});
+		Channels.write(ctx, future, buffer);
+
+		return count;
+	}
+
+	public int getLastFlushSize() {
+		return lastFlushSize;
+	}
+
+}
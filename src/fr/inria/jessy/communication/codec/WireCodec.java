@@ -0,0 +1,148 @@
+package fr.inria.jessy.communication.codec;
+
+import java.lang.reflect.Constructor;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.handler.codec.serialization.ClassResolver;
+import org.jboss.netty.handler.codec.serialization.ClassResolvers;
+import org.jboss.netty.handler.codec.serialization.ObjectDecoder;
+import org.jboss.netty.handler.codec.serialization.ObjectEncoder;
+
+import fr.inria.jessy.ConstantPool;
+import fr.inria.jessy.communication.message.ReadReplyMessage;
+import fr.inria.jessy.communication.message.ReadRequestMessage;
+import fr.inria.jessy.communication.message.TerminateTransactionRequestMessage;
+import fr.inria.jessy.communication.message.TransactionHandlerMessage;
+import fr.inria.jessy.communication.message.VoteBatchMessage;
+import fr.inria.jessy.communication.message.VoteMessage;
+import fr.inria.jessy.store.EntitySet;
+import fr.inria.jessy.store.ReadReply;
+import fr.inria.jessy.store.ReadRequest;
+import fr.inria.jessy.store.ReadRequestKey;
+import fr.inria.jessy.transaction.ExecutionHistory;
+import fr.inria.jessy.transaction.TransactionHandler;
+import fr.inria.jessy.transaction.TransactionTouchedKeys;
+import fr.inria.jessy.transaction.termination.vote.Vote;
+import fr.inria.jessy.transaction.termination.vote.VotePiggyback;
+import fr.inria.jessy.utils.Configuration;
+import fr.inria.jessy.vector.CompactVector;
+import fr.inria.jessy.vector.ConcurrentVersionVector;
+import fr.inria.jessy.vector.DependenceVector;
+import fr.inria.jessy.vector.GMUVector;
+import fr.inria.jessy.vector.GMUVector2;
+import fr.inria.jessy.vector.LightScalarVector;
+import fr.inria.jessy.vector.NullVector;
+import fr.inria.jessy.vector.PartitionDependenceVector;
+import fr.inria.jessy.vector.PartitionedDependenceVector;
+import fr.inria.jessy.vector.ScalarVector;
+import fr.inria.jessy.vector.VersionVector;
+
+/**
+ * The codec used by the Netty pipelines of Jessy.
+ * <p>
+ * The <code>java</code> codec is Netty's {@link ObjectEncoder} and
+ * {@link ObjectDecoder}. The <code>binary</code> codec ({@link WireEncoder}
+ * and {@link WireDecoder}) calls the <code>writeExternal</code> and
+ * <code>readExternal</code> methods of Jessy messages with a compact
+ * {@link java.io.ObjectOutput}: integers are variable-length, and the classes
+ * of Jessy messages, entity sets, vectors, etc. are replaced by small tags.
+ * <p>
+ * Tags are given by the position of the class in {@link #REGISTERED_CLASSES}.
+ * Thus, {@link #VERSION} must be incremented whenever this list or the format
+ * changes.
+ *
+ * @author Masoud Saeida Ardekani
+ *
+ */
+public class WireCodec {
+
+	private static Logger logger = Logger.getLogger(WireCodec.class);
+
+	/**
+	 * Version of the binary format. It is written at the beginning of every
+	 * frame.
+	 */
+	public static final byte VERSION = 2;
+
+	private static final Class<?>[] REGISTERED_CLASSES = {
+			ReadRequestMessage.class, ReadReplyMessage.class,
+			VoteMessage.class, TerminateTransactionRequestMessage.class,
+			TransactionHandlerMessage.class, ReadRequest.class,
+			ReadReply.class, ReadRequestKey.class, Vote.class,
+			VotePiggyback.class, TransactionHandler.class,
+			ExecutionHistory.class, EntitySet.class,
+			TransactionTouchedKeys.class, CompactVector.class,
+			ScalarVector.class, LightScalarVector.class, VersionVector.class,
+			ConcurrentVersionVector.class, DependenceVector.class,
+			PartitionDependenceVector.class, GMUVector.class,
+			GMUVector2.class, NullVector.class,
+			PartitionedDependenceVector.class, VoteBatchMessage.class };
+
+	private static final Map<Class<?>, Integer> tags = new HashMap<Class<?>, Integer>();
+
+	private static final Map<Class<?>, Constructor<?>> constructors = new HashMap<Class<?>, Constructor<?>>();
+
+	private static final boolean binary;
+
+	/**
+	 * Resolves the classes decoded by the <code>java</code> codec. It is
+	 * shared by all the pipelines, thus it must be thread safe.
+	 */
+	private static final ClassResolver classResolver = ClassResolvers
+			.weakCachingConcurrentResolver(WireCodec.class.getClassLoader());
+
+	static {
+		for (int i = 0; i < REGISTERED_CLASSES.length; i++)
+			tags.put(REGISTERED_CLASSES[i], i);
+
+		String codec = Configuration.readConfig(ConstantPool.WIRE_CODEC);
+		binary = codec == null || !codec.trim().equals("java");
+		logger.info("Wire codec is : " + (binary ? "binary" : "java"));
+	}
+
+	/**
+	 * Adds the decoder and the encoder of the configured codec to the
+	 * pipeline.
+	 */
+	public static void addCodec(ChannelPipeline pipeline) {
+		if (binary) {
+			pipeline.addLast("decoder", new WireDecoder());
+			pipeline.addLast("encoder", new WireEncoder());
+		} else {
+			pipeline.addLast("decoder", new ObjectDecoder(classResolver));
+			pipeline.addLast("encoder", new ObjectEncoder());
+		}
+	}
+
+	/**
+	 * Returns the tag of the class, or null if it is not registered.
+	 */
+	static Integer tagOf(Class<?> c) {
+		return tags.get(c);
+	}
+
+	static Class<?> classOf(int tag) {
+		return REGISTERED_CLASSES[tag];
+	}
+
+	/**
+	 * Creates an instance of an {@link java.io.Externalizable} class with its
+	 * no-arg constructor, even if it is not public.
+	 */
+	static Object newInstance(Class<?> c) throws Exception {
+		Constructor<?> constructor;
+		synchronized (constructors) {
+			constructor = constructors.get(c);
+			if (constructor == null) {
+				constructor = c.getDeclaredConstructor();
+				constructor.setAccessible(true);
+				constructors.put(c, constructor);
+			}
+		}
+		return constructor.newInstance();
+	}
+
+}
@@ -0,0 +1,56 @@
+package fr.inria.jessy.communication.codec;
+
+import java.io.StreamCorruptedException;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.handler.codec.frame.FrameDecoder;
+import org.jboss.netty.handler.codec.frame.TooLongFrameException;
+
+import fr.inria.jessy.vector.VectorBaselines;
+
+/**
+ * Decodes the frames written by {@link WireEncoder}.
+ *
+ * @author Masoud Saeida Ardekani
+ *
+ */
+public class WireDecoder extends FrameDecoder {
+
+	private static final int MAX_FRAME_SIZE = 64 * 1024 * 1024;
+
+	private final VectorBaselines baselines = new VectorBaselines();
+
+	@Override
+	protected Object decode(ChannelHandlerContext ctx, Channel channel,
+			ChannelBuffer buffer) throws Exception {
+		if (buffer.readableBytes() < 4)
+			return null;
+
+		int length = buffer.getInt(buffer.readerIndex());
+		if (length <= 0 || length > MAX_FRAME_SIZE)
+			throw new TooLongFrameException("Invalid frame length " + length);
+
+		if (buffer.readableBytes() < length + 4)
+			return null;
+
+		buffer.skipBytes(4);
+		ChannelBuffer frame = buffer.readSlice(length);
+
+		byte version = frame.readByte();
+		if (version != WireCodec.VERSION)
+			throw new StreamCorruptedException("Unsupported wire format "
+					+ version);
+
+		try {
+			Object msg = new WireObjectInput(frame, baselines).readObject();
+			baselines.commit();
+			return msg;
+		} catch (Exception e) {
+			baselines.rollback();
+			throw e;
+		}
+	}
+
+}
@@ -0,0 +1,84 @@
+package fr.inria.jessy.communication.codec;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.sourceforge.fractal.utils.PerformanceProbe.ValueRecorder;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelEvent;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.handler.codec.oneone.OneToOneEncoder;
+
+import fr.inria.jessy.vector.VectorBaselines;
+
+/**
+ * Encodes a message into a frame: length of the frame (int), version of the
+ * format (byte), and the message written with a {@link WireObjectOutput}.
+ * <p>
+ * Vectors are delta-encoded against the {@link VectorBaselines} of the
+ * connection. Thus, messages are encoded and handed to the channel one at a
+ * time, in the order the decoder receives them.
+ * <p>
+ * Buffers are allocated by the buffer factory of the channel, with the size of
+ * the previous frame, so that they are rarely expanded.
+ *
+ * @author Masoud Saeida Ardekani
+ *
+ */
+public class WireEncoder extends OneToOneEncoder {
+
+	/**
+	 * Size of the frames, per message class.
+	 */
+	private static ConcurrentHashMap<Class<?>, ValueRecorder> frameSizes = new ConcurrentHashMap<Class<?>, ValueRecorder>();
+
+	private final VectorBaselines baselines = new VectorBaselines();
+
+	private int estimatedSize = 256;
+
+	@Override
+	public synchronized void handleDownstream(ChannelHandlerContext ctx,
+			ChannelEvent evt) throws Exception {
+		super.handleDownstream(ctx, evt);
+	}
+
+	@Override
+	protected Object encode(ChannelHandlerContext ctx, Channel channel,
+			Object msg) throws Exception {
+		ChannelBuffer buffer = ChannelBuffers.dynamicBuffer(estimatedSize, ctx
+				.getChannel().getConfig().getBufferFactory());
+		buffer.writeInt(0);
+		buffer.writeByte(WireCodec.VERSION);
+
+		try {
+			new WireObjectOutput(buffer, baselines).writeObject(msg);
+			baselines.commit();
+		} catch (Exception e) {
+			baselines.rollback();
+			throw e;
+		}
+
+		int size = buffer.writerIndex();
+		buffer.setInt(0, size - 4);
+		estimatedSize = size;
+		frameSizeOf(msg.getClass()).add(size);
+
+		return buffer;
+	}
+
+	private static ValueRecorder frameSizeOf(Class<?> messageClass) {
+		ValueRecorder recorder = frameSizes.get(messageClass);
+		if (recorder == null) {
+			ValueRecorder newRecorder = new ValueRecorder("WireEncoder#"
+					+ messageClass.getSimpleName() + "Size(bytes)");
+			newRecorder.setFormat("%a");
+			recorder = frameSizes.putIfAbsent(messageClass, newRecorder);
+			if (recorder == null)
+				recorder = newRecorder;
+		}
+		return recorder;
+	}
+
+}
@@ -0,0 +1,229 @@
+package fr.inria.jessy.communication.codec;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectInputStream;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBufferInputStream;
+
+import fr.inria.jessy.vector.VectorBaselines;
+
+/**
+ * The {@link ObjectInput} of the binary codec. It reads what
+ * {@link WireObjectOutput} wrote.
+ *
+ * @author Masoud Saeida Ardekani
+ *
+ */
+public class WireObjectInput implements ObjectInput, VectorBaselines.Holder {
+
+	private final ChannelBuffer buffer;
+
+	/**
+	 * Classes read by name in this frame, by index.
+	 */
+	private final List<Class<?>> classes = new ArrayList<Class<?>>();
+
+	private final VectorBaselines baselines;
+
+	public WireObjectInput(ChannelBuffer buffer, VectorBaselines baselines) {
+		this.buffer = buffer;
+		this.baselines = baselines;
+	}
+
+	public VectorBaselines getVectorBaselines() {
+		return baselines;
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public Object readObject() throws ClassNotFoundException, IOException {
+		byte tag = buffer.readByte();
+		switch (tag) {
+		case WireObjectOutput.NULL:
+			return null;
+		case WireObjectOutput.STRING:
+			return readUTF();
+		case WireObjectOutput.INTEGER:
+			return readInt();
+		case WireObjectOutput.LONG:
+			return readLong();
+		case WireObjectOutput.BOOLEAN:
+			return readBoolean();
+		case WireObjectOutput.UUID_TAG:
+			return new UUID(buffer.readLong(), buffer.readLong());
+		case WireObjectOutput.ENUM:
+			return ((Class<? extends Enum>) readClass()).getEnumConstants()[readInt()];
+		case WireObjectOutput.ARRAY_LIST: {
+			int size = readInt();
+			return readCollection(new ArrayList<Object>(size), size);
+		}
+		case WireObjectOutput.HASH_SET: {
+			int size = readInt();
+			return readCollection(new HashSet<Object>(size * 2), size);
+		}
+		case WireObjectOutput.HASH_MAP: {
+			int size = readInt();
+			Map<Object, Object> map = new HashMap<Object, Object>(size * 2);
+			for (int i = 0; i < size; i++)
+				map.put(readObject(), readObject());
+			return map;
+		}
+		case WireObjectOutput.REGISTERED:
+			return readExternalizable(WireCodec.classOf(readInt()));
+		case WireObjectOutput.EXTERNALIZABLE:
+			return readExternalizable(readClass());
+		case WireObjectOutput.SERIALIZABLE: {
+			int length = buffer.readInt();
+			ObjectInputStream in = new ObjectInputStream(
+					new ChannelBufferInputStream(buffer.readSlice(length)));
+			return in.readObject();
+		}
+		default:
+			throw new StreamCorruptedException("Unknown tag " + tag);
+		}
+	}
+
+	private Object readExternalizable(Class<?> c) throws IOException,
+			ClassNotFoundException {
+		Externalizable obj;
+		try {
+			obj = (Externalizable) WireCodec.newInstance(c);
+		} catch (Exception e) {
+			throw new IOException("Cannot instantiate " + c.getName(), e);
+		}
+		obj.readExternal(this);
+		return obj;
+	}
+
+	private Collection<Object> readCollection(Collection<Object> collection,
+			int size) throws ClassNotFoundException, IOException {
+		for (int i = 0; i < size; i++)
+			collection.add(readObject());
+		return collection;
+	}
+
+	private Class<?> readClass() throws ClassNotFoundException, IOException {
+		int index = readInt();
+		if (index > 0)
+			return classes.get(index - 1);
+
+		Class<?> c = Class.forName(readUTF());
+		classes.add(c);
+		return c;
+	}
+
+	public int read() {
+		return buffer.readable() ? buffer.readUnsignedByte() : -1;
+	}
+
+	public int read(byte[] b) {
+		return read(b, 0, b.length);
+	}
+
+	public int read(byte[] b, int off, int len) {
+		if (!buffer.readable())
+			return -1;
+		len = Math.min(len, buffer.readableBytes());
+		buffer.readBytes(b, off, len);
+		return len;
+	}
+
+	public long skip(long n) {
+		int skipped = (int) Math.min(n, buffer.readableBytes());
+		buffer.skipBytes(skipped);
+		return skipped;
+	}
+
+	public int available() {
+		return buffer.readableBytes();
+	}
+
+	public void readFully(byte[] b) {
+		buffer.readBytes(b);
+	}
+
+	public void readFully(byte[] b, int off, int len) {
+		buffer.readBytes(b, off, len);
+	}
+
+	public int skipBytes(int n) {
+		return (int) skip(n);
+	}
+
+	public boolean readBoolean() {
+		return buffer.readByte() != 0;
+	}
+
+	public byte readByte() {
+		return buffer.readByte();
+	}
+
+	public int readUnsignedByte() {
+		return buffer.readUnsignedByte();
+	}
+
+	public short readShort() {
+		return buffer.readShort();
+	}
+
+	public int readUnsignedShort() {
+		return buffer.readUnsignedShort();
+	}
+
+	public char readChar() {
+		return buffer.readChar();
+	}
+
+	public int readInt() {
+		long v = readVarLong();
+		return (int) ((v >>> 1) ^ -(v & 1));
+	}
+
+	public long readLong() {
+		long v = readVarLong();
+		return (v >>> 1) ^ -(v & 1);
+	}
+
+	public float readFloat() {
+		return buffer.readFloat();
+	}
+
+	public double readDouble() {
+		return buffer.readDouble();
+	}
+
+	@Deprecated
+	public String readLine() {
+		throw new UnsupportedOperationException();
+	}
+
+	public String readUTF() throws IOException {
+		byte[] bytes = new byte[readInt()];
+		buffer.readBytes(bytes);
+		return new String(bytes, "UTF-8");
+	}
+
+	public void close() {
+	}
+
+	private long readVarLong() {
+		long result = 0;
+		for (int shift = 0;; shift += 7) {
+			byte b = buffer.readByte();
+			result |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return result;
+		}
+	}
+
+}
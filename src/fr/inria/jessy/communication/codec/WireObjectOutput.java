@@ -0,0 +1,228 @@
+package fr.inria.jessy.communication.codec;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutput;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.UUID;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBufferOutputStream;
+
+import fr.inria.jessy.vector.VectorBaselines;
+
+/**
+ * The {@link ObjectOutput} of the binary codec. It writes into a
+ * {@link ChannelBuffer}.
+ * <p>
+ * Integers are written with a variable length (zigzag encoding). Objects are
+ * preceded by a one byte tag. {@link Externalizable} objects are written with
+ * their <code>writeExternal</code> method, and their class is written either
+ * as a registered tag (see {@link WireCodec}) or as a name the first time it
+ * appears in the frame, and as an index afterward. Other objects fall back to
+ * Java serialization. Vectors are delta-encoded against the baselines of the
+ * connection (see {@link VectorBaselines}).
+ *
+ * @author Masoud Saeida Ardekani
+ *
+ */
+public class WireObjectOutput implements ObjectOutput, VectorBaselines.Holder {
+
+	static final byte NULL = 0;
+	static final byte STRING = 1;
+	static final byte INTEGER = 2;
+	static final byte LONG = 3;
+	static final byte BOOLEAN = 4;
+	static final byte UUID_TAG = 5;
+	static final byte ENUM = 6;
+	static final byte ARRAY_LIST = 7;
+	static final byte HASH_SET = 8;
+	static final byte HASH_MAP = 9;
+	static final byte REGISTERED = 10;
+	static final byte EXTERNALIZABLE = 11;
+	static final byte SERIALIZABLE = 12;
+
+	private final ChannelBuffer buffer;
+
+	/**
+	 * Classes written by name in this frame, with their index.
+	 */
+	private final Map<Class<?>, Integer> classes = new HashMap<Class<?>, Integer>();
+
+	private final VectorBaselines baselines;
+
+	public WireObjectOutput(ChannelBuffer buffer, VectorBaselines baselines) {
+		this.buffer = buffer;
+		this.baselines = baselines;
+	}
+
+	public VectorBaselines getVectorBaselines() {
+		return baselines;
+	}
+
+	@SuppressWarnings("rawtypes")
+	public void writeObject(Object obj) throws IOException {
+		if (obj == null) {
+			buffer.writeByte(NULL);
+			return;
+		}
+
+		Class<?> c = obj.getClass();
+		if (c == String.class) {
+			buffer.writeByte(STRING);
+			writeUTF((String) obj);
+		} else if (c == Integer.class) {
+			buffer.writeByte(INTEGER);
+			writeInt((Integer) obj);
+		} else if (c == Long.class) {
+			buffer.writeByte(LONG);
+			writeLong((Long) obj);
+		} else if (c == Boolean.class) {
+			buffer.writeByte(BOOLEAN);
+			writeBoolean((Boolean) obj);
+		} else if (c == UUID.class) {
+			buffer.writeByte(UUID_TAG);
+			buffer.writeLong(((UUID) obj).getMostSignificantBits());
+			buffer.writeLong(((UUID) obj).getLeastSignificantBits());
+		} else if (obj instanceof Enum) {
+			buffer.writeByte(ENUM);
+			writeClass(((Enum) obj).getDeclaringClass());
+			writeInt(((Enum) obj).ordinal());
+		} else if (c == ArrayList.class) {
+			buffer.writeByte(ARRAY_LIST);
+			writeCollection((Collection) obj);
+		} else if (c == HashSet.class) {
+			buffer.writeByte(HASH_SET);
+			writeCollection((Collection) obj);
+		} else if (c == HashMap.class) {
+			buffer.writeByte(HASH_MAP);
+			Map<?, ?> map = (Map<?, ?>) obj;
+			writeInt(map.size());
+			for (Map.Entry<?, ?> entry : map.entrySet()) {
+				writeObject(entry.getKey());
+				writeObject(entry.getValue());
+			}
+		} else if (obj instanceof Externalizable) {
+			Integer tag = WireCodec.tagOf(c);
+			if (tag != null) {
+				buffer.writeByte(REGISTERED);
+				writeInt(tag);
+			} else {
+				buffer.writeByte(EXTERNALIZABLE);
+				writeClass(c);
+			}
+			((Externalizable) obj).writeExternal(this);
+		} else if (obj instanceof Serializable) {
+			buffer.writeByte(SERIALIZABLE);
+			int lengthIndex = buffer.writerIndex();
+			buffer.writeInt(0);
+			ObjectOutputStream out = new ObjectOutputStream(
+					new ChannelBufferOutputStream(buffer));
+			out.writeObject(obj);
+			out.flush();
+			buffer.setInt(lengthIndex, buffer.writerIndex() - lengthIndex - 4);
+		} else {
+			throw new NotSerializableException(c.getName());
+		}
+	}
+
+	private void writeCollection(Collection<?> collection) throws IOException {
+		writeInt(collection.size());
+		for (Object o : collection)
+			writeObject(o);
+	}
+
+	private void writeClass(Class<?> c) throws IOException {
+		Integer index = classes.get(c);
+		if (index != null) {
+			writeInt(index + 1);
+		} else {
+			writeInt(0);
+			writeUTF(c.getName());
+			classes.put(c, classes.size());
+		}
+	}
+
+	public void write(int b) {
+		buffer.writeByte(b);
+	}
+
+	public void write(byte[] b) {
+		buffer.writeBytes(b);
+	}
+
+	public void write(byte[] b, int off, int len) {
+		buffer.writeBytes(b, off, len);
+	}
+
+	public void writeBoolean(boolean v) {
+		buffer.writeByte(v ? 1 : 0);
+	}
+
+	public void writeByte(int v) {
+		buffer.writeByte(v);
+	}
+
+	public void writeShort(int v) {
+		buffer.writeShort(v);
+	}
+
+	public void writeChar(int v) {
+		buffer.writeChar(v);
+	}
+
+	public void writeInt(int v) {
+		// The zigzag value is unsigned, thus it must not be sign-extended.
+		writeVarLong(((v << 1) ^ (v >> 31)) & 0xFFFFFFFFL);
+	}
+
+	public void writeLong(long v) {
+		writeVarLong((v << 1) ^ (v >> 63));
+	}
+
+	public void writeFloat(float v) {
+		buffer.writeFloat(v);
+	}
+
+	public void writeDouble(double v) {
+		buffer.writeDouble(v);
+	}
+
+	public void writeBytes(String s) {
+		for (int i = 0; i < s.length(); i++)
+			buffer.writeByte(s.charAt(i));
+	}
+
+	public void writeChars(String s) {
+		for (int i = 0; i < s.length(); i++)
+			buffer.writeChar(s.charAt(i));
+	}
+
+	public void writeUTF(String s) throws IOException {
+		byte[] bytes = s.getBytes("UTF-8");
+		writeInt(bytes.length);
+		buffer.writeBytes(bytes);
+	}
+
+	public void flush() {
+	}
+
+	public void close() {
+	}
+
+	private void writeVarLong(long v) {
+		while ((v & ~0x7FL) != 0) {
+			buffer.writeByte((int) ((v & 0x7F) | 0x80));
+			v >>>= 7;
+		}
+		buffer.writeByte((int) v);
+	}
+
+}
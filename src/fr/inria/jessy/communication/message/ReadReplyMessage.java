@@ -10,6 +10,7 @@ import net.sourceforge.fractal.multicast.MulticastMessage;
 import fr.inria.jessy.ConstantPool;
 import fr.inria.jessy.store.JessyEntity;
 import fr.inria.jessy.store.ReadReply;
+import fr.inria.jessy.vector.VectorBaselines;
 
 
 public class ReadReplyMessage<E extends JessyEntity> extends MulticastMessage {
@@ -27,6 +28,15 @@ public class ReadReplyMessage<E extends JessyEntity> extends MulticastMessage {
 		replies = r;
 	}
 
+	/**
+	 * @param source
+	 *            the swid of the replica sending the replies.
+	 */
+	public ReadReplyMessage(List<ReadReply<E>> r, int source) {
+		this(r);
+		this.source = source;
+	}
+
 
 	public List<ReadReply<E>> getReadReplies() {
 		return replies;
@@ -44,7 +54,12 @@ public class ReadReplyMessage<E extends JessyEntity> extends MulticastMessage {
 		swid = (String)in.readObject();
 		dest = (Collection<String>) in.readObject();
 		gSource = (String)in.readObject();
-		replies = (List<ReadReply<E>>) in.readObject();
+		VectorBaselines previous = VectorBaselines.open();
+		try {
+			replies = (List<ReadReply<E>>) in.readObject();
+		} finally {
+			VectorBaselines.close(previous);
+		}
 	}
 	
 	@Override
@@ -53,7 +68,13 @@ public class ReadReplyMessage<E extends JessyEntity> extends MulticastMessage {
 		out.writeObject(swid);
 	    out.writeObject(dest);
 	    out.writeObject(gSource);
-		out.writeObject(replies);
+		// The vectors of the replies are delta-encoded against each other.
+		VectorBaselines previous = VectorBaselines.open();
+		try {
+			out.writeObject(replies);
+		} finally {
+			VectorBaselines.close(previous);
+		}
 	}
 	
 }
\ No newline at end of file
@@ -0,0 +1,106 @@
+package fr.inria.jessy.communication.message;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+import net.sourceforge.fractal.wanamcast.WanAMCastMessage;
+import fr.inria.jessy.ConstantPool;
+import fr.inria.jessy.communication.TerminationBatcher;
+import fr.inria.jessy.transaction.ExecutionHistory;
+import fr.inria.jessy.vector.VectorBaselines;
+
+/**
+ * Several transactions of the same proxy, sent to the same groups, cast as a
+ * single message (see {@link TerminationBatcher}). Upon delivery, the batch
+ * is unpacked into one {@link TerminateTransactionRequestMessage} per
+ * transaction, delivered in the order of the batch.
+ *
+ * @author Masoud Saeida Ardekani
+ *
+ */
+public class TerminateTransactionBatchMessage extends WanAMCastMessage {
+
+	private static final long serialVersionUID = ConstantPool.JESSY_MID;
+
+	/**
+	 * The time the batch has been cast by the proxy, given to each of its
+	 * transactions.
+	 */
+	public long startCastingTime;
+
+	// For Fractal
+	public TerminateTransactionBatchMessage() {
+		super(null, null, null, -1);
+	}
+
+	public TerminateTransactionBatchMessage(List<ExecutionHistory> batch,
+			Collection<String> dest, String gSource, int source) {
+		super(new ArrayList<ExecutionHistory>(batch), dest, gSource, source);
+		startCastingTime = System.currentTimeMillis();
+	}
+
+	@SuppressWarnings("unchecked")
+	public List<ExecutionHistory> getExecutionHistories() {
+		return (List<ExecutionHistory>) serializable;
+	}
+
+	/**
+	 * Returns the id of the first transaction of the batch, which identifies
+	 * the batch.
+	 */
+	public UUID getId() {
+		return getExecutionHistories().get(0).getTransactionHandler().getId();
+	}
+
+	/**
+	 * Unpacks the batch into one message per transaction.
+	 */
+	public List<TerminateTransactionRequestMessage> getTerminateTransactionRequestMessages() {
+		List<ExecutionHistory> batch = getExecutionHistories();
+		List<TerminateTransactionRequestMessage> result = new ArrayList<TerminateTransactionRequestMessage>(
+				batch.size());
+		for (ExecutionHistory eh : batch) {
+			TerminateTransactionRequestMessage msg = new TerminateTransactionRequestMessage(
+					eh, dest, gSource, source);
+			msg.startCastingTime = startCastingTime;
+			result.add(msg);
+		}
+		return result;
+	}
+
+	@Override
+	public void readExternal(ObjectInput in) throws IOException,
+			ClassNotFoundException {
+		VectorBaselines previous = VectorBaselines.open();
+		try {
+			super.readExternal(in);
+		} finally {
+			VectorBaselines.close(previous);
+		}
+		startCastingTime = in.readLong();
+	}
+
+	@Override
+	public void writeExternal(ObjectOutput out) throws IOException {
+		// The vectors of all the execution histories of the batch are
+		// delta-encoded against each other.
+		VectorBaselines previous = VectorBaselines.open();
+		try {
+			super.writeExternal(out);
+		} finally {
+			VectorBaselines.close(previous);
+		}
+		out.writeLong(startCastingTime);
+	}
+
+	public String toString() {
+		return "batch of " + getExecutionHistories().size() + " from "
+				+ getId();
+	}
+
+}
@@ -8,6 +8,7 @@ import java.util.Collection;
 import net.sourceforge.fractal.wanamcast.WanAMCastMessage;
 import fr.inria.jessy.ConstantPool;
 import fr.inria.jessy.transaction.ExecutionHistory;
+import fr.inria.jessy.vector.VectorBaselines;
 
 public class TerminateTransactionRequestMessage extends WanAMCastMessage{
 
@@ -34,13 +35,25 @@ public class TerminateTransactionRequestMessage extends WanAMCastMessage{
 	@Override
 	public void readExternal(ObjectInput in) throws IOException,
 			ClassNotFoundException {
-		super.readExternal(in);
+		VectorBaselines previous = VectorBaselines.open();
+		try {
+			super.readExternal(in);
+		} finally {
+			VectorBaselines.close(previous);
+		}
 		startCastingTime = in.readLong();
 	}
 
 	@Override
 	public void writeExternal(ObjectOutput out) throws IOException {
-		super.writeExternal(out);
+		// The vectors of the execution history are delta-encoded against each
+		// other.
+		VectorBaselines previous = VectorBaselines.open();
+		try {
+			super.writeExternal(out);
+		} finally {
+			VectorBaselines.close(previous);
+		}
 		out.writeLong(startCastingTime);
 	}
 
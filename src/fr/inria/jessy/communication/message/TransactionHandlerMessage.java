@@ -3,7 +3,9 @@ package fr.inria.jessy.communication.message;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 
 import net.sourceforge.fractal.wanamcast.WanAMCastMessage;
@@ -33,6 +35,28 @@ public class TransactionHandlerMessage extends WanAMCastMessage{
 		keys=eh.getTransactionTouchedKeys();
 	}	
 
+	/**
+	 * Creates the message am-cast for a {@link TerminateTransactionBatchMessage}.
+	 * It carries the id of the batch, and the keys touched by any transaction of the batch.
+	 */
+	public TransactionHandlerMessage(List<ExecutionHistory> batch, Collection<String> dest, String gSource, int source){
+		super(batch.get(0).getTransactionHandler().getId().toString(), dest, gSource,source);
+		keys=batch.get(0).getTransactionTouchedKeys();
+		for (int i=1; i<batch.size(); i++){
+			TransactionTouchedKeys other=batch.get(i).getTransactionTouchedKeys();
+			keys.readKeys=union(keys.readKeys, other.readKeys);
+			keys.writeKeys=union(keys.writeKeys, other.writeKeys);
+			keys.createKeys=union(keys.createKeys, other.createKeys);
+		}
+	}
+
+	private static ArrayList<String> union(ArrayList<String> keys1, ArrayList<String> keys2){
+		if (keys1==null || keys2==null)
+			return (keys1==null) ? keys2 : keys1;
+		keys1.addAll(keys2);
+		return keys1;
+	}
+
 	/**
 	 * Return true if this message commute with the given message.
 	 * <p>
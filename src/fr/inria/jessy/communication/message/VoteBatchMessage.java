@@ -0,0 +1,58 @@
+package fr.inria.jessy.communication.message;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.ArrayList;
+import java.util.List;
+
+import fr.inria.jessy.ConstantPool;
+import fr.inria.jessy.communication.VoteBatcher;
+
+/**
+ * Several {@link VoteMessage}s sent to the same replica in a single write
+ * (see {@link VoteBatcher}).
+ *
+ * @author Masoud Saeida Ardekani
+ *
+ */
+public class VoteBatchMessage implements Externalizable {
+
+	private static final long serialVersionUID = ConstantPool.JESSY_MID;
+
+	private List<VoteMessage> voteMessages;
+
+	// For Externalizable
+	public VoteBatchMessage() {
+	}
+
+	public VoteBatchMessage(List<VoteMessage> voteMessages) {
+		this.voteMessages = voteMessages;
+	}
+
+	public List<VoteMessage> getVoteMessages() {
+		return voteMessages;
+	}
+
+	@Override
+	public void writeExternal(ObjectOutput out) throws IOException {
+		out.writeInt(voteMessages.size());
+		for (VoteMessage voteMessage : voteMessages)
+			out.writeObject(voteMessage);
+	}
+
+	@Override
+	public void readExternal(ObjectInput in) throws IOException,
+			ClassNotFoundException {
+		int size = in.readInt();
+		voteMessages = new ArrayList<VoteMessage>(size);
+		for (int i = 0; i < size; i++)
+			voteMessages.add((VoteMessage) in.readObject());
+	}
+
+	public String toString() {
+		return voteMessages.toString();
+	}
+
+}
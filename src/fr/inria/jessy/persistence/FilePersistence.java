@@ -5,9 +5,12 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.util.Collection;
 
 import fr.inria.jessy.communication.JessyGroupManager;
 import fr.inria.jessy.protocol.ProtocolFactory;
+import fr.inria.jessy.store.DataStore;
+import fr.inria.jessy.store.VersionChain;
 import fr.inria.jessy.vector.GMUVector2;
 import fr.inria.jessy.vector.ScalarVector;
 import fr.inria.jessy.vector.VersionVector;
@@ -18,6 +21,13 @@ import fr.inria.jessy.vector.VersionVector;
  * Data are stored and loaded from the following path:
  * [path]\number_of_groups\consistency\groupIndex_objectName
  * 
+ * The versions of a data store can be written in a {@link SnapshotFile}
+ * instead, which is much faster to load.
+ * 
+ * If the write ahead log is used, objects are appended to the log instead,
+ * and the last value of each object is loaded back from the log (see
+ * {@link WriteAheadLog}).
+ * 
  * @author Masoud Saeida Ardekani
  * 
  */
@@ -26,8 +36,15 @@ public class FilePersistence {
 	public static boolean saveToDisk=false;
 	public static boolean loadFromDisk=false;
 	
+	public static boolean useWriteAheadLog=false;
+	
 	public static String storageDirectory="";
 
+	/**
+	 * The write ahead log of this replica, or null if it is not used.
+	 */
+	public static WriteAheadLog writeAheadLog;
+
 	public static void makeStorageDirectory(JessyGroupManager m, String path) {
 		if (!path.endsWith("/"))
 			path = path + "/";
@@ -49,7 +66,36 @@ public class FilePersistence {
 		System.out.println("Storage Director is " + storageDirectory);
 	}
 
+	/**
+	 * Recovers the data store and the objects from the write ahead log if
+	 * {@link #loadFromDisk} is set, and starts logging.
+	 */
+	public static void openWriteAheadLog(DataStore dataStore) {
+		try {
+			writeAheadLog = new WriteAheadLog(storageDirectory);
+			if (loadFromDisk)
+				writeAheadLog.recover(dataStore);
+			writeAheadLog.start();
+		} catch (Exception ex) {
+			ex.printStackTrace();
+		}
+	}
+
+	/**
+	 * Waits until every record appended to the write ahead log is on disk, and
+	 * closes it.
+	 */
+	public static void close() {
+		if (writeAheadLog != null)
+			writeAheadLog.close();
+	}
+
 	public static void writeObject(Object object, String objectName) {
+		if (writeAheadLog != null) {
+			writeAheadLog.logObject(objectName, object);
+			return;
+		}
+		
 		if (!saveToDisk)
 			return;
 		
@@ -69,6 +115,9 @@ public class FilePersistence {
 	public static Object readObject(String objectName) {
 		if (!loadFromDisk)
 			return null;
+		
+		if (writeAheadLog != null)
+			return writeAheadLog.getRecoveredObject(objectName);
 			
 		String filePath = storageDirectory + objectName;
 		File file = new File(filePath);
@@ -92,4 +141,34 @@ public class FilePersistence {
 		}
 	}
 
+	public static void writeSnapshot(Collection<? extends VersionChain<?>> chains, String snapshotName) {
+		if (!saveToDisk)
+			return;
+
+		try {
+			SnapshotFile.write(storageDirectory + snapshotName, chains, Runtime
+					.getRuntime().availableProcessors());
+			System.out.println("Wrote " + snapshotName + " successfully.");
+		} catch (Exception ex) {
+			ex.printStackTrace();
+		}
+	}
+
+	/**
+	 * Puts the versions of the snapshot in the data store.
+	 * 
+	 * @return false if the snapshot could not be loaded.
+	 */
+	public static boolean readSnapshot(DataStore dataStore, String snapshotName) {
+		if (!loadFromDisk)
+			return false;
+
+		try {
+			return SnapshotFile.load(storageDirectory + snapshotName, dataStore);
+		} catch (Exception ex) {
+			ex.printStackTrace();
+			return false;
+		}
+	}
+
 }
@@ -0,0 +1,234 @@
+package fr.inria.jessy.persistence;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+import net.sourceforge.fractal.utils.ExecutorPool;
+import net.sourceforge.fractal.utils.PerformanceProbe.ValueRecorder;
+
+import org.apache.log4j.Logger;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+
+import fr.inria.jessy.communication.codec.WireObjectInput;
+import fr.inria.jessy.communication.codec.WireObjectOutput;
+import fr.inria.jessy.store.DataStore;
+import fr.inria.jessy.store.JessyEntity;
+import fr.inria.jessy.store.VersionChain;
+
+/**
+ * A binary snapshot of the versions of a data store.
+ * <p>
+ * Keys are hashed into partitions, and the versions of each partition are
+ * encoded with the binary codec ({@link WireObjectOutput}). The chains are
+ * traversed once: each version is encoded into the buffer of its partition,
+ * and a buffer is appended to the file as a chunk whenever it is full. The
+ * file is: magic number (int), format (int), number of partitions (int), then
+ * the chunks. A chunk is: partition (int), length (int) and payload. Upon
+ * loading, the chunks of every partition are memory-mapped and decoded by
+ * their own thread. Since all the versions of a key are in the same
+ * partition, they are put back in the data store in the same order.
+ *
+ * @author Masoud Saeida Ardekani
+ *
+ */
+public class SnapshotFile {
+
+	private static Logger logger = Logger.getLogger(SnapshotFile.class);
+
+	private static ValueRecorder loadTime;
+
+	static {
+		// Performance measuring facilities
+
+		loadTime = new ValueRecorder("SnapshotFile#loadTime(ms)");
+		loadTime.setFormat("%t");
+	}
+
+	private static final int MAGIC = 0x4A53534E;
+
+	private static final int FORMAT = 2;
+
+	private static final int HEADER_SIZE = 12;
+
+	private static final int CHUNK_HEADER_SIZE = 8;
+
+	/**
+	 * Size above which the buffer of a partition is appended to the file.
+	 */
+	private static final int CHUNK_SIZE = 64 * 1024;
+
+	/**
+	 * Writes all the versions of the chains to the file.
+	 */
+	public static void write(String filePath,
+			Collection<? extends VersionChain<?>> chains, int partitions)
+			throws IOException {
+		File file = new File(filePath);
+		File tmp = new File(filePath + ".tmp");
+
+		RandomAccessFile raf = new RandomAccessFile(tmp, "rw");
+		try {
+			raf.setLength(0);
+			FileChannel channel = raf.getChannel();
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC);
+			header.putInt(FORMAT);
+			header.putInt(partitions);
+			header.flip();
+			channel.write(header);
+
+			/*
+			 * Vectors are not delta-encoded, thus there are no baselines. Each
+			 * partition has its own output, since the classes written by name
+			 * are indexed per output.
+			 */
+			ChannelBuffer[] buffers = new ChannelBuffer[partitions];
+			WireObjectOutput[] outputs = new WireObjectOutput[partitions];
+			for (int p = 0; p < partitions; p++) {
+				buffers[p] = ChannelBuffers.dynamicBuffer(CHUNK_SIZE);
+				outputs[p] = new WireObjectOutput(buffers[p], null);
+			}
+
+			for (VersionChain<?> chain : chains) {
+				List<?> versions = chain.getAll();
+				if (versions.isEmpty())
+					continue;
+
+				int p = partitionOf(((JessyEntity) versions.get(0)).getKey(),
+						partitions);
+				for (Object entity : versions)
+					outputs[p].writeObject(entity);
+
+				if (buffers[p].readableBytes() >= CHUNK_SIZE)
+					writeChunk(channel, p, buffers[p]);
+			}
+
+			for (int p = 0; p < partitions; p++) {
+				outputs[p].writeObject(null);
+				writeChunk(channel, p, buffers[p]);
+			}
+
+			channel.force(true);
+		} finally {
+			raf.close();
+		}
+
+		file.delete();
+		if (!tmp.renameTo(file))
+			throw new IOException("Cannot rename " + tmp + " to " + file);
+	}
+
+	private static void writeChunk(FileChannel channel, int partition,
+			ChannelBuffer buffer) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(CHUNK_HEADER_SIZE);
+		header.putInt(partition);
+		header.putInt(buffer.readableBytes());
+		header.flip();
+		channel.write(header);
+
+		while (buffer.readable())
+			buffer.readBytes(channel, buffer.readableBytes());
+		buffer.clear();
+	}
+
+	/**
+	 * Puts all the versions of the snapshot in the data store. Partitions are
+	 * decoded in parallel, thus the data store must support concurrent
+	 * {@link DataStore#put(JessyEntity)}.
+	 *
+	 * @return false if the file does not exist.
+	 */
+	public static boolean load(String filePath, final DataStore dataStore)
+			throws Exception {
+		File file = new File(filePath);
+		if (!file.exists())
+			return false;
+
+		long start = System.currentTimeMillis();
+
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+		try {
+			FileChannel channel = raf.getChannel();
+
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					HEADER_SIZE);
+			if (header.getInt() != MAGIC || header.getInt() != FORMAT)
+				throw new IOException(file + " is not a snapshot file.");
+			int partitions = header.getInt();
+
+			List<List<ByteBuffer>> chunks = new ArrayList<List<ByteBuffer>>(
+					partitions);
+			for (int p = 0; p < partitions; p++)
+				chunks.add(new ArrayList<ByteBuffer>());
+
+			long position = HEADER_SIZE;
+			ByteBuffer chunkHeader = ByteBuffer.allocate(CHUNK_HEADER_SIZE);
+			while (position < channel.size()) {
+				chunkHeader.clear();
+				channel.read(chunkHeader, position);
+				chunkHeader.flip();
+				int partition = chunkHeader.getInt();
+				int length = chunkHeader.getInt();
+				position += CHUNK_HEADER_SIZE;
+
+				chunks.get(partition).add(
+						channel.map(FileChannel.MapMode.READ_ONLY, position,
+								length));
+				position += length;
+			}
+
+			for (List<ByteBuffer> partition : chunks) {
+				final ChannelBuffer region = ChannelBuffers
+						.wrappedBuffer(partition.toArray(new ByteBuffer[partition
+								.size()]));
+
+				results.add(ExecutorPool.getInstance().submit(
+						new Callable<Integer>() {
+							public Integer call() throws Exception {
+								return loadRegion(region, dataStore);
+							}
+						}));
+			}
+		} finally {
+			// Mappings remain valid once the file is closed.
+			raf.close();
+		}
+
+		int count = 0;
+		for (Future<Integer> result : results)
+			count += result.get();
+
+		loadTime.add(System.currentTimeMillis() - start);
+		logger.info("Loaded " + count + " versions from " + file + " in "
+				+ (System.currentTimeMillis() - start) + " ms");
+		return true;
+	}
+
+	private static int loadRegion(ChannelBuffer region, DataStore dataStore)
+			throws IOException, ClassNotFoundException {
+		WireObjectInput in = new WireObjectInput(region, null);
+		int count = 0;
+		Object entity;
+		while ((entity = in.readObject()) != null) {
+			dataStore.put((JessyEntity) entity);
+			count++;
+		}
+		return count;
+	}
+
+	private static int partitionOf(String key, int partitions) {
+		return (key.hashCode() & Integer.MAX_VALUE) % partitions;
+	}
+
+}
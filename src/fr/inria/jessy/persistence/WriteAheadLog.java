@@ -0,0 +1,675 @@
+package fr.inria.jessy.persistence;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import net.sourceforge.fractal.utils.ExecutorPool;
+import net.sourceforge.fractal.utils.PerformanceProbe.ValueRecorder;
+
+import org.apache.log4j.Logger;
+
+import fr.inria.jessy.ConstantPool;
+import fr.inria.jessy.store.DataStore;
+import fr.inria.jessy.store.JessyEntity;
+import fr.inria.jessy.utils.Configuration;
+
+/**
+ * An append-only log of the entities applied to the data store and of the
+ * objects given to {@link FilePersistence#writeObject(Object, String)} (e.g.,
+ * the static members of the vectors).
+ * <p>
+ * Records are appended to memory-mapped segment files named
+ * <code>[storageDirectory]wal.[segment]</code>. A single thread writes the
+ * pending records and forces the segment to disk once per batch (group
+ * commit). A record is: length of the payload (int), CRC32 of the payload
+ * (int), type (byte) and payload. Callers that must not act upon a record
+ * before it is on disk either wait on its log sequence number with
+ * {@link #sync(long)}, or give the action to
+ * {@link #whenDurable(long, Runnable)}, which does not block.
+ * <p>
+ * Periodically, the closed segments are folded into an incremental
+ * checkpoint named <code>[storageDirectory]checkpoint.[segment]</code> that
+ * only contains the last version of each entity and the last value of each
+ * object. The folded segments are then deleted. Upon recovery, checkpoints are
+ * loaded first, and only the remaining segments are replayed.
+ *
+ * @author Masoud Saeida Ardekani
+ *
+ */
+public class WriteAheadLog implements Runnable {
+
+	private static Logger logger = Logger.getLogger(WriteAheadLog.class);
+
+	private static ValueRecorder batchSize;
+
+	private static ValueRecorder syncLatency;
+
+	private static ValueRecorder checkpointLatency;
+
+	private static ValueRecorder recoveryTime;
+
+	static {
+		// Performance measuring facilities
+
+		batchSize = new ValueRecorder("WriteAheadLog#batchSize");
+		batchSize.setFormat("%a");
+
+		syncLatency = new ValueRecorder("WriteAheadLog#syncLatency(ms)");
+		syncLatency.setFormat("%a");
+
+		checkpointLatency = new ValueRecorder(
+				"WriteAheadLog#checkpointLatency(ms)");
+		checkpointLatency.setFormat("%a");
+
+		recoveryTime = new ValueRecorder("WriteAheadLog#recoveryTime(ms)");
+		recoveryTime.setFormat("%t");
+	}
+
+	private static final byte ENTITIES_RECORD = 1;
+
+	private static final byte OBJECT_RECORD = 2;
+
+	private static final int RECORD_HEADER_SIZE = 9;
+
+	private static final String SEGMENT_PREFIX = "wal.";
+
+	private static final String CHECKPOINT_PREFIX = "checkpoint.";
+
+	private static class DurabilityTask {
+		final long lsn;
+		final Runnable task;
+
+		DurabilityTask(long lsn, Runnable task) {
+			this.lsn = lsn;
+			this.task = task;
+		}
+	}
+
+	private static class Record {
+		final long lsn;
+		final byte type;
+		final byte[] payload;
+
+		Record(long lsn, byte type, byte[] payload) {
+			this.lsn = lsn;
+			this.type = type;
+			this.payload = payload;
+		}
+	}
+
+	/**
+	 * The content of a checkpoint: last version of each entity, and last value
+	 * of each object.
+	 */
+	private static class Checkpoint {
+		HashMap<String, JessyEntity> entities = new HashMap<String, JessyEntity>();
+		HashMap<String, Object> objects = new HashMap<String, Object>();
+	}
+
+	private final File directory;
+
+	private final String prefix;
+
+	private final int segmentSize;
+
+	private final long checkpointPeriod;
+
+	private final LinkedBlockingQueue<Record> pending = new LinkedBlockingQueue<Record>();
+
+	private long lastLsn;
+
+	private long durableLsn;
+
+	/**
+	 * The tasks given to {@link #whenDurable(long, Runnable)} that have not
+	 * been run yet, in the order they were given.
+	 */
+	private final LinkedList<DurabilityTask> durabilityTasks = new LinkedList<DurabilityTask>();
+
+	private volatile boolean closed;
+
+	/**
+	 * Lock protecting the current segment.
+	 */
+	private final Object segmentLock = new Object();
+
+	private int segment;
+
+	private RandomAccessFile segmentFile;
+
+	private MappedByteBuffer segmentBuffer;
+
+	/**
+	 * The last segment folded into a checkpoint.
+	 */
+	private int checkpointedSegment;
+
+	private HashMap<String, Object> recoveredObjects = new HashMap<String, Object>();
+
+	/**
+	 * True if {@link #recover(DataStore)} has been called. Otherwise, the
+	 * files of a previous run are deleted upon {@link #start()}.
+	 */
+	private boolean recovered;
+
+	/**
+	 * Logs the state that must be recovered together with the entities (e.g.,
+	 * the static members of the vectors). It is run by the writer thread once
+	 * per batch holding entities.
+	 */
+	private volatile Runnable stateLogger;
+
+	/**
+	 * @param storageDirectory
+	 *            the prefix of the files of the log (see
+	 *            {@link FilePersistence#storageDirectory}).
+	 */
+	public WriteAheadLog(String storageDirectory) {
+		File file = new File(storageDirectory + "x");
+		this.directory = file.getAbsoluteFile().getParentFile();
+		this.prefix = file.getName().substring(0, file.getName().length() - 1);
+		this.segmentSize = ConstantPool.JESSY_WAL_SEGMENT_SIZE;
+
+		this.checkpointPeriod = Configuration.readConfig(
+				ConstantPool.WAL_CHECKPOINT_PERIOD,
+				ConstantPool.JESSY_WAL_CHECKPOINT_PERIOD);
+	}
+
+	/**
+	 * Sets the task logging, with {@link #logObject(String, Object)}, the
+	 * state that must be recovered together with the entities. Instead of
+	 * being logged by every transaction, this state is logged once per batch,
+	 * in the same batch as the entities. Since it is read after the entities
+	 * have been appended, the recovered state is never older than the
+	 * recovered entities.
+	 */
+	public void setStateLogger(Runnable stateLogger) {
+		this.stateLogger = stateLogger;
+	}
+
+	/**
+	 * Starts the thread writing the records, and the thread performing the
+	 * checkpoints. If {@link #recover(DataStore)} has not been called before,
+	 * the segments and checkpoints of a previous run are deleted, so that
+	 * they are neither overwritten in place nor replayed later on.
+	 */
+	public void start() throws IOException {
+		if (!recovered) {
+			for (File file : listFiles(SEGMENT_PREFIX).values())
+				file.delete();
+			for (File file : listFiles(CHECKPOINT_PREFIX).values())
+				file.delete();
+			segment = 0;
+			checkpointedSegment = 0;
+		}
+
+		synchronized (segmentLock) {
+			openSegment(segment + 1, 0);
+		}
+
+		ExecutorPool.getInstance().submit(this);
+
+		if (checkpointPeriod > 0) {
+			ExecutorPool.getInstance().submit(new Runnable() {
+				public void run() {
+					while (!closed) {
+						try {
+							Thread.sleep(checkpointPeriod);
+							checkpoint();
+						} catch (InterruptedException e) {
+							return;
+						} catch (Exception e) {
+							e.printStackTrace();
+						}
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * Appends the entities applied by a committed transaction. This method
+	 * does not wait for the record to be on disk: the transaction must not be
+	 * terminated before {@link #sync(long)} returns for the returned log
+	 * sequence number, or before {@link #whenDurable(long, Runnable)} runs.
+	 *
+	 * @return the log sequence number of the record.
+	 */
+	public long logEntities(List<JessyEntity> entities) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ObjectOutputStream out = new ObjectOutputStream(bytes);
+			out.writeObject(entities);
+			out.close();
+			return append(ENTITIES_RECORD, bytes.toByteArray());
+		} catch (IOException e) {
+			e.printStackTrace();
+			return -1;
+		}
+	}
+
+	/**
+	 * Appends the new value of an object. This method does not wait for the
+	 * record to be on disk.
+	 *
+	 * @return the log sequence number of the record.
+	 */
+	public long logObject(String objectName, Object object) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ObjectOutputStream out = new ObjectOutputStream(bytes);
+			out.writeUTF(objectName);
+			out.writeObject(object);
+			out.close();
+			return append(OBJECT_RECORD, bytes.toByteArray());
+		} catch (IOException e) {
+			e.printStackTrace();
+			return -1;
+		}
+	}
+
+	/**
+	 * Waits until the record with the given log sequence number is on disk.
+	 */
+	public synchronized void sync(long lsn) throws InterruptedException {
+		while (durableLsn < lsn && !(closed && pending.isEmpty()))
+			wait(ConstantPool.JESSY_WAL_SYNC_TIMEOUT);
+	}
+
+	/**
+	 * Returns true if the record with the given log sequence number is on
+	 * disk.
+	 */
+	public synchronized boolean isDurable(long lsn) {
+		return durableLsn >= lsn;
+	}
+
+	/**
+	 * Runs <code>task</code> once the record with the given log sequence
+	 * number is on disk, and once the tasks given before it have been run.
+	 * Hence, tasks are run in the order they are given, even if their records
+	 * are not. The task is run by the calling thread if it can run right away,
+	 * and by the thread writing the log otherwise, thus it must not block.
+	 */
+	public void whenDurable(long lsn, Runnable task) {
+		synchronized (durabilityTasks) {
+			durabilityTasks.add(new DurabilityTask(lsn, task));
+			runDurabilityTasks();
+		}
+	}
+
+	/**
+	 * Runs the first tasks of {@link #durabilityTasks} whose records are on
+	 * disk. The caller holds the lock of {@link #durabilityTasks}.
+	 */
+	private void runDurabilityTasks() {
+		while (!durabilityTasks.isEmpty()
+				&& isDurable(durabilityTasks.peek().lsn)) {
+			try {
+				durabilityTasks.poll().task.run();
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Returns the last value of the object found during the recovery.
+	 */
+	public Object getRecoveredObject(String objectName) {
+		return recoveredObjects.get(objectName);
+	}
+
+	/**
+	 * Writes every pending record, and stops the log.
+	 */
+	public void close() {
+		long lsn;
+		synchronized (pending) {
+			lsn = lastLsn;
+		}
+
+		try {
+			sync(lsn);
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+		}
+		closed = true;
+
+		synchronized (segmentLock) {
+			closeSegment();
+		}
+
+		synchronized (durabilityTasks) {
+			runDurabilityTasks();
+		}
+	}
+
+	private long append(byte type, byte[] payload) {
+		synchronized (pending) {
+			lastLsn++;
+			pending.add(new Record(lastLsn, type, payload));
+			return lastLsn;
+		}
+	}
+
+	/**
+	 * Writes pending records by batches, and forces them to disk.
+	 */
+	public void run() {
+		List<Record> batch = new ArrayList<Record>(
+				ConstantPool.JESSY_WAL_MAX_BATCH_SIZE);
+
+		while (!closed) {
+			try {
+				Record first = pending.poll(
+						ConstantPool.JESSY_WAL_SYNC_TIMEOUT,
+						TimeUnit.MILLISECONDS);
+				if (first == null)
+					continue;
+
+				batch.clear();
+				batch.add(first);
+				pending.drainTo(batch,
+						ConstantPool.JESSY_WAL_MAX_BATCH_SIZE - 1);
+
+				Runnable state = stateLogger;
+				if (state != null && hasEntities(batch)) {
+					state.run();
+					pending.drainTo(batch);
+				}
+
+				synchronized (segmentLock) {
+					for (Record record : batch)
+						write(record);
+
+					long start = System.currentTimeMillis();
+					segmentBuffer.force();
+					syncLatency.add(System.currentTimeMillis() - start);
+				}
+				batchSize.add(batch.size());
+
+				synchronized (this) {
+					durableLsn = batch.get(batch.size() - 1).lsn;
+					notifyAll();
+				}
+
+				synchronized (durabilityTasks) {
+					runDurabilityTasks();
+				}
+			} catch (InterruptedException e) {
+				return;
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	private static boolean hasEntities(List<Record> batch) {
+		for (Record record : batch) {
+			if (record.type == ENTITIES_RECORD)
+				return true;
+		}
+		return false;
+	}
+
+	private void write(Record record) throws IOException {
+		int size = RECORD_HEADER_SIZE + record.payload.length;
+
+		// Keep four zero bytes at the end of the segment to mark its end.
+		if (segmentBuffer.remaining() < size + 4)
+			openSegment(segment + 1, size + 4);
+
+		CRC32 crc = new CRC32();
+		crc.update(record.payload);
+
+		segmentBuffer.putInt(record.payload.length);
+		segmentBuffer.putInt((int) crc.getValue());
+		segmentBuffer.put(record.type);
+		segmentBuffer.put(record.payload);
+	}
+
+	private void openSegment(int newSegment, int minSize) throws IOException {
+		closeSegment();
+
+		segment = newSegment;
+		segmentFile = new RandomAccessFile(segmentFile(segment), "rw");
+		// Stale bytes would be read as records upon recovery.
+		segmentFile.setLength(0);
+		segmentBuffer = segmentFile.getChannel().map(
+				FileChannel.MapMode.READ_WRITE, 0,
+				Math.max(segmentSize, minSize));
+	}
+
+	private void closeSegment() {
+		if (segmentFile == null)
+			return;
+
+		try {
+			segmentBuffer.force();
+			segmentFile.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		segmentFile = null;
+		segmentBuffer = null;
+	}
+
+	/**
+	 * Folds the closed segments into a new incremental checkpoint. If there
+	 * are too many checkpoints, they are merged into one.
+	 */
+	public void checkpoint() throws IOException, ClassNotFoundException {
+		long start = System.currentTimeMillis();
+
+		int lastClosedSegment;
+		synchronized (segmentLock) {
+			lastClosedSegment = segment;
+			openSegment(segment + 1, 0);
+		}
+
+		Checkpoint checkpoint = new Checkpoint();
+		for (int i = checkpointedSegment + 1; i <= lastClosedSegment; i++)
+			replaySegment(segmentFile(i), checkpoint, null);
+
+		writeCheckpoint(checkpoint, lastClosedSegment);
+
+		for (int i = checkpointedSegment + 1; i <= lastClosedSegment; i++)
+			segmentFile(i).delete();
+		checkpointedSegment = lastClosedSegment;
+
+		TreeMap<Integer, File> checkpoints = listFiles(CHECKPOINT_PREFIX);
+		if (checkpoints.size() > ConstantPool.JESSY_WAL_MAX_CHECKPOINTS) {
+			Checkpoint merged = new Checkpoint();
+			for (File file : checkpoints.values())
+				readCheckpoint(file, merged);
+
+			writeCheckpoint(merged, lastClosedSegment);
+
+			for (Integer i : checkpoints.keySet()) {
+				if (i != lastClosedSegment)
+					checkpoints.get(i).delete();
+			}
+		}
+
+		checkpointLatency.add(System.currentTimeMillis() - start);
+	}
+
+	/**
+	 * Puts every logged entity back into the data store, and loads the last
+	 * value of every logged object.
+	 */
+	public void recover(DataStore dataStore) throws IOException,
+			ClassNotFoundException {
+		long start = System.currentTimeMillis();
+		recovered = true;
+
+		Checkpoint checkpoint = new Checkpoint();
+		TreeMap<Integer, File> checkpoints = listFiles(CHECKPOINT_PREFIX);
+		for (File file : checkpoints.values())
+			readCheckpoint(file, checkpoint);
+
+		if (!checkpoints.isEmpty())
+			checkpointedSegment = checkpoints.lastKey();
+
+		for (JessyEntity entity : checkpoint.entities.values())
+			dataStore.put(entity);
+		recoveredObjects.putAll(checkpoint.objects);
+
+		segment = checkpointedSegment;
+		for (Integer i : listFiles(SEGMENT_PREFIX).keySet()) {
+			if (i <= checkpointedSegment) {
+				// The checkpoint was written, but the segment was not deleted.
+				segmentFile(i).delete();
+				continue;
+			}
+
+			Checkpoint tail = new Checkpoint();
+			replaySegment(segmentFile(i), tail, dataStore);
+			recoveredObjects.putAll(tail.objects);
+			segment = i;
+		}
+
+		recoveryTime.add(System.currentTimeMillis() - start);
+		logger.info("Recovered from the write ahead log in "
+				+ (System.currentTimeMillis() - start) + " ms");
+	}
+
+	/**
+	 * Reads all the records of a segment. Entities are put in the data store
+	 * if it is not null, otherwise they are folded into the checkpoint. The
+	 * segment ends at the first empty or corrupted record.
+	 */
+	@SuppressWarnings("unchecked")
+	private void replaySegment(File file, Checkpoint checkpoint,
+			DataStore dataStore) throws IOException, ClassNotFoundException {
+		if (!file.exists())
+			return;
+
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			ByteBuffer buffer = raf.getChannel().map(
+					FileChannel.MapMode.READ_ONLY, 0, raf.length());
+
+			while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+				int length = buffer.getInt();
+				int checksum = buffer.getInt();
+				byte type = buffer.get();
+				if (length <= 0 || length > buffer.remaining())
+					break;
+
+				byte[] payload = new byte[length];
+				buffer.get(payload);
+
+				CRC32 crc = new CRC32();
+				crc.update(payload);
+				if ((int) crc.getValue() != checksum) {
+					logger.warn("Corrupted record in " + file
+							+ ". Ignoring the rest of the segment.");
+					break;
+				}
+
+				ObjectInputStream in = new ObjectInputStream(
+						new ByteArrayInputStream(payload));
+				if (type == ENTITIES_RECORD) {
+					for (JessyEntity entity : (Collection<JessyEntity>) in
+							.readObject()) {
+						if (dataStore != null)
+							dataStore.put(entity);
+						else
+							checkpoint.entities.put(entity.getKey(), entity);
+					}
+				} else if (type == OBJECT_RECORD) {
+					String name = in.readUTF();
+					checkpoint.objects.put(name, in.readObject());
+				}
+				in.close();
+			}
+		} finally {
+			raf.close();
+		}
+	}
+
+	private void writeCheckpoint(Checkpoint checkpoint, int lastSegment)
+			throws IOException {
+		File tmp = new File(directory, prefix + CHECKPOINT_PREFIX + "tmp");
+		FileOutputStream fout = new FileOutputStream(tmp);
+		ObjectOutputStream out = new ObjectOutputStream(fout);
+		out.writeObject(checkpoint.entities);
+		out.writeObject(checkpoint.objects);
+		out.flush();
+		fout.getFD().sync();
+		out.close();
+
+		File file = new File(directory, prefix + CHECKPOINT_PREFIX
+				+ lastSegment);
+		file.delete();
+		if (!tmp.renameTo(file))
+			throw new IOException("Cannot rename " + tmp + " to " + file);
+	}
+
+	/**
+	 * Reads a checkpoint and folds it into <code>checkpoint</code>.
+	 */
+	@SuppressWarnings("unchecked")
+	private void readCheckpoint(File file, Checkpoint checkpoint)
+			throws IOException, ClassNotFoundException {
+		ObjectInputStream in = new ObjectInputStream(new FileInputStream(file));
+		try {
+			checkpoint.entities.putAll((HashMap<String, JessyEntity>) in
+					.readObject());
+			checkpoint.objects.putAll((HashMap<String, Object>) in
+					.readObject());
+		} finally {
+			in.close();
+		}
+	}
+
+	private File segmentFile(int i) {
+		return new File(directory, prefix + SEGMENT_PREFIX + i);
+	}
+
+	/**
+	 * Returns the files of the log starting with the given name, sorted by
+	 * their number.
+	 */
+	private TreeMap<Integer, File> listFiles(String name) {
+		TreeMap<Integer, File> result = new TreeMap<Integer, File>();
+		File[] files = directory.listFiles();
+		if (files == null)
+			return result;
+
+		for (File file : files) {
+			String fileName = file.getName();
+			if (!fileName.startsWith(prefix + name))
+				continue;
+			try {
+				result.put(Integer.parseInt(fileName.substring(prefix.length()
+						+ name.length())), file);
+			} catch (NumberFormatException e) {
+				// e.g., temporary checkpoint
+			}
+		}
+		return result;
+	}
+
+}
@@ -5,6 +5,7 @@ import java.util.concurrent.ConcurrentHashMap;
 
 import fr.inria.jessy.ConstantPool;
 import fr.inria.jessy.vector.GMUVector2;
+import fr.inria.jessy.vector.SnapshotWaitQueue;
 
 /**
  * Used for SRDS submission
@@ -90,6 +91,7 @@ public class ApplyGMUVector2 implements Runnable{
 			catch(Exception ex){
 				ex.printStackTrace();
 			}
+			SnapshotWaitQueue.snapshotAdvanced();
 			
 		}
 	}
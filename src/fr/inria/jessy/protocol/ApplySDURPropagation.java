@@ -7,6 +7,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
 
 import fr.inria.jessy.transaction.TransactionHandler;
+import fr.inria.jessy.vector.SnapshotWaitQueue;
 import fr.inria.jessy.vector.VersionVector;
 
 public class ApplySDURPropagation extends Thread{
@@ -84,6 +85,7 @@ public class ApplySDURPropagation extends Thread{
 						VersionVector.committedVTS.setVector(pb.getGroupName(), pb.getSC());
 					}
 				}
+				SnapshotWaitQueue.snapshotAdvanced();
 				
 				//Done, we can clean up now.
 				containers.remove(UUIDhead);
@@ -0,0 +1,161 @@
+package fr.inria.jessy.protocol;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.sourceforge.fractal.utils.CollectionUtils;
+import net.sourceforge.fractal.utils.PerformanceProbe.SimpleCounter;
+import net.sourceforge.fractal.utils.PerformanceProbe.ValueRecorder;
+import fr.inria.jessy.store.EntitySet;
+import fr.inria.jessy.transaction.ExecutionHistory;
+import fr.inria.jessy.utils.KeyBloomFilter;
+
+/**
+ * The committing transactions of {@link SDUR_VV_GC}, indexed by their
+ * position in the commit order (their PSC).
+ * <p>
+ * Each entry holds the hashes of the keys read and of the keys written by its
+ * transaction, and a {@link KeyBloomFilter} over them. A certified
+ * transaction is first checked against these summaries, and the exact
+ * intersection of the key sets is only computed when a summary reports a
+ * possible conflict.
+ *
+ * @author Masoud Saeida Ardekani
+ *
+ */
+public class CertificationWindow {
+
+	private static ValueRecorder scannedEntries;
+
+	private static SimpleCounter exactChecks, falsePositives;
+
+	static {
+		// Performance measuring facilities
+
+		scannedEntries = new ValueRecorder("CertificationWindow#scannedEntries");
+		scannedEntries.setFormat("%a");
+
+		exactChecks = new SimpleCounter("CertificationWindow#exactChecks");
+		falsePositives = new SimpleCounter("CertificationWindow#falsePositives");
+	}
+
+	/**
+	 * The hashes of the keys of a key set, and a filter over them.
+	 */
+	private static class Summary {
+
+		final int[] hashes;
+
+		final KeyBloomFilter filter;
+
+		Summary(Set<String> keys) {
+			hashes = KeyBloomFilter.hashes(keys);
+			filter = new KeyBloomFilter(hashes);
+		}
+
+		/**
+		 * Returns false if the two key sets are disjoint. Probes the hashes of
+		 * the smaller set against the filter of the larger one.
+		 */
+		boolean mightIntersect(Summary other) {
+			if (hashes.length <= other.hashes.length)
+				return other.filter.mightContainAny(hashes);
+			return filter.mightContainAny(other.hashes);
+		}
+	}
+
+	/**
+	 * A committing transaction and the summaries of its keys.
+	 */
+	private static class Entry {
+
+		final ExecutionHistory history;
+
+		final Summary readKeys;
+
+		final Summary writeKeys;
+
+		Entry(ExecutionHistory history, boolean summarized) {
+			this.history = history;
+			if (summarized) {
+				readKeys = new Summary(getKeys(history.getReadSet()));
+				writeKeys = new Summary(getKeys(history.getWriteSet()));
+			} else {
+				readKeys = null;
+				writeKeys = null;
+			}
+		}
+	}
+
+	private final ConcurrentHashMap<Integer, Entry> entries;
+
+	private final boolean summarized;
+
+	/**
+	 * @param summarized
+	 *            if false, transactions are always checked with the exact
+	 *            intersection of their key sets.
+	 */
+	public CertificationWindow(int capacity, boolean summarized) {
+		entries = new ConcurrentHashMap<Integer, Entry>(capacity);
+		this.summarized = summarized;
+	}
+
+	public void put(int psc, ExecutionHistory history) {
+		entries.put(psc, new Entry(history, summarized));
+	}
+
+	public void remove(int psc) {
+		entries.remove(psc);
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Returns true if a transaction of the window in <code>[from, to)</code>
+	 * has written a key read by <code>history</code>, or has read a key
+	 * written by <code>history</code> (lines 40 and 41 of Algorithm 4).
+	 */
+	public boolean conflicts(ExecutionHistory history, int from, int to) {
+		Set<String> readKeys = getKeys(history.getReadSet());
+		Set<String> writeKeys = getKeys(history.getWriteSet());
+		Summary readSummary = null, writeSummary = null;
+		if (summarized) {
+			readSummary = new Summary(readKeys);
+			writeSummary = new Summary(writeKeys);
+		}
+
+		scannedEntries.add(Math.max(0, to - from));
+
+		for (int i = from; i < to; i++) {
+			Entry entry = entries.get(i);
+			if (entry == null)
+				continue;
+
+			if (summarized
+					&& !readSummary.mightIntersect(entry.writeKeys)
+					&& !writeSummary.mightIntersect(entry.readKeys))
+				continue;
+
+			exactChecks.incr();
+			if (intersect(getKeys(entry.history.getWriteSet()), readKeys)
+					|| intersect(writeKeys, getKeys(entry.history.getReadSet())))
+				return true;
+			falsePositives.incr();
+		}
+		return false;
+	}
+
+	private static boolean intersect(Set<String> keys1, Set<String> keys2) {
+		if (keys1 == null || keys2 == null)
+			return false;
+		return CollectionUtils.isIntersectingWith(keys1, keys2);
+	}
+
+	private static Set<String> getKeys(EntitySet set) {
+		return (set == null) ? null : set.getKeys();
+	}
+
+}
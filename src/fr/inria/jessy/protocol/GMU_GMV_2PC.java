@@ -24,6 +24,8 @@ import fr.inria.jessy.transaction.termination.TwoPhaseCommit;
 import fr.inria.jessy.transaction.termination.vote.Vote;
 import fr.inria.jessy.transaction.termination.vote.VotePiggyback;
 import fr.inria.jessy.vector.GMUVector;
+import fr.inria.jessy.vector.KeyDictionary;
+import fr.inria.jessy.vector.SnapshotWaitQueue;
 
 /**
  * This class implements EXACTLY [Peluso2012]: I.e., Update Serializability consistency criterion along with
@@ -111,8 +113,8 @@ public class GMU_GMV_2PC extends US{
 				 * instead of locking, we simply checks against the latest
 				 * committed values
 				 */
-				if (lastComittedEntity.getLocalVector().getValue(""+manager.getSourceId()) > tmp
-						.getLocalVector().getValue(""+manager.getSourceId())) {
+				if (lastComittedEntity.getLocalVector().getValue(KeyDictionary.swidKey(manager.getSourceId())) > tmp
+						.getLocalVector().getValue(KeyDictionary.swidKey(manager.getSourceId()))) {
 					if (ConstantPool.logging)
 						logger.error("Transaction "+ executionHistory.getTransactionHandler().getId() + "Certification fails (readSet) : Reads key "	+ tmp.getKey() + " with the vector "
 							+ tmp.getLocalVector() + " while the last committed vector is "	+ lastComittedEntity.getLocalVector());
@@ -158,8 +160,8 @@ public class GMU_GMV_2PC extends US{
 				 */
 				if (GMUVector.logCommitVC.size()>0)
 					vector=GMUVector.logCommitVC.peekFirst().clone();
-				else vector=new GMUVector<String>(""+manager.getSourceId(), 0);
-				vector.setValue(""+manager.getSourceId(), GMUVector.lastPrepSC.incrementAndGet());
+				else vector=new GMUVector<String>(KeyDictionary.swidKey(manager.getSourceId()), 0);
+				vector.setValue(KeyDictionary.swidKey(manager.getSourceId()), GMUVector.lastPrepSC.incrementAndGet());
 				//TODO FIX ME, not safe.
 				//Transactions should be added exactly in order.
 //				commitQueue.add(executionHistory.getTransactionHandler().getId());
@@ -169,7 +171,7 @@ public class GMU_GMV_2PC extends US{
 			 * Corresponds to line 23
 			 */
 			Vote vote= new Vote(executionHistory.getTransactionHandler(), isCommitted,
-					""+manager.getSourceId(),
+					KeyDictionary.swidKey(manager.getSourceId()),
 					new VotePiggyback(vector));
 			return vote;
 		}
@@ -202,7 +204,7 @@ public class GMU_GMV_2PC extends US{
 				 * Corresponds to line 19 of algorithm 3
 				 */
 				GMUVector<String> receivedVector = receivedVectors.putIfAbsent(
-						vote.getTransactionHandler().getId(), new GMUVector<String>(""+manager.getSourceId(), 0));
+						vote.getTransactionHandler().getId(), new GMUVector<String>(KeyDictionary.swidKey(manager.getSourceId()), 0));
 				if (receivedVector != null) {
 					receivedVector.update(vector);
 				}
@@ -239,7 +241,7 @@ public class GMU_GMV_2PC extends US{
 		
 		if (isCoordinator(msg) && state==TransactionState.COMMITTED){
 
-			GMUVector<String> commitVC = new GMUVector<String>(""+manager.getSourceId(), 0);
+			GMUVector<String> commitVC = new GMUVector<String>(KeyDictionary.swidKey(manager.getSourceId()), 0);
 
 			try{
 				ExecutionHistory executionHistory=msg.getExecutionHistory();
@@ -310,10 +312,11 @@ public class GMU_GMV_2PC extends US{
 			
 			GMUVector.logCommitVC.addFirst(vector.clone());
 
-			int updatedVal=vector.getValue(""+manager.getSourceId());
+			int updatedVal=vector.getValue(KeyDictionary.swidKey(manager.getSourceId()));
 			if (GMUVector.lastPrepSC.get() < updatedVal){
 				GMUVector.lastPrepSC.set(updatedVal);
 			}
+			SnapshotWaitQueue.snapshotAdvanced();
 
 			/*
 			 * We only need a scalar 
@@ -321,7 +324,7 @@ public class GMU_GMV_2PC extends US{
 			for (JessyEntity entity : msg.getExecutionHistory().getWriteSet()
 					.getEntities()) {
 				entity.getLocalVector().getMap().clear();
-				entity.getLocalVector().getMap().put(""+manager.getSourceId(),updatedVal);
+				entity.getLocalVector().getMap().put(KeyDictionary.swidKey(manager.getSourceId()),updatedVal);
 			}
 		}
 		catch (Exception ex){
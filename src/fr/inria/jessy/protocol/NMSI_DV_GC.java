@@ -11,9 +11,9 @@ import fr.inria.jessy.store.JessyEntity;
 import fr.inria.jessy.store.ReadRequest;
 import fr.inria.jessy.transaction.ExecutionHistory;
 import fr.inria.jessy.transaction.ExecutionHistory.TransactionType;
-import fr.inria.jessy.vector.DependenceVector;
 import fr.inria.jessy.vector.ValueVector.ComparisonResult;
 import fr.inria.jessy.vector.Vector;
+import fr.inria.jessy.vector.VectorFactory;
 
 /**
  * This class implements Non-Monotonic Snapshot Isolation consistency criterion.
@@ -118,7 +118,7 @@ public class NMSI_DV_GC extends NMSI {
 		
 		// updatedVector is a new vector. It will be used as a new
 		// vector for all modified vectors.
-		Vector<String> updatedVector = new DependenceVector<String>("");
+		Vector<String> updatedVector = VectorFactory.GetVector("");
 		updatedVector.update(executionHistory.getReadSet().getCompactVector(),
 				executionHistory.getWriteSet().getCompactVector());
 
@@ -10,7 +10,6 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 import net.sourceforge.fractal.Learner;
 import net.sourceforge.fractal.Stream;
-import net.sourceforge.fractal.utils.CollectionUtils;
 
 import org.apache.log4j.Logger;
 
@@ -74,7 +73,7 @@ public class SDUR_VV_GC extends US  implements Learner{
 	/**
 	 * Used for handling lines 39 of algorithm 4	
 	 */
-	private static ConcurrentHashMap<Integer, ExecutionHistory> committingTransactions;
+	private static CertificationWindow committingTransactions;
 	
 	
 	private static AtomicInteger SC;
@@ -87,7 +86,7 @@ public class SDUR_VV_GC extends US  implements Learner{
 		super(m, store);
 		propagation = new MessagePropagation("SDURPropagateMessage", this,m);
 		
-		committingTransactions=new ConcurrentHashMap<Integer, ExecutionHistory>(ConstantPool.SDUR_COMMITTED_TRANSACTIONS_SIZE);
+		committingTransactions=new CertificationWindow(ConstantPool.SDUR_COMMITTED_TRANSACTIONS_SIZE, true);
 		pendingTransactions=new ConcurrentLinkedQueue<ExecutionHistory>();
 		
 		SC=new AtomicInteger(0);
@@ -149,26 +148,9 @@ public class SDUR_VV_GC extends US  implements Learner{
 		/*
 		 * Line 39 to 46 of Algorithm 4
 		 */
-		boolean result=true;
-		ExecutionHistory pendingExecutionHistory=null;
 		int txnSC=((VersionVector<String>)executionHistory.getReadSet().getCompactVector().getExtraObject()).getValue(manager.getMyGroup().name());
-		for (int i = txnSC; i< PSC.get(); i++){
-			pendingExecutionHistory=committingTransactions.get(i);
-
-			if (pendingExecutionHistory!=null){
-
-				//line 40 of algorithm 4
-				if (executionHistory.getReadSet()!=null && pendingExecutionHistory.getWriteSet()!=null){
-					result = CollectionUtils.isIntersectingWith(pendingExecutionHistory.getWriteSet()
-							.getKeys(), executionHistory.getReadSet().getKeys());
-				}
-				//line 41 of algorithm 4
-				if (executionHistory.getWriteSet()!=null && pendingExecutionHistory.getReadSet()!=null){
-					result = result || CollectionUtils.isIntersectingWith(executionHistory.getWriteSet()
-							.getKeys(), pendingExecutionHistory.getReadSet().getKeys());
-				}
-			}			
-		}
+		//line 40 and 41 of algorithm 4
+		boolean result=committingTransactions.conflicts(executionHistory, txnSC, PSC.get());
 	
 		//Line 43
 		PSC.incrementAndGet();
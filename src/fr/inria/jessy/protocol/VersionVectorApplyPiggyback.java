@@ -6,6 +6,7 @@ import org.apache.log4j.Logger;
 
 import fr.inria.jessy.ConstantPool;
 import fr.inria.jessy.transaction.ExecutionHistory.TransactionType;
+import fr.inria.jessy.vector.SnapshotWaitQueue;
 import fr.inria.jessy.vector.VersionVector;
 
 /**
@@ -118,6 +119,7 @@ public class VersionVectorApplyPiggyback implements Runnable{
 				 */
 				int tmp=VersionVector.committedVTS.getValue(pb.getwCoordinatorGroupName());
 				VersionVector.committedVTS.setVector(pb.getwCoordinatorGroupName(), tmp+1 );
+				SnapshotWaitQueue.snapshotAdvanced();
 			}
 
 			/*
@@ -184,6 +186,7 @@ public class VersionVectorApplyPiggyback implements Runnable{
 
 				VersionVector.committedVTS.notifyAll();
 			}
+			SnapshotWaitQueue.snapshotAdvanced();
 
 			setAndNotifyParallelSnapshotIsolationPiggyback(pb);
 			
@@ -203,8 +203,6 @@ public class BerkeleyDBDataStore implements DataStore{
 	 * @param entity
 	 *            entity to put inside the store
 	 */
-	// FIXME need to GC old versions (there are some articles about this saying
-	// that 5 is a good number).
 	@Override
 	public <E extends JessyEntity> void put(E entity)
 			throws NullPointerException {
@@ -259,7 +257,8 @@ public class BerkeleyDBDataStore implements DataStore{
 
 			EntityCursor<E> cur = sindex.subIndex(keyValue).entities();
 			
-			E entity = cur.first();
+			// Versions are read from the most recent one to the oldest one.
+			E entity = cur.last();
 
 			if (readSet == null) {
 				cur.close();
@@ -272,7 +271,7 @@ public class BerkeleyDBDataStore implements DataStore{
 					return entity;
 				} else {
 					if (entity.getLocalVector().isCompatible(readSet) == Vector.CompatibleResult.NOT_COMPATIBLE_TRY_NEXT) {
-						entity = cur.next();
+						entity = cur.prev();
 					}
 					// NEVER_COMPATIBLE
 					else {
@@ -367,6 +366,8 @@ public class BerkeleyDBDataStore implements DataStore{
 	public <E extends JessyEntity, SK> ReadReply<E> get(
 			ReadRequest<E> readRequest) throws NullPointerException {
 
+		VersionCollector.snapshotRead(readRequest.getReadSet());
+
 		if (readRequest.isOneKeyRequest) {
 			ReadRequestKey readRequestKey = readRequest.getOneKey();
 			E entity = get(readRequest.getEntityClassName(),
@@ -400,6 +401,8 @@ public class BerkeleyDBDataStore implements DataStore{
 
 		for (ReadRequest<JessyEntity> rr : readRequests) {
 
+			VersionCollector.snapshotRead(rr.getReadSet());
+
 			if (!rr.isOneKeyRequest) {
 				ret.add(new ReadReply<JessyEntity>(get(rr.getEntityClassName(),
 						rr.getMultiKeys(), rr.getReadSet()), rr
@@ -412,7 +415,8 @@ public class BerkeleyDBDataStore implements DataStore{
 						.get(kindex);
 				cur = sindex.subIndex((SK) rk.getKeyValue()).entities();
 
-				JessyEntity entity = cur.first();
+				// Versions are read from the most recent one to the oldest one.
+				JessyEntity entity = cur.last();
 
 				if (rr.getReadSet() == null) {
 					ret.add(new ReadReply<JessyEntity>((JessyEntity) entity, rr
@@ -431,7 +435,7 @@ public class BerkeleyDBDataStore implements DataStore{
 						failedReads.incr();
 						entity = null;
 					} else {
-						entity = cur.next();
+						entity = cur.prev();
 					}
 				}
 
@@ -516,4 +520,60 @@ public class BerkeleyDBDataStore implements DataStore{
 		}
 	}
 
+	/**
+	 * @inheritDoc
+	 * 
+	 * Versions of an entity are stored in the order of their primary keys,
+	 * thus the oldest versions are the first ones returned by the cursor of
+	 * the default secondary index.
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public int collectVersions(Integer watermark, int minVersions) {
+		int result = 0;
+
+		for (String entityClassName : primaryIndexes.keySet()) {
+			SecondaryIndex<String, Long, JessyEntity> sindex = (SecondaryIndex<String, Long, JessyEntity>) secondaryIndexes
+					.get(entityClassName + "secondaryKey");
+			if (sindex == null)
+				continue;
+
+			EntityCursor<String> keys = sindex.keys();
+			try {
+				for (String key = keys.first(); key != null; key = keys
+						.nextNoDup()) {
+					if (keys.count() <= minVersions)
+						continue;
+
+					EntityCursor<JessyEntity> cur = sindex.subIndex(key)
+							.entities();
+					try {
+						List<JessyEntity> versions = new ArrayList<JessyEntity>();
+						for (JessyEntity entity : cur)
+							versions.add(entity);
+
+						int reclaimable = VersionCollector.reclaimableVersions(
+								versions, watermark, minVersions);
+
+						JessyEntity entity = cur.first();
+						for (int i = 0; i < reclaimable && entity != null; i++) {
+							cur.delete();
+							VersionCollector.versionReclaimed(0);
+							entity = cur.next();
+						}
+						result += reclaimable;
+					} finally {
+						cur.close();
+					}
+				}
+			} catch (DatabaseException ex) {
+				ex.printStackTrace();
+			} finally {
+				keys.close();
+			}
+		}
+
+		return result;
+	}
+
 }
@@ -75,4 +75,19 @@ public interface DataStore {
 	public <E extends JessyEntity, SK, V> int getEntityCounts(
 			String entityClassName, String secondaryKeyName, SK keyValue)
 			throws NullPointerException;
+
+	/**
+	 * Removes the versions of every entity that cannot be read anymore (see
+	 * {@link VersionCollector#reclaimableVersions(List, Integer, int)}). Each
+	 * removed version is reported to
+	 * {@link VersionCollector#versionReclaimed(int)}.
+	 * 
+	 * @param watermark
+	 *            the garbage collection watermark.
+	 * @param minVersions
+	 *            number of most recent versions of an entity that are always
+	 *            kept.
+	 * @return the number of removed versions.
+	 */
+	public int collectVersions(Integer watermark, int minVersions);
 }
@@ -27,6 +27,8 @@ public class DataStoreFactory {
 		try {
 			if (dataStoreType.equals("hashmap")) {
 				_instance = new HashMapDataStore();
+			} else if (dataStoreType.equals("offheap")) {
+				_instance = new OffHeapDataStore();
 			} else {
 				File environmentHome = new File(System.getProperty("user.dir"));
 				boolean readOnly = false;
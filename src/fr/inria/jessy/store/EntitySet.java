@@ -117,12 +117,20 @@ public class EntitySet implements Messageable {
 	@SuppressWarnings("unchecked")
 	public void readExternal(ObjectInput in) throws IOException,
 			ClassNotFoundException {
-		entities = (Map<String, JessyEntity>) in.readObject();
+		int size = in.readInt();
+		entities = new HashMap<String, JessyEntity>(size);
+		for (int i = 0; i < size; i++) {
+			JessyEntity entity = (JessyEntity) in.readObject();
+			entities.put(entity.getKey(), entity);
+		}
 		compactVector = (CompactVector<String>) in.readObject();
 	}
 
 	public void writeExternal(ObjectOutput out) throws IOException {
-		out.writeObject(entities);
+		// Keys are not written, since they are computed from the entities.
+		out.writeInt(entities.size());
+		for (JessyEntity entity : entities.values())
+			out.writeObject(entity);
 		out.writeObject(compactVector);
 	}
 }
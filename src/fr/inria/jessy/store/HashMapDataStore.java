@@ -15,7 +15,6 @@ import fr.inria.jessy.partitioner.Partitioner;
 import fr.inria.jessy.persistence.FilePersistence;
 import fr.inria.jessy.protocol.ProtocolFactory;
 import fr.inria.jessy.vector.CompactVector;
-import fr.inria.jessy.vector.Vector;
 import fr.inria.jessy.vector.VectorFactory;
 
 /**
@@ -28,8 +27,6 @@ import fr.inria.jessy.vector.VectorFactory;
  * 
  * TODO 3. implement {@link DataStore#delete(String, String, Object)}
  * 
- * TODO 4. Garbage Collection
- * 
  * @author Masoud Saeida Ardekani
  * 
  */
@@ -37,21 +34,29 @@ public class HashMapDataStore implements DataStore {
 
 	private static Logger logger = Logger.getLogger(HashMapDataStore.class);
 	
-	ConcurrentHashMap<String, ArrayList> store;
+	ConcurrentHashMap<String, VersionChain<JessyEntity>> store;
 
-	Partitioner partitioner;
+	static Partitioner partitioner;
 	
 	@SuppressWarnings("unchecked")
 	public HashMapDataStore() {
-		if (FilePersistence.loadFromDisk)
-			store= (ConcurrentHashMap<String, ArrayList>) FilePersistence.readObject("HashMapDataStore.store");
-		else 
-			store = new ConcurrentHashMap<String, ArrayList>();
+		if (FilePersistence.loadFromDisk && !FilePersistence.useWriteAheadLog){
+			store = new ConcurrentHashMap<String, VersionChain<JessyEntity>>();
+			if (!FilePersistence.readSnapshot(this, "HashMapDataStore.snapshot"))
+				store= (ConcurrentHashMap<String, VersionChain<JessyEntity>>) FilePersistence.readObject("HashMapDataStore.store");
+		}
+		
+		/*
+		 * With the write ahead log, the store is rebuilt by replaying the log.
+		 */
+		if (store == null)
+			store = new ConcurrentHashMap<String, VersionChain<JessyEntity>>();
 	}
 
 	@Override
 	public void close() throws DatabaseException {
-		FilePersistence.writeObject(store, "HashMapDataStore.store");
+		if (!FilePersistence.useWriteAheadLog)
+			FilePersistence.writeSnapshot(store.values(), "HashMapDataStore.snapshot");
 	}
 
 	@Override
@@ -73,18 +78,20 @@ public class HashMapDataStore implements DataStore {
 	public <E extends JessyEntity> void put(E entity)
 			throws NullPointerException {
 		try {
-			if (store.containsKey(entity.getKey())) {
-				store.get(entity.getKey()).add(entity);
-			} else {
-				ArrayList<E> tmp = new ArrayList<E>(1);
-				tmp.add(entity);
-				store.put(entity.getKey(), tmp);
+			VersionChain<JessyEntity> versions = store.get(entity.getKey());
+			if (versions == null) {
+				versions = store.putIfAbsent(entity.getKey(),
+						new VersionChain<JessyEntity>(entity));
+				if (versions == null)
+					return;
 			}
+			versions.add(entity);
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
 	}
 
+	@SuppressWarnings("unchecked")
 	@Override
 	public <E extends JessyEntity, SK> ReadReply<E> get(
 			ReadRequest<E> readRequest) throws NullPointerException {
@@ -92,6 +99,8 @@ public class HashMapDataStore implements DataStore {
 			logger.error("Looking up for the key: "+ readRequest.getOneKey().getKeyValue());
 		}
 		
+		VersionCollector.snapshotRead(readRequest.getReadSet());
+
 		try {
 			if (readRequest.getReadSet()!=null && !VectorFactory.prepareRead(readRequest)){
 				E entity = null;
@@ -101,71 +110,22 @@ public class HashMapDataStore implements DataStore {
 			CompactVector<String> readSet = readRequest.getReadSet();
 
 			if (readRequest.isOneKeyRequest) {
-				ArrayList<E> tmp = store.get(readRequest.getOneKey().getKeyValue()
+				VersionChain<JessyEntity> versions = store.get(readRequest.getOneKey().getKeyValue()
 						.toString());
 
-				if (tmp == null) {
-					String key=readRequest.getOneKey().getKeyValue().toString();
-					
-					if (partitioner==null && DistributedJessy.jessyGroupManager!=null)
-						partitioner=DistributedJessy.jessyGroupManager.getPartitioner();
-					else if (DistributedJessy.jessyGroupManager==null)
-						throw new NullPointerException("Partitioner is not set.");
-					
-					
-					if (!partitioner.isLocal(key)){						
-						throw new NullPointerException("Object with key "
-								+ readRequest.getOneKey().getKeyValue()
-								+ " does not belong to this replica.");
-					}
-					else{
-//						System.out.println("Creating object for " + key);
-						//We simply create the object on the fly.
-						//This is to get rid of the loading phase.
-						//TODO, this is just crap!
-						//FIXME
-						JessyEntity e=ProtocolFactory.getProtocolInstance().createEntity(key);
-						YCSBEntity ycsbEntity=new YCSBEntity(e);
-						
-						tmp=new ArrayList<E>();
-						tmp.add((E)ycsbEntity);
-					}
+				if (versions == null) {
+					versions = new VersionChain<JessyEntity>(createMissingEntity(readRequest
+							.getOneKey().getKeyValue().toString()));
 				}
 
-				int index = tmp.size() - 1;
-				E entity = (E) tmp.get(index--).clone();
-
 				if (readSet == null) {
-					return new ReadReply<E>(entity, readRequest.getReadRequestId());
+					return new ReadReply<E>((E) versions.getLast(), readRequest.getReadRequestId());
 				}
 
-				while (entity != null) {
-					Vector.CompatibleResult compatibleResult=entity.getLocalVector().isCompatible(readSet);
-					
-					
-					if (compatibleResult == Vector.CompatibleResult.COMPATIBLE) {
-						VectorFactory.postRead(readRequest, entity);
-						return new ReadReply<E>(entity,							
-								readRequest.getReadRequestId());
-					} else {
-						if (compatibleResult == Vector.CompatibleResult.NOT_COMPATIBLE_TRY_NEXT) {
-							if (index == -1)
-								break;
-							entity = (E)tmp.get(index--).clone();
-						} else {
-							// NEVER_COMPATIBLE
-							
-							/*
-							 * Instead of returning null to the client, and retry again, since we are sure that the decision can
-							 * be made now, we call get again to return the correct version.
-							 * Note that {@link Vector.CompatibleResult.NEVER_COMPATIBLE} is only used in the Snapshot Isolation consistency.
-							 */
-							return get(readRequest);
-						}
-					}
-				}
+				E entity = (E) versions.get(readSet);
+				if (entity != null)
+					VectorFactory.postRead(readRequest, entity);
 
-				entity = null;
 				return new ReadReply<E>(entity, readRequest.getReadRequestId());
 			}
 		} catch (Exception e) {
@@ -176,6 +136,31 @@ public class HashMapDataStore implements DataStore {
 		return null;
 	}
 
+	/**
+	 * Creates on the fly the initial version of an entity that has never been
+	 * put in the data store. This is to get rid of the loading phase.
+	 * 
+	 * TODO, this is just crap!
+	 * 
+	 * @throws NullPointerException
+	 *             if the entity is not replicated by this replica.
+	 */
+	static JessyEntity createMissingEntity(String key)
+			throws NullPointerException {
+		if (partitioner==null && DistributedJessy.jessyGroupManager!=null)
+			partitioner=DistributedJessy.jessyGroupManager.getPartitioner();
+		else if (DistributedJessy.jessyGroupManager==null)
+			throw new NullPointerException("Partitioner is not set.");
+
+		if (!partitioner.isLocal(key)){
+			throw new NullPointerException("Object with key " + key
+					+ " does not belong to this replica.");
+		}
+
+		JessyEntity e=ProtocolFactory.getProtocolInstance().createEntity(key);
+		return new YCSBEntity(e);
+	}
+
 	@Override
 	public <SK> List<ReadReply<JessyEntity>> getAll(
 			List<ReadRequest<JessyEntity>> readRequests)
@@ -203,4 +188,17 @@ public class HashMapDataStore implements DataStore {
 		return store.get(keyValue.toString()).size();
 	}
 
+	@Override
+	public int collectVersions(Integer watermark, int minVersions) {
+		int result = 0;
+
+		for (VersionChain<?> versions : store.values())
+			result += versions.collect(watermark, minVersions);
+
+		if (DebuggingFlag.DATA_STORE)
+			logger.debug("Version collector reclaimed " + result + " versions");
+
+		return result;
+	}
+
 }
@@ -0,0 +1,618 @@
+package fr.inria.jessy.store;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import net.sourceforge.fractal.utils.PerformanceProbe.SimpleCounter;
+
+import org.apache.log4j.Logger;
+
+import com.sleepycat.je.DatabaseException;
+
+import fr.inria.jessy.ConstantPool;
+import fr.inria.jessy.DebuggingFlag;
+import fr.inria.jessy.vector.CompactVector;
+import fr.inria.jessy.vector.Vector;
+import fr.inria.jessy.vector.VectorFactory;
+
+/**
+ * Implements an in-memory data store that keeps the entities outside of the
+ * Java heap, thus they are not scanned by the garbage collector.
+ * <p>
+ * Keys are hashed into stripes, each with its own lock, index and slabs, so
+ * that puts on different stripes do not contend. Each version of an entity is
+ * serialized into a record allocated in the direct {@link ByteBuffer} slabs of
+ * its stripe. A record starts with the address of the previous version of the
+ * same entity, hence the versions of an entity form a linked list from the
+ * most recent one to the oldest one. An open-addressing hash table maps each
+ * key to the address of its most recent version. Versions are only
+ * deserialized upon {@link #get(ReadRequest)}. The slabs of a stripe start
+ * small, and double in size up to <code>slabSize</code>.
+ * <p>
+ * Removed versions are unlinked by {@link #collectVersions(Integer, int)},
+ * which decodes the versions of a key without holding any lock, and only
+ * locks the stripe to unlink them. The space of a stripe is reclaimed once it
+ * gets larger than its live space, by copying its live records into new slabs.
+ * <p>
+ * Like {@link HashMapDataStore}, it only supports one key requests, and it is
+ * not persisted upon {@link #close()}.
+ *
+ * @author Masoud Saeida Ardekani
+ *
+ */
+public class OffHeapDataStore implements DataStore {
+
+	private static Logger logger = Logger.getLogger(OffHeapDataStore.class);
+
+	private static SimpleCounter allocatedSlabs = new SimpleCounter(
+			"OffHeapDataStore#allocatedSlabs");
+
+	private static SimpleCounter compactions = new SimpleCounter(
+			"OffHeapDataStore#compactions");
+
+	/**
+	 * Address of a record that does not exist.
+	 */
+	private static final long NULL_ADDRESS = -1;
+
+	/**
+	 * A record is: address of the previous version (long), length of the
+	 * serialized entity (int) and the serialized entity.
+	 */
+	private static final int RECORD_HEADER_SIZE = 12;
+
+	private static final int INITIAL_INDEX_CAPACITY = 64;
+
+	private static final int MIN_SLAB_SIZE = 4096;
+
+	private final int slabSize;
+
+	private final Stripe[] stripes;
+
+	public OffHeapDataStore() {
+		this(ConstantPool.JESSY_OFFHEAP_SLAB_SIZE);
+	}
+
+	public OffHeapDataStore(int slabSize) {
+		this(slabSize, ConstantPool.JESSY_OFFHEAP_STRIPES);
+	}
+
+	/**
+	 * @param stripeCount
+	 *            number of stripes, rounded up to a power of two.
+	 */
+	public OffHeapDataStore(int slabSize, int stripeCount) {
+		this.slabSize = slabSize;
+		this.stripes = new Stripe[Integer.highestOneBit(Math.max(1,
+				stripeCount * 2 - 1))];
+		for (int i = 0; i < stripes.length; i++)
+			stripes[i] = new Stripe();
+	}
+
+	@Override
+	public void close() throws DatabaseException {
+		for (Stripe stripe : stripes)
+			stripe.clear();
+	}
+
+	@Override
+	public <E extends JessyEntity> void addPrimaryIndex(Class<E> entityClass)
+			throws Exception {
+	}
+
+	@Override
+	public <E extends JessyEntity, SK> void addSecondaryIndex(
+			Class<E> entityClass, Class<SK> secondaryKeyClass,
+			String secondaryKeyName) throws Exception {
+	}
+
+	@Override
+	public <E extends JessyEntity> void put(E entity)
+			throws NullPointerException {
+		byte[] data = serialize(entity);
+		if (data == null)
+			return;
+
+		stripeOf(entity.getKey()).put(entity.getKey(), data);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <E extends JessyEntity, SK> ReadReply<E> get(
+			ReadRequest<E> readRequest) throws NullPointerException {
+		if (DebuggingFlag.DATA_STORE) {
+			logger.error("Looking up for the key: "
+					+ readRequest.getOneKey().getKeyValue());
+		}
+
+		if (!readRequest.isOneKeyRequest)
+			return null;
+
+		VersionCollector.snapshotRead(readRequest.getReadSet());
+
+		if (readRequest.getReadSet() != null
+				&& !VectorFactory.prepareRead(readRequest)) {
+			E entity = null;
+			return new ReadReply<E>(entity, readRequest.getReadRequestId());
+		}
+
+		CompactVector<String> readSet = readRequest.getReadSet();
+		E entity = null;
+
+		try {
+			String key = readRequest.getOneKey().getKeyValue().toString();
+			entity = (E) stripeOf(key).find(key, readSet);
+		} catch (Exception e) {
+			e.printStackTrace();
+			return null;
+		}
+
+		if (entity != null && readSet != null)
+			VectorFactory.postRead(readRequest, entity);
+
+		return new ReadReply<E>(entity, readRequest.getReadRequestId());
+	}
+
+	@Override
+	public <SK> List<ReadReply<JessyEntity>> getAll(
+			List<ReadRequest<JessyEntity>> readRequests)
+			throws NullPointerException {
+
+		List<ReadReply<JessyEntity>> result = new ArrayList<ReadReply<JessyEntity>>(
+				readRequests.size());
+		for (ReadRequest<JessyEntity> rr : readRequests) {
+			result.add(get(rr));
+		}
+		return result;
+	}
+
+	@Override
+	public <E extends JessyEntity, SK> boolean delete(String entityClassName,
+			String secondaryKeyName, SK keyValue) throws NullPointerException {
+		return false;
+	}
+
+	@Override
+	public <E extends JessyEntity, SK, V> int getEntityCounts(
+			String entityClassName, String secondaryKeyName, SK keyValue)
+			throws NullPointerException {
+		String key = keyValue.toString();
+		return stripeOf(key).count(key);
+	}
+
+	@Override
+	public int collectVersions(Integer watermark, int minVersions) {
+		int result = 0;
+		for (Stripe stripe : stripes)
+			result += stripe.collect(watermark, minVersions);
+		return result;
+	}
+
+	/**
+	 * Number of slabs currently allocated.
+	 */
+	int getSlabCount() {
+		int result = 0;
+		for (Stripe stripe : stripes) {
+			stripe.lock.readLock().lock();
+			try {
+				result += stripe.slabs.size();
+			} finally {
+				stripe.lock.readLock().unlock();
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Number of bytes used by the records that are still linked.
+	 */
+	long getLiveBytes() {
+		long result = 0;
+		for (Stripe stripe : stripes) {
+			stripe.lock.readLock().lock();
+			try {
+				result += stripe.liveBytes;
+			} finally {
+				stripe.lock.readLock().unlock();
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Number of bytes used by unlinked records, not reclaimed yet.
+	 */
+	long getDeadBytes() {
+		long result = 0;
+		for (Stripe stripe : stripes) {
+			stripe.lock.readLock().lock();
+			try {
+				result += stripe.deadBytes;
+			} finally {
+				stripe.lock.readLock().unlock();
+			}
+		}
+		return result;
+	}
+
+	private Stripe stripeOf(String key) {
+		if (stripes.length == 1)
+			return stripes[0];
+		// The index of a stripe uses the low bits of the hash, thus the
+		// stripe is chosen with the high bits.
+		int h = key.hashCode() * 0x9E3779B9;
+		return stripes[(h >>> 16) & (stripes.length - 1)];
+	}
+
+	/**
+	 * A part of the store. Reads hold the read lock. Puts, compactions and
+	 * unlinking hold the write lock.
+	 */
+	private class Stripe {
+
+		private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+		private ArrayList<ByteBuffer> slabs = new ArrayList<ByteBuffer>();
+
+		/**
+		 * Offset of the first free byte in the last slab.
+		 */
+		private int slabOffset;
+
+		private long liveBytes;
+
+		private long deadBytes;
+
+		/**
+		 * Incremented whenever record addresses change, i.e., upon
+		 * compaction and clearing.
+		 */
+		private int epoch;
+
+		/**
+		 * The open-addressing index. For each key, it stores the address of
+		 * its most recent version and its number of versions.
+		 */
+		private String[] keys = new String[INITIAL_INDEX_CAPACITY];
+		private long[] heads = new long[INITIAL_INDEX_CAPACITY];
+		private int[] counts = new int[INITIAL_INDEX_CAPACITY];
+		private int size;
+
+		void clear() {
+			lock.writeLock().lock();
+			try {
+				slabs = new ArrayList<ByteBuffer>();
+				slabOffset = 0;
+				keys = new String[INITIAL_INDEX_CAPACITY];
+				heads = new long[INITIAL_INDEX_CAPACITY];
+				counts = new int[INITIAL_INDEX_CAPACITY];
+				size = 0;
+				liveBytes = 0;
+				deadBytes = 0;
+				epoch++;
+			} finally {
+				lock.writeLock().unlock();
+			}
+		}
+
+		void put(String key, byte[] data) {
+			lock.writeLock().lock();
+			try {
+				int slot = slot(key);
+				if (keys[slot] == null) {
+					keys[slot] = key;
+					heads[slot] = NULL_ADDRESS;
+					counts[slot] = 0;
+					size++;
+				}
+
+				heads[slot] = write(heads[slot], data);
+				counts[slot]++;
+
+				if (size * 2 > keys.length)
+					resize(keys.length * 2);
+			} finally {
+				lock.writeLock().unlock();
+			}
+		}
+
+		int count(String key) {
+			lock.readLock().lock();
+			try {
+				return counts[slot(key)];
+			} finally {
+				lock.readLock().unlock();
+			}
+		}
+
+		/**
+		 * Returns the most recent version of the entity that is compatible
+		 * with the read set, or null if there is no such version.
+		 */
+		JessyEntity find(String key, CompactVector<String> readSet) {
+			while (true) {
+				lock.readLock().lock();
+				try {
+					int slot = slot(key);
+
+					if (keys[slot] == null) {
+						JessyEntity entity = HashMapDataStore
+								.createMissingEntity(key);
+						if (readSet == null
+								|| entity.getLocalVector().isCompatible(readSet) == Vector.CompatibleResult.COMPATIBLE)
+							return entity;
+						return null;
+					}
+
+					boolean retry = false;
+					for (long address = heads[slot]; address != NULL_ADDRESS; address = previous(
+							slabs, address)) {
+						JessyEntity entity = deserialize(data(slabs, address));
+
+						if (readSet == null)
+							return entity;
+
+						Vector.CompatibleResult compatibleResult = entity
+								.getLocalVector().isCompatible(readSet);
+
+						if (compatibleResult == Vector.CompatibleResult.COMPATIBLE) {
+							return entity;
+						} else if (compatibleResult == Vector.CompatibleResult.NEVER_COMPATIBLE) {
+							/*
+							 * Since we are sure that the decision can be made
+							 * now, we start again from the most recent
+							 * version. Note that NEVER_COMPATIBLE is only used
+							 * in the Snapshot Isolation consistency.
+							 */
+							retry = true;
+							break;
+						}
+					}
+
+					if (!retry)
+						return null;
+				} finally {
+					lock.readLock().unlock();
+				}
+			}
+		}
+
+		/**
+		 * Unlinks the reclaimable versions of every key of the stripe. The
+		 * records of a key are copied under the read lock, and decoded
+		 * without any lock. Since puts only add more recent versions, the
+		 * decision still holds once the write lock is taken, unless the
+		 * records have been moved in between.
+		 */
+		synchronized int collect(Integer watermark, int minVersions) {
+			List<String> candidates = new ArrayList<String>();
+			lock.readLock().lock();
+			try {
+				for (int slot = 0; slot < keys.length; slot++) {
+					if (keys[slot] != null && counts[slot] > minVersions)
+						candidates.add(keys[slot]);
+				}
+			} finally {
+				lock.readLock().unlock();
+			}
+
+			int result = 0;
+			for (String key : candidates) {
+				int startEpoch;
+				List<Long> addresses = new ArrayList<Long>();
+				List<byte[]> records = new ArrayList<byte[]>();
+
+				lock.readLock().lock();
+				try {
+					startEpoch = epoch;
+					int slot = slot(key);
+					if (keys[slot] == null)
+						continue;
+					for (long address = heads[slot]; address != NULL_ADDRESS; address = previous(
+							slabs, address)) {
+						addresses.add(address);
+						records.add(data(slabs, address));
+					}
+				} finally {
+					lock.readLock().unlock();
+				}
+				Collections.reverse(addresses);
+				Collections.reverse(records);
+
+				List<JessyEntity> versions = new ArrayList<JessyEntity>(
+						records.size());
+				for (byte[] record : records)
+					versions.add(deserialize(record));
+
+				int reclaimable = VersionCollector.reclaimableVersions(
+						versions, watermark, minVersions);
+				if (reclaimable == 0)
+					continue;
+
+				lock.writeLock().lock();
+				try {
+					if (epoch != startEpoch)
+						continue;
+
+					// Unlink the reclaimable versions from the oldest kept
+					// one.
+					long oldestKept = addresses.get(reclaimable);
+					slabs.get((int) (oldestKept >>> 32)).putLong(
+							offset(oldestKept), NULL_ADDRESS);
+					counts[slot(key)] -= reclaimable;
+
+					for (int i = 0; i < reclaimable; i++) {
+						long recordSize = RECORD_HEADER_SIZE
+								+ records.get(i).length;
+						liveBytes -= recordSize;
+						deadBytes += recordSize;
+					}
+				} finally {
+					lock.writeLock().unlock();
+				}
+
+				for (int i = 0; i < reclaimable; i++)
+					VersionCollector.versionReclaimed(RECORD_HEADER_SIZE
+							+ records.get(i).length);
+				result += reclaimable;
+			}
+
+			lock.writeLock().lock();
+			try {
+				if (deadBytes > liveBytes)
+					compact();
+			} finally {
+				lock.writeLock().unlock();
+			}
+
+			return result;
+		}
+
+		/**
+		 * Returns the slot of the key in the index: either the slot holding
+		 * the key, or the empty slot where it should be inserted.
+		 */
+		private int slot(String key) {
+			int mask = keys.length - 1;
+			int h = key.hashCode();
+			int slot = (h ^ (h >>> 16)) & mask;
+			while (keys[slot] != null && !keys[slot].equals(key))
+				slot = (slot + 1) & mask;
+			return slot;
+		}
+
+		private void resize(int capacity) {
+			String[] oldKeys = keys;
+			long[] oldHeads = heads;
+			int[] oldCounts = counts;
+
+			keys = new String[capacity];
+			heads = new long[capacity];
+			counts = new int[capacity];
+
+			for (int i = 0; i < oldKeys.length; i++) {
+				if (oldKeys[i] == null)
+					continue;
+				int slot = slot(oldKeys[i]);
+				keys[slot] = oldKeys[i];
+				heads[slot] = oldHeads[i];
+				counts[slot] = oldCounts[i];
+			}
+		}
+
+		/**
+		 * Copies every live record into new slabs, and frees the old slabs.
+		 * Records are copied as they are, without being decoded.
+		 */
+		private void compact() {
+			ArrayList<ByteBuffer> oldSlabs = slabs;
+			long freed = deadBytes;
+
+			slabs = new ArrayList<ByteBuffer>();
+			slabOffset = 0;
+			liveBytes = 0;
+			deadBytes = 0;
+			epoch++;
+
+			for (int slot = 0; slot < keys.length; slot++) {
+				if (keys[slot] == null)
+					continue;
+
+				List<byte[]> records = new ArrayList<byte[]>(counts[slot]);
+				for (long address = heads[slot]; address != NULL_ADDRESS; address = previous(
+						oldSlabs, address)) {
+					records.add(data(oldSlabs, address));
+				}
+
+				long head = NULL_ADDRESS;
+				for (int i = records.size() - 1; i >= 0; i--)
+					head = write(head, records.get(i));
+				heads[slot] = head;
+			}
+
+			compactions.incr();
+			logger.debug("Compacted off-heap slabs, " + freed + " bytes freed");
+		}
+
+		/**
+		 * Writes a new record and returns its address.
+		 */
+		private long write(long previous, byte[] data) {
+			int recordSize = RECORD_HEADER_SIZE + data.length;
+
+			int capacity = slabs.isEmpty() ? 0 : slabs.get(slabs.size() - 1)
+					.capacity();
+			if (slabOffset + recordSize > capacity) {
+				int newCapacity = Math.min(slabSize,
+						Math.max(MIN_SLAB_SIZE, 2 * capacity));
+				slabs.add(ByteBuffer.allocateDirect(Math.max(newCapacity,
+						recordSize)));
+				slabOffset = 0;
+				allocatedSlabs.incr();
+			}
+
+			int slab = slabs.size() - 1;
+			ByteBuffer buffer = slabs.get(slab).duplicate();
+			buffer.position(slabOffset);
+			buffer.putLong(previous);
+			buffer.putInt(data.length);
+			buffer.put(data);
+
+			long address = ((long) slab << 32) | slabOffset;
+			slabOffset += recordSize;
+			liveBytes += recordSize;
+
+			return address;
+		}
+	}
+
+	private static int offset(long address) {
+		return (int) address;
+	}
+
+	private static long previous(List<ByteBuffer> slabs, long address) {
+		return slabs.get((int) (address >>> 32)).getLong(offset(address));
+	}
+
+	private static byte[] data(List<ByteBuffer> slabs, long address) {
+		ByteBuffer buffer = slabs.get((int) (address >>> 32)).duplicate();
+		buffer.position(offset(address) + 8);
+		byte[] data = new byte[buffer.getInt()];
+		buffer.get(data);
+		return data;
+	}
+
+	private static byte[] serialize(JessyEntity entity) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ObjectOutputStream out = new ObjectOutputStream(bytes);
+			out.writeObject(entity);
+			out.close();
+			return bytes.toByteArray();
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	private static JessyEntity deserialize(byte[] data) {
+		try {
+			ObjectInputStream in = new ObjectInputStream(
+					new ByteArrayInputStream(data));
+			return (JessyEntity) in.readObject();
+		} catch (Exception e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+}
@@ -0,0 +1,240 @@
+package fr.inria.jessy.store;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
+
+import fr.inria.jessy.ConstantPool;
+import fr.inria.jessy.vector.CompactVector;
+import fr.inria.jessy.vector.Vector;
+
+/**
+ * The versions of one entity, used by {@link HashMapDataStore}.
+ * <p>
+ * Versions are appended in the order they are put in the data store, and read
+ * from the most recent one to the oldest one. Readers never acquire a lock:
+ * they work on an immutable snapshot of the chain, and writers publish a new
+ * snapshot once a version is added or removed. Writers are serialized on the
+ * chain.
+ * <p>
+ * Next to each version, the chain keeps the self value of its vector. If
+ * these values are increasing, a read jumps directly to the most recent
+ * version that can be compatible (see
+ * {@link Vector#getCompatibleSelfValueBound(CompactVector)}). Moreover, only
+ * the returned version is cloned.
+ *
+ * @author Masoud Saeida Ardekani
+ *
+ * @param <E>
+ */
+public class VersionChain<E extends JessyEntity> implements Serializable {
+
+	private static final long serialVersionUID = ConstantPool.JESSY_MID;
+
+	/**
+	 * An immutable snapshot of the chain. Entries below {@code size} are
+	 * never modified, thus two snapshots can share the same arrays.
+	 */
+	private static class Versions implements Serializable {
+
+		private static final long serialVersionUID = ConstantPool.JESSY_MID;
+
+		final JessyEntity[] entities;
+
+		final int[] selfValues;
+
+		final int size;
+
+		/**
+		 * true if self values are non-decreasing from the oldest version to
+		 * the most recent one.
+		 */
+		final boolean sorted;
+
+		Versions(JessyEntity[] entities, int[] selfValues, int size,
+				boolean sorted) {
+			this.entities = entities;
+			this.selfValues = selfValues;
+			this.size = size;
+			this.sorted = sorted;
+		}
+	}
+
+	private volatile Versions versions;
+
+	public VersionChain() {
+		versions = new Versions(new JessyEntity[1], new int[1], 0, true);
+	}
+
+	public VersionChain(E entity) {
+		this();
+		add(entity);
+	}
+
+	/**
+	 * Appends a new version of the entity.
+	 */
+	public synchronized void add(E entity) {
+		Versions current = versions;
+		JessyEntity[] entities = current.entities;
+		int[] selfValues = current.selfValues;
+
+		if (current.size == entities.length) {
+			entities = Arrays.copyOf(entities, entities.length * 2);
+			selfValues = Arrays.copyOf(selfValues, selfValues.length * 2);
+		}
+
+		int selfValue = selfValueOf(entity);
+		entities[current.size] = entity;
+		selfValues[current.size] = selfValue;
+
+		boolean sorted = current.sorted
+				&& (current.size == 0 || selfValues[current.size - 1] <= selfValue);
+		versions = new Versions(entities, selfValues, current.size + 1, sorted);
+	}
+
+	public int size() {
+		return versions.size;
+	}
+
+	/**
+	 * Returns a clone of the most recent version.
+	 */
+	@SuppressWarnings("unchecked")
+	public E getLast() {
+		Versions current = versions;
+		if (current.size == 0)
+			return null;
+		return (E) current.entities[current.size - 1].clone();
+	}
+
+	/**
+	 * Returns all the versions, from the oldest one to the most recent one.
+	 * Versions are not cloned.
+	 */
+	@SuppressWarnings("unchecked")
+	public List<E> getAll() {
+		Versions current = versions;
+		return (List<E>) Arrays.asList(current.entities).subList(0,
+				current.size);
+	}
+
+	/**
+	 * Returns a clone of the most recent version that is
+	 * {@link Vector.CompatibleResult#COMPATIBLE} with the read set, or null if
+	 * there is no such version.
+	 * <p>
+	 * When the read set is empty, some vectors (e.g., {@code ScalarVector})
+	 * update themselves in {@link Vector#isCompatible(CompactVector)}. Thus,
+	 * versions are cloned before being checked in that case.
+	 */
+	@SuppressWarnings("unchecked")
+	public E get(CompactVector<String> readSet) {
+		boolean cloneBeforeCheck = readSet.size() == 0;
+
+		while (true) {
+			Versions current = versions;
+			if (current.size == 0)
+				return null;
+
+			int index = firstCandidate(current, readSet);
+
+			boolean retry = false;
+			for (; index >= 0; index--) {
+				E entity = (E) current.entities[index];
+				if (cloneBeforeCheck)
+					entity = (E) entity.clone();
+
+				Vector.CompatibleResult compatibleResult = entity
+						.getLocalVector().isCompatible(readSet);
+
+				if (compatibleResult == Vector.CompatibleResult.COMPATIBLE) {
+					return cloneBeforeCheck ? entity : (E) entity.clone();
+				} else if (compatibleResult == Vector.CompatibleResult.NEVER_COMPATIBLE) {
+					/*
+					 * The decision can be made now. Thus, instead of returning
+					 * null to the client, we start again from the most recent
+					 * version. Note that NEVER_COMPATIBLE is only used in the
+					 * Snapshot Isolation consistency.
+					 */
+					retry = true;
+					break;
+				}
+			}
+
+			if (!retry)
+				return null;
+		}
+	}
+
+	/**
+	 * Removes the versions that are not visible anymore, and returns the
+	 * number of removed versions.
+	 *
+	 * @see VersionCollector#reclaimableVersions(List, Integer, int)
+	 */
+	public synchronized int collect(Integer watermark, int minVersions) {
+		Versions current = versions;
+		if (current.size <= minVersions)
+			return 0;
+
+		List<JessyEntity> list = Arrays.asList(current.entities).subList(0,
+				current.size);
+		int reclaimable = VersionCollector.reclaimableVersions(list,
+				watermark, minVersions);
+		if (reclaimable == 0)
+			return 0;
+
+		int size = current.size - reclaimable;
+		JessyEntity[] entities = new JessyEntity[Math.max(1, size)];
+		int[] selfValues = new int[Math.max(1, size)];
+		System.arraycopy(current.entities, reclaimable, entities, 0, size);
+		System.arraycopy(current.selfValues, reclaimable, selfValues, 0, size);
+
+		boolean sorted = true;
+		for (int i = 1; i < size && sorted; i++)
+			sorted = selfValues[i - 1] <= selfValues[i];
+
+		versions = new Versions(entities, selfValues, size, sorted);
+
+		for (int i = 0; i < reclaimable; i++)
+			VersionCollector.versionReclaimed(0);
+
+		return reclaimable;
+	}
+
+	/**
+	 * Returns the index of the most recent version that might be compatible
+	 * with the read set.
+	 */
+	private int firstCandidate(Versions current, CompactVector<String> readSet) {
+		int last = current.size - 1;
+		if (!current.sorted)
+			return last;
+
+		Integer bound = current.entities[last].getLocalVector()
+				.getCompatibleSelfValueBound(readSet);
+		if (bound == null || current.selfValues[last] <= bound)
+			return last;
+
+		// Binary search of the last index whose self value is <= bound
+		int low = 0;
+		int high = last;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (current.selfValues[mid] <= bound)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low - 1;
+	}
+
+	private static int selfValueOf(JessyEntity entity) {
+		if (entity.getLocalVector() == null)
+			return -1;
+		Integer selfValue = entity.getLocalVector().getSelfValue();
+		return selfValue == null ? -1 : selfValue;
+	}
+
+}
@@ -0,0 +1,245 @@
+package fr.inria.jessy.store;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.sourceforge.fractal.utils.PerformanceProbe.ValueRecorder;
+
+import org.apache.log4j.Logger;
+
+import fr.inria.jessy.ConstantPool;
+import fr.inria.jessy.utils.Configuration;
+import fr.inria.jessy.vector.CompactVector;
+import fr.inria.jessy.vector.DependenceVector;
+import fr.inria.jessy.vector.Vector;
+import fr.inria.jessy.vector.VectorFactory;
+
+/**
+ * This class periodically garbage collects the versions of the entities
+ * stored in a {@link DataStore} that cannot be read by any snapshot anymore.
+ * <p>
+ * The watermark is given by {@link Vector#getGarbageCollectionWatermark()},
+ * lowered to the oldest active snapshot. A snapshot is active as long as it is
+ * read: every read served by the data store registers the snapshot of its
+ * transaction (see {@link Vector#getGarbageCollectionSnapshot(CompactVector)}),
+ * and a snapshot expires <code>version_gc_snapshot_lease</code> milliseconds
+ * after its last read. Moreover, the most recent <code>minVersions</code>
+ * versions of an entity are never collected.
+ * <p>
+ * Vectors that cannot compute a watermark, e.g., {@link DependenceVector},
+ * return null, hence the collector never removes a version with them.
+ * <p>
+ * The collector is disabled by default, and it is enabled by setting
+ * <code>version_gc_period</code>.
+ *
+ * @author Masoud Saeida Ardekani
+ *
+ */
+public class VersionCollector implements Runnable {
+
+	private static Logger logger = Logger.getLogger(VersionCollector.class);
+
+	private static ValueRecorder versionsReclaimed;
+
+	private static ValueRecorder bytesFreed;
+
+	private static ValueRecorder collectionTime;
+
+	static {
+		// Performance measuring facilities
+
+		versionsReclaimed = new ValueRecorder(
+				"VersionCollector#versionsReclaimed");
+		versionsReclaimed.setFormat("%t");
+
+		bytesFreed = new ValueRecorder("VersionCollector#bytesFreed");
+		bytesFreed.setFormat("%t");
+
+		collectionTime = new ValueRecorder(
+				"VersionCollector#collectionTime(ms)");
+		collectionTime.setFormat("%a");
+	}
+
+	/**
+	 * The active snapshots, mapped to the time of their last read.
+	 */
+	private static final ConcurrentSkipListMap<Integer, AtomicLong> snapshots = new ConcurrentSkipListMap<Integer, AtomicLong>();
+
+	/**
+	 * True once a collector is started. Reads are not tracked before.
+	 */
+	private static volatile boolean tracking;
+
+	private static long lease = Configuration.readConfig(
+			ConstantPool.VERSION_GC_SNAPSHOT_LEASE,
+			ConstantPool.JESSY_VERSION_GC_SNAPSHOT_LEASE);
+
+	private DataStore dataStore;
+
+	private int minVersions;
+
+	private long period;
+
+	public VersionCollector(DataStore dataStore) {
+		this.dataStore = dataStore;
+		this.minVersions = Configuration.readConfig(
+				ConstantPool.VERSION_GC_MIN_VERSIONS,
+				ConstantPool.JESSY_VERSION_GC_MIN_VERSIONS);
+		this.period = Configuration.readConfig(ConstantPool.VERSION_GC_PERIOD,
+				ConstantPool.JESSY_VERSION_GC_PERIOD);
+		if (isEnabled())
+			tracking = true;
+	}
+
+	public boolean isEnabled() {
+		return period > 0;
+	}
+
+	public void run() {
+		logger.info("Version collector is started with period " + period
+				+ ", minimum versions " + minVersions + " and snapshot lease "
+				+ lease);
+
+		while (true) {
+			try {
+				Thread.sleep(period);
+				collect();
+			} catch (InterruptedException e) {
+				return;
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Performs one garbage collection pass on the data store.
+	 *
+	 * @return the number of reclaimed versions.
+	 */
+	public int collect() {
+		// The watermark is sampled before the snapshots: a snapshot
+		// registered afterwards is at least the sampled watermark.
+		Integer watermark = VectorFactory.getGarbageCollectionWatermark();
+		if (watermark == null)
+			return 0;
+
+		Integer oldest = oldestActiveSnapshot(System.currentTimeMillis());
+		if (oldest != null && oldest < watermark)
+			watermark = oldest;
+
+		long start = System.currentTimeMillis();
+		int reclaimed = dataStore.collectVersions(watermark, minVersions);
+		collectionTime.add(System.currentTimeMillis() - start);
+
+		return reclaimed;
+	}
+
+	/**
+	 * Must be called by a {@link DataStore} before serving a read with
+	 * <code>readSet</code>, in order to keep the versions of the snapshot of
+	 * the read.
+	 */
+	public static void snapshotRead(CompactVector<String> readSet) {
+		if (!tracking)
+			return;
+
+		Integer snapshot = null;
+		if (readSet != null)
+			snapshot = VectorFactory.getGarbageCollectionSnapshot(readSet);
+		if (snapshot == null)
+			snapshot = VectorFactory.getGarbageCollectionWatermark();
+		if (snapshot == null)
+			return;
+
+		long now = System.currentTimeMillis();
+		AtomicLong lastRead = snapshots.get(snapshot);
+		if (lastRead == null) {
+			lastRead = snapshots.putIfAbsent(snapshot, new AtomicLong(now));
+			if (lastRead == null)
+				return;
+		}
+		// Most reads of a snapshot happen within the same millisecond.
+		if (lastRead.get() != now)
+			lastRead.set(now);
+	}
+
+	/**
+	 * Returns the oldest snapshot read during the last lease, or null if
+	 * there is none. Expired snapshots are forgotten.
+	 */
+	static Integer oldestActiveSnapshot(long now) {
+		Iterator<Map.Entry<Integer, AtomicLong>> it = snapshots.entrySet()
+				.iterator();
+		while (it.hasNext()) {
+			Map.Entry<Integer, AtomicLong> entry = it.next();
+			if (now - entry.getValue().get() <= lease)
+				return entry.getKey();
+			it.remove();
+		}
+		return null;
+	}
+
+	/**
+	 * Starts or stops tracking the snapshots, e.g., in tests. Stopping
+	 * forgets the active snapshots.
+	 */
+	static void setTracking(boolean enabled) {
+		tracking = enabled;
+		if (!enabled)
+			snapshots.clear();
+	}
+
+	/**
+	 * Returns the number of versions that can be removed from the head of
+	 * <code>versions</code>. A version can be removed if it is not among the
+	 * <code>minVersions</code> most recent versions, and a more recent version
+	 * is below the watermark. Thus, every snapshot above the watermark reads
+	 * this more recent version or a later one.
+	 *
+	 * @param versions
+	 *            the versions of one entity, from the oldest to the most
+	 *            recent.
+	 * @param watermark
+	 *            the garbage collection watermark.
+	 * @param minVersions
+	 *            number of most recent versions that are always kept.
+	 * @return the number of versions to remove, starting from the oldest one.
+	 */
+	public static int reclaimableVersions(
+			List<? extends JessyEntity> versions, Integer watermark,
+			int minVersions) {
+		int index = versions.size() - 1;
+
+		while (index >= 0) {
+			Integer value = versions.get(index).getLocalVector()
+					.getGarbageCollectionValue();
+			if (value != null && value <= watermark)
+				break;
+			index--;
+		}
+
+		if (index <= 0)
+			return 0;
+
+		return Math.max(0, Math.min(index, versions.size() - minVersions));
+	}
+
+	/**
+	 * Must be called by a {@link DataStore} for each removed version.
+	 *
+	 * @param bytes
+	 *            the size of the version recorded when it was stored, or 0 if
+	 *            the data store does not record it. Versions are not
+	 *            serialized again to estimate their size.
+	 */
+	public static void versionReclaimed(int bytes) {
+		versionsReclaimed.add(1);
+		if (bytes > 0)
+			bytesFreed.add(bytes);
+	}
+
+}
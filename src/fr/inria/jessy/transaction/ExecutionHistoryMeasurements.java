@@ -9,6 +9,18 @@ public class ExecutionHistoryMeasurements {
 	private long applyingTransactionQueueingStartTime;
 	
 	private boolean voteReceiver;
+
+	/**
+	 * Log sequence number of the entities applied by the transaction in the
+	 * write-ahead log, or zero.
+	 */
+	private long logSequenceNumber;
+
+	/**
+	 * Times (in nanoseconds) the transaction reached each
+	 * {@link TransactionTracer.Point} in this process, or zero.
+	 */
+	private final long[] traceStamps = new long[TransactionTracer.Point.values().length];
 	
 	public void setStartCertificationTime(long startCertificationTime) {
 		this.startCertificationTime = startCertificationTime;
@@ -34,6 +46,17 @@ public class ExecutionHistoryMeasurements {
 	public void setVoteReceiver(boolean voteReceiver) {
 		this.voteReceiver = voteReceiver;
 	}
-	
-	
+
+	public long getLogSequenceNumber() {
+		return logSequenceNumber;
+	}
+
+	public void setLogSequenceNumber(long logSequenceNumber) {
+		this.logSequenceNumber = logSequenceNumber;
+	}
+
+	public long[] getTraceStamps() {
+		return traceStamps;
+	}
+
 }
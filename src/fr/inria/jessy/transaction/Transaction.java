@@ -133,6 +133,30 @@ public abstract class Transaction implements Callable<ExecutionHistory> {
 		return entity;
 	}
 
+	/**
+	 * Performs several transactional reads at once on top of Jessy.
+	 * 
+	 * @param <E>
+	 *            The type of the entities needed to be read.
+	 * @param entityClass
+	 *            The class of the entities needed to be read.
+	 * @param keyValues
+	 *            The keys of the entities needed to be read.
+	 * @return The read entities, in the order of their keys.
+	 * @throws Exception
+	 * @see Jessy#readAll(TransactionHandler, Class, Collection)
+	 */
+	public <E extends JessyEntity> List<E> readAll(Class<E> entityClass,
+			Collection<String> keyValues) throws Exception {
+		long start = System.currentTimeMillis();
+
+		List<E> entities = jessy.readAll(transactionHandler, entityClass,
+				keyValues);
+
+		transactionReadOperatinTime.add(System.currentTimeMillis() - start);
+		return entities;
+	}
+
 	public <E extends JessyEntity> Collection<E> read(Class<E> entityClass,
 			List<ReadRequestKey<?>> keys) throws Exception {
 		return jessy.read(transactionHandler, entityClass, keys);
@@ -0,0 +1,245 @@
+package fr.inria.jessy.transaction;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+import fr.inria.jessy.ConstantPool;
+import fr.inria.jessy.utils.Configuration;
+import fr.inria.jessy.utils.DaemonThreadFactory;
+import fr.inria.jessy.utils.LogLinearHistogram;
+
+/**
+ * Traces the execution and the termination of transactions. Each
+ * {@link ExecutionHistory} is stamped with {@link System#nanoTime()} when it
+ * reaches a {@link Point}, and the time elapsed since the beginning of every
+ * {@link Phase} ending at this point is recorded in the
+ * {@link LogLinearHistogram} of the phase. Since the reads of a transaction
+ * may be pending concurrently, each read is rather timed on its own, from
+ * {@link #start()} until {@link #record(Phase, long)}.
+ * <p>
+ * Stamps are not serialized with the execution history, hence a phase is
+ * only measured if it begins and ends in the same process: the proxy measures
+ * the reads and the round trip of the termination, and the replicas measure
+ * the certification, the voting and the application of the transactions.
+ * <p>
+ * The histograms are labelled with the <code>consistency_type</code>, and
+ * are printed when the process exits, as well as every
+ * <code>trace_export_period</code> milliseconds if it is positive. Tracing is
+ * enabled by setting <code>tracing</code> to true.
+ *
+ * @author Masoud Saeida Ardekani
+ *
+ */
+public class TransactionTracer {
+
+	private static Logger logger = Logger.getLogger(TransactionTracer.class);
+
+	public static enum Point {
+		TERMINATION_CAST, DELIVERED, CERTIFICATION_START, CERTIFICATION_END, VOTE_SENT, VOTE_RECEIVED, QUORUM, APPLIED, CLIENT_RETURN
+	}
+
+	public static enum Phase {
+		/**
+		 * A read at the proxy, from issuing the request until getting the
+		 * entity. It is not delimited by points, since each read is timed on
+		 * its own.
+		 */
+		READ(null, null),
+		/**
+		 * From casting the transaction until the proxy gets the first vote.
+		 */
+		FIRST_VOTE(Point.TERMINATION_CAST, Point.VOTE_RECEIVED),
+		/**
+		 * From casting the transaction until the proxy knows its outcome.
+		 */
+		TERMINATION(Point.TERMINATION_CAST, Point.QUORUM),
+		/**
+		 * From casting the transaction until returning its outcome to the
+		 * client.
+		 */
+		COMMIT(Point.TERMINATION_CAST, Point.CLIENT_RETURN),
+		/**
+		 * From delivering the transaction until it can be certified.
+		 */
+		CERTIFICATION_QUEUEING(Point.DELIVERED, Point.CERTIFICATION_START),
+		CERTIFICATION(Point.CERTIFICATION_START, Point.CERTIFICATION_END),
+		VOTE_SENDING(Point.CERTIFICATION_END, Point.VOTE_SENT),
+		/**
+		 * From sending the vote until the replica knows the outcome.
+		 */
+		VOTING(Point.VOTE_SENT, Point.QUORUM),
+		/**
+		 * From knowing the outcome until the transaction is applied to the
+		 * data store, including its queueing.
+		 */
+		APPLYING(Point.QUORUM, Point.APPLIED),
+		/**
+		 * From delivering the transaction until it is applied.
+		 */
+		REPLICA_TERMINATION(Point.DELIVERED, Point.APPLIED);
+
+		final Point from, to;
+
+		private Phase(Point from, Point to) {
+			this.from = from;
+			this.to = to;
+		}
+	}
+
+	private static final boolean enabled;
+
+	private static final String protocol;
+
+	private static final Map<Phase, LogLinearHistogram> histograms = new EnumMap<Phase, LogLinearHistogram>(
+			Phase.class);
+
+	/**
+	 * The phases ending at each point.
+	 */
+	private static final Phase[][] phasesEndingAt = new Phase[Point.values().length][];
+
+	static {
+		enabled = Configuration.readConfig(ConstantPool.TRACING,
+				ConstantPool.JESSY_TRACING);
+		protocol = Configuration.readConfig(ConstantPool.CONSISTENCY_TYPE,
+				"unknown").trim();
+
+		for (Phase phase : Phase.values())
+			histograms.put(phase, new LogLinearHistogram());
+
+		for (Point point : Point.values()) {
+			List<Phase> phases = new ArrayList<Phase>();
+			for (Phase phase : Phase.values()) {
+				if (phase.to == point)
+					phases.add(phase);
+			}
+			phasesEndingAt[point.ordinal()] = phases.toArray(new Phase[phases
+					.size()]);
+		}
+
+		if (enabled) {
+			Runtime.getRuntime().addShutdownHook(new Thread() {
+				public void run() {
+					export(System.out);
+				}
+			});
+
+			long period = Configuration.readConfig(
+					ConstantPool.TRACE_EXPORT_PERIOD,
+					ConstantPool.JESSY_TRACE_EXPORT_PERIOD);
+			if (period > 0) {
+				ScheduledThreadPoolExecutor exporter = new ScheduledThreadPoolExecutor(
+						1, new DaemonThreadFactory("TransactionTracer"));
+				exporter.scheduleAtFixedRate(new Runnable() {
+					public void run() {
+						logger.info("\n" + export());
+					}
+				}, period, period, TimeUnit.MILLISECONDS);
+			}
+		}
+	}
+
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Stamps the transaction at <code>point</code>, and records the phases
+	 * ending at this point.
+	 */
+	public static void stamp(ExecutionHistory executionHistory, Point point) {
+		if (!enabled || executionHistory == null)
+			return;
+		stamp(executionHistory.getTraceStamps(), point, System.nanoTime());
+	}
+
+	/**
+	 * Stamps the transaction at <code>point</code> unless it has already
+	 * reached it, e.g., to keep the first of several votes.
+	 */
+	public static void stampOnce(ExecutionHistory executionHistory, Point point) {
+		if (!enabled || executionHistory == null)
+			return;
+		stampOnce(executionHistory.getTraceStamps(), point, System.nanoTime());
+	}
+
+	/**
+	 * Returns the start time of an operation timed on its own, e.g., a read,
+	 * or zero if tracing is disabled.
+	 */
+	public static long start() {
+		return enabled ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Records <code>phase</code>, which began at <code>start</code>, as
+	 * returned by {@link #start()}.
+	 */
+	public static void record(Phase phase, long start) {
+		if (start != 0)
+			record(phase, start, System.nanoTime());
+	}
+
+	/**
+	 * Sets <code>stamps[point]</code> to <code>now</code>, and records the
+	 * phases ending at this point, whether tracing is enabled or not.
+	 */
+	static void stamp(long[] stamps, Point point, long now) {
+		stamps[point.ordinal()] = now;
+
+		for (Phase phase : phasesEndingAt[point.ordinal()]) {
+			long from = stamps[phase.from.ordinal()];
+			if (from != 0)
+				record(phase, from, now);
+		}
+	}
+
+	static void stampOnce(long[] stamps, Point point, long now) {
+		if (stamps[point.ordinal()] == 0)
+			stamp(stamps, point, now);
+	}
+
+	static void record(Phase phase, long from, long now) {
+		histograms.get(phase).record(now - from);
+	}
+
+	public static LogLinearHistogram getHistogram(Phase phase) {
+		return histograms.get(phase);
+	}
+
+	/**
+	 * Returns the percentiles (in microseconds) of the phases measured by
+	 * this process, one phase per line.
+	 */
+	public static String export() {
+		StringBuilder result = new StringBuilder();
+		for (Phase phase : Phase.values()) {
+			LogLinearHistogram histogram = histograms.get(phase);
+			long count = histogram.getCount();
+			if (count == 0)
+				continue;
+
+			result.append(String.format(
+					"TransactionTracer#%s#%s(us)\tcount %d\tmean %.1f\tp50 %.1f\tp99 %.1f\tp999 %.1f\tmax %.1f%n",
+					protocol, phase, count, histogram.getMean() / 1000,
+					histogram.getValueAtPercentile(50) / 1000.0,
+					histogram.getValueAtPercentile(99) / 1000.0,
+					histogram.getValueAtPercentile(99.9) / 1000.0,
+					histogram.getMax() / 1000.0));
+		}
+		return result.toString();
+	}
+
+	public static void export(PrintStream out) {
+		out.print(export());
+		out.flush();
+	}
+
+}
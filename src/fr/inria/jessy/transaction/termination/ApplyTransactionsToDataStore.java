@@ -1,27 +1,131 @@
 package fr.inria.jessy.transaction.termination;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
+import net.sourceforge.fractal.utils.PerformanceProbe.ValueRecorder;
+
+import org.apache.log4j.Logger;
+
+import fr.inria.jessy.ConstantPool;
 import fr.inria.jessy.communication.message.TerminateTransactionRequestMessage;
+import fr.inria.jessy.store.EntitySet;
+import fr.inria.jessy.transaction.ExecutionHistory;
+import fr.inria.jessy.utils.Configuration;
+import fr.inria.jessy.utils.DaemonThreadFactory;
 
 /**
- * This class is used for applying the transactions to the data store
- * SEQUENTIALLY. For certain consistencies (i.e., NMSI-GMUVector, US, SI, PSI),
- * update transactions should be applied sequentially.
- * 
+ * This class is used for applying the transactions to the data store in the
+ * order they are queued. For certain consistencies (i.e., NMSI-GMUVector, US,
+ * SI, PSI), update transactions should be applied sequentially.
+ * <p>
+ * Only the transactions whose write sets overlap need to be applied in
+ * order. Hence, transactions are taken from the queue by one thread, which
+ * prepares them in order, and are then applied by
+ * <code>apply_threads</code> threads, each transaction waiting only for the
+ * queued transactions writing one of its keys. The post commit actions and
+ * the garbage collection of the transactions are still executed in queue
+ * order, once a transaction and all transactions queued before it are
+ * applied.
+ *
  * @author Masoud Saeida Ardekani
- * 
+ *
  */
 public class ApplyTransactionsToDataStore implements Runnable {
 
+	private static Logger logger = Logger
+			.getLogger(ApplyTransactionsToDataStore.class);
+
+	private static ValueRecorder dependencies, inFlightTransactions;
+
+	static {
+		// Performance measuring facilities
+
+		dependencies = new ValueRecorder(
+				"ApplyTransactionsToDataStore#dependencies");
+		dependencies.setFormat("%a");
+
+		inFlightTransactions = new ValueRecorder(
+				"ApplyTransactionsToDataStore#inFlightTransactions");
+		inFlightTransactions.setFormat("%a");
+	}
+
+	/**
+	 * A prepared transaction, and the transactions writing one of its keys
+	 * that have been queued after it.
+	 */
+	private static class Node {
+
+		final TerminateTransactionRequestMessage msg;
+
+		final Set<String> keys;
+
+		/**
+		 * Number of transactions this one waits for before being applied.
+		 */
+		int pending;
+
+		List<Node> successors;
+
+		boolean applied;
+
+		Node(TerminateTransactionRequestMessage msg) {
+			this.msg = msg;
+			keys = getWrittenKeys(msg.getExecutionHistory());
+		}
+	}
+
 	private LinkedBlockingQueue<TerminateTransactionRequestMessage> queue;
 
 	private DistributedTermination distributedTermination;
 
+	/**
+	 * The last transaction writing each key, among the transactions that are
+	 * not yet applied.
+	 */
+	private final Map<String, Node> lastWriters = new HashMap<String, Node>();
+
+	/**
+	 * The transactions taken from the queue that are not yet terminated, in
+	 * queue order.
+	 */
+	private final LinkedList<Node> inFlight = new LinkedList<Node>();
+
+	private final Object terminationLock = new Object();
+
+	private final ThreadPoolExecutor executor;
+
 	public ApplyTransactionsToDataStore(
 			DistributedTermination distributedTermination) {
+		this(distributedTermination, Configuration.readConfig(
+				ConstantPool.APPLY_THREADS, ConstantPool.JESSY_APPLY_THREADS));
+	}
+
+	/**
+	 * @param threads
+	 *            number of threads applying transactions. Zero means one
+	 *            thread per core.
+	 */
+	public ApplyTransactionsToDataStore(
+			DistributedTermination distributedTermination, int threads) {
 		this.distributedTermination = distributedTermination;
 		queue = new LinkedBlockingQueue<TerminateTransactionRequestMessage>();
+
+		if (threads <= 0)
+			threads = Runtime.getRuntime().availableProcessors();
+		executor = new ThreadPoolExecutor(threads, threads, 0L,
+				TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+				new DaemonThreadFactory("ApplyTransactionsToDataStore", true));
+
+		logger.info("Transactions are applied by " + threads + " threads.");
 	}
 
 	public void run() {
@@ -31,12 +135,12 @@ public class ApplyTransactionsToDataStore implements Runnable {
 
 				TerminateTransactionRequestMessage msg = queue.take();
 
-				DistributedTermination.measureApplyingTransactionQueueingTime(msg);
-
-				distributedTermination.handleTerminationResult(msg);
+				prepare(msg);
 
-				DistributedTermination.measureCertificationTime(msg);
+				schedule(new Node(msg));
 
+			} catch (InterruptedException e) {
+				return;
 			} catch (Exception e) {
 				e.printStackTrace();
 			}
@@ -52,4 +156,124 @@ public class ApplyTransactionsToDataStore implements Runnable {
 	public void removeFromQueue(TerminateTransactionRequestMessage msg) {
 		queue.remove(msg);
 	}
+
+	public void close() {
+		executor.shutdownNow();
+	}
+
+	protected void prepare(TerminateTransactionRequestMessage msg) {
+		distributedTermination.prepareToApply(msg);
+	}
+
+	protected void apply(TerminateTransactionRequestMessage msg) {
+		distributedTermination.applyTransaction(msg);
+	}
+
+	protected void terminate(TerminateTransactionRequestMessage msg) {
+		distributedTermination.finishTermination(msg);
+		DistributedTermination.measureCertificationTime(msg);
+	}
+
+	/**
+	 * Makes the transaction wait for the last queued transaction writing each
+	 * of its keys, or applies it right away if there is none.
+	 */
+	private void schedule(Node node) {
+		synchronized (this) {
+			inFlight.add(node);
+			inFlightTransactions.add(inFlight.size());
+
+			for (String key : node.keys) {
+				Node predecessor = lastWriters.put(key, node);
+				if (predecessor == null)
+					continue;
+
+				if (predecessor.successors == null)
+					predecessor.successors = new ArrayList<Node>(2);
+				predecessor.successors.add(node);
+				node.pending++;
+			}
+
+			dependencies.add(node.pending);
+			if (node.pending == 0)
+				executor.execute(new ApplyTask(node));
+		}
+	}
+
+	private class ApplyTask implements Runnable {
+
+		private final Node node;
+
+		ApplyTask(Node node) {
+			this.node = node;
+		}
+
+		/**
+		 * The queueing time of a transaction lasts until it starts being
+		 * applied, thus it includes the wait for the transactions it depends
+		 * on.
+		 */
+		public void run() {
+			try {
+				DistributedTermination
+						.measureApplyingTransactionQueueingTime(node.msg);
+				apply(node.msg);
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+
+			synchronized (ApplyTransactionsToDataStore.this) {
+				node.applied = true;
+				for (String key : node.keys) {
+					if (lastWriters.get(key) == node)
+						lastWriters.remove(key);
+				}
+				if (node.successors != null) {
+					for (Node successor : node.successors) {
+						if (--successor.pending == 0)
+							executor.execute(new ApplyTask(successor));
+					}
+					node.successors = null;
+				}
+			}
+
+			terminateAppliedTransactions();
+		}
+	}
+
+	/**
+	 * Terminates, in queue order, the transactions at the head of
+	 * {@link #inFlight} that have been applied.
+	 */
+	private void terminateAppliedTransactions() {
+		synchronized (terminationLock) {
+			while (true) {
+				Node head;
+				synchronized (this) {
+					head = inFlight.peek();
+					if (head == null || !head.applied)
+						return;
+					inFlight.poll();
+				}
+
+				try {
+					terminate(head.msg);
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+
+	private static Set<String> getWrittenKeys(ExecutionHistory history) {
+		Set<String> keys = new HashSet<String>();
+		addKeys(keys, history.getWriteSet());
+		addKeys(keys, history.getCreateSet());
+		return keys;
+	}
+
+	private static void addKeys(Set<String> keys, EntitySet set) {
+		if (set != null)
+			keys.addAll(set.getKeys());
+	}
 }
@@ -21,6 +21,7 @@ import fr.inria.jessy.transaction.termination.vote.VotingQuorum;
 public abstract class AtomicCommit {
 
 	LinkedList<TerminateTransactionRequestMessage> atomicDeliveredMessages;
+	ConflictTable conflictTable;
 	DistributedTermination termination;
 	DistributedJessy jessy;
 
@@ -32,6 +33,7 @@ public abstract class AtomicCommit {
 	public AtomicCommit(DistributedTermination termination){
 		this.termination=termination;
 		this.atomicDeliveredMessages=termination.getAtomicDeliveredMessages();
+		this.conflictTable=termination.getConflictTable();
 		this.jessy=termination.jessy;
 		
 		terminationCommunication=TerminationCommunicationFactory.initAndGetConsistency(jessy.manager.getMyGroup(), termination,termination, jessy);
@@ -49,6 +51,17 @@ public abstract class AtomicCommit {
 	 */
 	public abstract boolean proceedToCertifyAndVote(TerminateTransactionRequestMessage msg);
 	
+	/**
+	 * Returns true if a delivered transaction must not be certified before the
+	 * conflicting transactions delivered before it have been decided. Such
+	 * transactions are scheduled by a {@link CertificationScheduler}, and
+	 * {@link #proceedToCertifyAndVote(TerminateTransactionRequestMessage)} is
+	 * only called once they are ready.
+	 */
+	public boolean isCertifiedInDeliveryOrder(){
+		return false;
+	}
+
 
 	/**
 	 * Computes a set of destinations for the votes, and sends out
@@ -0,0 +1,200 @@
+package fr.inria.jessy.transaction.termination;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import net.sourceforge.fractal.utils.PerformanceProbe.SimpleCounter;
+import net.sourceforge.fractal.utils.PerformanceProbe.ValueRecorder;
+
+import org.apache.log4j.Logger;
+
+import fr.inria.jessy.ConstantPool;
+import fr.inria.jessy.communication.message.TerminateTransactionRequestMessage;
+import fr.inria.jessy.consistency.Consistency;
+import fr.inria.jessy.transaction.ExecutionHistory;
+import fr.inria.jessy.utils.Configuration;
+import fr.inria.jessy.utils.DaemonThreadFactory;
+
+/**
+ * Schedules the certification of atomically delivered transactions according
+ * to a dependency graph, instead of letting each of them wait on
+ * {@link DistributedTermination#getAtomicDeliveredMessages()} until no
+ * conflicting transaction precedes it.
+ * <p>
+ * Each delivered transaction is a node. It depends on every transaction
+ * delivered before it, and not yet garbage collected, that shares a key with
+ * it in the {@link ConflictTable} (read-write, write-read or write-write), and
+ * does not commute with it according to
+ * {@link Consistency#certificationCommute(ExecutionHistory, ExecutionHistory)}.
+ * Since transactions are added in delivery order, a transaction is certified
+ * exactly when it would have been by waiting on the delivered messages, but
+ * without holding a thread and without scanning all delivered transactions
+ * each time one of them is garbage collected.
+ * <p>
+ * Transactions whose dependencies are decided are certified by
+ * <code>certification_threads</code> threads.
+ *
+ * @author Masoud Saeida Ardekani
+ *
+ */
+public class CertificationScheduler {
+
+	private static Logger logger = Logger
+			.getLogger(CertificationScheduler.class);
+
+	private static ValueRecorder dependencies, schedulingLatency;
+
+	private static SimpleCounter readyOnDelivery;
+
+	static {
+		// Performance measuring facilities
+
+		dependencies = new ValueRecorder(
+				"CertificationScheduler#dependencies");
+		dependencies.setFormat("%a");
+
+		schedulingLatency = new ValueRecorder(
+				"CertificationScheduler#schedulingLatency(us)");
+		schedulingLatency.setFormat("%a");
+
+		readyOnDelivery = new SimpleCounter(
+				"CertificationScheduler#readyOnDelivery");
+	}
+
+	/**
+	 * A delivered transaction, and the transactions depending on it.
+	 */
+	private static class Node {
+
+		final TerminateTransactionRequestMessage msg;
+
+		final Runnable task;
+
+		final long deliveryTime = System.nanoTime();
+
+		/**
+		 * Number of transactions this one depends on that are not yet
+		 * decided.
+		 */
+		int pending;
+
+		List<Node> successors;
+
+		Node(TerminateTransactionRequestMessage msg, Runnable task) {
+			this.msg = msg;
+			this.task = task;
+		}
+	}
+
+	private final Map<TerminateTransactionRequestMessage, Node> nodes = new IdentityHashMap<TerminateTransactionRequestMessage, Node>();
+
+	private final ConflictTable conflictTable;
+
+	private final Consistency consistency;
+
+	private final ThreadPoolExecutor executor;
+
+	public CertificationScheduler(ConflictTable conflictTable,
+			Consistency consistency) {
+		this(conflictTable, consistency, Configuration.readConfig(
+				ConstantPool.CERTIFICATION_THREADS,
+				ConstantPool.JESSY_CERTIFICATION_THREADS));
+	}
+
+	/**
+	 * @param conflictTable
+	 *            the table indexing the delivered transactions. A transaction
+	 *            must be added to it before being passed to
+	 *            {@link #delivered(TerminateTransactionRequestMessage, Runnable)}
+	 *            .
+	 * @param threads
+	 *            number of threads. Zero means one thread per core.
+	 */
+	public CertificationScheduler(ConflictTable conflictTable,
+			Consistency consistency, int threads) {
+		this.conflictTable = conflictTable;
+		this.consistency = consistency;
+
+		if (threads <= 0)
+			threads = Runtime.getRuntime().availableProcessors();
+		executor = new ThreadPoolExecutor(threads, threads, 0L,
+				TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+				new DaemonThreadFactory("CertificationScheduler", true));
+
+		logger.info("Transactions are certified by " + threads + " threads.");
+	}
+
+	/**
+	 * Adds a delivered transaction to the graph. <code>task</code> is
+	 * executed once every transaction delivered before <code>msg</code> and
+	 * not commuting with it has been decided.
+	 * <p>
+	 * Must be called in delivery order.
+	 */
+	public synchronized void delivered(TerminateTransactionRequestMessage msg,
+			Runnable task) {
+		Node node = new Node(msg, task);
+		for (TerminateTransactionRequestMessage candidate : conflictTable
+				.getConflictCandidates(msg)) {
+			Node predecessor = nodes.get(candidate);
+			if (predecessor == null || commute(candidate, msg))
+				continue;
+
+			if (predecessor.successors == null)
+				predecessor.successors = new ArrayList<Node>(2);
+			predecessor.successors.add(node);
+			node.pending++;
+		}
+		nodes.put(msg, node);
+
+		dependencies.add(node.pending);
+		if (node.pending == 0) {
+			readyOnDelivery.incr();
+			execute(node);
+		}
+	}
+
+	/**
+	 * Removes a transaction from the graph once it has been decided, and
+	 * schedules the transactions that were only waiting for it.
+	 */
+	public synchronized void decided(TerminateTransactionRequestMessage msg) {
+		Node node = nodes.remove(msg);
+		if (node == null || node.successors == null)
+			return;
+
+		for (Node successor : node.successors) {
+			if (--successor.pending == 0)
+				execute(successor);
+		}
+		node.successors = null;
+	}
+
+	/**
+	 * Returns the number of transactions delivered and not yet decided.
+	 */
+	public synchronized int size() {
+		return nodes.size();
+	}
+
+	public void close() {
+		executor.shutdownNow();
+	}
+
+	protected boolean commute(TerminateTransactionRequestMessage msg1,
+			TerminateTransactionRequestMessage msg2) {
+		return consistency.certificationCommute(msg1.getExecutionHistory(),
+				msg2.getExecutionHistory());
+	}
+
+	private void execute(Node node) {
+		schedulingLatency.add((System.nanoTime() - node.deliveryTime) / 1000);
+		executor.execute(node.task);
+	}
+
+}
@@ -0,0 +1,176 @@
+package fr.inria.jessy.transaction.termination;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import fr.inria.jessy.communication.message.TerminateTransactionRequestMessage;
+import fr.inria.jessy.consistency.Consistency;
+import fr.inria.jessy.store.EntitySet;
+import fr.inria.jessy.transaction.ExecutionHistory;
+
+/**
+ * Indexes the atomically delivered transactions by the keys they touch, so
+ * that a transaction is only checked against the in-flight transactions
+ * sharing one of its keys, instead of all of them.
+ * <p>
+ * A transaction is indexed by the keys it writes (its write set and create
+ * set) and by the keys it reads. The candidates of a transaction are the
+ * transactions writing a key it reads or writes, and the transactions
+ * reading a key it writes. Since {@link Consistency#certificationCommute}
+ * only compares these keys, whatever
+ * {@link Consistency#READ_KEYS_REQUIRED_FOR_COMMUTATIVITY_TEST}, two
+ * transactions that are not candidates of each other always commute.
+ * <p>
+ * The tables are split into stripes, each guarded by its own lock, so that
+ * transactions touching different keys do not contend.
+ *
+ * @author Masoud Saeida Ardekani
+ *
+ */
+public class ConflictTable {
+
+	private static final int STRIPES = 64;
+
+	/**
+	 * The transactions writing each key.
+	 */
+	private final List<Map<String, List<TerminateTransactionRequestMessage>>> writers = newStripes();
+
+	/**
+	 * The transactions reading each key.
+	 */
+	private final List<Map<String, List<TerminateTransactionRequestMessage>>> readers = newStripes();
+
+	/**
+	 * Adds the transaction to the entries of all its keys.
+	 */
+	public void add(TerminateTransactionRequestMessage msg) {
+		ExecutionHistory history = msg.getExecutionHistory();
+		for (String key : getWriteKeys(history))
+			add(writers, key, msg);
+		for (String key : getReadKeys(history))
+			add(readers, key, msg);
+	}
+
+	/**
+	 * Removes the transaction from the entries of all its keys.
+	 */
+	public void remove(TerminateTransactionRequestMessage msg) {
+		ExecutionHistory history = msg.getExecutionHistory();
+		for (String key : getWriteKeys(history))
+			remove(writers, key, msg);
+		for (String key : getReadKeys(history))
+			remove(readers, key, msg);
+	}
+
+	/**
+	 * Returns the transactions, other than <code>msg</code>, writing a key
+	 * <code>msg</code> reads or writes, or reading a key <code>msg</code>
+	 * writes. These are the only transactions that might not commute with
+	 * it.
+	 */
+	public Collection<TerminateTransactionRequestMessage> getConflictCandidates(
+			TerminateTransactionRequestMessage msg) {
+		Set<TerminateTransactionRequestMessage> candidates = Collections
+				.newSetFromMap(new IdentityHashMap<TerminateTransactionRequestMessage, Boolean>());
+		ExecutionHistory history = msg.getExecutionHistory();
+		for (String key : getWriteKeys(history)) {
+			addEntry(candidates, writers, key);
+			addEntry(candidates, readers, key);
+		}
+		for (String key : getReadKeys(history))
+			addEntry(candidates, writers, key);
+		candidates.remove(msg);
+		return candidates;
+	}
+
+	private static List<Map<String, List<TerminateTransactionRequestMessage>>> newStripes() {
+		List<Map<String, List<TerminateTransactionRequestMessage>>> stripes = new ArrayList<Map<String, List<TerminateTransactionRequestMessage>>>(
+				STRIPES);
+		for (int i = 0; i < STRIPES; i++)
+			stripes.add(new HashMap<String, List<TerminateTransactionRequestMessage>>());
+		return stripes;
+	}
+
+	private static void add(
+			List<Map<String, List<TerminateTransactionRequestMessage>>> stripes,
+			String key, TerminateTransactionRequestMessage msg) {
+		Map<String, List<TerminateTransactionRequestMessage>> stripe = stripeOf(
+				stripes, key);
+		synchronized (stripe) {
+			List<TerminateTransactionRequestMessage> entry = stripe.get(key);
+			if (entry == null) {
+				entry = new ArrayList<TerminateTransactionRequestMessage>(2);
+				stripe.put(key, entry);
+			}
+			entry.add(msg);
+		}
+	}
+
+	private static void remove(
+			List<Map<String, List<TerminateTransactionRequestMessage>>> stripes,
+			String key, TerminateTransactionRequestMessage msg) {
+		Map<String, List<TerminateTransactionRequestMessage>> stripe = stripeOf(
+				stripes, key);
+		synchronized (stripe) {
+			List<TerminateTransactionRequestMessage> entry = stripe.get(key);
+			if (entry == null)
+				return;
+			for (int i = 0; i < entry.size(); i++) {
+				if (entry.get(i) == msg) {
+					entry.remove(i);
+					break;
+				}
+			}
+			if (entry.isEmpty())
+				stripe.remove(key);
+		}
+	}
+
+	private static void addEntry(
+			Set<TerminateTransactionRequestMessage> candidates,
+			List<Map<String, List<TerminateTransactionRequestMessage>>> stripes,
+			String key) {
+		Map<String, List<TerminateTransactionRequestMessage>> stripe = stripeOf(
+				stripes, key);
+		synchronized (stripe) {
+			List<TerminateTransactionRequestMessage> entry = stripe.get(key);
+			if (entry != null)
+				candidates.addAll(entry);
+		}
+	}
+
+	private static Map<String, List<TerminateTransactionRequestMessage>> stripeOf(
+			List<Map<String, List<TerminateTransactionRequestMessage>>> stripes,
+			String key) {
+		int hash = key.hashCode();
+		hash ^= (hash >>> 16);
+		return stripes.get(hash & (STRIPES - 1));
+	}
+
+	private static Set<String> getWriteKeys(ExecutionHistory history) {
+		Set<String> keys = new LinkedHashSet<String>();
+		addKeys(keys, history.getWriteSet());
+		addKeys(keys, history.getCreateSet());
+		return keys;
+	}
+
+	private static Set<String> getReadKeys(ExecutionHistory history) {
+		Set<String> keys = new LinkedHashSet<String>();
+		addKeys(keys, history.getReadSet());
+		return keys;
+	}
+
+	private static void addKeys(Set<String> keys, EntitySet set) {
+		if (set != null)
+			keys.addAll(set.getKeys());
+	}
+
+}
@@ -6,9 +6,7 @@ import java.util.LinkedList;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -31,16 +29,22 @@ import fr.inria.jessy.DistributedJessy;
 import fr.inria.jessy.communication.JessyGroupManager;
 import fr.inria.jessy.communication.UnicastLearner;
 import fr.inria.jessy.communication.message.TerminateTransactionRequestMessage;
+import fr.inria.jessy.communication.message.VoteBatchMessage;
 import fr.inria.jessy.communication.message.VoteMessage;
 import fr.inria.jessy.consistency.Consistency;
 import fr.inria.jessy.consistency.Consistency.ConcernedKeysTarget;
+import fr.inria.jessy.persistence.FilePersistence;
+import fr.inria.jessy.persistence.WriteAheadLog;
 import fr.inria.jessy.protocol.ProtocolFactory;
 import fr.inria.jessy.transaction.ExecutionHistory;
 import fr.inria.jessy.transaction.ExecutionHistory.TransactionType;
 import fr.inria.jessy.transaction.TransactionHandler;
 import fr.inria.jessy.transaction.TransactionState;
+import fr.inria.jessy.transaction.TransactionTracer;
+import fr.inria.jessy.transaction.TransactionTracer.Point;
 import fr.inria.jessy.transaction.termination.vote.Vote;
 import fr.inria.jessy.transaction.termination.vote.VotingQuorum;
+import fr.inria.jessy.utils.SettableFuture;
 
 /**
  * This class is responsible for sending transactions to remote replicas,
@@ -83,6 +87,20 @@ public class DistributedTermination implements Learner, UnicastLearner {
 	 *  
 	 */
 	private LinkedList<TerminateTransactionRequestMessage> atomicDeliveredMessages;
+
+	/**
+	 * Transactions of {@link #atomicDeliveredMessages} indexed by the keys
+	 * they touch.
+	 */
+	private ConflictTable conflictTable;
+
+	/**
+	 * Schedules the certification of the delivered transactions if they must
+	 * wait for the conflicting transactions delivered before them, i.e., if
+	 * {@link AtomicCommit#isCertifiedInDeliveryOrder()} is true. Null
+	 * otherwise.
+	 */
+	private CertificationScheduler certificationScheduler;
 	
 	/**
 	 * Terminated transactions
@@ -129,6 +147,7 @@ public class DistributedTermination implements Learner, UnicastLearner {
 		logger.info("initialized");
 
 		atomicDeliveredMessages = new LinkedList<TerminateTransactionRequestMessage>();
+		conflictTable = new ConflictTable();
 		
 		votingQuorums = new ConcurrentHashMap<TransactionHandler, VotingQuorum>();
 
@@ -156,20 +175,29 @@ public class DistributedTermination implements Learner, UnicastLearner {
 			voterName="" + jessy.manager.getSourceId();
 		}
 		
+		if (atomicCommit.isCertifiedInDeliveryOrder())
+			certificationScheduler=new CertificationScheduler(conflictTable, jessy.getConsistency());
+		
 	}
 	
 	/**
 	 * Called by distributed jessy for submitting a new transaction for
 	 * termination.
 	 * 
+	 * <p>
+	 * The transaction is cast by a pool thread, which returns right away. The
+	 * returned future is completed by the thread delivering the last vote (or
+	 * by the timer of the {@link VotingQuorum}), thus no thread waits for the
+	 * outcome of the transaction.
+	 * 
 	 * @param ex
 	 *            ExecutionHistory of the transaction for termination.
 	 * @return
 	 */
-	public Future<TransactionState> terminateTransaction(ExecutionHistory ex) {
+	public SettableFuture<TransactionState> terminateTransaction(ExecutionHistory ex) {
 		ex.changeState(TransactionState.COMMITTING);
-		Future<TransactionState> reply = pool
-				.submit(new AtomicMulticastTask(ex));
+		SettableFuture<TransactionState> reply = new SettableFuture<TransactionState>();
+		pool.execute(new AtomicMulticastTask(ex, reply));
 		return reply;
 	}
 
@@ -177,6 +205,10 @@ public class DistributedTermination implements Learner, UnicastLearner {
 	public void receiveMessage(Object message, Channel channel) {
 		if (message instanceof VoteMessage){
 			handleVoteMessage(message);
+		}
+		else if (message instanceof VoteBatchMessage){
+			for (VoteMessage voteMessage : ((VoteBatchMessage) message).getVoteMessages())
+				handleVoteMessage(voteMessage);
 		}		
 		else{
 			logger.error("Netty delivered an unexpected message");
@@ -210,7 +242,8 @@ public class DistributedTermination implements Learner, UnicastLearner {
 			logger.info("got a TerminateTransactionRequestMessage for "+ terminateRequestMessage.getExecutionHistory().toString());
 
 		terminateRequestMessage.getExecutionHistory()
-				.setStartCertificationTime(System.currentTimeMillis());
+				.setStartCertificationTime(System.nanoTime());
+		TransactionTracer.stamp(terminateRequestMessage.getExecutionHistory(), Point.DELIVERED);
 		
 		boolean certifyAndVote=ProtocolFactory.getProtocolInstance().transactionDeliveredForTermination(terminated, votingQuorums, terminateRequestMessage);
 	
@@ -234,15 +267,19 @@ public class DistributedTermination implements Learner, UnicastLearner {
 
 				}
 				
-				if (certifyAndVote)
+				if (certifyAndVote) {
 					atomicDeliveredMessages.add(terminateRequestMessage);
+					conflictTable.add(terminateRequestMessage);
+					if (certificationScheduler!=null)
+						certificationScheduler.delivered(terminateRequestMessage, new CertifyAndVoteTask(terminateRequestMessage));
+				}
 			}
 		}
 		catch (Exception ex){
 			ex.printStackTrace();
 		}
 		
-		if (certifyAndVote){
+		if (certifyAndVote && certificationScheduler==null){
 			pool.execute(new CertifyAndVoteTask(terminateRequestMessage));
 		}
 	}
@@ -287,6 +324,9 @@ public class DistributedTermination implements Learner, UnicastLearner {
 			return;
 		VotingQuorum vq = getOrCreateVotingQuorums(vote.getTransactionHandler());
 
+		if (TransactionTracer.isEnabled())
+			TransactionTracer.stampOnce(jessy.getExecutionHistory(vote.getTransactionHandler()), Point.VOTE_RECEIVED);
+
 		try {
 			jessy.getConsistency().voteReceived(vote);
 			vq.addVote(vote);
@@ -312,44 +352,84 @@ public class DistributedTermination implements Learner, UnicastLearner {
 		try{
 			if (DebuggingFlag.DISTRIBUTED_TERMINATION)
 				logger.debug(msg.getExecutionHistory().toString());
-			ExecutionHistory executionHistory = msg.getExecutionHistory();
 
-			TransactionHandler th = executionHistory.getTransactionHandler();
-			assert !terminated.containsKey(th.getId());
+			assert !terminated.containsKey(msg.getExecutionHistory().getTransactionHandler().getId());
 
-			if (executionHistory.getTransactionState() == TransactionState.COMMITTED) {
-				/*
-				 * Prepare the transaction. I.e., update the vectors of modified
-				 * entities.
-				 */
-				jessy.getConsistency().prepareToCommit(msg);
+			prepareToApply(msg);
+			
+			applyTransaction(msg);
+			
+			finishTermination(msg);
+		}
+		catch (Exception ex ) 
+		{
+			ex.printStackTrace();
+		}
+		
+	}
 
-				/*
-				 * Apply the modified entities.
-				 */
-				jessy.applyModifiedEntities(executionHistory);
+	/**
+	 * Prepares the transaction if it has committed. I.e., update the vectors
+	 * of modified entities.
+	 * <p>
+	 * The three steps of {@link #handleTerminationResult(TerminateTransactionRequestMessage)}
+	 * are also called separately by {@link ApplyTransactionsToDataStore}.
+	 */
+	void prepareToApply(TerminateTransactionRequestMessage msg) {
+		if (msg.getExecutionHistory().getTransactionState() == TransactionState.COMMITTED)
+			jessy.getConsistency().prepareToCommit(msg);
+	}
 
-			}
+	/**
+	 * Applies the modified entities if the transaction has committed.
+	 */
+	void applyTransaction(TerminateTransactionRequestMessage msg) {
+		if (msg.getExecutionHistory().getTransactionState() == TransactionState.COMMITTED)
+			jessy.applyModifiedEntities(msg.getExecutionHistory());
+		TransactionTracer.stamp(msg.getExecutionHistory(), Point.APPLIED);
+	}
 
-			if (executionHistory.getTransactionState() == TransactionState.COMMITTED) {
-				/*
-				 * calls the postCommit method of the consistency criterion for post
-				 * commit actions. (e.g., propagating vectors)
-				 */
-				jessy.getConsistency().postCommit(executionHistory);
-			}
+	/**
+	 * Runs the post commit actions of the transaction if it has committed,
+	 * and garbage collects it.
+	 * <p>
+	 * With a {@link WriteAheadLog}, this is deferred until the entities
+	 * applied by the transaction are on disk, so that neither the
+	 * transactions reading them nor the conflicting transactions proceed
+	 * before. The calling thread does not wait for the disk. Transactions are
+	 * still terminated in the order this method is called.
+	 */
+	void finishTermination(final TerminateTransactionRequestMessage msg) {
+		WriteAheadLog log = FilePersistence.writeAheadLog;
+		if (log == null) {
+			terminate(msg);
+			return;
+		}
+
+		log.whenDurable(msg.getExecutionHistory().getLogSequenceNumber(),
+				new Runnable() {
+					public void run() {
+						terminate(msg);
+					}
+				});
+	}
+
+	private void terminate(TerminateTransactionRequestMessage msg) {
+		ExecutionHistory executionHistory = msg.getExecutionHistory();
 
+		if (executionHistory.getTransactionState() == TransactionState.COMMITTED) {
 			/*
-			 * We have to garbage collect at the server ASAP, because concurrent transactions can only
-			 * proceed after garbage collecting the current delivered transaction.
+			 * calls the postCommit method of the consistency criterion for post
+			 * commit actions. (e.g., propagating vectors)
 			 */
-			garbageCollectJessyReplica(msg);
-		}
-		catch (Exception ex ) 
-		{
-			ex.printStackTrace();
+			jessy.getConsistency().postCommit(executionHistory);
 		}
-		
+
+		/*
+		 * We have to garbage collect at the server ASAP, because concurrent transactions can only
+		 * proceed after garbage collecting the current delivered transaction.
+		 */
+		garbageCollectJessyReplica(msg);
 	}
 
 	/**
@@ -387,7 +467,10 @@ public class DistributedTermination implements Learner, UnicastLearner {
 	private void garbageCollectJessyReplica(TerminateTransactionRequestMessage msg){
 		try{
 			synchronized (atomicDeliveredMessages) {
-				atomicDeliveredMessages.remove(msg);
+				if (atomicDeliveredMessages.remove(msg))
+					conflictTable.remove(msg);
+				if (certificationScheduler!=null)
+					certificationScheduler.decided(msg);
 				atomicDeliveredMessages.notifyAll();
 			}
 		}
@@ -402,6 +485,10 @@ public class DistributedTermination implements Learner, UnicastLearner {
 	
 	public void closeConnections(){
 		atomicCommit.closeAtomicCommit();
+		if (certificationScheduler!=null)
+			certificationScheduler.close();
+		if (applyTransactionsToDataStore!=null)
+			applyTransactionsToDataStore.close();
 	}
 	
 	
@@ -418,21 +505,23 @@ public class DistributedTermination implements Learner, UnicastLearner {
 	 * @author Masoud Saeida Ardekani
 	 * 
 	 */
-	private class AtomicMulticastTask implements Callable<TransactionState> {
+	private class AtomicMulticastTask implements Runnable {
 
 		private ExecutionHistory executionHistory;
 
-		private AtomicMulticastTask(ExecutionHistory eh) {
+		private SettableFuture<TransactionState> reply;
+
+		private AtomicMulticastTask(ExecutionHistory eh,
+				SettableFuture<TransactionState> reply) {
 			this.executionHistory = eh;
+			this.reply = reply;
 		}
 
-		public TransactionState call() throws Exception {
+		public void run() {
 			if (DebuggingFlag.DISTRIBUTED_TERMINATION && executionHistory.getTransactionType()==TransactionType.UPDATE_TRANSACTION)
 				logger.info("Proxy starts certification of update transaction " + executionHistory.toString());
 			
 
-			TransactionState result=null;
-
 			try {
 				Set<String> concernedKeys = jessy.getConsistency()
 						.getConcerningKeys(executionHistory,
@@ -446,27 +535,41 @@ public class DistributedTermination implements Learner, UnicastLearner {
 				if (concernedKeys.size() == 0) {
 
 					executionHistory.changeState(TransactionState.COMMITTED);
-					result = TransactionState.COMMITTED;
+					terminated(TransactionState.COMMITTED);
 
 				} else {
 
 					Set<String> destGroups=jessy.partitioner.resolveNames(concernedKeys);
+					TransactionTracer.stamp(executionHistory, Point.TERMINATION_CAST);
 					VotingQuorum vq=atomicCommit.broadcastTransaction(executionHistory, destGroups);
 					/*
-					 * Wait here until the result of the transaction is known.
+					 * Terminate once the result of the transaction is known.
 					 */
 					
 					if (DebuggingFlag.DISTRIBUTED_TERMINATION) 
 						logger.error("Proxy will wait for votes from " + jessy.getConsistency().getVotersToJessyProxy(destGroups,executionHistory) + " for " + executionHistory.getTransactionHandler().getId());
 					
-					result = vq.waitVoteResult(jessy.getConsistency().getVotersToJessyProxy(destGroups,executionHistory));
-					
-					if (DebuggingFlag.DISTRIBUTED_TERMINATION && result==TransactionState.ABORTED_BY_TIMEOUT)
-						logger.error("Abort by timeout from votingQ " + executionHistory.getTransactionHandler());
+					final SettableFuture<TransactionState> quorum = vq.getResultFuture(jessy.getConsistency().getVotersToJessyProxy(destGroups,executionHistory));
+					quorum.addListener(new Runnable() {
+						public void run() {
+							TransactionTracer.stamp(executionHistory, Point.QUORUM);
+							terminated(quorum.getNow());
+						}
+					});
 
 				}
 
-				
+			} catch (Exception e) {
+				e.printStackTrace();
+				reply.set(null);
+			}
+		}
+
+		private void terminated(TransactionState result) {
+			try {
+				if (DebuggingFlag.DISTRIBUTED_TERMINATION && result==TransactionState.ABORTED_BY_TIMEOUT)
+					logger.error("Abort by timeout from votingQ " + executionHistory.getTransactionHandler());
+
 				if (!executionHistory.isCertifyAtCoordinator()) {
 					garbageCollectJessyInstance(executionHistory.getTransactionHandler());
 				}
@@ -478,8 +581,7 @@ public class DistributedTermination implements Learner, UnicastLearner {
 				e.printStackTrace();
 			}
 
-
-			return result;
+			reply.set(result);
 		}
 	}
 
@@ -487,168 +589,235 @@ public class DistributedTermination implements Learner, UnicastLearner {
 
 		private TerminateTransactionRequestMessage msg;
 
+		private long start;
+
+		private Vote vote;
+
+		private Set<String> voteSenders;
+
+		private boolean voteSender;
+
+		private SettableFuture<TransactionState> quorum;
+
 		private CertifyAndVoteTask(TerminateTransactionRequestMessage m) {
 			msg = m;
 			
 		}
 
+		/**
+		 * The task first certifies the transaction and sends its vote. If this
+		 * replica receives the votes, the task is submitted again to the
+		 * {@link #pool} once the quorum is reached, so that no thread waits
+		 * for the votes. Otherwise, if it has been scheduled by the
+		 * {@link CertificationScheduler}, the task applies the transaction in
+		 * the {@link #pool} in order to release the certification thread.
+		 */
 		public void run() {
 
+			try {
+				if (vote == null) {
+					if (!certifyAndSendVote())
+						return;
+
+					if (msg.getExecutionHistory().isVoteReceiver()) {
+						awaitVotes();
+						return;
+					}
+
+					if (certificationScheduler != null) {
+						pool.execute(this);
+						return;
+					}
+				}
+
+				apply();
+
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+
+		}
+
+		/**
+		 * Returns false if this replica does not need to wait for the votes.
+		 */
+		private boolean certifyAndSendVote() throws Exception {
+
 			if (DebuggingFlag.DISTRIBUTED_TERMINATION)
 				logger.error("Starting certification of " + msg.getExecutionHistory().toString());
 			
-			try {
+			start = System.currentTimeMillis();
+			
+			boolean preemptive_abort=!atomicCommit.proceedToCertifyAndVote(msg);
+			
+			certificationQueueingLatency.add(System.currentTimeMillis()-start);
+			TransactionTracer.stamp(msg.getExecutionHistory(), Point.CERTIFICATION_START);
 
-				long start = System.currentTimeMillis();
-				
-				boolean preemptive_abort=!atomicCommit.proceedToCertifyAndVote(msg);
-				
-				certificationQueueingLatency.add(System.currentTimeMillis()-start);
+			start = System.currentTimeMillis();
+			
+			jessy.setExecutionHistory(msg.getExecutionHistory());
 
-				start = System.currentTimeMillis();
-				
-				jessy.setExecutionHistory(msg.getExecutionHistory());
+			if (preemptive_abort){					
+				vote=new Vote(msg.getExecutionHistory().getTransactionHandler(),false, group.name(), null);
+			}
+			else {
+				vote = jessy.getConsistency().createCertificationVote(
+					msg.getExecutionHistory(), msg.getComputedObjectUponDelivery());
+			}
+			TransactionTracer.stamp(msg.getExecutionHistory(), Point.CERTIFICATION_END);
+			
 
-				Vote vote =null;
-				if (preemptive_abort){					
-					vote=new Vote(msg.getExecutionHistory().getTransactionHandler(),false, group.name(), null);
-				}
-				else {
-					vote = jessy.getConsistency().createCertificationVote(
-						msg.getExecutionHistory(), msg.getComputedObjectUponDelivery());
-				}
-				
+			/*
+			 * if true, it means that it must wait for the vote from the
+			 * others and apply the changes, otherwise, it only needs to
+			 * send its vote, and garbage collect. For example, in SER, an
+			 * instance which only replicates an object read by the
+			 * transaction should send its vote, and return.
+			 */
+			AtomicBoolean voteReceiver=new AtomicBoolean(false);
+			AtomicBoolean voteSender=new AtomicBoolean(false);
 
-				/*
-				 * if true, it means that it must wait for the vote from the
-				 * others and apply the changes, otherwise, it only needs to
-				 * send its vote, and garbage collect. For example, in SER, an
-				 * instance which only replicates an object read by the
-				 * transaction should send its vote, and return.
-				 */
-				AtomicBoolean voteReceiver=new AtomicBoolean(false);
-				AtomicBoolean voteSender=new AtomicBoolean(false);
+			Set<String> voteReceivers=new HashSet<String>();
+			voteSenders=new HashSet<String>();				
+			atomicCommit.setVoters(msg, voteReceivers, voteReceiver, voteSenders, voteSender);
+			this.voteSender=voteSender.get();
+
+			if (DebuggingFlag.DISTRIBUTED_TERMINATION){
+				logger.error(msg.getExecutionHistory().getTransactionHandler().toString() + " Vote Senders " + voteSenders + " Is sender " + voteSender.get() );
+				logger.error(msg.getExecutionHistory().getTransactionHandler().toString() + " Vote Receivers " + voteReceivers + " Is Receiver " + voteReceiver.get() );
+			}
+			
+			msg.getExecutionHistory().setVoteReceiver(voteReceiver.get());
+			if (voteSender.get()==true){
 
-				Set<String> voteReceivers=new HashSet<String>();
-				Set<String> voteSenders=new HashSet<String>();				
-				atomicCommit.setVoters(msg, voteReceivers, voteReceiver, voteSenders, voteSender);
+				voteReceivers.remove(voterName);
+				VoteMessage voteMsg = new VoteMessage(vote, voteReceivers,
+						group.name(), manager.getSourceId());
 
-				if (DebuggingFlag.DISTRIBUTED_TERMINATION){
-					logger.error(msg.getExecutionHistory().getTransactionHandler().toString() + " Vote Senders " + voteSenders + " Is sender " + voteSender.get() );
-					logger.error(msg.getExecutionHistory().getTransactionHandler().toString() + " Vote Receivers " + voteReceivers + " Is Receiver " + voteReceiver.get() );
+				try{
+					atomicCommit.sendVote(voteMsg, msg);
+				}catch(Exception e){
+					e.printStackTrace();
 				}
+				TransactionTracer.stamp(msg.getExecutionHistory(), Point.VOTE_SENT);
 				
-				msg.getExecutionHistory().setVoteReceiver(voteReceiver.get());
-				if (voteSender.get()==true){
+				/*
+				 * we can garbage collect right away, and exit.
+				 * if jessy replica is in RS(T) and not in WS(T), under SER, it should exit right away once it sends our votes. 
+				 */
+				if (voteReceiver.get()==false){
+					measureCertificationTime(msg);
+					garbageCollectJessyReplica(msg);
+					return false;
+				}
 
-					voteReceivers.remove(voterName);
-					VoteMessage voteMsg = new VoteMessage(vote, voteReceivers,
-							group.name(), manager.getSourceId());
+			}
+			return true;
+		}
 
-					try{
-						atomicCommit.sendVote(voteMsg, msg);
-					}catch(Exception e){
-						e.printStackTrace();
-					}
-					
-					/*
-					 * we can garbage collect right away, and exit.
-					 * if jessy replica is in RS(T) and not in WS(T), under SER, it should exit right away once it sends our votes. 
-					 */
-					if (voteReceiver.get()==false){
-						measureCertificationTime(msg);
-						garbageCollectJessyReplica(msg);
-						return;
-					}
+		/**
+		 * Submits this task again to the {@link #pool} once the votes of
+		 * <code>voteSenders</code> are received.
+		 */
+		private void awaitVotes() {
 
+			if (DebuggingFlag.DISTRIBUTED_TERMINATION)
+				logger.error("Needs to wait for the votes from " + voteSenders + "for " + msg.getExecutionHistory().getTransactionHandler().toString());
+				
+			if (voteSenders.contains(voterName))
+				addVote(vote);
+			else
+				getOrCreateVotingQuorums(vote.getTransactionHandler());
+			
+			assert votingQuorums.containsKey(msg.getExecutionHistory().getTransactionHandler()) : msg.getExecutionHistory().getTransactionHandler() +"\n"+votingQuorums;
+				
+			quorum = votingQuorums.get(
+					msg.getExecutionHistory().getTransactionHandler())
+					.getResultFuture(voteSenders);
+			quorum.addListener(new Runnable() {
+				public void run() {
+					pool.execute(CertifyAndVoteTask.this);
 				}
+			});
+		}
 
-				if (voteReceiver.get()==true) {
-					
-					if (DebuggingFlag.DISTRIBUTED_TERMINATION)
-						logger.error("Needs to wait for the votes from " + voteSenders + "for " + msg.getExecutionHistory().getTransactionHandler().toString());
-						
-					if (voteSenders.contains(voterName))
-						addVote(vote);
-					else
-						getOrCreateVotingQuorums(vote.getTransactionHandler());
-					
-					assert votingQuorums.containsKey(msg.getExecutionHistory().getTransactionHandler()) : msg.getExecutionHistory().getTransactionHandler() +"\n"+votingQuorums;
- 					
-					TransactionState state = votingQuorums.get(
-							msg.getExecutionHistory().getTransactionHandler())
-							.waitVoteResult(voteSenders);
-					msg.getExecutionHistory().changeState(state);					
-					jessy.getConsistency().quorumReached(msg, state, vote);
-					atomicCommit.quorumReached(msg,state, vote);
-					
-					if (DebuggingFlag.DISTRIBUTED_TERMINATION)
-						logger.error("Got the votes for " + msg.getExecutionHistory().getTransactionHandler().getId() + " , result is " + state);
+		private void apply() throws Exception {
 
-					votingLatency.add(System.currentTimeMillis()-start);
-					
-					/*
-					 * we can garbage collect right away, and exit.
-					 */
-					if (state==TransactionState.ABORTED_BY_VOTING || state ==TransactionState.ABORTED_BY_TIMEOUT){
-						
-						if (DebuggingFlag.DISTRIBUTED_TERMINATION)
-							logger.error("Aborting " + msg.getExecutionHistory().getTransactionHandler().toString());
-
-						jessy.getConsistency().postAbort(msg,vote);
-						measureCertificationTime(msg);
-						garbageCollectJessyReplica(msg);
-						return;
-					}
-
-				}
-				msg.getExecutionHistory().setApplyingTransactionQueueingStartTime(System.currentTimeMillis());
+			if (msg.getExecutionHistory().isVoteReceiver()) {
 				
-				if (!jessy.getConsistency().applyingTransactionCommute() && voteSender.get() && voteReceiver.get())
-				{
-					/*
-					 * When applying transactions to the data-store does not commute, instead of waiting in this thread
-					 * until the condition holds, we add the transaction to a queue, return right away, and only ONE thread applies the transactions in FIFO order.
-					 * According to measurements, when update ratio is high, this solution improves the performance significantly.
-					 * 
-					 * Should be here in case this transaction modifying an object replicated here: NMSI-GMUVector, SI, PSI, US
-					 */
-					applyTransactionsToDataStore.addToQueue(msg);
-					return;
-				}
+				TransactionState state = quorum.getNow();
+				TransactionTracer.stamp(msg.getExecutionHistory(), Point.QUORUM);
+				msg.getExecutionHistory().changeState(state);					
+				jessy.getConsistency().quorumReached(msg, state, vote);
+				atomicCommit.quorumReached(msg,state, vote);
 				
-				measureApplyingTransactionQueueingTime(msg);
+				if (DebuggingFlag.DISTRIBUTED_TERMINATION)
+					logger.error("Got the votes for " + msg.getExecutionHistory().getTransactionHandler().getId() + " , result is " + state);
+
+				votingLatency.add(System.currentTimeMillis()-start);
 				
-				handleTerminationResult(msg);
+				/*
+				 * we can garbage collect right away, and exit.
+				 */
+				if (state==TransactionState.ABORTED_BY_VOTING || state ==TransactionState.ABORTED_BY_TIMEOUT){
+					
+					if (DebuggingFlag.DISTRIBUTED_TERMINATION)
+						logger.error("Aborting " + msg.getExecutionHistory().getTransactionHandler().toString());
 
-				measureCertificationTime(msg);
+					jessy.getConsistency().postAbort(msg,vote);
+					measureCertificationTime(msg);
+					garbageCollectJessyReplica(msg);
+					return;
+				}
 
-			} catch (Exception e) {
-				e.printStackTrace();
 			}
+			msg.getExecutionHistory().setApplyingTransactionQueueingStartTime(System.nanoTime());
+			
+			if (!jessy.getConsistency().applyingTransactionCommute() && voteSender && msg.getExecutionHistory().isVoteReceiver())
+			{
+				/*
+				 * When applying transactions to the data-store does not commute, instead of waiting in this thread
+				 * until the condition holds, we add the transaction to a queue, return right away, and only ONE thread applies the transactions in FIFO order.
+				 * According to measurements, when update ratio is high, this solution improves the performance significantly.
+				 * 
+				 * Should be here in case this transaction modifying an object replicated here: NMSI-GMUVector, SI, PSI, US
+				 */
+				applyTransactionsToDataStore.addToQueue(msg);
+				return;
+			}
+			
+			measureApplyingTransactionQueueingTime(msg);
+			
+			handleTerminationResult(msg);
+
+			measureCertificationTime(msg);
 
 		}
 	}
 	
 	protected static void measureCertificationTime(TerminateTransactionRequestMessage msg){
 		if (msg.getExecutionHistory().getTransactionType() == TransactionType.READONLY_TRANSACTION)
-			readOnlyCertificationLatency.add(System.currentTimeMillis()
+			readOnlyCertificationLatency.add((System.nanoTime()
 					- msg.getExecutionHistory()
-					.getStartCertificationTime());
+					.getStartCertificationTime()) / 1000000);
 		else if (msg.getExecutionHistory().isVoteReceiver() && (msg.getExecutionHistory().getTransactionType() == TransactionType.UPDATE_TRANSACTION))
-			updateCertificationLatency.add(System.currentTimeMillis()
+			updateCertificationLatency.add((System.nanoTime()
 					- msg.getExecutionHistory()
-					.getStartCertificationTime());
+					.getStartCertificationTime()) / 1000000);
 	}
 	
 	protected static void measureApplyingTransactionQueueingTime(TerminateTransactionRequestMessage msg){	
 		if (msg.getExecutionHistory().isVoteReceiver())
-			applyingTransactionQueueingLatency.add(System.currentTimeMillis()-msg.getExecutionHistory().getApplyingTransactionQueueingStartTime());
+			applyingTransactionQueueingLatency.add((System.nanoTime()-msg.getExecutionHistory().getApplyingTransactionQueueingStartTime()) / 1000000);
 	}
 
 	public LinkedList<TerminateTransactionRequestMessage> getAtomicDeliveredMessages(){
 		return atomicDeliveredMessages;
 	}
+
+	public ConflictTable getConflictTable() {
+		return conflictTable;
+	}
 	
 	public DistributedJessy getDistributedJessy(){
 		return jessy;
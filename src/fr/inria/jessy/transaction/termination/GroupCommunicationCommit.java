@@ -14,44 +14,21 @@ public class GroupCommunicationCommit extends AtomicCommit{
 	}
 
 	/**
-	 * A thread starts certifying the transaction in the TerminateTransactionRequestMessage.
+	 * First, à la P-Store: a transaction is certified once the transactions
+	 * delivered before it and not commuting with it have been decided. This
+	 * is ensured by the {@link CertificationScheduler} before calling this
+	 * method, hence the transaction can always be certified.
 	 * 
 	 * @param msg TerminateTransactionRequestMessage containing the transaction need to be certified
-	 * @return true if this transaction can be certified, false if it need to preemptively abort.
+	 * @return true
 	 */
 	@Override
 	public boolean proceedToCertifyAndVote(TerminateTransactionRequestMessage msg){
-		try{
-				/*
-				 * First, à la P-Store.
-				 */
-				synchronized (atomicDeliveredMessages) {
-					while (true) {
-
-						boolean isConflicting = false;
-
-						for (TerminateTransactionRequestMessage n : atomicDeliveredMessages) {
-							if (n.equals(msg)) {
-								break;
-							}
-							if (!jessy.getConsistency().certificationCommute(n.getExecutionHistory(), msg.getExecutionHistory())) 
-							{
-								isConflicting = true;
-								break;									
-							}
-						}
-						if (isConflicting)
-							atomicDeliveredMessages.wait();
-						else
-							break;
-					}
-				}
-		}
-		catch(Exception ex)
-		{ 
-			ex.printStackTrace();
-
-		}
+		return true;
+	}
+	
+	@Override
+	public boolean isCertifiedInDeliveryOrder(){
 		return true;
 	}
 	
@@ -46,35 +46,41 @@ public class PrimaryReplicaTwoPhaseCommit extends AtomicCommit {
 		super(termination);
 	}
 
+	/**
+	 * Only the in-flight transactions sharing a key with <code>msg</code>,
+	 * as given by the {@link ConflictTable}, are checked.
+	 */
 	@Override
 	public boolean proceedToCertifyAndVote(
 			TerminateTransactionRequestMessage msg) {
-		synchronized(atomicDeliveredMessages){
-			for (TerminateTransactionRequestMessage n : atomicDeliveredMessages) {
-				if (n.equals(msg)) {
-					continue;
-				}
-				if (!jessy.getConsistency().certificationCommute(
-						n.getExecutionHistory(), msg.getExecutionHistory())) {
-					
-					UUID caused=n.getExecutionHistory().getTransactionHandler().getId();
-					
-					if (causedTermination.containsKey(caused)){
-						int i=causedTermination.get(caused);
-						if (i>5)
-						{
-							causedTermination.remove(caused);
-							atomicDeliveredMessages.remove(n);
-							return true;
+		for (TerminateTransactionRequestMessage n : conflictTable
+				.getConflictCandidates(msg)) {
+			if (n.equals(msg)) {
+				continue;
+			}
+			if (!jessy.getConsistency().certificationCommute(
+					n.getExecutionHistory(), msg.getExecutionHistory())) {
+				
+				UUID caused=n.getExecutionHistory().getTransactionHandler().getId();
+				
+				if (causedTermination.containsKey(caused)){
+					int i=causedTermination.get(caused);
+					if (i>5)
+					{
+						causedTermination.remove(caused);
+						synchronized (atomicDeliveredMessages) {
+							if (atomicDeliveredMessages.remove(n))
+								conflictTable.remove(n);
 						}
-						causedTermination.put(caused, i+1);
-					}else{
-						causedTermination.put(caused, 1);
+						return true;
 					}
-					
-//					System.out.println("Pre-emptive abort for " + msg.getExecutionHistory().toString() + " because " + n.getExecutionHistory().toString());
-					return false;
+					causedTermination.put(caused, i+1);
+				}else{
+					causedTermination.put(caused, 1);
 				}
+				
+//				System.out.println("Pre-emptive abort for " + msg.getExecutionHistory().toString() + " because " + n.getExecutionHistory().toString());
+				return false;
 			}
 		}
 		return true;
@@ -19,58 +19,17 @@ public class GroupVotingQuorum extends VotingQuorum{
 	 * <code>true</code> votes from a member of all groups concerned by the
 	 * transaction. If it receives a <code>false</code> vote from a member of a
 	 * group, it will returns {@link TransactionState.ABORTED_BY_VOTING}.
+	 * The outcome completes the future returned by
+	 * {@link #getResultFuture(Collection)}.
 	 * 
 	 * @param vote
 	 */
 	@Override
-	public synchronized void addVote(Vote vote) {
+	public void addVote(Vote vote) {
 		if (ConstantPool.logging)
 			logger.debug("adding vote for "+transactionHandler+" for "+vote.getVoterEntityName()+" with result "+vote.isCommitted());
-		
-		if (vote.isCommitted() == false) {
-			result = TransactionState.ABORTED_BY_VOTING;
-		} else{
-			voters.add(vote.getVoterEntityName());
-		}
-		
-		notified=true;
-		synchronized(this){
-			notifyAll();
-		}
-	}
-
-	/**
 
-	 * 
-	 * @return either {@link TransactionState.COMMITTED} or
-	 *         {@link TransactionState.ABORTED_BY_VOTING}
-	 */
-	public synchronized TransactionState waitVoteResult(Collection<String> groups) {
-
-		while( result == TransactionState.COMMITTING
-			   && voters.size() < groups.size() ){
-			try {
-				notified=false;
-				synchronized(this){
-					wait(ConstantPool.JESSY_VOTING_QUORUM_TIMEOUT);
-				}
-				if (!notified){
-					return TransactionState.ABORTED_BY_TIMEOUT;
-				}
-			} catch (InterruptedException e) {
-				e.printStackTrace();
-			}
-		}
-		
-		if( result == TransactionState.COMMITTING ){
-			if (ConstantPool.logging)
-				logger.debug("Has enought YES votes for  "+transactionHandler + " . Returning Committed. Groups are: " + groups + " . voters are : " + voters);
-			return TransactionState.COMMITTED;
-		}
-		
-		if (ConstantPool.logging)
-			logger.debug("DOES NOT have enought YES votes for  "+transactionHandler + " . Returning Abort_by_Voting. Groups are: " + groups + " . voters are : " + voters);
-		return TransactionState.ABORTED_BY_VOTING;
+		super.addVote(vote);
 	}
 
 }
@@ -1,10 +1,6 @@
 package fr.inria.jessy.transaction.termination.vote;
 
-import java.util.Collection;
-
-import fr.inria.jessy.ConstantPool;
 import fr.inria.jessy.transaction.TransactionHandler;
-import fr.inria.jessy.transaction.TransactionState;
 
 public class ProcessVotingQuorum extends VotingQuorum{
 
@@ -15,46 +11,8 @@ public class ProcessVotingQuorum extends VotingQuorum{
 	@Override
 	public void addVote(Vote vote) {
 		System.out.println("adding vote for "+transactionHandler+" for "+vote.getVoterEntityName()+" with result "+vote.isCommitted());
-		
-		if (vote.isCommitted() == false) {
-			result = TransactionState.ABORTED_BY_VOTING;
-		} else{
-			voters.add(vote.getVoterEntityName());
-		}
-		
-		notified=true;
-		synchronized(this){
-			notifyAll();		
-		}
-	}
 
-	@Override
-	public TransactionState waitVoteResult(Collection<String> replicas) {
-		while( result == TransactionState.COMMITTING 
-				   && voters.size() < replicas.size() ){
-			System.out.println(transactionHandler +" waits because voters are " + voters + " and replicas are " + replicas);
-				try {
-					notified=false;
-					synchronized(this){
-						this.wait(ConstantPool.JESSY_VOTING_QUORUM_TIMEOUT);
-					}
-					if (!notified){
-						return TransactionState.ABORTED_BY_TIMEOUT;
-					}
-				} catch (InterruptedException e) {
-					e.printStackTrace();
-				}
-			}
-			
-			if( result == TransactionState.COMMITTING ){
-				if (ConstantPool.logging)
-					logger.debug("Has enought YES votes for  "+transactionHandler + " . Returning Committed. Groups are: " + replicas + " . voters are : " + voters);
-				return TransactionState.COMMITTED;
-			}
-			
-			if (ConstantPool.logging)
-				logger.debug("DOES NOT have enought YES votes for  "+transactionHandler + " . Returning Abort_by_Voting. Groups are: " + replicas + " . voters are : " + voters);
-			return TransactionState.ABORTED_BY_VOTING;
+		super.addVote(vote);
 	}
 
 }
@@ -4,12 +4,19 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.log4j.Logger;
+import org.jboss.netty.util.HashedWheelTimer;
+import org.jboss.netty.util.Timeout;
+import org.jboss.netty.util.Timer;
+import org.jboss.netty.util.TimerTask;
 
 import fr.inria.jessy.ConstantPool;
 import fr.inria.jessy.transaction.TransactionHandler;
 import fr.inria.jessy.transaction.TransactionState;
+import fr.inria.jessy.utils.DaemonThreadFactory;
+import fr.inria.jessy.utils.SettableFuture;
 
 /**
  * This class receives {@link Vote} from different participations in the
@@ -19,27 +26,47 @@ import fr.inria.jessy.transaction.TransactionState;
  * a group or a process, it will returns {@link TransactionState.ABORTED_BY_VOTING}.
  * Otherwise, it will simply waits until receiving enough votes.
  * <p>
- * 
+ * The outcome is delivered through the future returned by
+ * {@link #getResultFuture(Collection)}, so that no thread has to wait for the
+ * votes. If no vote is received during
+ * {@link ConstantPool#JESSY_VOTING_QUORUM_TIMEOUT}, the future is completed
+ * with {@link TransactionState.ABORTED_BY_TIMEOUT}. The timeouts of all the
+ * quorums are driven by a single hashed wheel timer.
+ *
  * @author Masoud Saeida Ardekani
  * @author Pierre Sutra
- * 
+ *
  */
 public class VotingQuorum {
 	protected static Logger logger = Logger.getLogger(VotingQuorum.class);
-	
+
+	private static final Timer timer = new HashedWheelTimer(
+			new DaemonThreadFactory("VotingQuorum-timer"),
+			ConstantPool.JESSY_VOTING_QUORUM_TIMER_TICK, TimeUnit.MILLISECONDS);
+
 	protected TransactionState result = TransactionState.COMMITTING;
 	protected TransactionHandler transactionHandler;
-	
+
 	protected Set<String> receivedVoters;
-	protected boolean notified=false;
+
+	private final SettableFuture<TransactionState> resultFuture = new SettableFuture<TransactionState>();
+
+	/**
+	 * The voters whose votes are expected, or null if nobody asked for the
+	 * outcome yet.
+	 */
+	private Collection<String> allVoters;
+
+	private Timeout timeout;
 
 	public VotingQuorum(TransactionHandler th){
 		transactionHandler = th;
 		receivedVoters = Collections.newSetFromMap(new ConcurrentHashMap<String,Boolean>());
 	}
-	
+
 	public void addVote(Vote vote) {
 //		System.out.println("Adding vote for " + vote.getTransactionHandler().getId() + " from " + vote.getVoterEntityName());
+		TransactionState decision;
 		synchronized(this){
 
 			if (vote.isCommitted() == false) {
@@ -48,40 +75,80 @@ public class VotingQuorum {
 				receivedVoters.add(vote.getVoterEntityName());
 			}
 
-			notified=true;
-			notifyAll();		
+			decision = decide();
 		}
+		complete(decision);
 	}
 
-	public TransactionState waitVoteResult(Collection<String> allVoters) {
-		synchronized(this){
-			while( result == TransactionState.COMMITTING 
-					&& receivedVoters.size() < allVoters.size() ){
-//				System.out.println("Still waiting for votes " + transactionHandler.getId() + " all : " + allVoters + " but voters : " +receivedVoters );
-				try {
-					notified=false;
-					this.wait(ConstantPool.JESSY_VOTING_QUORUM_TIMEOUT);
-					if (!notified){
-						return TransactionState.ABORTED_BY_TIMEOUT;
-					}
-				} catch (InterruptedException e) {
-					e.printStackTrace();
-				}
-			}
+	/**
+	 * Returns a future completed with {@link TransactionState.COMMITTED} once
+	 * <code>true</code> votes have been received from all of
+	 * <code>allVoters</code>, or with an abort state as soon as the
+	 * transaction cannot commit.
+	 */
+	public SettableFuture<TransactionState> getResultFuture(
+			Collection<String> allVoters) {
+		TransactionState decision;
+		synchronized (this) {
+			if (this.allVoters == null)
+				this.allVoters = allVoters;
+			decision = decide();
 		}
-			
-			if( result == TransactionState.COMMITTING ){
-				if (ConstantPool.logging)
-					logger.error("Has enought YES votes for  "+transactionHandler + " . Returning Committed. Groups are: " + allVoters + " . voters are : " + receivedVoters);
-				return TransactionState.COMMITTED;
-			}
-			
-			if (ConstantPool.logging)
-				logger.error("DOES NOT have enought YES votes for  "+transactionHandler + " . Returning Abort_by_Voting. Groups are: " + allVoters + " . voters are : " + receivedVoters);
-			return TransactionState.ABORTED_BY_VOTING;
+		complete(decision);
+		return resultFuture;
 	}
-	
+
 	public Collection<String> getReceivedVoters() {
 		return receivedVoters;
 	}
+
+	/**
+	 * Returns the outcome of the quorum if it is known, or (re)arms the
+	 * timeout otherwise. Must be called while holding the lock.
+	 */
+	private TransactionState decide() {
+		if (allVoters == null || resultFuture.isDone())
+			return null;
+
+		if (result == TransactionState.COMMITTING
+				&& receivedVoters.size() < allVoters.size()) {
+			if (timeout != null)
+				timeout.cancel();
+			timeout = timer.newTimeout(new TimerTask() {
+				public void run(Timeout expired) {
+					expire(expired);
+				}
+			}, ConstantPool.JESSY_VOTING_QUORUM_TIMEOUT, TimeUnit.MILLISECONDS);
+			return null;
+		}
+
+		if (timeout != null) {
+			timeout.cancel();
+			timeout = null;
+		}
+
+		if (result == TransactionState.COMMITTING) {
+			if (ConstantPool.logging)
+				logger.error("Has enought YES votes for  "+transactionHandler + " . Returning Committed. Groups are: " + allVoters + " . voters are : " + receivedVoters);
+			return TransactionState.COMMITTED;
+		}
+
+		if (ConstantPool.logging)
+			logger.error("DOES NOT have enought YES votes for  "+transactionHandler + " . Returning Abort_by_Voting. Groups are: " + allVoters + " . voters are : " + receivedVoters);
+		return TransactionState.ABORTED_BY_VOTING;
+	}
+
+	private void complete(TransactionState decision) {
+		if (decision != null)
+			resultFuture.set(decision);
+	}
+
+	private void expire(Timeout expired) {
+		synchronized (this) {
+			if (timeout != expired)
+				return;
+			timeout = null;
+		}
+		resultFuture.set(TransactionState.ABORTED_BY_TIMEOUT);
+	}
 }
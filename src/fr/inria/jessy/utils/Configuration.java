@@ -17,4 +17,52 @@ public class Configuration {
 
 		return "";
 	}
+
+	/**
+	 * Returns the value of <code>propName</code>, or <code>defaultValue</code>
+	 * if it is missing or empty.
+	 */
+	public static int readConfig(String propName, int defaultValue) {
+		String value = readValue(propName);
+		return (value == null) ? defaultValue : Integer.parseInt(value);
+	}
+
+	/**
+	 * @see #readConfig(String, int)
+	 */
+	public static long readConfig(String propName, long defaultValue) {
+		String value = readValue(propName);
+		return (value == null) ? defaultValue : Long.parseLong(value);
+	}
+
+	/**
+	 * @see #readConfig(String, int)
+	 */
+	public static double readConfig(String propName, double defaultValue) {
+		String value = readValue(propName);
+		return (value == null) ? defaultValue : Double.parseDouble(value);
+	}
+
+	/**
+	 * @see #readConfig(String, int)
+	 */
+	public static boolean readConfig(String propName, boolean defaultValue) {
+		String value = readValue(propName);
+		return (value == null) ? defaultValue : Boolean.parseBoolean(value);
+	}
+
+	/**
+	 * @see #readConfig(String, int)
+	 */
+	public static String readConfig(String propName, String defaultValue) {
+		String value = readValue(propName);
+		return (value == null) ? defaultValue : value;
+	}
+
+	private static String readValue(String propName) {
+		String value = readConfig(propName);
+		if (value == null || value.trim().equals(""))
+			return null;
+		return value.trim();
+	}
 }
@@ -0,0 +1,47 @@
+package fr.inria.jessy.utils;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the daemon threads of a pool or of a timer. Threads are named after
+ * the pool, followed by their number if the pool has several threads, so that
+ * they can be told apart in thread dumps.
+ *
+ * @author Masoud Saeida Ardekani
+ *
+ */
+public class DaemonThreadFactory implements ThreadFactory {
+
+	private final String name;
+
+	private final boolean numbered;
+
+	private final AtomicInteger count = new AtomicInteger();
+
+	/**
+	 * Creates a factory of threads all named <code>name</code>, e.g., for a
+	 * single-threaded timer.
+	 */
+	public DaemonThreadFactory(String name) {
+		this(name, false);
+	}
+
+	/**
+	 * @param numbered
+	 *            if true, threads are named <code>name-1</code>,
+	 *            <code>name-2</code>, and so on.
+	 */
+	public DaemonThreadFactory(String name, boolean numbered) {
+		this.name = name;
+		this.numbered = numbered;
+	}
+
+	public Thread newThread(Runnable r) {
+		Thread thread = new Thread(r, numbered ? name + "-"
+				+ count.incrementAndGet() : name);
+		thread.setDaemon(true);
+		return thread;
+	}
+
+}
@@ -0,0 +1,111 @@
+package fr.inria.jessy.utils;
+
+import java.util.Collection;
+
+/**
+ * A fixed-size Bloom filter over entity keys, used as a compact summary of
+ * the keys read or written by a transaction.
+ * <p>
+ * Keys are first reduced to an <code>int</code> hash with
+ * {@link #hash(String)}, so that the hashes of a key set can be computed once
+ * and probed against many filters without touching the keys again.
+ * {@link #mightContain(int)} never returns false if the key has been added,
+ * but may return true otherwise. Hence, an exact check is only needed when it
+ * returns true.
+ *
+ * @author Masoud Saeida Ardekani
+ *
+ */
+public class KeyBloomFilter {
+
+	/**
+	 * Number of bits of a filter. Must be a power of two.
+	 */
+	public static final int BITS = 2048;
+
+	private static final int HASHES = 3;
+
+	private final long[] words = new long[BITS / 64];
+
+	private boolean empty = true;
+
+	public KeyBloomFilter() {
+	}
+
+	public KeyBloomFilter(int[] hashes) {
+		for (int hash : hashes)
+			add(hash);
+	}
+
+	public void add(String key) {
+		add(hash(key));
+	}
+
+	public void add(int hash) {
+		int h2 = mix(hash);
+		for (int i = 0; i < HASHES; i++) {
+			int bit = (hash + i * h2) & (BITS - 1);
+			words[bit >>> 6] |= 1L << bit;
+		}
+		empty = false;
+	}
+
+	public boolean mightContain(String key) {
+		return mightContain(hash(key));
+	}
+
+	public boolean mightContain(int hash) {
+		if (empty)
+			return false;
+		int h2 = mix(hash);
+		for (int i = 0; i < HASHES; i++) {
+			int bit = (hash + i * h2) & (BITS - 1);
+			if ((words[bit >>> 6] & (1L << bit)) == 0)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns false if none of the hashed keys has been added to the filter.
+	 */
+	public boolean mightContainAny(int[] hashes) {
+		if (empty)
+			return false;
+		for (int hash : hashes) {
+			if (mightContain(hash))
+				return true;
+		}
+		return false;
+	}
+
+	public boolean isEmpty() {
+		return empty;
+	}
+
+	public static int hash(String key) {
+		int h = key.hashCode();
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Returns the hashes of the keys, or an empty array if
+	 * <code>keys</code> is null.
+	 */
+	public static int[] hashes(Collection<String> keys) {
+		if (keys == null)
+			return new int[0];
+		int[] hashes = new int[keys.size()];
+		int i = 0;
+		for (String key : keys)
+			hashes[i++] = hash(key);
+		return hashes;
+	}
+
+	private static int mix(int h) {
+		h *= 0x9E3779B1;
+		h ^= (h >>> 15);
+		return h | 1;
+	}
+
+}
@@ -0,0 +1,264 @@
+package fr.inria.jessy.utils;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A {@link Future} completed by calling {@link #set(Object)}, to which
+ * listeners can be attached instead of parking a thread in {@link #get()}.
+ * <p>
+ * The future never acquires a lock: its state is an atomic integer, and its
+ * listeners an atomic stack. Listeners are executed by the thread completing
+ * the future, or by the thread adding them if the future is already
+ * completed. Hence, they must not block. Threads parked in {@link #get()}
+ * are kept in a separate stack, from which they unlink themselves upon a
+ * timeout or an interrupt.
+ * <p>
+ * A future is completed by the protocol only, thus it cannot be cancelled,
+ * unless a subclass calls {@link #setCancelled()}. A cancelled future is
+ * done, and its value is null.
+ *
+ * @author Masoud Saeida Ardekani
+ *
+ */
+public class SettableFuture<V> implements Future<V> {
+
+	private static final int PENDING = 0;
+
+	private static final int COMPLETING = 1;
+
+	private static final int DONE = 2;
+
+	private static final int CANCELLED = 3;
+
+	/**
+	 * Node of the stack of listeners.
+	 */
+	private static class Node {
+
+		final Runnable listener;
+
+		final Node next;
+
+		Node(Runnable listener, Node next) {
+			this.listener = listener;
+			this.next = next;
+		}
+	}
+
+	/**
+	 * Replaces the stack of listeners once they have been executed.
+	 */
+	private static final Node NOTIFIED = new Node(null, null);
+
+	/**
+	 * Node of the stack of parked threads. The thread is cleared once it
+	 * stops waiting.
+	 */
+	private static class Waiter {
+
+		volatile Thread thread = Thread.currentThread();
+
+		volatile Waiter next;
+	}
+
+	private final AtomicInteger state = new AtomicInteger(PENDING);
+
+	private final AtomicReference<Node> listeners = new AtomicReference<Node>();
+
+	private final AtomicReference<Waiter> waiters = new AtomicReference<Waiter>();
+
+	private volatile V value;
+
+	/**
+	 * Completes the future with <code>value</code>, and executes the
+	 * listeners.
+	 *
+	 * @return false if the future was already completed or cancelled.
+	 */
+	public boolean set(V value) {
+		if (!state.compareAndSet(PENDING, COMPLETING))
+			return false;
+
+		this.value = value;
+		state.set(DONE);
+		notifyListeners();
+		return true;
+	}
+
+	/**
+	 * Cancels the future, and executes the listeners.
+	 *
+	 * @return false if the future was already completed or cancelled.
+	 */
+	protected boolean setCancelled() {
+		if (!state.compareAndSet(PENDING, CANCELLED))
+			return false;
+
+		notifyListeners();
+		return true;
+	}
+
+	/**
+	 * Executes <code>listener</code> once the future is completed or
+	 * cancelled.
+	 */
+	public void addListener(Runnable listener) {
+		Node head;
+		do {
+			head = listeners.get();
+			if (head == NOTIFIED) {
+				execute(listener);
+				return;
+			}
+		} while (!listeners.compareAndSet(head, new Node(listener, head)));
+	}
+
+	/**
+	 * Returns the value of the future, or null if it is not yet completed.
+	 */
+	public V getNow() {
+		return (state.get() == DONE) ? value : null;
+	}
+
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		return false;
+	}
+
+	public boolean isCancelled() {
+		return state.get() == CANCELLED;
+	}
+
+	public boolean isDone() {
+		int s = state.get();
+		return s == DONE || s == CANCELLED;
+	}
+
+	public V get() throws InterruptedException {
+		if (!isDone())
+			await(0);
+		return getNow();
+	}
+
+	public V get(long timeout, TimeUnit unit) throws InterruptedException,
+			TimeoutException {
+		if (!isDone() && !await(unit.toNanos(timeout)))
+			throw new TimeoutException();
+		return getNow();
+	}
+
+	/**
+	 * Returns the number of threads parked on the future, e.g., in tests.
+	 */
+	int getWaiterCount() {
+		int count = 0;
+		for (Waiter waiter = waiters.get(); waiter != null; waiter = waiter.next) {
+			if (waiter.thread != null)
+				count++;
+		}
+		return count;
+	}
+
+	private void notifyListeners() {
+		Waiter waiter = waiters.getAndSet(null);
+		for (; waiter != null; waiter = waiter.next) {
+			Thread thread = waiter.thread;
+			if (thread != null) {
+				waiter.thread = null;
+				LockSupport.unpark(thread);
+			}
+		}
+
+		Node head = listeners.getAndSet(NOTIFIED);
+		for (; head != null && head != NOTIFIED; head = head.next)
+			execute(head.listener);
+	}
+
+	/**
+	 * Executes a listener. A failing listener does not prevent the others
+	 * from being executed.
+	 */
+	protected void execute(Runnable listener) {
+		try {
+			listener.run();
+		} catch (Exception ex) {
+			ex.printStackTrace();
+		}
+	}
+
+	/**
+	 * Parks the current thread until the future is done, or the timeout
+	 * expires. A timeout of zero means no timeout. The thread is pushed on
+	 * the stack of waiters before it checks the state a last time, thus it
+	 * cannot miss the completion.
+	 *
+	 * @return false if the timeout has expired.
+	 */
+	private boolean await(long timeoutNanos) throws InterruptedException {
+		long deadline = System.nanoTime() + timeoutNanos;
+		Waiter waiter = null;
+		boolean queued = false;
+		while (true) {
+			if (Thread.interrupted()) {
+				removeWaiter(waiter);
+				throw new InterruptedException();
+			}
+
+			if (isDone()) {
+				if (waiter != null)
+					waiter.thread = null;
+				return true;
+			}
+
+			if (waiter == null) {
+				waiter = new Waiter();
+			} else if (!queued) {
+				waiter.next = waiters.get();
+				queued = waiters.compareAndSet(waiter.next, waiter);
+			} else if (timeoutNanos == 0) {
+				LockSupport.park(this);
+			} else {
+				long remaining = deadline - System.nanoTime();
+				if (remaining <= 0) {
+					removeWaiter(waiter);
+					return false;
+				}
+				LockSupport.parkNanos(this, remaining);
+			}
+		}
+	}
+
+	/**
+	 * Clears the thread of <code>waiter</code>, and unlinks every waiter
+	 * without a thread from the stack.
+	 */
+	private void removeWaiter(Waiter waiter) {
+		if (waiter == null)
+			return;
+
+		waiter.thread = null;
+		retry: while (true) {
+			Waiter previous = null;
+			for (Waiter current = waiters.get(); current != null;) {
+				Waiter next = current.next;
+				if (current.thread != null) {
+					previous = current;
+				} else if (previous != null) {
+					previous.next = next;
+					// The previous waiter has left meanwhile.
+					if (previous.thread == null)
+						continue retry;
+				} else if (!waiters.compareAndSet(current, next)) {
+					continue retry;
+				}
+				current = next;
+			}
+			return;
+		}
+	}
+
+}
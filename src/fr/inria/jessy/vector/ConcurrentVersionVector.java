@@ -4,6 +4,7 @@ import java.io.Externalizable;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 import fr.inria.jessy.ConstantPool;
@@ -74,8 +75,10 @@ public class ConcurrentVersionVector<K> implements Externalizable,
 
 	@Override
 	public int compareTo(Vector<K> o) {
-		for (K k : o.map.keySet()) {
-			if (map.contains(k) && map.get(k).compareTo(o.getValue(k)) < 0)
+		// The entries of o may be in its dictionary array, not in its map.
+		for (Map.Entry<K, Integer> entry : o.getEntrySet()) {
+			Integer value = map.get(entry.getKey());
+			if (value != null && value.compareTo(entry.getValue()) < 0)
 				return -1;
 		}
 
@@ -118,6 +118,11 @@ public class DependenceVector<K> extends Vector<K> implements Externalizable {
 
 	}
 
+	@Override
+	public boolean canBeCheckedByProxy() {
+		return true;
+	}
+
 	@Override
 	public DependenceVector<K> clone() {
 		return (DependenceVector<K>) super.clone();
@@ -37,11 +37,18 @@ public class GMUVector<K> extends Vector<K> implements Externalizable {
 	
 	private static JessyGroupManager manager;
 	
+	/**
+	 * The entry of this replica in the vectors. It is set upon
+	 * {@link #init(JessyGroupManager)}.
+	 */
+	static String replicaKey;
+	
 	@Override
 	public synchronized void init(JessyGroupManager m){
 		if(lastPrepSC!=null)
 			return;
 		manager=m;
+		replicaKey=KeyDictionary.swidKey(m.getSourceId());
 		if (FilePersistence.loadFromDisk){
 			lastPrepSC=(AtomicInteger)FilePersistence.readObject("GMUVector.lastPrepSC");
 		}
@@ -57,12 +64,52 @@ public class GMUVector<K> extends Vector<K> implements Externalizable {
 	public void makePersistent(){
 		FilePersistence.writeObject(GMUVector.lastPrepSC, "GMUVector.lastPrepSC");
 	}
+
+	/**
+	 * @inheritDoc
+	 * 
+	 * A read can only be served with a vector of {@code logCommitVC}, thus the
+	 * oldest vector in the log is the watermark.
+	 */
+	@Override
+	public Integer getGarbageCollectionWatermark(){
+		if (logCommitVC==null)
+			return null;
+		GMUVector<String> oldest=logCommitVC.peekLast();
+		if (oldest==null)
+			return null;
+		return oldest.getValue(replicaKey);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public Integer getGarbageCollectionValue(){
+		return getValue((K)replicaKey);
+	}
+
+	/**
+	 * Once a transaction has read from this replica, its snapshot here is
+	 * fixed by the snapshot of its extra object. Before that, the read is
+	 * served with a vector of {@code logCommitVC}, which is not older than
+	 * the watermark.
+	 */
+	@Override
+	public Integer getGarbageCollectionSnapshot(CompactVector<K> readSet){
+		// The extra object of a read set is always built with String keys.
+		@SuppressWarnings("unchecked")
+		GMUVectorExtraObject<String> extraObject=(GMUVectorExtraObject<String>)readSet.getExtraObject();
+		if (extraObject==null || extraObject.getSnapshot()==null
+				|| !extraObject.getReadProcesses().contains(replicaKey))
+			return null;
+		Integer value=extraObject.getSnapshot().getValue(replicaKey);
+		return (value==null || value<0) ? null : value;
+	}
 	
 	@SuppressWarnings({ "rawtypes", "unchecked" })
 	@Override
 	public boolean prepareRead(ReadRequest rr){
 		try{
-			String myKey=""+manager.getSourceId();
+			String myKey=KeyDictionary.swidKey(manager.getSourceId());
 			CompactVector<String> other=rr.getReadSet();
 
 
@@ -135,6 +182,34 @@ public class GMUVector<K> extends Vector<K> implements Externalizable {
 		}
 	}
 	
+	/**
+	 * A read is rejected until {@link #logCommitVC} holds a vector that is
+	 * more recent than the snapshot of the transaction.
+	 */
+	@Override
+	public boolean prepareReadDependsOnReplica(){
+		return true;
+	}
+
+	@Override
+	public int getReplicaSnapshot(){
+		GMUVector<String> last=GMUVector.logCommitVC.peekFirst();
+		if (last==null)
+			return 0;
+		return last.getValue(KeyDictionary.swidKey(manager.getSourceId()));
+	}
+
+	@Override
+	public int getAwaitedSnapshot(ReadRequest<?> rr){
+		// The extra object of a read set is always built with String keys.
+		@SuppressWarnings("unchecked")
+		GMUVectorExtraObject<String> extraObject=(GMUVectorExtraObject<String>)rr.getReadSet().getExtraObject();
+		if (extraObject==null)
+			return super.getAwaitedSnapshot(rr);
+		Integer snapshot=extraObject.getSnapshot().getValue(replicaKey);
+		return Math.max(snapshot + 1, super.getAwaitedSnapshot(rr));
+	}
+
 	@SuppressWarnings({ "rawtypes", "unchecked" })
 	@Override
 	public void postRead(ReadRequest rr, JessyEntity entity){
@@ -45,11 +45,18 @@ public class GMUVector2<K> extends Vector<K> implements Externalizable {
 	
 	public static final String versionPrefix="user";
 
+	/**
+	 * The entry of the group of this replica in the vectors. It is set upon
+	 * {@link #init(JessyGroupManager)}.
+	 */
+	static String replicaKey;
+
 	@Override
 	public synchronized void init(JessyGroupManager m){
 		if(lastPrepSC!=null)
 			return;
 		manager=m;
+		replicaKey=m.getMyGroup().name();
 		if (FilePersistence.loadFromDisk){
 			lastPrepSC=(AtomicInteger)FilePersistence.readObject("GMUVector.lastPrepSC");
 			mostRecentVC=(GMUVector2<String>) FilePersistence.readObject("GMUVector.mostRecentVC");
@@ -68,6 +75,40 @@ public class GMUVector2<K> extends Vector<K> implements Externalizable {
 		FilePersistence.writeObject(GMUVector2.mostRecentVC, "GMUVector.mostRecentVC");
 		FilePersistence.writeObject(GMUVector2.lastPrepSC, "GMUVector.lastPrepSC");
 	}
+
+	/**
+	 * @inheritDoc
+	 * 
+	 * A read can only be served with a vector of {@code logCommitVC}, thus the
+	 * oldest vector in the log is the watermark.
+	 */
+	@Override
+	public Integer getGarbageCollectionWatermark(){
+		if (logCommitVC==null)
+			return null;
+		GMUVector2<String> oldest=logCommitVC.peekLast();
+		if (oldest==null)
+			return null;
+		return oldest.getValue(replicaKey);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public Integer getGarbageCollectionValue(){
+		return getValue((K)replicaKey);
+	}
+
+	/**
+	 * Once a transaction has read from the group of this replica, its read set
+	 * holds its snapshot in this group. Before that, the read is served with a
+	 * vector of {@code logCommitVC}, which is not older than the watermark.
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public Integer getGarbageCollectionSnapshot(CompactVector<K> readSet){
+		Integer value=readSet.getValue((K)replicaKey);
+		return (value==null || value<0) ? null : value;
+	}
 	
 	@SuppressWarnings({ "rawtypes", "unchecked" })
 	@Override
@@ -132,12 +173,37 @@ public class GMUVector2<K> extends Vector<K> implements Externalizable {
 		return true;
 	}
 	
+	/**
+	 * A read is rejected until {@link #logCommitVC} holds a vector that is
+	 * recent enough for the snapshot of the transaction.
+	 */
+	@Override
+	public boolean prepareReadDependsOnReplica(){
+		return true;
+	}
+
+	@Override
+	public int getReplicaSnapshot(){
+		GMUVector2<String> last=GMUVector2.logCommitVC.peekFirst();
+		if (last==null)
+			return 0;
+		return last.getSelfValue();
+	}
+
+	@Override
+	public int getAwaitedSnapshot(ReadRequest<?> rr){
+		Integer snapshot=rr.getReadSet().getValue(replicaKey);
+		if (snapshot==null)
+			return super.getAwaitedSnapshot(rr);
+		return Math.max(snapshot - 2, super.getAwaitedSnapshot(rr));
+	}
+
 	@SuppressWarnings({ "rawtypes", "unchecked" })
 	@Override
 	public void postRead(ReadRequest rr, JessyEntity entity){
 		try{
 			int seqNo=entity.getLocalVector().getValue(manager.getMyGroup().name());
-			entity.getLocalVector().setMap((HashMap<String, Integer>) rr.getReadSet().getMap().clone());
+			entity.getLocalVector().setMap(rr.getReadSet().getMap());
 			if (seqNo>0)
 				entity.getLocalVector().setValue(entity.getKey(), seqNo);
 		}
@@ -0,0 +1,108 @@
+package fr.inria.jessy.vector;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.TreeSet;
+
+import net.sourceforge.fractal.membership.Group;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A cluster-wide dictionary of the keys of the vectors. The names of the
+ * replica groups and the swids of the processes are given a small integer
+ * id, so that {@link ValueVector} stores their values in a primitive array
+ * indexed by these ids, and sends ids instead of strings over the network.
+ * <p>
+ * The dictionary is derived from the membership, thus every process builds
+ * the same dictionary. Keys that are not in the dictionary (e.g., the keys of
+ * entities in {@link DependenceVector}) are stored in a hash map.
+ * 
+ * @author Masoud Saeida Ardekani
+ * 
+ */
+public class KeyDictionary {
+
+	private static Logger logger = Logger.getLogger(KeyDictionary.class);
+
+	private static volatile HashMap<String, Integer> ids = new HashMap<String, Integer>();
+
+	private static volatile String[] keys = new String[0];
+
+	/**
+	 * The key of each swid, indexed by swid, so that they are not rebuilt on
+	 * every access.
+	 */
+	private static volatile String[] swidKeys = new String[0];
+
+	/**
+	 * Builds the dictionary. The replica groups must be sorted.
+	 * 
+	 * @param replicaGroups
+	 *            the replica groups, in the same order on every process.
+	 * @param swids
+	 *            the swids of all the processes.
+	 */
+	public static synchronized void init(List<Group> replicaGroups,
+			Collection<Integer> swids) {
+		List<String> newKeys = new ArrayList<String>();
+		for (Group group : replicaGroups)
+			newKeys.add(group.name());
+
+		TreeSet<Integer> sortedSwids = new TreeSet<Integer>(swids);
+		String[] newSwidKeys = new String[sortedSwids.isEmpty() ? 0
+				: sortedSwids.last() + 1];
+		for (Integer swid : sortedSwids) {
+			String key = "" + swid;
+			newSwidKeys[swid] = key;
+			newKeys.add(key);
+		}
+
+		HashMap<String, Integer> newIds = new HashMap<String, Integer>();
+		for (String key : newKeys) {
+			if (!newIds.containsKey(key))
+				newIds.put(key, newIds.size());
+		}
+
+		String[] orderedKeys = new String[newIds.size()];
+		for (String key : newIds.keySet())
+			orderedKeys[newIds.get(key)] = key;
+
+		keys = orderedKeys;
+		swidKeys = newSwidKeys;
+		ids = newIds;
+
+		logger.debug("Vector key dictionary is : " + newIds);
+	}
+
+	/**
+	 * Returns the id of the key, or -1 if it is not in the dictionary.
+	 */
+	public static int idOf(Object key) {
+		if (!(key instanceof String))
+			return -1;
+		Integer id = ids.get(key);
+		return id == null ? -1 : id;
+	}
+
+	public static String keyOf(int id) {
+		return keys[id];
+	}
+
+	public static int size() {
+		return keys.length;
+	}
+
+	/**
+	 * Returns the key of a process, i.e., its swid as a string.
+	 */
+	public static String swidKey(int swid) {
+		String[] current = swidKeys;
+		if (swid >= 0 && swid < current.length && current[swid] != null)
+			return current[swid];
+		return "" + swid;
+	}
+
+}
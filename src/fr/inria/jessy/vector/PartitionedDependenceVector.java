@@ -0,0 +1,271 @@
+package fr.inria.jessy.vector;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.sourceforge.fractal.membership.Group;
+
+import com.sleepycat.persist.model.Persistent;
+
+import fr.inria.jessy.ConstantPool;
+import fr.inria.jessy.communication.JessyGroupManager;
+import fr.inria.jessy.partitioner.Partitioner;
+import fr.inria.jessy.utils.Configuration;
+
+/**
+ * A {@link DependenceVector} whose entries are logical partitions instead of
+ * entities. The key of an entity is hashed into one of
+ * <code>dependence_vector_partitions</code> partitions of the replica group
+ * that holds it. Thus, the size of a vector is bounded by the number of
+ * groups times the number of partitions, regardless of the size of the
+ * dataset.
+ * <p>
+ * The self key of the vector is still the key of the entity, while its self
+ * value is the value of the partition of the entity. Each write of an entity
+ * increments the value of its partition.
+ * <p>
+ * A partition entry does not tell which entity of the partition has been
+ * read. Hence, the self check of {@link DependenceVector} cannot be used. A
+ * version is instead compatible with a read set if it does not depend on
+ * anything more recent than the read set, on every partition of the read
+ * set. Since a read set always depends on a version that is lower than or
+ * equal to it, returning the most recent such version (see
+ * {@link #getCompatibleSelfValueBound(CompactVector)}) never returns a
+ * version older than a version the read set depends on.
+ *
+ * @author Masoud Saeida Ardekani
+ *
+ */
+@Persistent
+public class PartitionedDependenceVector<K> extends Vector<K> implements
+		Externalizable {
+
+	private static final long serialVersionUID = -ConstantPool.JESSY_MID;
+
+	private static int partitions;
+
+	/**
+	 * Used for resolving the group of a key. Set once the vector is
+	 * initialized.
+	 */
+	private static Partitioner partitioner;
+
+	/**
+	 * Names of the partitions of each group, in order not to create a new
+	 * string each time a key is resolved.
+	 */
+	private static final Map<String, String[]> partitionNames = new ConcurrentHashMap<String, String[]>();
+
+	static {
+		String value = Configuration
+				.readConfig(ConstantPool.DEPENDENCE_VECTOR_PARTITIONS);
+		if (value == null || value.trim().equals(""))
+			partitions = ConstantPool.JESSY_DEPENDENCE_VECTOR_PARTITIONS;
+		else
+			partitions = Integer.parseInt(value.trim());
+	}
+
+	/**
+	 * The partition of the self key, resolved lazily.
+	 */
+	private transient K selfPartition;
+
+	/**
+	 * Needed for BerkeleyDB
+	 */
+	@Deprecated
+	public PartitionedDependenceVector() {
+		super();
+	}
+
+	public PartitionedDependenceVector(K selfKey) {
+		super(selfKey);
+		/*
+		 * Protocols compute the vectors of the written entities with an
+		 * empty self key (e.g., NMSI_DV_GC#prepareToCommit). Such a vector
+		 * must not have any entry, otherwise it would depend on the initial
+		 * versions of a whole partition.
+		 */
+		if (!"".equals(selfKey))
+			super.setValue(getSelfPartition(), 0);
+	}
+
+	/**
+	 * Returns true if dependence vectors must be partitioned, i.e., if
+	 * <code>dependence_vector_partitions</code> is greater than zero.
+	 */
+	public static boolean isEnabled() {
+		return partitions > 0;
+	}
+
+	public static int getPartitions() {
+		return partitions;
+	}
+
+	/**
+	 * Overrides <code>dependence_vector_partitions</code>. It must be called
+	 * before creating any vector, e.g., in benchmarks.
+	 */
+	public static void setPartitions(int partitions) {
+		PartitionedDependenceVector.partitions = partitions;
+		partitionNames.clear();
+	}
+
+	/**
+	 * Returns the partition of the key. It has the form
+	 * <code>group#index</code>.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <K> K partitionOf(K key) {
+		String groupName = "";
+		if (partitioner != null) {
+			Group group = partitioner.resolve(key.toString());
+			if (group != null)
+				groupName = group.name();
+		}
+
+		String[] names = partitionNames.get(groupName);
+		if (names == null) {
+			names = new String[Math.max(1, partitions)];
+			for (int i = 0; i < names.length; i++)
+				names[i] = groupName + "#" + i;
+			partitionNames.put(groupName, names);
+		}
+
+		int hash = key.hashCode();
+		hash ^= (hash >>> 16);
+		return (K) names[(hash & Integer.MAX_VALUE) % names.length];
+	}
+
+	@Override
+	public synchronized void init(JessyGroupManager m) {
+		if (m != null)
+			partitioner = m.getPartitioner();
+	}
+
+	@Override
+	public void setSelfKey(K selfKey) {
+		super.setSelfKey(selfKey);
+		selfPartition = null;
+	}
+
+	/**
+	 * Returns the partition of the self key.
+	 */
+	public K getSelfPartition() {
+		if (selfPartition == null)
+			selfPartition = partitionOf(selfKey);
+		return selfPartition;
+	}
+
+	@Override
+	public Integer getSelfValue() {
+		return getValue(getSelfPartition());
+	}
+
+	@Override
+	public void increment() {
+		setValue(getSelfPartition(), getSelfValue() + 1);
+	}
+
+	/**
+	 * Called during certification, where {@code other} is a version of the
+	 * same entity. As in {@link DependenceVector}, the two vectors are
+	 * compatible only if they have the same self value.
+	 */
+	@Override
+	public CompatibleResult isCompatible(Vector<K> other)
+			throws NullPointerException {
+		if (other == null) {
+			throw new NullPointerException("Input Vector is Null");
+		}
+
+		K otherPartition = partitionOf(other.getSelfKey());
+
+		if (getValue(getSelfPartition()) >= other.getValue(getSelfPartition())
+				&& other.getValue(otherPartition) >= getValue(otherPartition)) {
+			return Vector.CompatibleResult.COMPATIBLE;
+		}
+
+		return Vector.CompatibleResult.NOT_COMPATIBLE_TRY_NEXT;
+	}
+
+	@Override
+	public CompatibleResult isCompatible(CompactVector<K> other)
+			throws NullPointerException {
+		if (other == null) {
+			throw new NullPointerException("Input Vector is Null");
+		}
+
+		if (other.size() == 0)
+			return Vector.CompatibleResult.COMPATIBLE;
+
+		for (Map.Entry<K, Integer> entry : other.getEntrySet()) {
+			if (getValue(entry.getKey()) > entry.getValue()) {
+				return Vector.CompatibleResult.NOT_COMPATIBLE_TRY_NEXT;
+			}
+		}
+
+		return Vector.CompatibleResult.COMPATIBLE;
+	}
+
+	@Override
+	public Integer getCompatibleSelfValueBound(CompactVector<K> other) {
+		if (other.size() == 0)
+			return null;
+
+		Integer bound = other.getValue(getSelfPartition());
+		return bound < 0 ? null : bound;
+	}
+
+	/**
+	 * Same as {@link DependenceVector#update(CompactVector, CompactVector)},
+	 * except that the partitions of the written entities are incremented.
+	 */
+	@Override
+	public void update(CompactVector<K> readSet, CompactVector<K> writeSet) {
+		if (readSet.size() > 0)
+			super.update(readSet);
+
+		Set<K> writtenPartitions = new HashSet<K>();
+		for (K key : writeSet.getKeys())
+			writtenPartitions.add(partitionOf(key));
+
+		Integer value;
+		for (Map.Entry<K, Integer> entry : writeSet.getEntrySet()) {
+			K key = entry.getKey();
+			value = entry.getValue();
+			if (writtenPartitions.contains(key))
+				value++;
+			if (getValue(key).compareTo(value) < 0) {
+				setValue(key, value);
+			}
+		}
+	}
+
+	@Override
+	public boolean canBeCheckedByProxy() {
+		return true;
+	}
+
+	@Override
+	public PartitionedDependenceVector<K> clone() {
+		return (PartitionedDependenceVector<K>) super.clone();
+	}
+
+	public void readExternal(ObjectInput in) throws IOException,
+			ClassNotFoundException {
+		super.readExternal(in);
+	}
+
+	public void writeExternal(ObjectOutput out) throws IOException {
+		super.writeExternal(out);
+	}
+
+}
@@ -74,6 +74,24 @@ public class ScalarVector<K> extends Vector<K> implements Externalizable {
 		return lastCommittedTransactionSeqNumber.get();
 	}
 
+	@Override
+	public Integer getGarbageCollectionWatermark(){
+		if (lastCommittedTransactionSeqNumber==null)
+			return null;
+		return lastCommittedTransactionSeqNumber.get();
+	}
+
+	/**
+	 * The snapshot of a transaction is the sequence number it has read first.
+	 */
+	@Override
+	public Integer getGarbageCollectionSnapshot(CompactVector<K> readSet){
+		if (readSet.size()==0)
+			return null;
+		Integer value=readSet.getValue(selfKey);
+		return (value==null || value<0) ? null : value;
+	}
+
 	/**
 	 * needed by BerkleyDB
 	 */
@@ -186,6 +204,13 @@ public class ScalarVector<K> extends Vector<K> implements Externalizable {
 
 	}
 
+	@Override
+	public Integer getCompatibleSelfValueBound(CompactVector<K> other) {
+		if (other.size() == 0)
+			return null;
+		return other.getValue(selfKey);
+	}
+
 	@Override
 	public void update(CompactVector<K> readSet, CompactVector<K> writeSet) {
 
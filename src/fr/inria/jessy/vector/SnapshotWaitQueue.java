@@ -0,0 +1,211 @@
+package fr.inria.jessy.vector;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.sourceforge.fractal.utils.PerformanceProbe.SimpleCounter;
+import net.sourceforge.fractal.utils.PerformanceProbe.ValueRecorder;
+
+import fr.inria.jessy.ConstantPool;
+import fr.inria.jessy.store.ReadRequest;
+import fr.inria.jessy.utils.Configuration;
+import fr.inria.jessy.utils.DaemonThreadFactory;
+
+/**
+ * Parks the read requests whose snapshot is not yet visible on this replica,
+ * i.e., for which {@link VectorFactory#prepareRead(ReadRequest)} returns
+ * false, instead of answering them with no entity and letting the proxy
+ * sleep and retry.
+ * <p>
+ * Only the requests of vectors whose {@link Vector#prepareRead(ReadRequest)}
+ * depends on this replica wait (see
+ * {@link Vector#prepareReadDependsOnReplica()}). A request waits for the
+ * snapshot given by {@link Vector#getAwaitedSnapshot(ReadRequest)}. Protocols
+ * call {@link #snapshotAdvanced()} each time the state checked by
+ * {@link Vector#prepareRead(ReadRequest)} changes (e.g.,
+ * {@link GMUVector#logCommitVC}). The parked requests whose snapshot is
+ * reached are then resumed, and check their snapshot again. A request is
+ * also resumed once its deadline, <code>read_wait_timeout</code>
+ * milliseconds after it has been parked first, is reached.
+ *
+ * @author Masoud Saeida Ardekani
+ *
+ */
+public class SnapshotWaitQueue {
+
+	private static ValueRecorder waitingTime;
+
+	private static SimpleCounter parkedReads, expiredReads;
+
+	static {
+		// Performance measuring facilities
+
+		waitingTime = new ValueRecorder("SnapshotWaitQueue#waitingTime(us)");
+		waitingTime.setFormat("%a");
+
+		parkedReads = new SimpleCounter("SnapshotWaitQueue#parkedReads");
+		expiredReads = new SimpleCounter("SnapshotWaitQueue#expiredReads");
+	}
+
+	private static final long timeout = TimeUnit.MILLISECONDS
+			.toNanos(Configuration.readConfig(ConstantPool.READ_WAIT_TIMEOUT,
+					ConstantPool.JESSY_READ_WAIT_TIMEOUT));
+
+	/**
+	 * The parked requests, ordered by the snapshot they wait for.
+	 */
+	private static final ConcurrentSkipListSet<Waiter> waiters = new ConcurrentSkipListSet<Waiter>();
+
+	private static final AtomicLong sequence = new AtomicLong();
+
+	private static ScheduledThreadPoolExecutor timer;
+
+	/**
+	 * A parked request.
+	 */
+	private static class Waiter implements Runnable, Comparable<Waiter> {
+
+		final Runnable task;
+
+		final int snapshot;
+
+		/**
+		 * Orders the waiters of a same snapshot.
+		 */
+		final long id = sequence.incrementAndGet();
+
+		final long parkTime;
+
+		final AtomicBoolean resumed = new AtomicBoolean();
+
+		Waiter(Runnable task, int snapshot) {
+			this.task = task;
+			this.snapshot = snapshot;
+			this.parkTime = System.nanoTime();
+		}
+
+		public int compareTo(Waiter other) {
+			if (snapshot != other.snapshot)
+				return snapshot < other.snapshot ? -1 : 1;
+			return id < other.id ? -1 : (id == other.id ? 0 : 1);
+		}
+
+		/**
+		 * Executes the task, unless it has already been resumed.
+		 */
+		void resume() {
+			if (!resumed.compareAndSet(false, true))
+				return;
+			waiters.remove(this);
+			waitingTime.add((System.nanoTime() - parkTime) / 1000);
+			task.run();
+		}
+
+		/**
+		 * Called once the deadline is reached.
+		 */
+		public void run() {
+			if (!resumed.get())
+				expiredReads.incr();
+			resume();
+		}
+	}
+
+	/**
+	 * Returns true if read requests must wait for their snapshot, i.e., if
+	 * <code>read_wait_timeout</code> is positive and the snapshot depends on
+	 * this replica.
+	 */
+	public static boolean isEnabled() {
+		return timeout > 0 && VectorFactory.prepareReadDependsOnReplica();
+	}
+
+	/**
+	 * Returns the deadline of a request that is parked for the first time
+	 * now, as given by {@link System#nanoTime()}.
+	 */
+	public static long newDeadline() {
+		return System.nanoTime() + timeout;
+	}
+
+	/**
+	 * Parks the request until the snapshot it waits for is reached, or the
+	 * deadline is reached. The task is then executed once, either by the thread
+	 * advancing the snapshot or by a timer. Hence, it must not block: it
+	 * should only submit the read to an executor, that checks again
+	 * {@link VectorFactory#prepareRead(ReadRequest)}.
+	 */
+	@SuppressWarnings("rawtypes")
+	public static void park(ReadRequest rr, Runnable task, long deadline) {
+		Waiter waiter = new Waiter(task, VectorFactory.getAwaitedSnapshot(rr));
+		parkedReads.incr();
+		waiters.add(waiter);
+
+		// The snapshot might have advanced before the waiter was added.
+		if (VectorFactory.prepareRead(rr)) {
+			waiter.resume();
+			return;
+		}
+
+		getTimer().schedule(waiter, deadline - System.nanoTime(),
+				TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Blocks until the snapshot of the request is visible, or the deadline is
+	 * reached.
+	 *
+	 * @return true if the snapshot is visible.
+	 */
+	@SuppressWarnings("rawtypes")
+	public static boolean await(ReadRequest rr) throws InterruptedException {
+		long deadline = newDeadline();
+		while (!VectorFactory.prepareRead(rr)) {
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0)
+				return false;
+
+			final CountDownLatch latch = new CountDownLatch(1);
+			park(rr, new Runnable() {
+				public void run() {
+					latch.countDown();
+				}
+			}, deadline);
+			latch.await(remaining, TimeUnit.NANOSECONDS);
+		}
+		return true;
+	}
+
+	/**
+	 * Resumes the parked requests whose snapshot is reached. Must be called
+	 * each time the state checked by {@link Vector#prepareRead(ReadRequest)}
+	 * changes.
+	 */
+	public static void snapshotAdvanced() {
+		if (waiters.isEmpty())
+			return;
+
+		int snapshot = VectorFactory.getReplicaSnapshot();
+		Iterator<Waiter> itr = waiters.iterator();
+		while (itr.hasNext()) {
+			Waiter waiter = itr.next();
+			if (waiter.snapshot > snapshot)
+				break;
+			waiter.resume();
+		}
+	}
+
+	private static synchronized ScheduledThreadPoolExecutor getTimer() {
+		if (timer == null) {
+			timer = new ScheduledThreadPoolExecutor(1,
+					new DaemonThreadFactory("SnapshotWaitQueue"));
+		}
+		return timer;
+	}
+
+}
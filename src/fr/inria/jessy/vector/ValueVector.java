@@ -9,9 +9,15 @@ import java.io.Externalizable;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.io.StreamCorruptedException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 import com.sleepycat.persist.model.Persistent;
@@ -27,6 +33,10 @@ import fr.inria.jessy.ConstantPool;
  * The vector is cloneable. The clone method makes a shallow copy of the (key,
  * value) pairs it contains. Values must therefore be <b>immutable</b>. The
  * vector is serializable if both keys and values are.
+ * <p>
+ * Integer values of the keys of the {@link KeyDictionary} are stored in a
+ * primitive array indexed by the id of the key. Other pairs are stored in a
+ * hash map, which is only allocated when needed.
  * 
  * @author J-M. Busca INRIA/Regal
  * 
@@ -72,9 +82,21 @@ public class ValueVector<K, V extends Comparable<V>> implements Cloneable,
 	//
 	// OBJECT FIELDS
 	//
+	/**
+	 * Value of each key of the {@link KeyDictionary}, indexed by its id, or
+	 * {@link #MISSING} if the key has no value.
+	 */
+	protected int[] values;
+	protected int valuesCount;
+	/**
+	 * Pairs whose key is not in the {@link KeyDictionary}, or whose value is
+	 * not an integer. It might be null.
+	 */
 	protected HashMap<K, V> map;
 	protected V bydefault;
 
+	private static final int MISSING = Integer.MIN_VALUE;
+
 	//
 	// CONSTRUCTORS
 	//
@@ -91,7 +113,6 @@ public class ValueVector<K, V extends Comparable<V>> implements Cloneable,
 	 */
 
 	public ValueVector(V bydefault) {
-		this.map = new HashMap<K, V>(1);
 		this.bydefault = bydefault;
 	}
 
@@ -99,7 +120,7 @@ public class ValueVector<K, V extends Comparable<V>> implements Cloneable,
 	 * @inheritDoc
 	 */
 	public String toString() {
-		return (map != null) ? map.toString() : "";
+		return getMap().toString();
 	}
 
 	//
@@ -115,7 +136,7 @@ public class ValueVector<K, V extends Comparable<V>> implements Cloneable,
 	 * 
 	 */
 	public void setValue(K key, V value) {
-		map.put(key, value);
+		put(key, value);
 	}
 
 	/**
@@ -129,7 +150,7 @@ public class ValueVector<K, V extends Comparable<V>> implements Cloneable,
 	 *         value specified in the constructor otherwise.
 	 */
 	public V getValue(K value) {
-		V found = map.get(value);
+		V found = find(value);
 		if (found != null) {
 			return found;
 		}
@@ -137,19 +158,37 @@ public class ValueVector<K, V extends Comparable<V>> implements Cloneable,
 	}
 
 	public Set<Map.Entry<K, V>> getEntrySet() {
-		return map.entrySet();
+		return getMap().entrySet();
 	}
 
-	public HashMap<K, V> getMap() {
-		return map;
+	/**
+	 * Returns a view of the (key, value) pairs of this vector. Changes to the
+	 * view are reflected in the vector, and vice versa.
+	 */
+	public Map<K, V> getMap() {
+		return new MapView();
 	}
 
-	public void setMap(HashMap<K, V> map) {
-		this.map = map;
+	/**
+	 * Replaces the (key, value) pairs of this vector with a copy of the given
+	 * pairs.
+	 */
+	@SuppressWarnings("unchecked")
+	public void setMap(Map<K, V> map) {
+		if (map instanceof ValueVector.MapView) {
+			copyFrom(((MapView) map).owner());
+			return;
+		}
+
+		values = null;
+		valuesCount = 0;
+		this.map = null;
+		for (Map.Entry<K, V> entry : map.entrySet())
+			put(entry.getKey(), entry.getValue());
 	}
 	
 	public int size(){
-		return this.map.size();
+		return valuesCount + (map == null ? 0 : map.size());
 	}
 
 	//
@@ -164,24 +203,52 @@ public class ValueVector<K, V extends Comparable<V>> implements Cloneable,
 	 *            the vector to update this vector with.
 	 */
 	public synchronized void update(ValueVector<K, V> vector) {
-		for (Map.Entry<K, V> entry : vector.map.entrySet()) {
-			K key = entry.getKey();
-			V value = entry.getValue();
-			if (getValue(key).compareTo(value) < 0) {
-				setValue(key, value);
-			}
-		}
+		update(vector, null);
 	}
 	
 	public synchronized void updateAndRemove(ValueVector<K, V> vector, String str) {
-		for (Map.Entry<K, V> entry : vector.map.entrySet()) {
-			if (entry.getKey().toString().startsWith(str)){
-				continue;
+		update(vector, str);
+	}
+
+	/**
+	 * Supersedes entries lower than their counterparts in the specified
+	 * vector, except the entries whose key starts with {@code ignoredPrefix}.
+	 */
+	@SuppressWarnings("unchecked")
+	private void update(ValueVector<K, V> vector, String ignoredPrefix) {
+		int[] others = vector.values;
+		if (others != null) {
+			for (int id = 0; id < others.length; id++) {
+				int value = others[id];
+				if (value == MISSING)
+					continue;
+				if (ignoredPrefix != null
+						&& KeyDictionary.keyOf(id).startsWith(ignoredPrefix))
+					continue;
+
+				int mine = denseValue(id);
+				if (mine != MISSING) {
+					if (mine < value)
+						values[id] = value;
+				} else {
+					K key = (K) KeyDictionary.keyOf(id);
+					V boxed = (V) Integer.valueOf(value);
+					if (getValue(key).compareTo(boxed) < 0)
+						put(key, boxed);
+				}
 			}
-			K key = entry.getKey();
-			V value = entry.getValue();
-			if (getValue(key).compareTo(value) < 0) {
-				setValue(key, value);
+		}
+
+		if (vector.map != null) {
+			for (Map.Entry<K, V> entry : vector.map.entrySet()) {
+				K key = entry.getKey();
+				if (ignoredPrefix != null
+						&& key.toString().startsWith(ignoredPrefix))
+					continue;
+				V value = entry.getValue();
+				if (getValue(key).compareTo(value) < 0) {
+					setValue(key, value);
+				}
 			}
 		}
 	}
@@ -193,25 +260,34 @@ public class ValueVector<K, V extends Comparable<V>> implements Cloneable,
 	 * Compresses the specified vector with respect to this vector and supersede
 	 * this vector with the specified vector. The method returns a new vector
 	 * containing entries of the specified vector that do not exist in this
-	 * vector. It then replaces this vector with the specified vector.
+	 * vector, or whose value differs. It then replaces the entries of this
+	 * vector with a copy of the entries of the specified vector.
+	 * <p>
+	 * Entries of this vector that do not exist in the specified vector are
+	 * not part of the result (see {@link #removedKeys(ValueVector)}).
 	 * 
 	 * @param vector
 	 *            the vector to compress.
 	 * 
 	 * @return the compressed representation of the specified vector.
 	 */
-	@SuppressWarnings("unchecked")
 	public ValueVector<K, V> compress(ValueVector<K, V> vector) {
 
-		ValueVector<K, V> result = (ValueVector<K, V>) vector.clone();
-		for (Map.Entry<K, V> entry : vector.map.entrySet()) {
-			K key = entry.getKey();
-			V value = entry.getValue();
-			if (value.equals(getValue(key))) {
-				result.map.remove(key);
+		ValueVector<K, V> result = new ValueVector<K, V>(vector.bydefault);
+		int[] others = vector.values;
+		if (others != null) {
+			for (int id = 0; id < others.length; id++) {
+				if (others[id] != MISSING && others[id] != denseValue(id))
+					result.setDenseValue(id, others[id]);
 			}
 		}
-		map = vector.map;
+		if (vector.map != null) {
+			for (Map.Entry<K, V> entry : vector.map.entrySet()) {
+				if (!entry.getValue().equals(find(entry.getKey())))
+					result.put(entry.getKey(), entry.getValue());
+			}
+		}
+		copyFrom(vector);
 		return result;
 
 	}
@@ -227,10 +303,32 @@ public class ValueVector<K, V extends Comparable<V>> implements Cloneable,
 	 */
 	@SuppressWarnings("unchecked")
 	public ValueVector<K, V> expand(ValueVector<K, V> compressed) {
-		map.putAll(compressed.map);
+		putAll(compressed);
 		return (ValueVector<K, V>) clone();
 	}
 
+	/**
+	 * Returns the keys of this vector that do not exist in the specified
+	 * vector.
+	 */
+	@SuppressWarnings("unchecked")
+	public Set<K> removedKeys(ValueVector<K, V> vector) {
+		Set<K> result = new HashSet<K>();
+		if (values != null) {
+			for (int id = 0; id < values.length; id++) {
+				if (values[id] != MISSING && vector.denseValue(id) == MISSING)
+					result.add((K) KeyDictionary.keyOf(id));
+			}
+		}
+		if (map != null) {
+			for (K key : map.keySet()) {
+				if (vector.find(key) == null)
+					result.add(key);
+			}
+		}
+		return result;
+	}
+
 	//
 	// OBJECT COMPARISON
 	//
@@ -246,14 +344,26 @@ public class ValueVector<K, V extends Comparable<V>> implements Cloneable,
 			return false;
 		}
 		ValueVector<K, V> other = (ValueVector<K, V>) object;
-		return other.map.equals(map);
+		if (valuesCount != other.valuesCount || size() != other.size())
+			return false;
+
+		int length = Math.max(values == null ? 0 : values.length,
+				other.values == null ? 0 : other.values.length);
+		for (int id = 0; id < length; id++) {
+			if (denseValue(id) != other.denseValue(id))
+				return false;
+		}
+
+		if (map == null || map.isEmpty())
+			return other.map == null || other.map.isEmpty();
+		return map.equals(other.map);
 	}
 
 	/**
 	 * @inheritDoc
 	 */
 	public int hashCode() {
-		return map.hashCode();
+		return getMap().hashCode();
 	}
 
 	/**
@@ -271,37 +381,56 @@ public class ValueVector<K, V extends Comparable<V>> implements Cloneable,
 	 *         {@link ComparisonResult#GREATER_THAN GREATER_THAN} values
 	 *         otherwise.
 	 */
+	@SuppressWarnings("unchecked")
 	public ComparisonResult compareTo(ValueVector<K, V> other) {
 
 		// check special values
 		if (other == null) {
 			return NOT_COMPARABLE;
 		}
-		if (map.isEmpty()) {
-			if (other.map.isEmpty()) {
+		if (size() == 0) {
+			if (other.size() == 0) {
 				return EQUAL_TO;
 			}
 			return LOWER_THAN;
 		}
 
-		if (other.map.isEmpty()) {
+		if (other.size() == 0) {
 			return GREATER_THAN;
 		}
 
 		// compare values pairs one by one
 		int global = 0;
-		Set<K> remaining = new HashSet<K>(other.map.keySet());
 
-		for (K key : map.keySet()) {
-			int local = getValue(key).compareTo(other.getValue(key));
+		int length = Math.max(values == null ? 0 : values.length,
+				other.values == null ? 0 : other.values.length);
+		for (int id = 0; id < length; id++) {
+			int mine = denseValue(id);
+			int others = other.denseValue(id);
+			if (mine == MISSING && others == MISSING)
+				continue;
+
+			int local;
+			if (mine != MISSING && others != MISSING) {
+				local = mine < others ? -1 : (mine == others ? 0 : 1);
+			} else {
+				K key = (K) KeyDictionary.keyOf(id);
+				local = getValue(key).compareTo(other.getValue(key));
+			}
+
 			if (global == 0 && local != 0) {
 				global = local;
 			} else if (global != 0 && global * local < 0) {
 				return NOT_COMPARABLE;
 			}
-			remaining.remove(key);
 		}
 
+		Set<K> remaining = new HashSet<K>();
+		if (map != null)
+			remaining.addAll(map.keySet());
+		if (other.map != null)
+			remaining.addAll(other.map.keySet());
+
 		for (K key : remaining) {
 			int local = getValue(key).compareTo(other.getValue(key));
 			if (global == 0 && local != 0) {
@@ -323,14 +452,116 @@ public class ValueVector<K, V extends Comparable<V>> implements Cloneable,
 		this.bydefault = bydefault;
 	}
 
-	@SuppressWarnings("unchecked")
 	public void readExternal(ObjectInput in) throws IOException,
 			ClassNotFoundException {
-		map = (HashMap<K, V>) in.readObject();
+		readEntries(in);
 	}
 
 	public void writeExternal(ObjectOutput out) throws IOException {
-		out.writeObject(map);
+		writeEntries(out);
+	}
+
+	/**
+	 * Writes the (key, value) pairs. If the stream has
+	 * {@link VectorBaselines}, only the difference with the baseline of the
+	 * class is written, i.e., the entries compressed with
+	 * {@link #compress(ValueVector)} and the removed keys.
+	 */
+	@SuppressWarnings("unchecked")
+	protected void writeEntries(ObjectOutput out) throws IOException {
+		VectorBaselines baselines = VectorBaselines.of(out);
+		if (baselines == null) {
+			writeFullEntries(out);
+			return;
+		}
+
+		ValueVector<K, V> baseline = (ValueVector<K, V>) baselines
+				.get(getClass());
+		ValueVector<K, V> next = new ValueVector<K, V>(bydefault);
+		if (baselines.useDelta(getClass())) {
+			out.writeBoolean(true);
+			next.copyFrom(baseline);
+			next.compress(this).writeFullEntries(out);
+
+			Set<K> removed = baseline.removedKeys(this);
+			out.writeInt(removed.size());
+			for (K key : removed) {
+				int id = KeyDictionary.idOf(key);
+				out.writeInt(id + 1);
+				if (id < 0)
+					out.writeObject(key);
+			}
+		} else {
+			out.writeBoolean(false);
+			writeFullEntries(out);
+			next.copyFrom(this);
+		}
+		baselines.put(getClass(), next);
+	}
+
+	@SuppressWarnings("unchecked")
+	protected void readEntries(ObjectInput in) throws IOException,
+			ClassNotFoundException {
+		VectorBaselines baselines = VectorBaselines.of(in);
+		if (baselines == null) {
+			readFullEntries(in);
+			return;
+		}
+
+		if (in.readBoolean()) {
+			ValueVector<K, V> baseline = (ValueVector<K, V>) baselines
+					.get(getClass());
+			if (baseline == null)
+				throw new StreamCorruptedException("No baseline for "
+						+ getClass().getName());
+
+			ValueVector<K, V> compressed = new ValueVector<K, V>(bydefault);
+			compressed.readFullEntries(in);
+			copyFrom(baseline);
+			putAll(compressed);
+
+			int removed = in.readInt();
+			for (int i = 0; i < removed; i++) {
+				int id = in.readInt() - 1;
+				remove(id >= 0 ? KeyDictionary.keyOf(id) : in.readObject());
+			}
+		} else {
+			readFullEntries(in);
+		}
+
+		ValueVector<K, V> next = new ValueVector<K, V>(bydefault);
+		next.copyFrom(this);
+		baselines.put(getClass(), next);
+	}
+
+	/**
+	 * Writes all the (key, value) pairs: the number of values stored in the
+	 * array, followed by their (id, value), then the hash map.
+	 */
+	private void writeFullEntries(ObjectOutput out) throws IOException {
+		out.writeInt(valuesCount);
+		if (valuesCount > 0) {
+			for (int id = 0; id < values.length; id++) {
+				if (values[id] != MISSING) {
+					out.writeInt(id);
+					out.writeInt(values[id]);
+				}
+			}
+		}
+		out.writeObject(map == null || map.isEmpty() ? null : map);
+	}
+
+	@SuppressWarnings("unchecked")
+	private void readFullEntries(ObjectInput in) throws IOException,
+			ClassNotFoundException {
+		values = null;
+		valuesCount = 0;
+		int count = in.readInt();
+		for (int i = 0; i < count; i++) {
+			int id = in.readInt();
+			setDenseValue(id, in.readInt());
+		}
+		map = (HashMap<K, V>) in.readObject();
 	}
 
 	//
@@ -343,7 +574,10 @@ public class ValueVector<K, V extends Comparable<V>> implements Cloneable,
 	public Object clone() {
 		try {
 			ValueVector<K, V> result = (ValueVector<K, V>) super.clone();
-			result.map = (HashMap<K, V>) map.clone();
+			if (values != null)
+				result.values = values.clone();
+			if (map != null)
+				result.map = (HashMap<K, V>) map.clone();
 			return result;
 		} catch (CloneNotSupportedException e) {
 			// should not happen
@@ -351,4 +585,211 @@ public class ValueVector<K, V extends Comparable<V>> implements Cloneable,
 		}
 	}
 
+	//
+	// STORAGE
+	//
+	private int denseValue(int id) {
+		if (values == null || id >= values.length)
+			return MISSING;
+		return values[id];
+	}
+
+	private int setDenseValue(int id, int value) {
+		if (values == null || id >= values.length) {
+			int length = Math.max(KeyDictionary.size(), id + 1);
+			int[] newValues = new int[length];
+			Arrays.fill(newValues, MISSING);
+			if (values != null)
+				System.arraycopy(values, 0, newValues, 0, values.length);
+			values = newValues;
+		}
+
+		int old = values[id];
+		values[id] = value;
+		if (old == MISSING)
+			valuesCount++;
+		return old;
+	}
+
+	private void copyFrom(ValueVector<K, V> other) {
+		values = other.values == null ? null : other.values.clone();
+		valuesCount = other.valuesCount;
+		map = other.map == null ? null : new HashMap<K, V>(other.map);
+	}
+
+	private void putAll(ValueVector<K, V> other) {
+		int[] others = other.values;
+		if (others != null) {
+			for (int id = 0; id < others.length; id++) {
+				if (others[id] != MISSING)
+					setDenseValue(id, others[id]);
+			}
+		}
+		if (other.map != null) {
+			for (Map.Entry<K, V> entry : other.map.entrySet())
+				put(entry.getKey(), entry.getValue());
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private V find(Object key) {
+		int id = KeyDictionary.idOf(key);
+		if (id >= 0) {
+			int value = denseValue(id);
+			if (value != MISSING)
+				return (V) Integer.valueOf(value);
+		}
+		return map == null ? null : map.get(key);
+	}
+
+	@SuppressWarnings("unchecked")
+	private V put(K key, V value) {
+		int id = KeyDictionary.idOf(key);
+		if (id >= 0 && value instanceof Integer
+				&& (Integer) value != MISSING) {
+			int old = setDenseValue(id, (Integer) value);
+			if (old != MISSING)
+				return (V) Integer.valueOf(old);
+			// The key might have been stored before the dictionary was built.
+			return map == null ? null : map.remove(key);
+		}
+
+		if (map == null)
+			map = new HashMap<K, V>(2);
+		return map.put(key, value);
+	}
+
+	@SuppressWarnings("unchecked")
+	private V remove(Object key) {
+		int id = KeyDictionary.idOf(key);
+		if (id >= 0) {
+			int value = denseValue(id);
+			if (value != MISSING) {
+				values[id] = MISSING;
+				valuesCount--;
+				return (V) Integer.valueOf(value);
+			}
+		}
+		return map == null ? null : map.remove(key);
+	}
+
+	/**
+	 * A live view of the (key, value) pairs of the vector.
+	 */
+	private class MapView extends AbstractMap<K, V> {
+
+		ValueVector<K, V> owner() {
+			return ValueVector.this;
+		}
+
+		@Override
+		public int size() {
+			return ValueVector.this.size();
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return find(key) != null;
+		}
+
+		@Override
+		public V get(Object key) {
+			return find(key);
+		}
+
+		@Override
+		public V put(K key, V value) {
+			return ValueVector.this.put(key, value);
+		}
+
+		@Override
+		public V remove(Object key) {
+			return ValueVector.this.remove(key);
+		}
+
+		@Override
+		public void clear() {
+			values = null;
+			valuesCount = 0;
+			map = null;
+		}
+
+		@Override
+		public Set<Map.Entry<K, V>> entrySet() {
+			return new AbstractSet<Map.Entry<K, V>>() {
+				@Override
+				public int size() {
+					return ValueVector.this.size();
+				}
+
+				@Override
+				public Iterator<Map.Entry<K, V>> iterator() {
+					return new EntryIterator();
+				}
+			};
+		}
+	}
+
+	/**
+	 * Iterates over the values of the array, then over the hash map.
+	 */
+	private class EntryIterator implements Iterator<Map.Entry<K, V>> {
+
+		private int nextId = -1;
+
+		private int lastId = -1;
+
+		private Iterator<Map.Entry<K, V>> mapIterator;
+
+		private boolean inMap;
+
+		EntryIterator() {
+			advance();
+		}
+
+		private void advance() {
+			do {
+				nextId++;
+			} while (values != null && nextId < values.length
+					&& values[nextId] == MISSING);
+		}
+
+		public boolean hasNext() {
+			if (values != null && nextId < values.length)
+				return true;
+			if (mapIterator == null && map != null)
+				mapIterator = map.entrySet().iterator();
+			return mapIterator != null && mapIterator.hasNext();
+		}
+
+		@SuppressWarnings("unchecked")
+		public Map.Entry<K, V> next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+
+			if (values != null && nextId < values.length) {
+				lastId = nextId;
+				inMap = false;
+				advance();
+				return new AbstractMap.SimpleImmutableEntry<K, V>(
+						(K) KeyDictionary.keyOf(lastId),
+						(V) Integer.valueOf(values[lastId]));
+			}
+
+			inMap = true;
+			return mapIterator.next();
+		}
+
+		public void remove() {
+			if (inMap) {
+				mapIterator.remove();
+			} else {
+				if (lastId < 0 || values[lastId] == MISSING)
+					throw new IllegalStateException();
+				values[lastId] = MISSING;
+				valuesCount--;
+			}
+		}
+	}
+
 }
@@ -4,7 +4,6 @@ import java.io.Externalizable;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
-import java.util.HashMap;
 
 import com.sleepycat.persist.model.Persistent;
 
@@ -83,6 +82,30 @@ public abstract class Vector<K> extends ValueVector<K, Integer> implements Clone
 		return;
 	}
 
+	/**
+	 * Implements this method if a version can only be compatible with
+	 * {@code other} when its self value is lower than or equal to some bound.
+	 * Versions of an entity with a greater self value are then skipped
+	 * without calling {@link #isCompatible(CompactVector)}. This method must
+	 * not modify the vector.
+	 * 
+	 * @param other
+	 *            the compactVector containing all previously read entities.
+	 * @return the bound, or null if there is no such bound.
+	 */
+	public Integer getCompatibleSelfValueBound(CompactVector<K> other) {
+		return null;
+	}
+
+	/**
+	 * Implements this method if {@link #isCompatible(CompactVector)} only
+	 * depends on this vector and on its input. In that case, a proxy can check
+	 * that entities read at the same time are compatible with each other.
+	 */
+	public boolean canBeCheckedByProxy() {
+		return false;
+	}
+
 	public void setSelfKey(K selfKey) {
 		this.selfKey = selfKey;
 	}
@@ -113,13 +136,13 @@ public abstract class Vector<K> extends ValueVector<K, Integer> implements Clone
 	@SuppressWarnings("unchecked")
 	public void readExternal(ObjectInput in) throws IOException,
 			ClassNotFoundException {
-		map = (HashMap<K, Integer>) in.readObject();
+		readEntries(in);
 		super.setBydefault(_bydefault);
 		selfKey = (K) in.readObject();
 	}
 
 	public void writeExternal(ObjectOutput out) throws IOException {
-		out.writeObject(map);
+		writeEntries(out);
 		out.writeObject(selfKey);
 	}
 
@@ -157,6 +180,79 @@ public abstract class Vector<K> extends ValueVector<K, Integer> implements Clone
 	public boolean prepareRead(ReadRequest rr){
 		return true;
 	}
+
+	/**
+	 * Implements this method if {@link #prepareRead(ReadRequest)} depends on
+	 * the transactions applied by this replica, so that a read it rejects can
+	 * be accepted once more transactions are applied (see
+	 * {@link SnapshotWaitQueue}).
+	 * <p>
+	 * This method is called on a vector instance only to access the static
+	 * members of the vector.
+	 */
+	public boolean prepareReadDependsOnReplica(){
+		return false;
+	}
+
+	/**
+	 * Implements this method along with
+	 * {@link #prepareReadDependsOnReplica()}. It returns the snapshot of this
+	 * replica, which grows as transactions are applied.
+	 */
+	public int getReplicaSnapshot(){
+		return 0;
+	}
+
+	/**
+	 * Returns the snapshot this replica must reach before
+	 * {@link #prepareRead(ReadRequest)}, which has rejected <code>rr</code>,
+	 * may accept it. By default, the next one.
+	 */
+	public int getAwaitedSnapshot(ReadRequest<?> rr){
+		return getReplicaSnapshot() + 1;
+	}
+
+	/**
+	 * Implements this method if older versions of an entity can be garbage
+	 * collected. It returns the low-watermark of the snapshots that can still
+	 * be read on this replica: if an entity has a version whose
+	 * {@link #getGarbageCollectionValue()} is lower than or equal to the
+	 * watermark, all its older versions are invisible to any snapshot.
+	 * <p>
+	 * This method is called on a vector instance only to access the static
+	 * members of the vector.
+	 *
+	 * @return the watermark, or null if it cannot be computed (yet). In that
+	 *         case, no version is garbage collected.
+	 */
+	public Integer getGarbageCollectionWatermark(){
+		return null;
+	}
+
+	/**
+	 * Returns the value of this version that is compared against
+	 * {@link #getGarbageCollectionWatermark()}.
+	 */
+	public Integer getGarbageCollectionValue(){
+		return getSelfValue();
+	}
+
+	/**
+	 * Implements this method if the snapshot of a transaction can be derived
+	 * from its read set. It returns the lowest watermark that still lets a
+	 * transaction with this read set read its snapshot, so that the versions
+	 * it needs are not garbage collected while it runs.
+	 * <p>
+	 * This method is called on a vector instance only to access the static
+	 * members of the vector.
+	 *
+	 * @return the watermark, or null if the snapshot cannot be derived from
+	 *         the read set. In that case, the snapshot is the current
+	 *         {@link #getGarbageCollectionWatermark()}.
+	 */
+	public Integer getGarbageCollectionSnapshot(CompactVector<K> readSet){
+		return null;
+	}
 	
 	public void postRead(ReadRequest rr, JessyEntity entity){
 		return;
@@ -0,0 +1,104 @@
+package fr.inria.jessy.vector;
+
+import java.util.HashMap;
+
+import fr.inria.jessy.ConstantPool;
+
+/**
+ * The baselines against which vectors are delta-encoded (see
+ * {@link ValueVector#writeEntries(java.io.ObjectOutput)}). There is one
+ * baseline per vector class: the last vector of this class written (or read)
+ * in the same scope. Both ends of a scope see the vectors in the same order,
+ * thus they agree on the baselines.
+ * <p>
+ * A scope is either a connection, when the stream implements {@link Holder},
+ * or the serialization of a single message (see {@link #open()}). Every
+ * {@link ConstantPool#JESSY_VECTOR_RESYNC_PERIOD} vectors of a class, the
+ * writer sends a full vector instead of a delta.
+ * <p>
+ * Updates of the baselines are staged until {@link #commit()}, so that a
+ * frame that fails to be encoded (or decoded) does not change them.
+ * 
+ * @author Masoud Saeida Ardekani
+ * 
+ */
+public class VectorBaselines {
+
+	/**
+	 * Implemented by streams that keep baselines for a whole connection.
+	 */
+	public interface Holder {
+		VectorBaselines getVectorBaselines();
+	}
+
+	private static final ThreadLocal<VectorBaselines> current = new ThreadLocal<VectorBaselines>();
+
+	private final HashMap<Class<?>, ValueVector<?, ?>> baselines = new HashMap<Class<?>, ValueVector<?, ?>>();
+
+	private final HashMap<Class<?>, ValueVector<?, ?>> staged = new HashMap<Class<?>, ValueVector<?, ?>>();
+
+	private final HashMap<Class<?>, Integer> sinceResync = new HashMap<Class<?>, Integer>();
+
+	/**
+	 * Returns the baselines of the stream, or null if vectors are not
+	 * delta-encoded.
+	 */
+	public static VectorBaselines of(Object stream) {
+		if (stream instanceof Holder)
+			return ((Holder) stream).getVectorBaselines();
+		return current.get();
+	}
+
+	/**
+	 * Starts a new scope for the current thread, and returns the previous one
+	 * that must be given back to {@link #close(VectorBaselines)}.
+	 */
+	public static VectorBaselines open() {
+		VectorBaselines previous = current.get();
+		current.set(new VectorBaselines());
+		return previous;
+	}
+
+	public static void close(VectorBaselines previous) {
+		if (previous == null)
+			current.remove();
+		else
+			current.set(previous);
+	}
+
+	ValueVector<?, ?> get(Class<?> vectorClass) {
+		ValueVector<?, ?> baseline = staged.get(vectorClass);
+		return baseline != null ? baseline : baselines.get(vectorClass);
+	}
+
+	void put(Class<?> vectorClass, ValueVector<?, ?> baseline) {
+		staged.put(vectorClass, baseline);
+	}
+
+	/**
+	 * Returns false if the writer must send a full vector of this class.
+	 */
+	boolean useDelta(Class<?> vectorClass) {
+		if (get(vectorClass) == null)
+			return false;
+
+		Integer count = sinceResync.get(vectorClass);
+		count = count == null ? 1 : count + 1;
+		if (count >= ConstantPool.JESSY_VECTOR_RESYNC_PERIOD) {
+			sinceResync.put(vectorClass, 0);
+			return false;
+		}
+		sinceResync.put(vectorClass, count);
+		return true;
+	}
+
+	public void commit() {
+		baselines.putAll(staged);
+		staged.clear();
+	}
+
+	public void rollback() {
+		staged.clear();
+	}
+
+}
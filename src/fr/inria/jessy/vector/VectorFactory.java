@@ -17,6 +17,8 @@ public class VectorFactory {
 //			return new VersionVector(manager.getMyGroup().name(), 0);
 //		}
 		if (protocolName.contains("_dv_")) {
+			if (PartitionedDependenceVector.isEnabled())
+				return new PartitionedDependenceVector<K>(selfKey);
 			return new DependenceVector<K>(selfKey);
 		}
 		if (protocolName.contains("_pdv_")) {
@@ -57,10 +59,49 @@ public class VectorFactory {
 		return tmpVector.prepareRead(rr);
 	}
 	
+	/**
+	 * @see Vector#prepareReadDependsOnReplica()
+	 */
+	public static boolean prepareReadDependsOnReplica(){
+		return tmpVector.prepareReadDependsOnReplica();
+	}
+
+	/**
+	 * @see Vector#getReplicaSnapshot()
+	 */
+	public static int getReplicaSnapshot(){
+		return tmpVector.getReplicaSnapshot();
+	}
+
+	/**
+	 * @see Vector#getAwaitedSnapshot(ReadRequest)
+	 */
+	public static int getAwaitedSnapshot(ReadRequest<?> rr){
+		return tmpVector.getAwaitedSnapshot(rr);
+	}
+
 	public static void postRead(ReadRequest rr, JessyEntity entity){
 		tmpVector.postRead(rr, entity);
 	}
 
+	public static Integer getGarbageCollectionWatermark(){
+		return tmpVector.getGarbageCollectionWatermark();
+	}
+
+	/**
+	 * @see Vector#getGarbageCollectionSnapshot(CompactVector)
+	 */
+	public static Integer getGarbageCollectionSnapshot(CompactVector<String> readSet){
+		return tmpVector.getGarbageCollectionSnapshot(readSet);
+	}
+
+	/**
+	 * @see Vector#canBeCheckedByProxy()
+	 */
+	public static boolean canBeCheckedByProxy() {
+		return tmpVector.canBeCheckedByProxy();
+	}
+
 	/**
 	 * This method is not NECESSARY.
 	 * It is just a dirty way to improve performance.
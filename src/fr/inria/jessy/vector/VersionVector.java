@@ -190,4 +190,38 @@ public class VersionVector<K> extends Vector<K> implements Cloneable, Externaliz
 		FilePersistence.writeObject(VersionVector.committedVTS, "VersionVector.committedVTS");
 	}
 
+	/**
+	 * @inheritDoc
+	 * 
+	 * Snapshots are taken from {@code committedVTS}, thus its entry of this
+	 * replica is the watermark.
+	 */
+	@Override
+	public Integer getGarbageCollectionWatermark(){
+		if (committedVTS==null)
+			return null;
+		return committedVTS.getValue(committedVTS.getSelfKey());
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public Integer getGarbageCollectionValue(){
+		return getValue((K)committedVTS.getSelfKey());
+	}
+
+	/**
+	 * @inheritDoc
+	 * 
+	 * The entry of this replica in the read set is the version of the
+	 * snapshot read so far on this replica.
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public Integer getGarbageCollectionSnapshot(CompactVector<K> readSet){
+		if (committedVTS==null || readSet.size()==0)
+			return null;
+		Integer value=readSet.getValue((K)committedVTS.getSelfKey());
+		return (value==null || value<0) ? null : value;
+	}
+
 }
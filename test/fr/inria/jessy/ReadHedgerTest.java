@@ -0,0 +1,175 @@
+package fr.inria.jessy;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import fr.inria.jessy.entity.SampleEntityClass;
+import fr.inria.jessy.store.JessyEntity;
+import fr.inria.jessy.store.ReadRequest;
+
+/**
+ * @author Masoud Saeida Ardekani
+ *
+ */
+public class ReadHedgerTest extends TestCase {
+
+	/**
+	 * A reader that records the requests it resends, instead of sending them.
+	 */
+	private static class RecordingReader extends RemoteReader {
+
+		int resentTo = -1;
+
+		List<ReadRequest<JessyEntity>> resent = new ArrayList<ReadRequest<JessyEntity>>();
+
+		RecordingReader() {
+			super(null);
+		}
+
+		@Override
+		public <E extends JessyEntity> RemoteReadFuture<E> remoteRead(
+				ReadRequest<E> readRequest) {
+			return null;
+		}
+
+		@Override
+		protected void resend(int swid, List<ReadRequest<JessyEntity>> requests) {
+			resentTo = swid;
+			resent.addAll(requests);
+		}
+	}
+
+	private RecordingReader reader;
+
+	private ReplicaSelector selector;
+
+	private Set<Integer> replicas;
+
+	@Override
+	protected void setUp() {
+		reader = new RecordingReader();
+		selector = new ReplicaSelector(ReplicaSelector.RANDOM);
+		reader.replicaSelector = selector;
+		replicas = new HashSet<Integer>();
+		replicas.add(1);
+		replicas.add(2);
+	}
+
+	private ReadHedger newHedger(double budget) {
+		reader.readHedger = new ReadHedger(reader, selector, 95, budget);
+		return reader.readHedger;
+	}
+
+	/**
+	 * Returns <code>count</code> one-key requests, pending at the reader.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private List<ReadRequest<JessyEntity>> pendingRequests(int count) {
+		List<ReadRequest<JessyEntity>> list = new ArrayList<ReadRequest<JessyEntity>>();
+		for (int i = 0; i < count; i++) {
+			ReadRequest<JessyEntity> request = (ReadRequest) new ReadRequest<SampleEntityClass>(
+					SampleEntityClass.class, "secondaryKey", "" + i, null);
+			reader.addPendingRead(new RemoteReadFuture<JessyEntity>(request));
+			list.add(request);
+		}
+		return list;
+	}
+
+	/**
+	 * Returns a latency without enough samples, so that the requests are not
+	 * hedged by the timer of the hedger.
+	 */
+	private static ReadHedger.GroupLatency unknownLatency() {
+		return new ReadHedger.GroupLatency(95);
+	}
+
+	@Test
+	public void testPercentileNeedsEnoughSamples() {
+		ReadHedger.GroupLatency latency = new ReadHedger.GroupLatency(95);
+		for (int i = 0; i < 31; i++)
+			latency.add(i);
+		assertEquals(-1, latency.getPercentile());
+	}
+
+	@Test
+	public void testPercentile() {
+		ReadHedger.GroupLatency latency = new ReadHedger.GroupLatency(95);
+		for (int i = 1; i <= 256; i++)
+			latency.add(i);
+		assertEquals(244, latency.getPercentile());
+
+		// Old samples leave the window.
+		for (int i = 0; i < 256; i++)
+			latency.add(1000);
+		assertEquals(1000, latency.getPercentile());
+	}
+
+	@Test
+	public void testDisabled() {
+		assertFalse(new ReadHedger(null, null, 0, 0.05).isEnabled());
+		assertFalse(new ReadHedger(null, null, 95, 0).isEnabled());
+		assertTrue(new ReadHedger(null, null, 95, 0.05).isEnabled());
+	}
+
+	@Test
+	public void testLateRequestsAreResent() {
+		ReadHedger hedger = newHedger(1);
+		List<ReadRequest<JessyEntity>> requests = pendingRequests(3);
+		selector.sent(1, requests);
+		hedger.sent(unknownLatency(), replicas, 1, requests);
+
+		// The reply to the first request has been received.
+		int replied = requests.get(0).getReadRequestId();
+		reader.pendingRemoteReads.remove(replied);
+		selector.replied(replied, 1);
+		hedger.replied(replied);
+
+		hedger.hedge(replicas, 1, requests);
+
+		assertEquals(2, reader.resentTo);
+		assertEquals(requests.subList(1, 3), reader.resent);
+		assertEquals(2, selector.getOutstanding(2));
+	}
+
+	@Test
+	public void testHedgingIsWithinBudget() {
+		// Each request sent earns half a hedged request.
+		ReadHedger hedger = newHedger(0.5);
+		List<ReadRequest<JessyEntity>> requests = pendingRequests(4);
+		hedger.sent(unknownLatency(), replicas, 1, requests);
+
+		hedger.hedge(replicas, 1, requests);
+		assertEquals(requests.subList(0, 2), reader.resent);
+
+		// The budget is spent.
+		reader.resent.clear();
+		hedger.hedge(replicas, 1, requests);
+		assertTrue(reader.resent.isEmpty());
+	}
+
+	@Test
+	public void testCancelledRequestsAreReleased() {
+		ReadHedger hedger = newHedger(1);
+		List<ReadRequest<JessyEntity>> requests = pendingRequests(2);
+		selector.sent(1, requests);
+		hedger.sent(unknownLatency(), replicas, 1, requests);
+		assertEquals(2, hedger.getPendingCount());
+
+		reader.pendingRemoteReads.get(requests.get(0).getReadRequestId())
+				.cancel(false);
+		assertEquals(1, hedger.getPendingCount());
+		assertEquals(1, selector.getPendingCount());
+		assertFalse(reader.isPending(requests.get(0).getReadRequestId()));
+
+		// A cancelled request is not resent.
+		hedger.hedge(replicas, 1, requests);
+		assertEquals(requests.subList(1, 2), reader.resent);
+	}
+
+}
@@ -0,0 +1,102 @@
+package fr.inria.jessy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import fr.inria.jessy.entity.SampleEntityClass;
+import fr.inria.jessy.store.ReadReply;
+import fr.inria.jessy.store.ReadRequest;
+import fr.inria.jessy.store.ReadRequestKey;
+
+/**
+ * @author Masoud Saeida Ardekani
+ *
+ */
+public class RemoteReadFutureTest extends TestCase {
+
+	@Test
+	public void testListenerIsNotified() throws Exception {
+		ReadRequest<SampleEntityClass> request = new ReadRequest<SampleEntityClass>(
+				SampleEntityClass.class, "secondaryKey", "1", null);
+		RemoteReadFuture<SampleEntityClass> future = new RemoteReadFuture<SampleEntityClass>(
+				request);
+
+		final AtomicInteger notified = new AtomicInteger();
+		future.addListener(new RemoteReadFuture.Listener<SampleEntityClass>() {
+			public void operationComplete(
+					RemoteReadFuture<SampleEntityClass> f) {
+				notified.incrementAndGet();
+			}
+		});
+		assertFalse(future.isDone());
+		assertNull(future.getNow());
+
+		assertTrue(future.mergeReply(new ReadReply<SampleEntityClass>(
+				new SampleEntityClass("1", "ver1"), request.getReadRequestId())));
+		assertTrue(future.isDone());
+		assertEquals(1, notified.get());
+		assertEquals("ver1", future.get().getEntity().iterator().next()
+				.getData());
+
+		// Listeners registered once the future is done are notified directly.
+		future.addListener(new RemoteReadFuture.Listener<SampleEntityClass>() {
+			public void operationComplete(
+					RemoteReadFuture<SampleEntityClass> f) {
+				notified.incrementAndGet();
+			}
+		});
+		assertEquals(2, notified.get());
+	}
+
+	@Test
+	public void testMultiKeyRequest() throws Exception {
+		List<ReadRequestKey<?>> keys = new ArrayList<ReadRequestKey<?>>();
+		keys.add(new ReadRequestKey<String>("secondaryKey", "1"));
+		keys.add(new ReadRequestKey<String>("secondaryKey", "2"));
+		ReadRequest<SampleEntityClass> request = new ReadRequest<SampleEntityClass>(
+				SampleEntityClass.class, keys, null);
+		final RemoteReadFuture<SampleEntityClass> future = new RemoteReadFuture<SampleEntityClass>(
+				request);
+
+		new Thread() {
+			public void run() {
+				future.mergeReply(new ReadReply<SampleEntityClass>(
+						new SampleEntityClass("2", "ver1"), 0));
+			}
+		}.start();
+
+		future.mergeReply(new ReadReply<SampleEntityClass>(
+				new SampleEntityClass("1", "ver1"), 0));
+
+		ReadReply<SampleEntityClass> reply = future.get(10, TimeUnit.SECONDS);
+		assertEquals(2, reply.getEntity().size());
+	}
+
+	@Test
+	public void testTimeoutAndCancel() throws Exception {
+		RemoteReadFuture<SampleEntityClass> future = new RemoteReadFuture<SampleEntityClass>(
+				new ReadRequest<SampleEntityClass>(SampleEntityClass.class,
+						"secondaryKey", "1", null));
+		try {
+			future.get(10, TimeUnit.MILLISECONDS);
+			fail();
+		} catch (TimeoutException e) {
+		}
+
+		assertTrue(future.cancel(false));
+		assertTrue(future.isCancelled());
+		assertNull(future.get());
+		assertFalse(future.cancel(false));
+		assertTrue(future.mergeReply(new ReadReply<SampleEntityClass>(
+				new SampleEntityClass("1", "ver1"), 0)));
+		assertNull(future.get());
+	}
+
+}
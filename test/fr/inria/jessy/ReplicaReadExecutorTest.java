@@ -0,0 +1,101 @@
+package fr.inria.jessy;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.jboss.netty.channel.Channel;
+import org.junit.Before;
+import org.junit.Test;
+
+import fr.inria.jessy.communication.message.ReadReplyMessage;
+import fr.inria.jessy.communication.message.ReadRequestMessage;
+import fr.inria.jessy.entity.SampleEntityClass;
+import fr.inria.jessy.store.DataStore;
+import fr.inria.jessy.store.JessyEntity;
+import fr.inria.jessy.store.ReadReply;
+import fr.inria.jessy.store.ReadRequest;
+
+/**
+ * @author Masoud Saeida Ardekani
+ *
+ */
+public class ReplicaReadExecutorTest extends TestCase {
+
+	DataStore dataStore;
+
+	BlockingQueue<Object> written;
+
+	Channel channel;
+
+	/**
+	 * @throws java.lang.Exception
+	 */
+	@Before
+	public void setUp() throws Exception {
+		// A data store that returns a new entity for each read.
+		dataStore = (DataStore) Proxy.newProxyInstance(getClass()
+				.getClassLoader(), new Class<?>[] { DataStore.class },
+				new InvocationHandler() {
+					public Object invoke(Object proxy, Method method,
+							Object[] args) throws Throwable {
+						ReadRequest<?> request = (ReadRequest<?>) args[0];
+						String key = request.getOneKey().getKeyValue()
+								.toString();
+						return new ReadReply<SampleEntityClass>(
+								new SampleEntityClass(key, "ver" + key),
+								request.getReadRequestId());
+					}
+				});
+
+		// A channel that only records what is written on it.
+		written = new ArrayBlockingQueue<Object>(10);
+		channel = (Channel) Proxy.newProxyInstance(getClass()
+				.getClassLoader(), new Class<?>[] { Channel.class },
+				new InvocationHandler() {
+					public Object invoke(Object proxy, Method method,
+							Object[] args) throws Throwable {
+						if (method.getName().equals("write"))
+							written.add(args[0]);
+						return null;
+					}
+				});
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	@Test
+	public void testRepliesAreWrittenOnce() throws Exception {
+		ReplicaReadExecutor executor = new ReplicaReadExecutor(dataStore, 0, 4,
+				2);
+
+		List<ReadRequest<JessyEntity>> requests = new ArrayList<ReadRequest<JessyEntity>>();
+		for (int i = 0; i < 100; i++)
+			requests.add((ReadRequest) new ReadRequest<SampleEntityClass>(
+					SampleEntityClass.class, "secondaryKey", "" + i, null));
+
+		executor.execute(new ReadRequestMessage(requests), channel);
+
+		ReadReplyMessage message = (ReadReplyMessage) written.poll(10,
+				TimeUnit.SECONDS);
+		assertNotNull(message);
+		List<ReadReply> replies = message.getReadReplies();
+		assertEquals(100, replies.size());
+		for (int i = 0; i < 100; i++) {
+			assertEquals(requests.get(i).getReadRequestId(), replies.get(i)
+					.getReadRequestId());
+			assertEquals("ver" + i, ((SampleEntityClass) replies.get(i)
+					.getEntity().iterator().next()).getData());
+		}
+
+		assertNull(written.poll(100, TimeUnit.MILLISECONDS));
+		executor.close();
+	}
+
+}
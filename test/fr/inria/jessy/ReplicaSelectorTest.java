@@ -0,0 +1,121 @@
+package fr.inria.jessy;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import fr.inria.jessy.entity.SampleEntityClass;
+import fr.inria.jessy.store.JessyEntity;
+import fr.inria.jessy.store.ReadRequest;
+
+/**
+ * @author Masoud Saeida Ardekani
+ *
+ */
+public class ReplicaSelectorTest extends TestCase {
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private List<ReadRequest<JessyEntity>> request(int key) {
+		List<ReadRequest<JessyEntity>> list = new ArrayList<ReadRequest<JessyEntity>>();
+		list.add((ReadRequest) new ReadRequest<SampleEntityClass>(
+				SampleEntityClass.class, "secondaryKey", "" + key, null));
+		return list;
+	}
+
+	@Test
+	public void testSlowReplicaIsAvoided() throws Exception {
+		ReplicaSelector selector = new ReplicaSelector(ReplicaSelector.LATENCY);
+		Set<Integer> replicas = new HashSet<Integer>();
+		replicas.add(1);
+		replicas.add(2);
+
+		// Replica 1 answers immediately, replica 2 after 20 ms.
+		List<ReadRequest<JessyEntity>> fast = request(1);
+		List<ReadRequest<JessyEntity>> slow = request(2);
+		selector.sent(1, fast);
+		selector.sent(2, slow);
+		selector.replied(fast.get(0).getReadRequestId(), 1);
+		Thread.sleep(20);
+		selector.replied(slow.get(0).getReadRequestId(), 2);
+
+		assertTrue(selector.getLatency(2) > selector.getLatency(1));
+		assertEquals(0, selector.getOutstanding(1));
+		assertEquals(0, selector.getOutstanding(2));
+		for (int i = 0; i < 100; i++)
+			assertEquals(1, selector.select(replicas));
+	}
+
+	@Test
+	public void testOutstandingRequestsAreAvoided() {
+		ReplicaSelector selector = new ReplicaSelector(ReplicaSelector.LATENCY);
+		Set<Integer> replicas = new HashSet<Integer>();
+		replicas.add(1);
+		replicas.add(2);
+
+		// Replica 1 has never replied, but has pending requests.
+		selector.sent(1, request(3));
+		selector.sent(1, request(4));
+		assertEquals(2, selector.getOutstanding(1));
+		for (int i = 0; i < 100; i++)
+			assertEquals(2, selector.select(replicas));
+	}
+
+	@Test
+	public void testRandomPolicy() {
+		ReplicaSelector selector = new ReplicaSelector(ReplicaSelector.RANDOM);
+		Set<Integer> replicas = new HashSet<Integer>();
+		replicas.add(1);
+		replicas.add(2);
+
+		Set<Integer> chosen = new HashSet<Integer>();
+		for (int i = 0; i < 1000; i++)
+			chosen.add(selector.select(replicas));
+		assertEquals(replicas, chosen);
+	}
+
+	@Test
+	public void testHedgedReadIsCreditedToReplier() throws Exception {
+		ReplicaSelector selector = new ReplicaSelector(ReplicaSelector.LATENCY);
+
+		// The request is sent to replica 1, then hedged to replica 2, which
+		// replies first.
+		List<ReadRequest<JessyEntity>> hedged = request(5);
+		selector.sent(1, hedged);
+		Thread.sleep(20);
+		selector.sent(2, hedged);
+		assertEquals(1, selector.getOutstanding(1));
+		assertEquals(1, selector.getOutstanding(2));
+
+		selector.replied(hedged.get(0).getReadRequestId(), 2);
+		assertEquals(0, selector.getOutstanding(1));
+		assertEquals(0, selector.getOutstanding(2));
+		assertEquals(0.0, selector.getLatency(1));
+		assertTrue(selector.getLatency(2) > 0);
+		assertTrue(selector.getLatency(2) < 20000);
+
+		// The reply of replica 1 arrives late.
+		selector.replied(hedged.get(0).getReadRequestId(), 1);
+		assertEquals(0.0, selector.getLatency(1));
+		assertEquals(0, selector.getPendingCount());
+	}
+
+	@Test
+	public void testReleasedRequestsAreNotOutstanding() {
+		ReplicaSelector selector = new ReplicaSelector(ReplicaSelector.LATENCY);
+
+		List<ReadRequest<JessyEntity>> lost = request(6);
+		selector.sent(1, lost);
+		assertEquals(1, selector.getOutstanding(1));
+
+		selector.released(lost.get(0).getReadRequestId());
+		assertEquals(0, selector.getOutstanding(1));
+		assertEquals(0.0, selector.getLatency(1));
+		assertEquals(0, selector.getPendingCount());
+	}
+
+}
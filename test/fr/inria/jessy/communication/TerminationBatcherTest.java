@@ -0,0 +1,107 @@
+package fr.inria.jessy.communication;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import fr.inria.jessy.communication.message.TerminateTransactionBatchMessage;
+import fr.inria.jessy.communication.message.TerminateTransactionRequestMessage;
+import fr.inria.jessy.transaction.ExecutionHistory;
+import fr.inria.jessy.transaction.TransactionHandler;
+
+/**
+ * @author Masoud Saeida Ardekani
+ *
+ */
+public class TerminationBatcherTest extends TestCase {
+
+	private final BlockingQueue<List<ExecutionHistory>> sent = new LinkedBlockingQueue<List<ExecutionHistory>>();
+
+	private final TerminationBatcher.BatchSender sender = new TerminationBatcher.BatchSender() {
+		public void sendBatch(List<ExecutionHistory> batch,
+				Collection<String> gDest, String gSource, int swidSource) {
+			sent.add(new ArrayList<ExecutionHistory>(batch));
+		}
+	};
+
+	private ExecutionHistory transaction() {
+		return new ExecutionHistory(new TransactionHandler());
+	}
+
+	@Test
+	public void testFullBatchesAreSentRightAway() throws Exception {
+		TerminationBatcher batcher = new TerminationBatcher(sender, 2,
+				TimeUnit.SECONDS.toMicros(10));
+		try {
+			ExecutionHistory t1 = transaction(), t2 = transaction(), t3 = transaction();
+			batcher.add(t1, Arrays.asList("g1", "g2"), "g0", 0);
+			batcher.add(t2, Arrays.asList("g1"), "g0", 0);
+			assertTrue(sent.isEmpty());
+
+			batcher.add(t3, Arrays.asList("g2", "g1"), "g0", 0);
+			assertEquals(Arrays.asList(t1, t3), sent.poll());
+			assertTrue(sent.isEmpty());
+		} finally {
+			batcher.close();
+		}
+	}
+
+	@Test
+	public void testSourcesAreNotMixed() throws Exception {
+		TerminationBatcher batcher = new TerminationBatcher(sender, 2,
+				TimeUnit.SECONDS.toMicros(10));
+		try {
+			ExecutionHistory t1 = transaction(), t2 = transaction(), t3 = transaction();
+			batcher.add(t1, Arrays.asList("g1"), "g0", 0);
+			batcher.add(t2, Arrays.asList("g1"), "g0", 1);
+			assertTrue(sent.isEmpty());
+
+			batcher.add(t3, Arrays.asList("g1"), "g0", 1);
+			assertEquals(Arrays.asList(t2, t3), sent.poll());
+		} finally {
+			batcher.close();
+		}
+	}
+
+	@Test
+	public void testLingeringBatchesAreSent() throws Exception {
+		TerminationBatcher batcher = new TerminationBatcher(sender, 16, 1000);
+		try {
+			ExecutionHistory t1 = transaction(), t2 = transaction();
+			batcher.add(t1, Arrays.asList("g1"), "g0", 0);
+			batcher.add(t2, Arrays.asList("g1"), "g0", 0);
+			assertEquals(Arrays.asList(t1, t2), sent.poll(1, TimeUnit.SECONDS));
+		} finally {
+			batcher.close();
+		}
+	}
+
+	@Test
+	public void testBatchMessageIsUnpackedInOrder() {
+		ExecutionHistory t1 = transaction(), t2 = transaction();
+		TerminateTransactionBatchMessage batch = new TerminateTransactionBatchMessage(
+				Arrays.asList(t1, t2), Arrays.asList("g1"), "g0", 3);
+		assertEquals(t1.getTransactionHandler().getId(), batch.getId());
+
+		List<TerminateTransactionRequestMessage> messages = batch
+				.getTerminateTransactionRequestMessages();
+		assertEquals(2, messages.size());
+		assertSame(t1, messages.get(0).getExecutionHistory());
+		assertSame(t2, messages.get(1).getExecutionHistory());
+		assertEquals("g0", messages.get(1).getGSource());
+		assertEquals(3, messages.get(1).source);
+
+		// The transactions were cast with the batch.
+		assertEquals(batch.startCastingTime, messages.get(0).startCastingTime);
+		assertEquals(batch.startCastingTime, messages.get(1).startCastingTime);
+	}
+
+}
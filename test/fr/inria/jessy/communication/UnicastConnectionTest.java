@@ -0,0 +1,217 @@
+package fr.inria.jessy.communication;
+
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.jboss.netty.bootstrap.ClientBootstrap;
+import org.jboss.netty.bootstrap.ServerBootstrap;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.ChannelPipelineFactory;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.jboss.netty.channel.socket.nio.NioClientSocketChannelFactory;
+import org.jboss.netty.channel.socket.nio.NioServerSocketChannelFactory;
+import org.jboss.netty.util.HashedWheelTimer;
+import org.junit.Test;
+
+import fr.inria.jessy.communication.codec.WireCodec;
+import fr.inria.jessy.communication.message.VoteMessage;
+import fr.inria.jessy.transaction.TransactionHandler;
+import fr.inria.jessy.transaction.termination.vote.Vote;
+
+/**
+ * @author Masoud Saeida Ardekani
+ *
+ */
+public class UnicastConnectionTest extends TestCase {
+
+	private final BlockingQueue<Object> received = new LinkedBlockingQueue<Object>();
+
+	private ServerBootstrap server;
+
+	private Channel serverChannel;
+
+	private ClientBootstrap client;
+
+	private HashedWheelTimer timer;
+
+	@Override
+	protected void setUp() {
+		server = new ServerBootstrap(new NioServerSocketChannelFactory(
+				Executors.newCachedThreadPool(),
+				Executors.newCachedThreadPool()));
+		server.setPipelineFactory(new ChannelPipelineFactory() {
+			public ChannelPipeline getPipeline() {
+				ChannelPipeline pipeline = Channels.pipeline();
+				WireCodec.addCodec(pipeline);
+				pipeline.addLast("handler", new SimpleChannelUpstreamHandler() {
+					@Override
+					public void messageReceived(ChannelHandlerContext ctx,
+							MessageEvent e) {
+						received.add(e.getMessage());
+					}
+				});
+				return pipeline;
+			}
+		});
+
+		client = new ClientBootstrap(new NioClientSocketChannelFactory(
+				Executors.newCachedThreadPool(),
+				Executors.newCachedThreadPool()));
+		client.setPipelineFactory(new ChannelPipelineFactory() {
+			public ChannelPipeline getPipeline() {
+				ChannelPipeline pipeline = Channels.pipeline();
+				pipeline.addLast("coalescer", new WriteCoalescer());
+				WireCodec.addCodec(pipeline);
+				return pipeline;
+			}
+		});
+
+		timer = new HashedWheelTimer(10, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	protected void tearDown() {
+		timer.stop();
+		if (serverChannel != null)
+			serverChannel.close().awaitUninterruptibly();
+		client.releaseExternalResources();
+		server.releaseExternalResources();
+	}
+
+	private static int freePort() throws Exception {
+		ServerSocket socket = new ServerSocket(0);
+		int port = socket.getLocalPort();
+		socket.close();
+		return port;
+	}
+
+	private List<TransactionHandler> send(UnicastConnection connection,
+			int count) {
+		List<TransactionHandler> sent = new ArrayList<TransactionHandler>();
+		for (int i = 0; i < count; i++) {
+			TransactionHandler th = new TransactionHandler();
+			sent.add(th);
+			connection.write(th);
+		}
+		connection.flush();
+		return sent;
+	}
+
+	private void assertReceived(List<TransactionHandler> sent)
+			throws Exception {
+		for (TransactionHandler th : sent) {
+			Object message = received.poll(5, TimeUnit.SECONDS);
+			assertNotNull(message);
+			assertEquals(th.getId(), ((TransactionHandler) message).getId());
+		}
+	}
+
+	@Test
+	public void testQueuedMessagesAreCoalesced() throws Exception {
+		int port = freePort();
+		serverChannel = server.bind(new InetSocketAddress("localhost", port));
+
+		UnicastConnection connection = new UnicastConnection(client, timer,
+				"test", "localhost", port);
+
+		// Flushing starts connecting, and the messages are written once
+		// connected.
+		List<TransactionHandler> sent = send(connection, 100);
+		assertReceived(sent);
+		assertEquals(100, connection.getMessages());
+		assertEquals(1, connection.getFlushes());
+		assertTrue(connection.getBytes() > 0);
+
+		sent = send(connection, 10);
+		assertReceived(sent);
+		assertEquals(110, connection.getMessages());
+		assertEquals(2, connection.getFlushes());
+
+		connection.close();
+	}
+
+	@Test
+	public void testReconnectsWithoutBlocking() throws Exception {
+		int port = freePort();
+
+		UnicastConnection connection = new UnicastConnection(client, timer,
+				"test", "localhost", port);
+
+		long start = System.currentTimeMillis();
+		List<TransactionHandler> sent = send(connection, 5);
+		assertTrue(System.currentTimeMillis() - start < 1000);
+		assertFalse(connection.isConnected());
+
+		Thread.sleep(100);
+		serverChannel = server.bind(new InetSocketAddress("localhost", port));
+
+		assertReceived(sent);
+		assertTrue(connection.isConnected());
+
+		connection.close();
+	}
+
+	@Test
+	public void testDropsMessagesToDownReplica() throws Exception {
+		int port = freePort();
+
+		UnicastConnection connection = new UnicastConnection(client, timer,
+				"test", "localhost", port, 2);
+
+		send(connection, 5);
+		for (int i = 0; i < 100 && !connection.isDown(); i++)
+			Thread.sleep(50);
+		assertTrue(connection.isDown());
+		assertEquals(5, connection.getDropped());
+
+		// New messages are rejected until the replica is back.
+		assertFalse(connection.write(new TransactionHandler()));
+		assertEquals(6, connection.getDropped());
+
+		serverChannel = server.bind(new InetSocketAddress("localhost", port));
+		for (int i = 0; i < 100 && connection.isDown(); i++)
+			Thread.sleep(50);
+		assertFalse(connection.isDown());
+
+		List<TransactionHandler> sent = send(connection, 3);
+		assertReceived(sent);
+		assertEquals(3, connection.getMessages());
+
+		connection.close();
+	}
+
+	@Test
+	public void testMessagesOfATransactionShareAConnection() {
+		TransactionHandler th = new TransactionHandler();
+		VoteMessage first = new VoteMessage(new Vote(th, true, "g1", null),
+				new HashSet<String>(), "g1", 1);
+		VoteMessage second = new VoteMessage(new Vote(th, false, "g2", null),
+				new HashSet<String>(), "g2", 2);
+		assertEquals(UnicastClientManager.indexOf(first, 4),
+				UnicastClientManager.indexOf(second, 4));
+
+		// Transactions are spread over the connections.
+		Set<Integer> used = new HashSet<Integer>();
+		for (int i = 0; i < 100; i++) {
+			Vote vote = new Vote(new TransactionHandler(), true, "g1", null);
+			used.add(UnicastClientManager.indexOf(new VoteMessage(vote,
+					new HashSet<String>(), "g1", 1), 4));
+		}
+		assertEquals(4, used.size());
+	}
+
+}
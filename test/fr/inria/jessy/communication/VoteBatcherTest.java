@@ -0,0 +1,73 @@
+package fr.inria.jessy.communication;
+
+import java.util.HashSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import fr.inria.jessy.communication.message.VoteBatchMessage;
+import fr.inria.jessy.communication.message.VoteMessage;
+import fr.inria.jessy.transaction.TransactionHandler;
+import fr.inria.jessy.transaction.termination.vote.Vote;
+
+/**
+ * @author Masoud Saeida Ardekani
+ *
+ */
+public class VoteBatcherTest extends TestCase {
+
+	private final BlockingQueue<Object[]> written = new LinkedBlockingQueue<Object[]>();
+
+	private final VoteBatcher.Sender sender = new VoteBatcher.Sender() {
+		public void send(Object message, int swid, String host) {
+			written.add(new Object[] { message, swid, host });
+		}
+	};
+
+	private VoteMessage vote() {
+		return new VoteMessage(new Vote(new TransactionHandler(), true, "g0",
+				null), new HashSet<String>(), "g0", 0);
+	}
+
+	@Test
+	public void testVotesToAReplicaAreWrittenTogether() throws Exception {
+		VoteBatcher batcher = new VoteBatcher(sender, 2,
+				TimeUnit.SECONDS.toMicros(10));
+		try {
+			VoteMessage v1 = vote(), v2 = vote(), v3 = vote();
+			batcher.send(v1, 1, null);
+			batcher.send(v2, 2, "host2");
+			assertTrue(written.isEmpty());
+
+			batcher.send(v3, 1, "host1");
+			Object[] write = written.poll();
+			assertEquals(1, write[1]);
+			assertEquals("host1", write[2]);
+			VoteBatchMessage batch = (VoteBatchMessage) write[0];
+			assertSame(v1, batch.getVoteMessages().get(0));
+			assertSame(v3, batch.getVoteMessages().get(1));
+			assertTrue(written.isEmpty());
+		} finally {
+			batcher.close();
+		}
+	}
+
+	@Test
+	public void testLingeringVoteIsWrittenAlone() throws Exception {
+		VoteBatcher batcher = new VoteBatcher(sender, 32, 1000);
+		try {
+			VoteMessage v1 = vote();
+			batcher.send(v1, 3, null);
+			Object[] write = written.poll(1, TimeUnit.SECONDS);
+			assertSame(v1, write[0]);
+			assertEquals(3, write[1]);
+		} finally {
+			batcher.close();
+		}
+	}
+
+}
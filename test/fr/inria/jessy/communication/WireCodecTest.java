@@ -0,0 +1,128 @@
+package fr.inria.jessy.communication;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.handler.codec.embedder.DecoderEmbedder;
+import org.jboss.netty.handler.codec.embedder.EncoderEmbedder;
+import org.junit.Test;
+
+import fr.inria.jessy.communication.codec.WireDecoder;
+import fr.inria.jessy.communication.codec.WireEncoder;
+import fr.inria.jessy.communication.codec.WireObjectInput;
+import fr.inria.jessy.communication.codec.WireObjectOutput;
+import fr.inria.jessy.communication.message.ReadRequestMessage;
+import fr.inria.jessy.entity.SampleEntityClass;
+import fr.inria.jessy.store.EntitySet;
+import fr.inria.jessy.store.JessyEntity;
+import fr.inria.jessy.store.ReadRequest;
+import fr.inria.jessy.transaction.ExecutionHistory;
+import fr.inria.jessy.transaction.TransactionHandler;
+import fr.inria.jessy.transaction.TransactionState;
+import fr.inria.jessy.vector.CompactVector;
+
+/**
+ * @author Masoud Saeida Ardekani
+ *
+ */
+public class WireCodecTest extends TestCase {
+
+	@SuppressWarnings("unchecked")
+	private <T> T encodeAndDecode(Object message) {
+		EncoderEmbedder<ChannelBuffer> encoder = new EncoderEmbedder<ChannelBuffer>(
+				new WireEncoder());
+		encoder.offer(message);
+		ChannelBuffer frame = encoder.poll();
+
+		DecoderEmbedder<Object> decoder = new DecoderEmbedder<Object>(
+				new WireDecoder());
+		// Deliver the frame in two parts.
+		decoder.offer(frame.readSlice(3));
+		decoder.offer(frame);
+		return (T) decoder.poll();
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	@Test
+	public void testReadRequestMessage() {
+		List<ReadRequest<JessyEntity>> requests = new ArrayList<ReadRequest<JessyEntity>>();
+		requests.add(new ReadRequest(SampleEntityClass.class, "secondaryKey",
+				"1", new CompactVector<String>()));
+		Set<String> dest = new HashSet<String>();
+		dest.add("g1");
+
+		ReadRequestMessage message = new ReadRequestMessage(requests);
+		message.dest = dest;
+		message.gSource = "g0";
+		message.source = 7;
+
+		ReadRequestMessage result = encodeAndDecode(message);
+		assertEquals(7, result.source);
+		assertEquals("g0", result.gSource);
+		assertEquals(dest, new HashSet<String>(result.dest));
+		assertEquals(1, result.getReadRequests().size());
+		ReadRequest<JessyEntity> request = result.getReadRequests().get(0);
+		assertEquals(requests.get(0).getReadRequestId(),
+				request.getReadRequestId());
+		assertEquals(requests.get(0).getOneKey().getKeyValue(), request
+				.getOneKey().getKeyValue());
+	}
+
+	@Test
+	public void testEntitySet() {
+		EntitySet entitySet = new EntitySet();
+		entitySet.addEntity(new SampleEntityClass("1", "ver1"));
+		entitySet.addEntity(new SampleEntityClass("2", "ver2"));
+
+		EntitySet result = encodeAndDecode(entitySet);
+		assertEquals(entitySet.getKeys(), result.getKeys());
+		SampleEntityClass entity = result.getEntity(new SampleEntityClass("2",
+				"ver2").getKey());
+		assertEquals("ver2", entity.getData());
+	}
+
+	@Test
+	public void testExecutionHistory() {
+		TransactionHandler handler = new TransactionHandler();
+		ExecutionHistory history = new ExecutionHistory(handler, 0, 0, 1);
+		history.addCreateEntity(new SampleEntityClass("1", "ver1"));
+		history.changeState(TransactionState.COMMITTING);
+
+		ExecutionHistory result = encodeAndDecode(history);
+		assertEquals(handler, result.getTransactionHandler());
+		assertEquals(TransactionState.COMMITTING, result.getTransactionState());
+		assertEquals(1, result.getCreateSet().getEntities().size());
+	}
+
+	@Test
+	public void testIntegers() throws Exception {
+		int[] ints = { 0, 1, -1, 63, -64, 1 << 30, -(1 << 30), (1 << 30) - 1,
+				Integer.MAX_VALUE, Integer.MIN_VALUE };
+		long[] longs = { 0, -1, 1L << 62, Long.MAX_VALUE, Long.MIN_VALUE };
+
+		ChannelBuffer buffer = ChannelBuffers.dynamicBuffer();
+		WireObjectOutput out = new WireObjectOutput(buffer, null);
+		for (int v : ints) {
+			int start = buffer.writerIndex();
+			out.writeInt(v);
+			// At most five bytes for an int.
+			assertTrue(buffer.writerIndex() - start <= 5);
+		}
+		for (long v : longs)
+			out.writeLong(v);
+
+		WireObjectInput in = new WireObjectInput(buffer, null);
+		for (int v : ints)
+			assertEquals(v, in.readInt());
+		for (long v : longs)
+			assertEquals(v, in.readLong());
+		assertFalse(buffer.readable());
+	}
+
+}
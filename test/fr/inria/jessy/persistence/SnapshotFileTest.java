@@ -0,0 +1,59 @@
+package fr.inria.jessy.persistence;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import fr.inria.jessy.entity.SampleEntityClass;
+import fr.inria.jessy.store.DataStore;
+import fr.inria.jessy.store.OffHeapDataStore;
+import fr.inria.jessy.store.ReadReply;
+import fr.inria.jessy.store.ReadRequest;
+import fr.inria.jessy.store.VersionChain;
+
+/**
+ * @author Masoud Saeida Ardekani
+ *
+ */
+public class SnapshotFileTest extends TestCase {
+
+	@Test
+	public void testWriteAndLoad() throws Exception {
+		// Enough versions for several chunks per partition.
+		List<VersionChain<SampleEntityClass>> chains = new ArrayList<VersionChain<SampleEntityClass>>();
+		for (int i = 0; i < 30000; i++) {
+			VersionChain<SampleEntityClass> chain = new VersionChain<SampleEntityClass>(
+					new SampleEntityClass("key" + i, "ver1"));
+			chain.add(new SampleEntityClass("key" + i, "ver2"));
+			chains.add(chain);
+		}
+
+		File file = File.createTempFile("jessy", "snapshot");
+		file.deleteOnExit();
+		SnapshotFile.write(file.getPath(), chains, 4);
+
+		DataStore dataStore = new OffHeapDataStore(4096);
+		dataStore.addPrimaryIndex(SampleEntityClass.class);
+		dataStore.addSecondaryIndex(SampleEntityClass.class, String.class,
+				"secondaryKey");
+		assertTrue(SnapshotFile.load(file.getPath(), dataStore));
+
+		for (int i = 0; i < 30000; i += 2999) {
+			ReadRequest<SampleEntityClass> readRequest = new ReadRequest<SampleEntityClass>(
+					SampleEntityClass.class, "secondaryKey", "key" + i, null);
+			ReadReply<SampleEntityClass> reply = dataStore.get(readRequest);
+			assertEquals("Result", "ver2", reply.getEntity().iterator().next()
+					.getData());
+		}
+	}
+
+	@Test
+	public void testMissingFile() throws Exception {
+		assertFalse(SnapshotFile.load("/nonexistent/snapshot", null));
+	}
+
+}
@@ -0,0 +1,191 @@
+package fr.inria.jessy.persistence;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import fr.inria.jessy.entity.SampleEntityClass;
+import fr.inria.jessy.store.DataStore;
+import fr.inria.jessy.store.JessyEntity;
+import fr.inria.jessy.store.OffHeapDataStore;
+import fr.inria.jessy.store.ReadReply;
+import fr.inria.jessy.store.ReadRequest;
+import fr.inria.jessy.utils.Compress;
+
+/**
+ * @author Masoud Saeida Ardekani
+ *
+ */
+public class WriteAheadLogTest extends TestCase {
+
+	String storageDirectory;
+
+	/**
+	 * @throws java.lang.Exception
+	 */
+	@Before
+	public void setUp() throws Exception {
+		File directory = File.createTempFile("jessy", "wal");
+		directory.delete();
+		directory.mkdirs();
+		storageDirectory = directory.getPath() + "/0_";
+	}
+
+	@Test
+	public void testRecover() throws Exception {
+		WriteAheadLog log = new WriteAheadLog(storageDirectory);
+		log.start();
+		log.logEntities(entities("1", "ver1"));
+		log.logEntities(entities("1", "ver2"));
+		log.logObject("object", "value");
+		log.close();
+
+		DataStore dataStore = newDataStore();
+		log = new WriteAheadLog(storageDirectory);
+		log.recover(dataStore);
+
+		assertEquals("Result", "ver2", read(dataStore, "1"));
+		assertEquals("Result", "value", log.getRecoveredObject("object"));
+	}
+
+	@Test
+	public void testRecoverFromCheckpoint() throws Exception {
+		WriteAheadLog log = new WriteAheadLog(storageDirectory);
+		log.start();
+		log.logEntities(entities("1", "ver1"));
+		log.logObject("object", "value1");
+		log.sync(log.logEntities(entities("2", "ver1")));
+		log.checkpoint();
+
+		log.logEntities(entities("1", "ver2"));
+		log.logObject("object", "value2");
+		log.close();
+
+		DataStore dataStore = newDataStore();
+		log = new WriteAheadLog(storageDirectory);
+		log.recover(dataStore);
+
+		assertEquals("Result", "ver2", read(dataStore, "1"));
+		assertEquals("Result", "ver1", read(dataStore, "2"));
+		assertEquals("Result", "value2", log.getRecoveredObject("object"));
+	}
+
+	@Test
+	public void testStartWithoutRecovery() throws Exception {
+		WriteAheadLog log = new WriteAheadLog(storageDirectory);
+		log.start();
+		log.logEntities(entities("1", "ver1"));
+		log.logEntities(entities("2", "ver1"));
+		log.close();
+
+		// A new run that does not recover starts from an empty log.
+		log = new WriteAheadLog(storageDirectory);
+		log.start();
+		log.logEntities(entities("1", "ver2"));
+		log.close();
+
+		DataStore dataStore = newDataStore();
+		log = new WriteAheadLog(storageDirectory);
+		log.recover(dataStore);
+
+		assertEquals("Result", "ver2", read(dataStore, "1"));
+		assertEquals(0, dataStore.getEntityCounts(
+				Compress.compressClassName(SampleEntityClass.class.getName()),
+				"secondaryKey", "2"));
+	}
+
+	@Test
+	public void testStateLogger() throws Exception {
+		final WriteAheadLog log = new WriteAheadLog(storageDirectory);
+		final AtomicInteger state = new AtomicInteger();
+		log.setStateLogger(new Runnable() {
+			public void run() {
+				log.logObject("state", state.get());
+			}
+		});
+		log.start();
+		for (int i = 1; i <= 10; i++) {
+			state.set(i);
+			log.sync(log.logEntities(entities("1", "ver" + i)));
+		}
+		log.close();
+
+		DataStore dataStore = newDataStore();
+		WriteAheadLog recovered = new WriteAheadLog(storageDirectory);
+		recovered.recover(dataStore);
+
+		assertEquals("Result", "ver10", read(dataStore, "1"));
+		assertEquals(10, recovered.getRecoveredObject("state"));
+	}
+
+	@Test
+	public void testTasksRunOnceDurable() throws Exception {
+		final WriteAheadLog log = new WriteAheadLog(storageDirectory);
+		final List<String> run = Collections
+				.synchronizedList(new ArrayList<String>());
+		final CountDownLatch done = new CountDownLatch(1);
+
+		// The log is not started yet, hence the record is not written.
+		final long lsn = log.logEntities(entities("1", "ver1"));
+		log.whenDurable(lsn, new Runnable() {
+			public void run() {
+				run.add(log.isDurable(lsn) ? "durable" : "not durable");
+			}
+		});
+		// A task without record still runs after the tasks given before it.
+		log.whenDurable(0, new Runnable() {
+			public void run() {
+				run.add("next");
+				done.countDown();
+			}
+		});
+		Thread.sleep(100);
+		assertTrue(run.isEmpty());
+		assertFalse(log.isDurable(lsn));
+
+		log.start();
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		assertEquals("durable", run.get(0));
+		assertEquals("next", run.get(1));
+
+		// Once everything is durable, tasks run right away.
+		log.whenDurable(lsn, new Runnable() {
+			public void run() {
+				run.add("now");
+			}
+		});
+		assertEquals(3, run.size());
+		log.close();
+	}
+
+	private List<JessyEntity> entities(String key, String data) {
+		List<JessyEntity> result = new ArrayList<JessyEntity>();
+		result.add(new SampleEntityClass(key, data));
+		return result;
+	}
+
+	private DataStore newDataStore() throws Exception {
+		DataStore dataStore = new OffHeapDataStore(4096);
+		dataStore.addPrimaryIndex(SampleEntityClass.class);
+		dataStore.addSecondaryIndex(SampleEntityClass.class, String.class,
+				"secondaryKey");
+		return dataStore;
+	}
+
+	private String read(DataStore dataStore, String key) {
+		ReadRequest<SampleEntityClass> readRequest = new ReadRequest<SampleEntityClass>(
+				SampleEntityClass.class, "secondaryKey", key, null);
+		ReadReply<SampleEntityClass> reply = dataStore.get(readRequest);
+		return reply.getEntity().iterator().next().getData();
+	}
+
+}
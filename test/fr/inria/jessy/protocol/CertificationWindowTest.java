@@ -0,0 +1,65 @@
+package fr.inria.jessy.protocol;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import fr.inria.jessy.entity.SampleEntityClass;
+import fr.inria.jessy.transaction.ExecutionHistory;
+import fr.inria.jessy.transaction.TransactionHandler;
+
+/**
+ * @author Masoud Saeida Ardekani
+ *
+ */
+public class CertificationWindowTest extends TestCase {
+
+	private ExecutionHistory transaction(String[] reads, String... writes) {
+		ExecutionHistory history = new ExecutionHistory(
+				new TransactionHandler());
+		for (String key : reads)
+			history.getReadSet().addEntity(new SampleEntityClass(key, ""));
+		for (String key : writes)
+			history.getWriteSet().addEntity(new SampleEntityClass(key, ""));
+		return history;
+	}
+
+	private void checkConflicts(boolean summarized) {
+		CertificationWindow window = new CertificationWindow(16, summarized);
+		window.put(1, transaction(new String[] { "a" }, "x"));
+		window.put(2, transaction(new String[] { "y" }, "b"));
+		window.put(3, transaction(new String[] { "c" }, "d"));
+
+		// Nothing to check against.
+		assertFalse(window.conflicts(transaction(new String[] { "x" }), 4, 4));
+
+		// Reads a key written by entry 1.
+		ExecutionHistory t1 = transaction(new String[] { "x", "e" }, "f");
+		assertTrue(window.conflicts(t1, 1, 4));
+		assertFalse(window.conflicts(t1, 2, 4));
+
+		// Writes a key read by entry 2, which is not the last entry.
+		ExecutionHistory t2 = transaction(new String[] { "e" }, "y");
+		assertTrue(window.conflicts(t2, 1, 4));
+		assertFalse(window.conflicts(t2, 3, 4));
+
+		// Write-write only.
+		assertFalse(window.conflicts(
+				transaction(new String[] { "e" }, "x", "b", "d"), 1, 4));
+
+		window.remove(1);
+		assertEquals(2, window.size());
+		assertFalse(window.conflicts(t1, 1, 4));
+	}
+
+	@Test
+	public void testExact() {
+		checkConflicts(false);
+	}
+
+	@Test
+	public void testSummarized() {
+		checkConflicts(true);
+	}
+
+}
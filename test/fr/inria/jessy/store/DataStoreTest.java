@@ -29,7 +29,7 @@ public class DataStoreTest extends TestCase {
 	 */
 	@Before
 	public void setUp() throws Exception {
-		dataStore = new DataStoreFactory().getDataStoreInstance();
+		dataStore = createDataStore();
 		dataStore.addPrimaryIndex( SampleEntityClass.class);
 		dataStore.addSecondaryIndex( SampleEntityClass.class,
 				String.class, "secondaryKey");
@@ -44,6 +44,14 @@ public class DataStoreTest extends TestCase {
 
 	}
 
+	/**
+	 * Returns the data store under test. Subclasses override it to run the
+	 * same tests on another data store.
+	 */
+	protected DataStore createDataStore() throws Exception {
+		return new DataStoreFactory().getDataStoreInstance();
+	}
+
 	/**
 	 * Test method for
 	 * {@link fr.inria.jessy.store.DataStore#put(fr.inria.jessy.store.JessyEntity)}
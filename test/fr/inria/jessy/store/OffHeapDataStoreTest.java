@@ -0,0 +1,133 @@
+package fr.inria.jessy.store;
+
+import org.junit.Test;
+
+import fr.inria.jessy.entity.SampleEntityClass;
+import fr.inria.jessy.utils.Compress;
+import fr.inria.jessy.vector.LightScalarVector;
+
+/**
+ * Runs the {@link DataStoreTest} cases on an {@link OffHeapDataStore}, and
+ * tests its slabs.
+ *
+ * @author Masoud Saeida Ardekani
+ *
+ */
+public class OffHeapDataStoreTest extends DataStoreTest {
+
+	@Override
+	protected DataStore createDataStore() {
+		// Small slabs and a few stripes, in order to allocate several slabs.
+		return new OffHeapDataStore(4096, 4);
+	}
+
+	private OffHeapDataStore offHeap() {
+		return (OffHeapDataStore) dataStore;
+	}
+
+	private static SampleEntityClass version(String key, int value) {
+		SampleEntityClass entity = new SampleEntityClass(key, "ver" + value);
+		LightScalarVector<String> vector = new LightScalarVector<String>(key);
+		vector.setValue(key, value);
+		entity.setLocalVector(vector);
+		return entity;
+	}
+
+	private String read(String key) {
+		ReadRequest<SampleEntityClass> readRequest = new ReadRequest<SampleEntityClass>(
+				SampleEntityClass.class, "secondaryKey", key, null);
+		ReadReply<SampleEntityClass> reply = dataStore.get(readRequest);
+		return reply.getEntity().iterator().next().getData();
+	}
+
+	private int count(String key) {
+		return dataStore.getEntityCounts(
+				Compress.compressClassName(SampleEntityClass.class.getName()),
+				"secondaryKey", key);
+	}
+
+	@Test
+	public void testManyKeys() {
+		for (int i = 0; i < 5000; i++)
+			dataStore.put(new SampleEntityClass("key" + i, "ver" + i));
+
+		for (int i = 0; i < 5000; i += 499)
+			assertEquals("Result", "ver" + i, read("key" + i));
+	}
+
+	@Test
+	public void testSlabsGrow() {
+		int slabs = offHeap().getSlabCount();
+		long live = offHeap().getLiveBytes();
+
+		for (int i = 0; i < 2000; i++)
+			dataStore.put(new SampleEntityClass("key" + (i % 100), "ver" + i));
+
+		assertTrue(offHeap().getSlabCount() > slabs + 4);
+		assertTrue(offHeap().getLiveBytes() > live);
+		assertEquals(20, count("key7"));
+		assertEquals("ver1907", read("key7"));
+	}
+
+	@Test
+	public void testCollectAndCompact() {
+		// The entities of setUp have no vector.
+		dataStore = createDataStore();
+		for (int v = 1; v <= 10; v++) {
+			for (int k = 0; k < 50; k++)
+				dataStore.put(version("key" + k, v));
+		}
+		long live = offHeap().getLiveBytes();
+
+		// Versions 1 to 7 of each key are older than version 8, which is
+		// below the watermark.
+		assertEquals(50 * 7, dataStore.collectVersions(8, 2));
+
+		for (int k = 0; k < 50; k += 7) {
+			assertEquals(3, count("key" + k));
+			assertEquals("ver10", read("key" + k));
+		}
+
+		// More than half of the space was dead, thus the stripes are
+		// compacted.
+		assertEquals(0, offHeap().getDeadBytes());
+		assertTrue(offHeap().getLiveBytes() < live / 2);
+
+		// The most recent versions are always kept.
+		assertEquals(0, dataStore.collectVersions(100, 3));
+		assertEquals(2 * 50, dataStore.collectVersions(100, 1));
+		assertEquals(1, count("key0"));
+		assertEquals("ver10", read("key0"));
+	}
+
+	@Test
+	public void testPutsDuringCollection() throws Exception {
+		dataStore = createDataStore();
+		for (int k = 0; k < 50; k++)
+			dataStore.put(version("key" + k, 1));
+
+		Thread[] writers = new Thread[4];
+		for (int t = 0; t < writers.length; t++) {
+			final int first = t;
+			writers[t] = new Thread() {
+				public void run() {
+					for (int v = 2; v <= 200; v++) {
+						for (int k = first; k < 50; k += 4)
+							dataStore.put(version("key" + k, v));
+					}
+				}
+			};
+			writers[t].start();
+		}
+		while (writers[0].isAlive())
+			dataStore.collectVersions(150, 5);
+		for (Thread writer : writers)
+			writer.join();
+
+		for (int k = 0; k < 50; k++)
+			assertEquals("ver200", read("key" + k));
+		dataStore.collectVersions(150, 5);
+		assertEquals(51, count("key0"));
+	}
+
+}
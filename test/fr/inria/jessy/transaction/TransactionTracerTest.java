@@ -0,0 +1,92 @@
+package fr.inria.jessy.transaction;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import fr.inria.jessy.transaction.TransactionTracer.Phase;
+import fr.inria.jessy.transaction.TransactionTracer.Point;
+import fr.inria.jessy.utils.LogLinearHistogram;
+
+/**
+ * Tests the stamps and the histograms of the {@link TransactionTracer}
+ * through its package-private methods, which do not depend on the
+ * <code>tracing</code> property.
+ *
+ * @author Masoud Saeida Ardekani
+ *
+ */
+public class TransactionTracerTest extends TestCase {
+
+	private static final long MS = 1000000;
+
+	@Test
+	public void testPhasesAreRecordedWhenTheyEnd() {
+		LogLinearHistogram queueing = TransactionTracer
+				.getHistogram(Phase.CERTIFICATION_QUEUEING);
+		LogLinearHistogram certification = TransactionTracer
+				.getHistogram(Phase.CERTIFICATION);
+		LogLinearHistogram replica = TransactionTracer
+				.getHistogram(Phase.REPLICA_TERMINATION);
+		LogLinearHistogram commit = TransactionTracer
+				.getHistogram(Phase.COMMIT);
+		long queueings = queueing.getCount();
+		long certifications = certification.getCount();
+		long replicas = replica.getCount();
+		long commits = commit.getCount();
+
+		long[] stamps = new ExecutionHistory(new TransactionHandler())
+				.getTraceStamps();
+		TransactionTracer.stamp(stamps, Point.DELIVERED, 1 * MS);
+		TransactionTracer.stamp(stamps, Point.CERTIFICATION_START, 2 * MS);
+		TransactionTracer.stamp(stamps, Point.CERTIFICATION_END, 500 * MS);
+		TransactionTracer.stamp(stamps, Point.APPLIED, 600 * MS);
+
+		assertEquals(queueings + 1, queueing.getCount());
+		assertEquals(certifications + 1, certification.getCount());
+		assertTrue(certification.getMax() >= 498 * MS);
+		assertEquals(replicas + 1, replica.getCount());
+		assertTrue(replica.getMax() >= 599 * MS);
+
+		// The transaction has not been cast by this process.
+		TransactionTracer.stamp(stamps, Point.CLIENT_RETURN, 700 * MS);
+		assertEquals(commits, commit.getCount());
+
+		assertTrue(TransactionTracer.export().contains(
+				"#" + Phase.CERTIFICATION + "(us)"));
+	}
+
+	@Test
+	public void testStampOnceKeepsTheFirstStamp() {
+		LogLinearHistogram firstVote = TransactionTracer
+				.getHistogram(Phase.FIRST_VOTE);
+		long firstVotes = firstVote.getCount();
+
+		long[] stamps = new ExecutionHistory(new TransactionHandler())
+				.getTraceStamps();
+		TransactionTracer.stamp(stamps, Point.TERMINATION_CAST, 10 * MS);
+		TransactionTracer.stampOnce(stamps, Point.VOTE_RECEIVED, 20 * MS);
+		TransactionTracer.stampOnce(stamps, Point.VOTE_RECEIVED, 30 * MS);
+
+		assertEquals(20 * MS, stamps[Point.VOTE_RECEIVED.ordinal()]);
+		assertEquals(firstVotes + 1, firstVote.getCount());
+	}
+
+	@Test
+	public void testReadsAreTimedOnTheirOwn() {
+		LogLinearHistogram read = TransactionTracer.getHistogram(Phase.READ);
+		long reads = read.getCount();
+
+		// Two reads of the same transaction pending concurrently.
+		TransactionTracer.record(Phase.READ, 1 * MS, 3 * MS);
+		TransactionTracer.record(Phase.READ, 2 * MS, 900 * MS);
+
+		assertEquals(reads + 2, read.getCount());
+		assertTrue(read.getMax() >= 898 * MS);
+
+		// A read started while tracing was disabled is not recorded.
+		TransactionTracer.record(Phase.READ, 0);
+		assertEquals(reads + 2, read.getCount());
+	}
+
+}
@@ -0,0 +1,102 @@
+package fr.inria.jessy.transaction.termination;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import fr.inria.jessy.communication.message.TerminateTransactionRequestMessage;
+import fr.inria.jessy.entity.SampleEntityClass;
+import fr.inria.jessy.transaction.ExecutionHistory;
+import fr.inria.jessy.transaction.TransactionHandler;
+
+/**
+ * @author Masoud Saeida Ardekani
+ *
+ */
+public class ApplyTransactionsToDataStoreTest extends TestCase {
+
+	private TerminateTransactionRequestMessage transaction(String... writes) {
+		ExecutionHistory history = new ExecutionHistory(
+				new TransactionHandler());
+		for (String key : writes)
+			history.getWriteSet().addEntity(new SampleEntityClass(key, ""));
+		return new TerminateTransactionRequestMessage(history,
+				new HashSet<String>(), "", 0);
+	}
+
+	@Test
+	public void testOverlappingWriteSetsAreAppliedInOrder() throws Exception {
+		final TerminateTransactionRequestMessage t1 = transaction("x");
+		TerminateTransactionRequestMessage t2 = transaction("y");
+		TerminateTransactionRequestMessage t3 = transaction("x", "z");
+
+		final CountDownLatch blockT1 = new CountDownLatch(1);
+		final BlockingQueue<TerminateTransactionRequestMessage> applied = new LinkedBlockingQueue<TerminateTransactionRequestMessage>();
+		final List<TerminateTransactionRequestMessage> prepared = Collections
+				.synchronizedList(new ArrayList<TerminateTransactionRequestMessage>());
+		final List<TerminateTransactionRequestMessage> terminated = Collections
+				.synchronizedList(new ArrayList<TerminateTransactionRequestMessage>());
+		final CountDownLatch allTerminated = new CountDownLatch(3);
+
+		ApplyTransactionsToDataStore stage = new ApplyTransactionsToDataStore(
+				null, 4) {
+			@Override
+			protected void prepare(TerminateTransactionRequestMessage msg) {
+				prepared.add(msg);
+			}
+
+			@Override
+			protected void apply(TerminateTransactionRequestMessage msg) {
+				try {
+					if (msg == t1)
+						blockT1.await();
+				} catch (InterruptedException e) {
+					e.printStackTrace();
+				}
+				applied.add(msg);
+			}
+
+			@Override
+			protected void terminate(TerminateTransactionRequestMessage msg) {
+				terminated.add(msg);
+				allTerminated.countDown();
+			}
+		};
+		Thread dispatcher = new Thread(stage);
+		dispatcher.setDaemon(true);
+		dispatcher.start();
+
+		try {
+			stage.addToQueue(t1);
+			stage.addToQueue(t2);
+			stage.addToQueue(t3);
+
+			// t2 does not wait for t1, but t3 does.
+			assertSame(t2, applied.poll(1, TimeUnit.SECONDS));
+			assertNull(applied.poll(100, TimeUnit.MILLISECONDS));
+			assertTrue(terminated.isEmpty());
+
+			blockT1.countDown();
+			assertSame(t1, applied.poll(1, TimeUnit.SECONDS));
+			assertSame(t3, applied.poll(1, TimeUnit.SECONDS));
+
+			assertTrue(allTerminated.await(1, TimeUnit.SECONDS));
+			assertEquals(Arrays.asList(t1, t2, t3), prepared);
+			assertEquals(Arrays.asList(t1, t2, t3), terminated);
+		} finally {
+			dispatcher.interrupt();
+			stage.close();
+		}
+	}
+
+}
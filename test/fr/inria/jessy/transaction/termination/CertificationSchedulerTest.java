@@ -0,0 +1,150 @@
+package fr.inria.jessy.transaction.termination;
+
+import java.util.HashSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import fr.inria.jessy.communication.message.TerminateTransactionRequestMessage;
+import fr.inria.jessy.consistency.Consistency;
+import fr.inria.jessy.entity.SampleEntityClass;
+import fr.inria.jessy.transaction.ExecutionHistory;
+import fr.inria.jessy.transaction.TransactionHandler;
+
+/**
+ * @author Masoud Saeida Ardekani
+ *
+ */
+public class CertificationSchedulerTest extends TestCase {
+
+	private final BlockingQueue<TerminateTransactionRequestMessage> certified = new LinkedBlockingQueue<TerminateTransactionRequestMessage>();
+
+	private TerminateTransactionRequestMessage transaction(String... writes) {
+		return transaction(new String[0], writes);
+	}
+
+	private TerminateTransactionRequestMessage transaction(String[] reads,
+			String... writes) {
+		ExecutionHistory history = new ExecutionHistory(
+				new TransactionHandler());
+		for (String key : reads)
+			history.getReadSet().addEntity(new SampleEntityClass(key, ""));
+		for (String key : writes)
+			history.getWriteSet().addEntity(new SampleEntityClass(key, ""));
+		return new TerminateTransactionRequestMessage(history,
+				new HashSet<String>(), "", 0);
+	}
+
+	private void deliver(CertificationScheduler scheduler, ConflictTable table,
+			final TerminateTransactionRequestMessage msg) {
+		table.add(msg);
+		scheduler.delivered(msg, new Runnable() {
+			public void run() {
+				certified.add(msg);
+			}
+		});
+	}
+
+	private void decide(CertificationScheduler scheduler, ConflictTable table,
+			TerminateTransactionRequestMessage msg) {
+		table.remove(msg);
+		scheduler.decided(msg);
+	}
+
+	@Test
+	public void testConflictingTransactionsWaitForTheirPredecessors()
+			throws Exception {
+		boolean readKeys = Consistency.READ_KEYS_REQUIRED_FOR_COMMUTATIVITY_TEST;
+		Consistency.READ_KEYS_REQUIRED_FOR_COMMUTATIVITY_TEST = false;
+		ConflictTable table = new ConflictTable();
+		CertificationScheduler scheduler = new CertificationScheduler(table,
+				null, 2) {
+			@Override
+			protected boolean commute(TerminateTransactionRequestMessage msg1,
+					TerminateTransactionRequestMessage msg2) {
+				for (String key : msg1.getExecutionHistory().getWriteSet()
+						.getKeys()) {
+					if (msg2.getExecutionHistory().getWriteSet().getKeys()
+							.contains(key))
+						return false;
+				}
+				return true;
+			}
+		};
+		try {
+			TerminateTransactionRequestMessage t1 = transaction("x");
+			TerminateTransactionRequestMessage t2 = transaction("y");
+			TerminateTransactionRequestMessage t3 = transaction("x", "y");
+			TerminateTransactionRequestMessage t4 = transaction("z");
+			deliver(scheduler, table, t1);
+			deliver(scheduler, table, t2);
+			deliver(scheduler, table, t3);
+			deliver(scheduler, table, t4);
+
+			HashSet<TerminateTransactionRequestMessage> ready = new HashSet<TerminateTransactionRequestMessage>();
+			for (int i = 0; i < 3; i++)
+				ready.add(certified.poll(1, TimeUnit.SECONDS));
+			assertTrue(ready.contains(t1));
+			assertTrue(ready.contains(t2));
+			assertTrue(ready.contains(t4));
+			assertNull(certified.poll(100, TimeUnit.MILLISECONDS));
+
+			decide(scheduler, table, t1);
+			assertNull(certified.poll(100, TimeUnit.MILLISECONDS));
+
+			decide(scheduler, table, t2);
+			assertSame(t3, certified.poll(1, TimeUnit.SECONDS));
+
+			decide(scheduler, table, t3);
+			decide(scheduler, table, t4);
+			assertEquals(0, scheduler.size());
+		} finally {
+			scheduler.close();
+			Consistency.READ_KEYS_REQUIRED_FOR_COMMUTATIVITY_TEST = readKeys;
+		}
+	}
+
+	@Test
+	public void testReadWriteConflictsWithoutReadKeys() throws Exception {
+		boolean readKeys = Consistency.READ_KEYS_REQUIRED_FOR_COMMUTATIVITY_TEST;
+		Consistency.READ_KEYS_REQUIRED_FOR_COMMUTATIVITY_TEST = false;
+		ConflictTable table = new ConflictTable();
+		CertificationScheduler scheduler = new CertificationScheduler(table,
+				null, 2) {
+			@Override
+			protected boolean commute(TerminateTransactionRequestMessage msg1,
+					TerminateTransactionRequestMessage msg2) {
+				for (String key : msg1.getExecutionHistory().getWriteSet()
+						.getKeys()) {
+					if (msg2.getExecutionHistory().getReadSet().getKeys()
+							.contains(key))
+						return false;
+				}
+				return true;
+			}
+		};
+		try {
+			TerminateTransactionRequestMessage t1 = transaction("x");
+			TerminateTransactionRequestMessage t2 = transaction(
+					new String[] { "x" }, "y");
+			deliver(scheduler, table, t1);
+			deliver(scheduler, table, t2);
+
+			assertSame(t1, certified.poll(1, TimeUnit.SECONDS));
+			assertNull(certified.poll(100, TimeUnit.MILLISECONDS));
+
+			decide(scheduler, table, t1);
+			assertSame(t2, certified.poll(1, TimeUnit.SECONDS));
+			decide(scheduler, table, t2);
+			assertEquals(0, scheduler.size());
+		} finally {
+			scheduler.close();
+			Consistency.READ_KEYS_REQUIRED_FOR_COMMUTATIVITY_TEST = readKeys;
+		}
+	}
+
+}
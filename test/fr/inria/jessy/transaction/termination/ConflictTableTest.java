@@ -0,0 +1,92 @@
+package fr.inria.jessy.transaction.termination;
+
+import java.util.Collection;
+import java.util.HashSet;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import fr.inria.jessy.communication.message.TerminateTransactionRequestMessage;
+import fr.inria.jessy.consistency.Consistency;
+import fr.inria.jessy.entity.SampleEntityClass;
+import fr.inria.jessy.transaction.ExecutionHistory;
+import fr.inria.jessy.transaction.TransactionHandler;
+
+/**
+ * @author Masoud Saeida Ardekani
+ *
+ */
+public class ConflictTableTest extends TestCase {
+
+	private TerminateTransactionRequestMessage transaction(String[] reads,
+			String... writes) {
+		ExecutionHistory history = new ExecutionHistory(
+				new TransactionHandler());
+		for (String key : reads)
+			history.getReadSet().addEntity(new SampleEntityClass(key, ""));
+		for (String key : writes)
+			history.getWriteSet().addEntity(new SampleEntityClass(key, ""));
+		return new TerminateTransactionRequestMessage(history,
+				new HashSet<String>(), "", 0);
+	}
+
+	@Test
+	public void testCandidatesShareAKey() {
+		ConflictTable table = new ConflictTable();
+		TerminateTransactionRequestMessage t1 = transaction(
+				new String[] { "z" }, "x");
+		TerminateTransactionRequestMessage t2 = transaction(
+				new String[] { "w" }, "y");
+		TerminateTransactionRequestMessage t3 = transaction(new String[0],
+				"x", "y");
+		table.add(t1);
+		table.add(t2);
+		table.add(t3);
+
+		Collection<TerminateTransactionRequestMessage> candidates = table
+				.getConflictCandidates(t1);
+		assertEquals(1, candidates.size());
+		assertTrue(candidates.contains(t3));
+
+		assertEquals(2, table.getConflictCandidates(t3).size());
+
+		table.remove(t3);
+		assertTrue(table.getConflictCandidates(t1).isEmpty());
+		assertTrue(table.getConflictCandidates(t2).isEmpty());
+	}
+
+	@Test
+	public void testReadKeys() {
+		// Read keys are indexed even if the consistency does not require
+		// them, since its certification might still compare them.
+		boolean readKeys = Consistency.READ_KEYS_REQUIRED_FOR_COMMUTATIVITY_TEST;
+		Consistency.READ_KEYS_REQUIRED_FOR_COMMUTATIVITY_TEST = false;
+		try {
+			ConflictTable table = new ConflictTable();
+			TerminateTransactionRequestMessage t1 = transaction(
+					new String[] { "z" }, "x");
+			TerminateTransactionRequestMessage t2 = transaction(
+					new String[] { "x" }, "y");
+			TerminateTransactionRequestMessage t3 = transaction(
+					new String[] { "x", "z" });
+			table.add(t1);
+			table.add(t2);
+			table.add(t3);
+
+			assertTrue(table.getConflictCandidates(t1).contains(t2));
+			assertTrue(table.getConflictCandidates(t2).contains(t1));
+
+			// Transactions that only read the same keys are not candidates.
+			assertFalse(table.getConflictCandidates(t2).contains(t3));
+			assertEquals(1, table.getConflictCandidates(t3).size());
+
+			table.remove(t1);
+			assertTrue(table.getConflictCandidates(t2).isEmpty());
+			assertTrue(table.getConflictCandidates(t3).isEmpty());
+		} finally {
+			Consistency.READ_KEYS_REQUIRED_FOR_COMMUTATIVITY_TEST = readKeys;
+		}
+	}
+
+}
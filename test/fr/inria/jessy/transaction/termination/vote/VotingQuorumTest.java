@@ -0,0 +1,106 @@
+package fr.inria.jessy.transaction.termination.vote;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import fr.inria.jessy.ConstantPool;
+import fr.inria.jessy.transaction.TransactionHandler;
+import fr.inria.jessy.transaction.TransactionState;
+import fr.inria.jessy.utils.SettableFuture;
+
+/**
+ * @author Masoud Saeida Ardekani
+ *
+ */
+public class VotingQuorumTest extends TestCase {
+
+	private final TransactionHandler th = new TransactionHandler();
+
+	private final Collection<String> voters = Arrays.asList("g1", "g2");
+
+	private Vote vote(String voter, boolean committed) {
+		return new Vote(th, committed, voter, null);
+	}
+
+	@Test
+	public void testCommitsOnceAllVotersVoted() throws Exception {
+		VotingQuorum vq = new VotingQuorum(th);
+		final AtomicInteger notified = new AtomicInteger();
+
+		SettableFuture<TransactionState> future = vq.getResultFuture(voters);
+		future.addListener(new Runnable() {
+			public void run() {
+				notified.incrementAndGet();
+			}
+		});
+
+		vq.addVote(vote("g1", true));
+		assertFalse(future.isDone());
+		assertEquals(0, notified.get());
+
+		vq.addVote(vote("g2", true));
+		assertEquals(TransactionState.COMMITTED,
+				future.get(1, TimeUnit.SECONDS));
+		assertEquals(1, notified.get());
+
+		vq.addVote(vote("g2", true));
+		assertEquals(1, notified.get());
+	}
+
+	@Test
+	public void testAbortsOnNegativeVote() throws Exception {
+		VotingQuorum vq = new VotingQuorum(th);
+
+		SettableFuture<TransactionState> future = vq.getResultFuture(voters);
+		vq.addVote(vote("g1", false));
+
+		assertEquals(TransactionState.ABORTED_BY_VOTING,
+				future.get(1, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testVotesReceivedBeforeAskingForTheResult() throws Exception {
+		VotingQuorum vq = new VotingQuorum(th);
+		vq.addVote(vote("g1", true));
+		vq.addVote(vote("g2", true));
+
+		assertEquals(TransactionState.COMMITTED, vq.getResultFuture(voters)
+				.getNow());
+
+		final AtomicInteger notified = new AtomicInteger();
+		vq.getResultFuture(voters).addListener(new Runnable() {
+			public void run() {
+				notified.incrementAndGet();
+			}
+		});
+		assertEquals(1, notified.get());
+	}
+
+	@Test
+	public void testAbortsByTimeout() throws Exception {
+		long timeout = ConstantPool.JESSY_VOTING_QUORUM_TIMEOUT;
+		ConstantPool.JESSY_VOTING_QUORUM_TIMEOUT = 300;
+		try {
+			VotingQuorum vq = new VotingQuorum(th);
+
+			SettableFuture<TransactionState> future = vq
+					.getResultFuture(voters);
+			vq.addVote(vote("g1", true));
+
+			assertEquals(TransactionState.ABORTED_BY_TIMEOUT,
+					future.get(5, TimeUnit.SECONDS));
+
+			vq.addVote(vote("g2", true));
+			assertEquals(TransactionState.ABORTED_BY_TIMEOUT, future.get());
+		} finally {
+			ConstantPool.JESSY_VOTING_QUORUM_TIMEOUT = timeout;
+		}
+	}
+
+}
@@ -0,0 +1,82 @@
+package fr.inria.jessy.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+/**
+ * @author Masoud Saeida Ardekani
+ *
+ */
+public class LogLinearHistogramTest extends TestCase {
+
+	@Test
+	public void testBuckets() {
+		for (long value = 0; value < 100000; value++) {
+			int bucket = LogLinearHistogram.bucketOf(value);
+			assertTrue(LogLinearHistogram.lowestValueOf(bucket) <= value);
+			assertTrue(LogLinearHistogram.highestValueOf(bucket) >= value);
+		}
+
+		int last = LogLinearHistogram.bucketOf(Long.MAX_VALUE);
+		assertEquals(Long.MAX_VALUE, LogLinearHistogram.highestValueOf(last));
+		assertEquals(last - LogLinearHistogram.SUB_BUCKETS + 1,
+				LogLinearHistogram.bucketOf(Long.MAX_VALUE / 2 + 1));
+	}
+
+	@Test
+	public void testPercentiles() {
+		LogLinearHistogram histogram = new LogLinearHistogram();
+		assertEquals(0, histogram.getValueAtPercentile(99));
+
+		for (long value = 1; value <= 100000; value++)
+			histogram.record(value * 1000);
+
+		assertEquals(100000, histogram.getCount());
+		assertEquals(100000000, histogram.getMax());
+		assertEquals(50000500.0, histogram.getMean(), 1);
+
+		assertNear(50000000, histogram.getValueAtPercentile(50));
+		assertNear(99000000, histogram.getValueAtPercentile(99));
+		assertNear(99900000, histogram.getValueAtPercentile(99.9));
+		assertEquals(100000000, histogram.getValueAtPercentile(100));
+	}
+
+	private void assertNear(long expected, long actual) {
+		double error = Math.abs(actual - expected) / (double) expected;
+		assertTrue(expected + " vs " + actual,
+				error <= 1.0 / LogLinearHistogram.SUB_BUCKETS);
+	}
+
+	@Test
+	public void testConcurrentRecords() throws Exception {
+		final LogLinearHistogram histogram = new LogLinearHistogram();
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int t = 0; t < 4; t++) {
+			Thread thread = new Thread() {
+				public void run() {
+					for (int i = 0; i < 100000; i++)
+						histogram.record(i % 1000);
+				}
+			};
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads)
+			thread.join();
+
+		assertEquals(400000, histogram.getCount());
+		assertEquals(999, histogram.getMax());
+
+		LogLinearHistogram merged = new LogLinearHistogram();
+		merged.add(histogram);
+		merged.add(histogram);
+		assertEquals(800000, merged.getCount());
+		assertEquals(histogram.getValueAtPercentile(99),
+				merged.getValueAtPercentile(99));
+	}
+
+}
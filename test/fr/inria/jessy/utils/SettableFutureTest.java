@@ -0,0 +1,65 @@
+package fr.inria.jessy.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+/**
+ * @author Masoud Saeida Ardekani
+ *
+ */
+public class SettableFutureTest extends TestCase {
+
+	@Test
+	public void testTimedOutWaitersAreRemoved() throws Exception {
+		SettableFuture<String> future = new SettableFuture<String>();
+		final AtomicInteger notified = new AtomicInteger();
+		future.addListener(new Runnable() {
+			public void run() {
+				notified.incrementAndGet();
+			}
+		});
+
+		for (int i = 0; i < 100; i++) {
+			try {
+				future.get(100, TimeUnit.MICROSECONDS);
+				fail();
+			} catch (TimeoutException e) {
+			}
+		}
+		assertEquals(0, future.getWaiterCount());
+
+		assertTrue(future.set("done"));
+		assertEquals(1, notified.get());
+		assertEquals("done", future.get(1, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testParkedThreadIsReleased() throws Exception {
+		final SettableFuture<String> future = new SettableFuture<String>();
+		final String[] result = new String[1];
+		Thread waiter = new Thread() {
+			public void run() {
+				try {
+					result[0] = future.get();
+				} catch (InterruptedException e) {
+				}
+			}
+		};
+		waiter.start();
+
+		while (future.getWaiterCount() == 0)
+			Thread.sleep(1);
+
+		future.set("done");
+		waiter.join(1000);
+		assertFalse(waiter.isAlive());
+		assertEquals("done", result[0]);
+		assertEquals(0, future.getWaiterCount());
+	}
+
+}
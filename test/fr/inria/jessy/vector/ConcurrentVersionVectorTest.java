@@ -0,0 +1,58 @@
+package fr.inria.jessy.vector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import net.sourceforge.fractal.membership.Group;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Masoud Saeida Ardekani
+ *
+ */
+public class ConcurrentVersionVectorTest extends TestCase {
+
+	/**
+	 * @throws java.lang.Exception
+	 */
+	@Before
+	public void setUp() throws Exception {
+		KeyDictionary.init(new ArrayList<Group>(), Arrays.asList(1, 2, 3));
+	}
+
+	@Test
+	public void testCompareToDictionaryVector() {
+		// Only keys of the dictionary, thus the map of the vector is null.
+		VersionVector<String> startVTS = new VersionVector<String>("1", 5);
+		startVTS.setValue("2", 3);
+
+		ConcurrentVersionVector<String> committedVTS = new ConcurrentVersionVector<String>(
+				"1");
+		committedVTS.setVector("1", 4);
+		committedVTS.setVector("2", 3);
+		assertTrue(committedVTS.compareTo(startVTS) < 0);
+
+		committedVTS.setVector("1", 5);
+		assertTrue(committedVTS.compareTo(startVTS) > 0);
+
+		startVTS.setValue("3", 1);
+		assertTrue(committedVTS.compareTo(startVTS) > 0);
+	}
+
+	@Test
+	public void testCompareToMixedVector() {
+		VersionVector<String> startVTS = new VersionVector<String>("1", 1);
+		startVTS.setValue("group", 2);
+
+		ConcurrentVersionVector<String> committedVTS = new ConcurrentVersionVector<String>(
+				"1");
+		committedVTS.setVector("1", 1);
+		committedVTS.setVector("group", 1);
+		assertTrue(committedVTS.compareTo(startVTS) < 0);
+	}
+
+}
@@ -0,0 +1,101 @@
+package fr.inria.jessy.vector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import fr.inria.jessy.entity.SampleEntityClass;
+import fr.inria.jessy.store.VersionCollector;
+
+/**
+ * Tests that the snapshot registered by a GMU read is the one of its
+ * transaction, and thus keeps its versions from being garbage collected.
+ *
+ * @author Masoud Saeida Ardekani
+ *
+ */
+public class GMUVectorGarbageCollectionTest extends TestCase {
+
+	private static final String GROUP = "group1";
+
+	private static List<SampleEntityClass> versions(int count) {
+		List<SampleEntityClass> versions = new ArrayList<SampleEntityClass>();
+		for (int v = 1; v <= count; v++) {
+			SampleEntityClass entity = new SampleEntityClass("key", "ver" + v);
+			entity.setLocalVector(new GMUVector2<String>(GROUP, v));
+			versions.add(entity);
+		}
+		return versions;
+	}
+
+	/**
+	 * Lowers the watermark to the snapshot, as
+	 * {@link VersionCollector#collect()} does for an active snapshot.
+	 */
+	private static int reclaimable(List<SampleEntityClass> versions,
+			int watermark, Integer snapshot) {
+		if (snapshot != null && snapshot < watermark)
+			watermark = snapshot;
+		return VersionCollector.reclaimableVersions(versions, watermark, 1);
+	}
+
+	@SuppressWarnings("deprecation")
+	@Test
+	public void testOldSnapshotKeepsItsVersion() {
+		GMUVector2.replicaKey = GROUP;
+		List<SampleEntityClass> versions = versions(10);
+
+		// A transaction has read version 3 in this group, and the oldest
+		// vector of logCommitVC is now 8.
+		CompactVector<String> readSet = new CompactVector<String>();
+		readSet.setValue(GROUP, 3);
+		readSet.setValue("group2", 12);
+
+		Integer snapshot = new GMUVector2<String>()
+				.getGarbageCollectionSnapshot(readSet);
+		assertEquals(Integer.valueOf(3), snapshot);
+
+		// Versions 1 and 2 are reclaimed, version 3 stays.
+		assertEquals(2, reclaimable(versions, 8, snapshot));
+		// The watermark alone would have reclaimed it.
+		assertEquals(7, reclaimable(versions, 8, null));
+
+		// A transaction that has not read in this group yet falls back to
+		// the watermark.
+		readSet = new CompactVector<String>();
+		readSet.setValue("group2", 12);
+		assertNull(new GMUVector2<String>()
+				.getGarbageCollectionSnapshot(readSet));
+	}
+
+	@SuppressWarnings("deprecation")
+	@Test
+	public void testSnapshotOfTheExtraObject() {
+		GMUVector.replicaKey = KeyDictionary.swidKey(1);
+
+		GMUVector<String> snapshot = new GMUVector<String>(
+				GMUVector.replicaKey, 3);
+		snapshot.setValue(KeyDictionary.swidKey(2), 12);
+		final GMUVectorExtraObject<String> extraObject = new GMUVectorExtraObject<String>();
+		extraObject.setSnapshot(snapshot);
+		CompactVector<String> readSet = new CompactVector<String>() {
+			@Override
+			public Object getExtraObject() {
+				return extraObject;
+			}
+		};
+
+		// Only the other process has been read so far.
+		extraObject.addItem(new GMUVector<String>(KeyDictionary.swidKey(2),
+				12));
+		assertNull(new GMUVector<String>().getGarbageCollectionSnapshot(readSet));
+
+		extraObject.addItem(new GMUVector<String>(GMUVector.replicaKey, 3));
+		assertEquals(Integer.valueOf(3),
+				new GMUVector<String>().getGarbageCollectionSnapshot(readSet));
+	}
+
+}
@@ -0,0 +1,155 @@
+package fr.inria.jessy.vector;
+
+import junit.framework.TestCase;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Masoud Saeida Ardekani
+ *
+ */
+public class PartitionedDependenceVectorTest extends TestCase {
+
+	private static final int PARTITIONS = 4;
+
+	/**
+	 * @throws java.lang.Exception
+	 */
+	@Before
+	public void setUp() throws Exception {
+		PartitionedDependenceVector.setPartitions(PARTITIONS);
+	}
+
+	/**
+	 * Returns a key whose partition is different from the partition of
+	 * {@code key}.
+	 */
+	private String otherPartitionKey(String key) {
+		for (int i = 0;; i++) {
+			if (!PartitionedDependenceVector.partitionOf("k" + i).equals(
+					PartitionedDependenceVector.partitionOf(key)))
+				return "k" + i;
+		}
+	}
+
+	/**
+	 * Returns a key that is in the same partition as {@code key}.
+	 */
+	private String samePartitionKey(String key) {
+		for (int i = 0;; i++) {
+			if (!key.equals("k" + i)
+					&& PartitionedDependenceVector.partitionOf("k" + i).equals(
+							PartitionedDependenceVector.partitionOf(key)))
+				return "k" + i;
+		}
+	}
+
+	private PartitionedDependenceVector<String> write(String key,
+			Vector<String>... reads) {
+		CompactVector<String> readSet = new CompactVector<String>();
+		CompactVector<String> writeSet = new CompactVector<String>();
+		for (Vector<String> read : reads) {
+			readSet.update(read, null);
+			if (read.getSelfKey().equals(key))
+				writeSet.update(read, null);
+		}
+
+		PartitionedDependenceVector<String> result = new PartitionedDependenceVector<String>(
+				"");
+		result.update(readSet, writeSet);
+		result.setSelfKey(key);
+		return result.clone();
+	}
+
+	private PartitionedDependenceVector<String> create(String key) {
+		PartitionedDependenceVector<String> result = new PartitionedDependenceVector<String>(
+				key);
+		result.increment();
+		return result;
+	}
+
+	@Test
+	public void testSizeIsBounded() {
+		CompactVector<String> readSet = new CompactVector<String>();
+		for (int i = 0; i < 1000; i++)
+			readSet.update(create("k" + i), null);
+
+		PartitionedDependenceVector<String> vector = new PartitionedDependenceVector<String>(
+				"k0");
+		vector.update(readSet, readSet);
+		assertTrue(vector.size() <= PARTITIONS);
+	}
+
+	@Test
+	public void testWriteIncrementsPartition() {
+		PartitionedDependenceVector<String> x1 = create("x");
+		PartitionedDependenceVector<String> x2 = write("x", x1);
+
+		assertEquals(Integer.valueOf(1), x1.getSelfValue());
+		assertEquals(Integer.valueOf(2), x2.getSelfValue());
+		assertEquals(Vector.CompatibleResult.NOT_COMPATIBLE_TRY_NEXT,
+				x2.isCompatible(x1));
+		assertEquals(Vector.CompatibleResult.COMPATIBLE, x2.isCompatible(x2));
+	}
+
+	@Test
+	public void testReadAfterWriteInSamePartition() {
+		// y is written after x in the same partition: x can still be read.
+		String y = samePartitionKey("x");
+		PartitionedDependenceVector<String> x1 = create("x");
+		PartitionedDependenceVector<String> y2 = write(y, create(y), x1);
+
+		CompactVector<String> readSet = new CompactVector<String>();
+		readSet.update(y2, null);
+		assertEquals(Vector.CompatibleResult.COMPATIBLE,
+				x1.isCompatible(readSet));
+	}
+
+	@Test
+	public void testNewerVersionIsNotCompatible() {
+		// x2 depends on a version of y that is more recent than the read one.
+		String y = otherPartitionKey("x");
+		PartitionedDependenceVector<String> y1 = create(y);
+		PartitionedDependenceVector<String> y2 = write(y, y1);
+		PartitionedDependenceVector<String> x1 = create("x");
+		PartitionedDependenceVector<String> x2 = write("x", x1, y2);
+
+		CompactVector<String> readSet = new CompactVector<String>();
+		readSet.update(y1, null);
+		assertEquals(Vector.CompatibleResult.NOT_COMPATIBLE_TRY_NEXT,
+				x2.isCompatible(readSet));
+		assertEquals(Vector.CompatibleResult.COMPATIBLE,
+				x1.isCompatible(readSet));
+
+		readSet = new CompactVector<String>();
+		readSet.update(y2, null);
+		assertEquals(Vector.CompatibleResult.COMPATIBLE,
+				x2.isCompatible(readSet));
+	}
+
+	@Test
+	public void testStaleVersionMovesBound() {
+		/*
+		 * y1 and x2 are read in parallel against an empty read set. x2
+		 * depends on y2, thus y1 is compatible with x2 although it is stale:
+		 * only the bound of y tells that y must be read again.
+		 */
+		String y = otherPartitionKey("x");
+		PartitionedDependenceVector<String> y1 = create(y);
+		PartitionedDependenceVector<String> y2 = write(y, y1);
+		PartitionedDependenceVector<String> x2 = write("x", create("x"), y2);
+
+		CompactVector<String> readSet = new CompactVector<String>();
+		readSet.update(create("z"), null);
+		Integer issued = y1.getCompatibleSelfValueBound(readSet);
+
+		readSet.update(x2, null);
+		assertEquals(Vector.CompatibleResult.COMPATIBLE,
+				y1.isCompatible(readSet));
+		assertFalse(Integer.valueOf(2).equals(issued));
+		assertEquals(Integer.valueOf(2),
+				y1.getCompatibleSelfValueBound(readSet));
+	}
+
+}
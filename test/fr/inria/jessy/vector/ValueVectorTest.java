@@ -0,0 +1,139 @@
+package fr.inria.jessy.vector;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import net.sourceforge.fractal.membership.Group;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import fr.inria.jessy.vector.ValueVector.ComparisonResult;
+
+/**
+ * @author Masoud Saeida Ardekani
+ *
+ */
+public class ValueVectorTest extends TestCase {
+
+	/**
+	 * @throws java.lang.Exception
+	 */
+	@Before
+	public void setUp() throws Exception {
+		KeyDictionary.init(new ArrayList<Group>(), Arrays.asList(1, 2, 3));
+	}
+
+	@Test
+	public void testDictionaryAndOtherKeys() {
+		ValueVector<String, Integer> vector = new ValueVector<String, Integer>(
+				-1);
+		vector.setValue("1", 5);
+		vector.setValue("entity", 7);
+
+		assertEquals(2, vector.size());
+		assertEquals(Integer.valueOf(5), vector.getValue("1"));
+		assertEquals(Integer.valueOf(7), vector.getValue("entity"));
+		assertEquals(Integer.valueOf(-1), vector.getValue("2"));
+		assertEquals(Integer.valueOf(5), vector.getMap().get("1"));
+
+		vector.getMap().clear();
+		assertEquals(0, vector.size());
+		assertEquals(Integer.valueOf(-1), vector.getValue("1"));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testUpdateAndCompare() {
+		ValueVector<String, Integer> v1 = new ValueVector<String, Integer>(-1);
+		v1.setValue("1", 5);
+		v1.setValue("2", 1);
+		v1.setValue("entity", 1);
+
+		ValueVector<String, Integer> v2 = (ValueVector<String, Integer>) v1
+				.clone();
+		v2.setValue("2", 3);
+		assertEquals(Integer.valueOf(1), v1.getValue("2"));
+		assertEquals(ComparisonResult.LOWER_THAN, v1.compareTo(v2));
+
+		v2.setValue("1", 4);
+		assertEquals(ComparisonResult.NOT_COMPARABLE, v1.compareTo(v2));
+
+		v1.update(v2);
+		assertEquals(Integer.valueOf(5), v1.getValue("1"));
+		assertEquals(Integer.valueOf(3), v1.getValue("2"));
+		assertEquals(ComparisonResult.GREATER_THAN, v1.compareTo(v2));
+		assertFalse(v1.equals(v2));
+
+		v2.setValue("1", 5);
+		assertEquals(v1, v2);
+		assertEquals(v1.hashCode(), v2.hashCode());
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testSerialization() throws Exception {
+		ValueVector<String, Integer> vector = new ValueVector<String, Integer>(
+				-1);
+		vector.setValue("3", 9);
+		vector.setValue("entity", 2);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(vector);
+		out.close();
+
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(
+				bytes.toByteArray()));
+		ValueVector<String, Integer> result = (ValueVector<String, Integer>) in
+				.readObject();
+		assertEquals(vector.getMap(), result.getMap());
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testDeltaEncoding() throws Exception {
+		ValueVector<String, Integer> v1 = new ValueVector<String, Integer>(-1);
+		for (int i = 0; i < 100; i++)
+			v1.setValue("entity" + i, i);
+		v1.setValue("1", 1);
+
+		ValueVector<String, Integer> v2 = (ValueVector<String, Integer>) v1
+				.clone();
+		v2.setValue("entity7", 70);
+		v2.setValue("2", 2);
+		v2.getMap().remove("entity8");
+		v2.getMap().remove("1");
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		VectorBaselines previous = VectorBaselines.open();
+		try {
+			out.writeObject(v1);
+			out.writeObject(v2);
+		} finally {
+			VectorBaselines.close(previous);
+		}
+		out.close();
+
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(
+				bytes.toByteArray()));
+		previous = VectorBaselines.open();
+		try {
+			assertEquals(v1, in.readObject());
+			ValueVector<String, Integer> result = (ValueVector<String, Integer>) in
+					.readObject();
+			assertEquals(v2, result);
+			assertFalse(result.getMap().containsKey("entity8"));
+		} finally {
+			VectorBaselines.close(previous);
+		}
+	}
+
+}